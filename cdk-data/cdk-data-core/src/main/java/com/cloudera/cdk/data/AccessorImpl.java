@@ -16,6 +16,10 @@
 package com.cloudera.cdk.data;
 
 import com.cloudera.cdk.data.impl.Accessor;
+import com.google.common.collect.Maps;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.util.Map;
 
 final class AccessorImpl extends Accessor {
 
@@ -42,4 +46,17 @@ final class AccessorImpl extends Accessor {
   public PartitionStrategy fromExpression(String partitionExpression) {
     return new PartitionExpression(partitionExpression, true).evaluate();
   }
+
+  @Override
+  public DatasetDescriptor withSchemaUri(DatasetDescriptor descriptor, URI schemaUri)
+      throws MalformedURLException {
+    Map<String, String> properties = Maps.newHashMap();
+    for (String name : descriptor.listProperties()) {
+      properties.put(name, descriptor.getProperty(name));
+    }
+    return new DatasetDescriptor(descriptor.getSchema(),
+        DatasetDescriptor.Builder.toURL(schemaUri),
+        descriptor.getFormat(), descriptor.getLocation(), properties,
+        descriptor.isPartitioned() ? descriptor.getPartitionStrategy() : null);
+  }
 }
@@ -395,7 +395,7 @@ public class DatasetDescriptor {
       return schema(new URI(uri));
     }
 
-    private URL toURL(URI uri) throws MalformedURLException {
+    static URL toURL(URI uri) throws MalformedURLException {
       try {
         // try with installed URLStreamHandlers first...
         return uri.toURL();
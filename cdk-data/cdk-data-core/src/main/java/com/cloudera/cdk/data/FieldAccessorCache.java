@@ -0,0 +1,189 @@
+/**
+ * Copyright 2013 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.cdk.data;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.specific.SpecificRecord;
+
+/**
+ * Reads the source fields of a {@link PartitionStrategy}'s field partitioners
+ * from entities, resolving how to read each field once rather than for every
+ * entity.
+ * <p>
+ * Avro records are read by field position. The positions of a
+ * {@link SpecificRecord} class are cached per class, and those of generic
+ * records are cached for the most recently seen schema. Other entities are
+ * read through their public getters, which are looked up once per class.
+ */
+class FieldAccessorCache {
+
+  private final String[] names;
+  private final ConcurrentMap<Class<?>, Getter[]> gettersByClass =
+    new ConcurrentHashMap<Class<?>, Getter[]>();
+  private volatile SchemaGetters lastSchemaGetters;
+
+  FieldAccessorCache(List<FieldPartitioner> fieldPartitioners) {
+    this.names = new String[fieldPartitioners.size()];
+    for (int i = 0; i < names.length; i++) {
+      names[i] = fieldPartitioners.get(i).getSourceName();
+    }
+  }
+
+  /**
+   * Returns the value of the source field of the field partitioner at
+   * {@code index}.
+   */
+  Object get(Object entity, int index) {
+    return gettersFor(entity)[index].get(entity, names[index]);
+  }
+
+  private Getter[] gettersFor(Object entity) {
+    if (entity instanceof GenericRecord && !(entity instanceof SpecificRecord)) {
+      // generic records of any schema share a class
+      Schema schema = ((GenericRecord) entity).getSchema();
+      SchemaGetters schemaGetters = lastSchemaGetters;
+      if (schemaGetters == null || schemaGetters.schema != schema) {
+        schemaGetters = new SchemaGetters(schema, positionGetters(schema));
+        lastSchemaGetters = schemaGetters;
+      }
+      return schemaGetters.getters;
+    }
+
+    Class<?> entityClass = entity.getClass();
+    Getter[] getters = gettersByClass.get(entityClass);
+    if (getters == null) {
+      if (entity instanceof IndexedRecord) {
+        getters = positionGetters(((IndexedRecord) entity).getSchema());
+      } else {
+        getters = methodGetters(entityClass);
+      }
+      gettersByClass.putIfAbsent(entityClass, getters);
+    }
+    return getters;
+  }
+
+  private Getter[] positionGetters(Schema schema) {
+    Getter[] getters = new Getter[names.length];
+    for (int i = 0; i < names.length; i++) {
+      Schema.Field field = schema.getField(names[i]);
+      // like GenericRecord#get(String), a missing field reads as null
+      getters[i] = new PositionGetter(field == null ? -1 : field.pos());
+    }
+    return getters;
+  }
+
+  private Getter[] methodGetters(Class<?> entityClass) {
+    Getter[] getters = new Getter[names.length];
+    for (int i = 0; i < names.length; i++) {
+      Method method;
+      try {
+        method = entityClass.getMethod(getter(names[i]));
+      } catch (NoSuchMethodException e) {
+        getters[i] = new MissingGetter(e);
+        continue;
+      }
+      try {
+        method.setAccessible(true);
+      } catch (SecurityException e) {
+        // fall back to access checks on every call
+      }
+      getters[i] = new MethodGetter(method);
+    }
+    return getters;
+  }
+
+  private static String getter(String name) {
+    return "get" + name.substring(0, 1).toUpperCase(Locale.ENGLISH) + name.substring(1);
+  }
+
+  private static RuntimeException cannotRead(String name, Object entity,
+    Throwable cause) {
+    return new RuntimeException("Cannot read property " + name + " from "
+      + entity, cause);
+  }
+
+  private static interface Getter {
+    Object get(Object entity, String name);
+  }
+
+  private static class PositionGetter implements Getter {
+
+    private final int position;
+
+    public PositionGetter(int position) {
+      this.position = position;
+    }
+
+    @Override
+    public Object get(Object entity, String name) {
+      return position < 0 ? null : ((IndexedRecord) entity).get(position);
+    }
+  }
+
+  private static class MethodGetter implements Getter {
+
+    private final Method method;
+
+    public MethodGetter(Method method) {
+      this.method = method;
+    }
+
+    @Override
+    public Object get(Object entity, String name) {
+      try {
+        return method.invoke(entity);
+      } catch (IllegalAccessException e) {
+        throw cannotRead(name, entity, e);
+      } catch (InvocationTargetException e) {
+        throw cannotRead(name, entity, e);
+      }
+    }
+  }
+
+  private static class MissingGetter implements Getter {
+
+    private final NoSuchMethodException cause;
+
+    public MissingGetter(NoSuchMethodException cause) {
+      this.cause = cause;
+    }
+
+    @Override
+    public Object get(Object entity, String name) {
+      throw cannotRead(name, entity, cause);
+    }
+  }
+
+  private static class SchemaGetters {
+
+    private final Schema schema;
+    private final Getter[] getters;
+
+    public SchemaGetters(Schema schema, Getter[] getters) {
+      this.schema = schema;
+      this.getters = getters;
+    }
+  }
+
+}
@@ -0,0 +1,192 @@
+/**
+ * Copyright 2013 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.cdk.data;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
+import com.google.common.primitives.Doubles;
+import com.google.common.primitives.Longs;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.reflect.ReflectData;
+
+/**
+ * A FieldPredicate matches entities by the value of a single named field: the
+ * value must be equal to a given value, or fall in an inclusive range.
+ *
+ * FieldPredicates are used to filter the entities read from a {@link View}.
+ * {@see View#filter(FieldPredicate)}
+ * <pre>
+ * View view = dataset.in(partial)
+ *    .filter(FieldPredicate.equalTo("username", "joe"))
+ *    .filter(FieldPredicate.between("timestamp", start, end));
+ * </pre>
+ *
+ * Values are compared by their natural order, except that strings are
+ * compared with any other {@link CharSequence}, such as Avro's {@code Utf8},
+ * and numbers are compared with numbers of any other type. A missing or null
+ * field never matches.
+ */
+@Immutable
+public class FieldPredicate implements Predicate<Object> {
+
+  private final String name;
+  @Nullable private final Comparable<?> lower;
+  @Nullable private final Comparable<?> upper;
+
+  private FieldPredicate(String name, @Nullable Comparable<?> lower,
+    @Nullable Comparable<?> upper) {
+    Preconditions.checkArgument(name != null, "Field name cannot be null");
+    Preconditions.checkArgument(lower != null || upper != null,
+      "A predicate needs a lower or an upper bound");
+    this.name = name;
+    this.lower = lower;
+    this.upper = upper;
+  }
+
+  /**
+   * Returns a predicate that matches entities whose field {@code name} is
+   * equal to {@code value}.
+   */
+  public static FieldPredicate equalTo(String name, Comparable<?> value) {
+    Preconditions.checkArgument(value != null, "Value cannot be null");
+    return new FieldPredicate(name, value, value);
+  }
+
+  /**
+   * Returns a predicate that matches entities whose field {@code name} is
+   * greater than or equal to {@code lower}.
+   */
+  public static FieldPredicate atLeast(String name, Comparable<?> lower) {
+    Preconditions.checkArgument(lower != null, "Lower bound cannot be null");
+    return new FieldPredicate(name, lower, null);
+  }
+
+  /**
+   * Returns a predicate that matches entities whose field {@code name} is
+   * less than or equal to {@code upper}.
+   */
+  public static FieldPredicate atMost(String name, Comparable<?> upper) {
+    Preconditions.checkArgument(upper != null, "Upper bound cannot be null");
+    return new FieldPredicate(name, null, upper);
+  }
+
+  /**
+   * Returns a predicate that matches entities whose field {@code name} is
+   * between {@code lower} and {@code upper}, inclusive.
+   */
+  public static FieldPredicate between(String name, Comparable<?> lower,
+    Comparable<?> upper) {
+    Preconditions.checkArgument(lower != null, "Lower bound cannot be null");
+    Preconditions.checkArgument(upper != null, "Upper bound cannot be null");
+    return new FieldPredicate(name, lower, upper);
+  }
+
+  /**
+   * Returns the name of the field this predicate matches.
+   *
+   * @return the field name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the inclusive lower bound, or null if there is none.
+   */
+  @Nullable
+  public Comparable<?> getLowerBound() {
+    return lower;
+  }
+
+  /**
+   * Returns the inclusive upper bound, or null if there is none.
+   */
+  @Nullable
+  public Comparable<?> getUpperBound() {
+    return upper;
+  }
+
+  @Override
+  public boolean apply(@Nullable Object entity) {
+    if (entity == null) {
+      return false;
+    }
+    Object value;
+    if (entity instanceof GenericRecord) {
+      value = ((GenericRecord) entity).get(name);
+    } else {
+      // reflect entities are read by field name, the position is unused
+      value = ReflectData.get().getField(entity, name, -1);
+    }
+    if (value == null) {
+      return false;
+    }
+    return (lower == null || compare(value, lower) >= 0) &&
+      (upper == null || compare(value, upper) <= 0);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static int compare(Object value, Object bound) {
+    if (value instanceof CharSequence && bound instanceof CharSequence) {
+      return value.toString().compareTo(bound.toString());
+    }
+    if (value instanceof Number && bound instanceof Number) {
+      if (isIntegral(value) && isIntegral(bound)) {
+        return Longs.compare(((Number) value).longValue(),
+          ((Number) bound).longValue());
+      }
+      return Doubles.compare(((Number) value).doubleValue(),
+        ((Number) bound).doubleValue());
+    }
+    return ((Comparable<Object>) value).compareTo(bound);
+  }
+
+  private static boolean isIntegral(Object number) {
+    return number instanceof Long || number instanceof Integer ||
+      number instanceof Short || number instanceof Byte;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    FieldPredicate that = (FieldPredicate) o;
+    return name.equals(that.name) && Objects.equal(lower, that.lower) &&
+      Objects.equal(upper, that.upper);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(name, lower, upper);
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("name", name)
+      .add("lower", lower)
+      .add("upper", upper)
+      .toString();
+  }
+
+}
@@ -16,15 +16,10 @@
 package com.cloudera.cdk.data;
 
 import com.cloudera.cdk.data.partition.PartitionFunctions;
-import java.beans.IntrospectionException;
-import java.beans.PropertyDescriptor;
-import java.lang.reflect.InvocationTargetException;
 import java.util.List;
 
-import java.util.Locale;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
-import org.apache.avro.generic.GenericRecord;
 
 import com.cloudera.cdk.data.impl.Accessor;
 import com.cloudera.cdk.data.partition.HashFieldPartitioner;
@@ -65,6 +60,7 @@ import java.util.Comparator;
 public class PartitionStrategy implements Comparator<PartitionKey> {
 
   private final List<FieldPartitioner> fieldPartitioners;
+  private transient volatile FieldAccessorCache fieldAccessors;
 
   static {
     Accessor.setDefault(new AccessorImpl());
@@ -269,36 +265,23 @@ public class PartitionStrategy implements Comparator<PartitionKey> {
   public PartitionKey keyFor(Object entity,
       @Nullable PartitionKey reuseKey) {
     PartitionKey key = (reuseKey == null ? newKey() : reuseKey);
+    FieldAccessorCache accessors = fieldAccessors();
 
     for (int i = 0; i < fieldPartitioners.size(); i++) {
       FieldPartitioner fp = fieldPartitioners.get(i);
-      String name = fp.getSourceName();
-      Object value;
-      if (entity instanceof GenericRecord) {
-        value = ((GenericRecord) entity).get(name);
-      } else {
-        try {
-          PropertyDescriptor propertyDescriptor = new PropertyDescriptor(name,
-              entity.getClass(), getter(name), null /* assume read only */);
-          value = propertyDescriptor.getReadMethod().invoke(entity);
-        } catch (IllegalAccessException e) {
-          throw new RuntimeException("Cannot read property " + name + " from "
-              + entity, e);
-        } catch (InvocationTargetException e) {
-          throw new RuntimeException("Cannot read property " + name + " from "
-              + entity, e);
-        } catch (IntrospectionException e) {
-          throw new RuntimeException("Cannot read property " + name + " from "
-              + entity, e);
-        }
-      }
-      key.set(i, fp.apply(value));
+      key.set(i, fp.apply(accessors.get(entity, i)));
     }
     return key;
   }
 
-  private String getter(String name) {
-    return "get" + name.substring(0, 1).toUpperCase(Locale.ENGLISH) + name.substring(1);
+  private FieldAccessorCache fieldAccessors() {
+    // racing threads may each create a cache, which is harmless
+    FieldAccessorCache accessors = fieldAccessors;
+    if (accessors == null) {
+      accessors = new FieldAccessorCache(fieldPartitioners);
+      fieldAccessors = accessors;
+    }
+    return accessors;
   }
 
   /**
@@ -0,0 +1,44 @@
+/**
+ * Copyright 2013 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.cdk.data;
+
+/**
+ * A {@code ReaderSplit} is a part of a {@link View} that can be read
+ * independently of the other parts.
+ *
+ * The splits of a {@code View} together hold each of its entities exactly
+ * once, so a scan of the {@code View} can be divided among threads or
+ * processes by giving each a subset of the splits. Each split creates its own
+ * {@link DatasetReader}, which follows the usual open, read and close cycle.
+ */
+public interface ReaderSplit {
+
+  /**
+   * Get a {@link DatasetReader} for the entities of this split.
+   *
+   * @throws DatasetException
+   */
+  <E> DatasetReader<E> newReader();
+
+  /**
+   * Returns the approximate size of this split in bytes, which can be used to
+   * balance splits among readers.
+   *
+   * @return the size of the split in bytes
+   */
+  long getLength();
+
+}
@@ -15,6 +15,8 @@
  */
 package com.cloudera.cdk.data;
 
+import org.apache.avro.Schema;
+
 /**
  * A {@code View} is a subset of a {@link Dataset}.
  *
@@ -272,4 +274,43 @@ public interface View {
    *                                  {@code View}.
    */
   View in(Marker partial);
+
+  /**
+   * Creates a {@code View} whose readers return only the fields of
+   * {@code projection}.
+   *
+   * The projection must be a record schema with a subset of the fields of the
+   * {@code Dataset}'s schema. Formats that store fields separately, like
+   * Parquet, only read the projected fields from storage.
+   *
+   * Projections combine with ranges and filters. For example, this reads the
+   * user names of a single day:
+   * <pre>
+   * View names = dataset.in(day).project(usernameSchema);
+   * </pre>
+   *
+   * @param projection a record {@link Schema} with the fields to read
+   * @return a {@code View} that reads only the fields of {@code projection}
+   *
+   * @throws IllegalArgumentException If {@code projection} has a field that
+   *                                  is not in the {@code Dataset}'s schema, or
+   *                                  lacks a field this view filters on.
+   */
+  View project(Schema projection);
+
+  /**
+   * Creates a {@code View} whose readers only return the entities that match
+   * {@code predicate}, in addition to any filters of this {@code View}.
+   *
+   * Unlike ranges, which select whole partitions, filters are applied to the
+   * entities as they are read.
+   *
+   * @param predicate a {@link FieldPredicate}
+   * @return a {@code View} of the entities that match {@code predicate}
+   *
+   * @throws IllegalArgumentException If the predicate's field is not in the
+   *                                  {@code Dataset}'s schema or the projection
+   *                                  of this {@code View}.
+   */
+  View filter(FieldPredicate predicate);
 }
@@ -0,0 +1,432 @@
+/**
+ * Copyright 2013 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.cdk.data.filesystem;
+
+import com.cloudera.cdk.data.DatasetWriter;
+import com.cloudera.cdk.data.DatasetWriterException;
+import com.cloudera.cdk.data.Formats;
+import com.cloudera.cdk.data.PartitionKey;
+import com.cloudera.cdk.data.PartitionStrategy;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import javax.annotation.Nullable;
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.reflect.ReflectDatumWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A thread-safe {@link DatasetWriter} that many producer threads can write
+ * to, while a small number of writer threads own the files.
+ * <p>
+ * Each writer thread owns a writer of the dataset, so the number of writer
+ * threads is also the number of files written at a time to an unpartitioned
+ * dataset. Entities of a partitioned dataset are sent to a writer thread by
+ * their partition key, so each partition is written to a single file.
+ * Entities of a producer thread are written in the order they were written
+ * within each partition.
+ * <p>
+ * For Avro datasets, entities are encoded on the producer threads and the
+ * writer threads only append the encoded bytes, so the encoding work is
+ * spread across producers and entities can be reused once
+ * {@link #write(Object)} returns. Parquet entities are handed over as they
+ * are and must not be modified after they are written.
+ * <p>
+ * Entities are handed over through lock-free queues, which are bounded so
+ * that producers wait when the writer threads fall behind. {@link #flush()}
+ * is a barrier: all entities written before the call are flushed when it
+ * returns. A failure of a writer thread is thrown by the next call to
+ * {@code write}, {@code flush} or {@code close}. Once {@link #close()} has
+ * started, {@code write} and {@code flush} fail instead of handing over items
+ * that would never be written.
+ * <p>
+ * {@link FileSystemDataset#newWriter()} returns this writer if the
+ * <code>cdk.writer.threads</code> descriptor property is set to the number of
+ * writer threads.
+ */
+class ConcurrentDatasetWriter<E> implements DatasetWriter<E> {
+
+  private static final Logger logger = LoggerFactory
+    .getLogger(ConcurrentDatasetWriter.class);
+
+  static final String WRITER_THREADS_PROPERTY = "cdk.writer.threads";
+
+  private static final int QUEUE_CAPACITY = 10000;
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+  private final FileSystemDataset dataset;
+  private final int numThreads;
+  private final boolean encode;
+  @Nullable private final PartitionStrategy partitionStrategy;
+  private final ThreadLocal<Encoding<E>> encodings;
+
+  private List<WriterThread<E>> writerThreads;
+  private volatile Throwable failure;
+  private volatile ReaderWriterState state;
+
+  // producers hand over items under the read lock, close sets closing under
+  // the write lock, so no item is queued after the CLOSE barriers
+  private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+  private boolean closing = false;
+
+  public ConcurrentDatasetWriter(FileSystemDataset dataset, int numThreads) {
+    Preconditions.checkArgument(dataset != null, "Dataset cannot be null");
+    Preconditions.checkArgument(numThreads > 0,
+      "Number of writer threads must be positive: %s", numThreads);
+
+    this.dataset = dataset;
+    this.numThreads = numThreads;
+    this.encode = !Formats.PARQUET.equals(dataset.getDescriptor().getFormat());
+    this.partitionStrategy = dataset.getDescriptor().isPartitioned() ?
+      dataset.getDescriptor().getPartitionStrategy() : null;
+
+    final Schema schema = dataset.getDescriptor().getSchema();
+    this.encodings = new ThreadLocal<Encoding<E>>() {
+      @Override
+      protected Encoding<E> initialValue() {
+        return new Encoding<E>(schema);
+      }
+    };
+
+    this.state = ReaderWriterState.NEW;
+  }
+
+  @Override
+  public synchronized void open() {
+    Preconditions.checkState(state.equals(ReaderWriterState.NEW),
+      "Unable to open a writer from state:%s", state);
+
+    logger.debug("Opening concurrent writer with {} writer threads for dataset:{}",
+      numThreads, dataset.getName());
+
+    writerThreads = Lists.newArrayListWithCapacity(numThreads);
+    try {
+      for (int i = 0; i < numThreads; i++) {
+        // writers are opened here so that failures are thrown by open
+        DatasetWriter<E> writer = dataset.newWriter(null);
+        writer.open();
+        writerThreads.add(new WriterThread<E>(this, writer,
+          "concurrent-writer-" + dataset.getName() + "-" + i));
+      }
+    } catch (RuntimeException e) {
+      for (WriterThread<E> writerThread : writerThreads) {
+        writerThread.writer.close();
+      }
+      throw e;
+    }
+    for (WriterThread<E> writerThread : writerThreads) {
+      writerThread.start();
+    }
+
+    state = ReaderWriterState.OPEN;
+  }
+
+  @Override
+  public void write(E entity) {
+    Preconditions.checkState(state.equals(ReaderWriterState.OPEN),
+      "Attempt to write to a writer in state:%s", state);
+    checkFailure();
+
+    PartitionKey key = null;
+    if (partitionStrategy != null) {
+      key = partitionStrategy.keyFor(entity, null);
+    }
+
+    Item<E> item;
+    if (encode) {
+      try {
+        item = new Item<E>(Item.Type.ENCODED, key, null,
+          encodings.get().encode(entity), null);
+      } catch (IOException e) {
+        throw new DatasetWriterException("Unable to encode entity:" + entity, e);
+      } catch (RuntimeException e) {
+        throw new DatasetWriterException("Unable to encode entity:" + entity, e);
+      }
+    } else {
+      item = new Item<E>(Item.Type.ENTITY, key, entity, null, null);
+    }
+
+    int index;
+    if (key != null) {
+      index = (key.hashCode() & Integer.MAX_VALUE) % numThreads;
+    } else {
+      index = (int) (Thread.currentThread().getId() % numThreads);
+    }
+
+    closeLock.readLock().lock();
+    try {
+      checkNotClosing();
+      writerThreads.get(index).put(item);
+    } finally {
+      closeLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void flush() {
+    Preconditions.checkState(state.equals(ReaderWriterState.OPEN),
+      "Attempt to write to a writer in state:%s", state);
+
+    logger.debug("Flushing concurrent writer for dataset:{}", dataset.getName());
+
+    closeLock.readLock().lock();
+    try {
+      checkNotClosing();
+      await(Item.Type.FLUSH);
+    } finally {
+      closeLock.readLock().unlock();
+    }
+    checkFailure();
+  }
+
+  @Override
+  public synchronized void close() {
+    if (state.equals(ReaderWriterState.OPEN)) {
+      logger.debug("Closing concurrent writer for dataset:{}", dataset.getName());
+
+      // waits for producers that are handing over an item; the writer
+      // threads keep draining their queues, so those producers finish
+      closeLock.writeLock().lock();
+      try {
+        closing = true;
+      } finally {
+        closeLock.writeLock().unlock();
+      }
+
+      try {
+        await(Item.Type.CLOSE);
+        for (WriterThread<E> writerThread : writerThreads) {
+          writerThread.join();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new DatasetWriterException(
+          "Interrupted while waiting for writer threads to close", e);
+      } finally {
+        state = ReaderWriterState.CLOSED;
+      }
+
+      checkFailure();
+    }
+  }
+
+  /** Sends a barrier to every writer thread and waits until all passed it */
+  private void await(Item.Type type) {
+    CountDownLatch latch = new CountDownLatch(writerThreads.size());
+    for (WriterThread<E> writerThread : writerThreads) {
+      writerThread.put(new Item<E>(type, null, null, null, latch));
+    }
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DatasetWriterException(
+        "Interrupted while waiting for writer threads", e);
+    }
+  }
+
+  /** Must be called while holding the read lock of closeLock */
+  private void checkNotClosing() {
+    if (closing) {
+      throw new IllegalStateException(
+        "Attempt to write to a writer that is closing");
+    }
+  }
+
+  private void checkFailure() {
+    Throwable t = failure;
+    if (t != null) {
+      throw new DatasetWriterException("A writer thread failed", t);
+    }
+  }
+
+  private void failed(Throwable t) {
+    logger.warn("Writer thread failed", t);
+    if (failure == null) {
+      failure = t;
+    }
+  }
+
+  @Override
+  public boolean isOpen() {
+    return state.equals(ReaderWriterState.OPEN);
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("dataset", dataset)
+      .add("numThreads", numThreads)
+      .add("encode", encode)
+      .add("failure", failure)
+      .add("state", state)
+      .toString();
+  }
+
+  /** An entity or a barrier for a writer thread */
+  private static class Item<E> {
+
+    private static enum Type {
+      ENTITY, ENCODED, FLUSH, CLOSE
+    }
+
+    private final Type type;
+    private final PartitionKey key;
+    private final E entity;
+    private final ByteBuffer encoded;
+    private final CountDownLatch latch;
+
+    public Item(Type type, @Nullable PartitionKey key, @Nullable E entity,
+      @Nullable ByteBuffer encoded, @Nullable CountDownLatch latch) {
+      this.type = type;
+      this.key = key;
+      this.entity = entity;
+      this.encoded = encoded;
+      this.latch = latch;
+    }
+  }
+
+  /** The encoder state of a producer thread */
+  private static class Encoding<E> {
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ReflectDatumWriter<E> datumWriter;
+    private BinaryEncoder encoder;
+
+    public Encoding(Schema schema) {
+      this.datumWriter = new ReflectDatumWriter<E>(schema);
+    }
+
+    public ByteBuffer encode(E entity) throws IOException {
+      out.reset();
+      encoder = EncoderFactory.get().binaryEncoder(out, encoder);
+      datumWriter.write(entity, encoder);
+      encoder.flush();
+      return ByteBuffer.wrap(out.toByteArray());
+    }
+  }
+
+  /** A thread that owns a writer and writes the items of its queue */
+  private static class WriterThread<E> extends Thread {
+
+    private final ConcurrentDatasetWriter<E> parent;
+    private final DatasetWriter<E> writer;
+    private final Queue<Item<E>> queue = new ConcurrentLinkedQueue<Item<E>>();
+    private final Semaphore capacity = new Semaphore(QUEUE_CAPACITY);
+    private volatile boolean idle;
+
+    public WriterThread(ConcurrentDatasetWriter<E> parent,
+      DatasetWriter<E> writer, String name) {
+      super(name);
+      setDaemon(true);
+      this.parent = parent;
+      this.writer = writer;
+    }
+
+    /** Adds an item to the queue, waiting while the queue is full */
+    public void put(Item<E> item) {
+      try {
+        capacity.acquire();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new DatasetWriterException(
+          "Interrupted while waiting for a writer thread", e);
+      }
+      queue.offer(item);
+      if (idle) {
+        LockSupport.unpark(this);
+      }
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        Item<E> item = queue.poll();
+        if (item == null) {
+          idle = true;
+          // checked again, so an item offered before idle was set isn't missed
+          if (queue.isEmpty()) {
+            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+          }
+          idle = false;
+          continue;
+        }
+        capacity.release();
+
+        if (item.type == Item.Type.CLOSE) {
+          try {
+            writer.close();
+          } catch (Throwable t) {
+            parent.failed(t);
+          } finally {
+            item.latch.countDown();
+          }
+          return;
+        }
+
+        try {
+          // after a failure, items are dropped so that producers don't block
+          if (parent.failure == null) {
+            process(item);
+          }
+        } catch (Throwable t) {
+          parent.failed(t);
+        } finally {
+          if (item.latch != null) {
+            item.latch.countDown();
+          }
+        }
+      }
+    }
+
+    private void process(Item<E> item) {
+      switch (item.type) {
+        case ENTITY:
+          writer.write(item.entity);
+          break;
+        case ENCODED:
+          if (writer instanceof PartitionedDatasetWriter) {
+            ((PartitionedDatasetWriter<E>) writer)
+              .writeEncoded(item.key, item.encoded);
+          } else {
+            ((FileSystemDatasetWriter<E>) writer).writeEncoded(item.encoded);
+          }
+          break;
+        case FLUSH:
+          writer.flush();
+          break;
+        default:
+          throw new IllegalStateException("Unknown item type:" + item.type);
+      }
+    }
+  }
+
+}
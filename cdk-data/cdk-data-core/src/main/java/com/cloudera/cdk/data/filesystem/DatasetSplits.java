@@ -0,0 +1,140 @@
+/**
+ * Copyright 2013 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.cdk.data.filesystem;
+
+import com.cloudera.cdk.data.DatasetReader;
+import com.cloudera.cdk.data.DatasetReaderException;
+import com.cloudera.cdk.data.ReaderSplit;
+import com.cloudera.cdk.data.View;
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Splits scans of filesystem datasets into {@link ReaderSplit}s and reads
+ * splits in parallel.
+ * <p>
+ * Splits follow the layout of the data files: Avro files are split into byte
+ * ranges that are aligned to sync markers when they are read, and Parquet
+ * files are read whole. Views only split the files of the partitions they
+ * cover, and the splits apply the view's projection and filters.
+ * <pre>
+ * List&lt;ReaderSplit&gt; splits = DatasetSplits.getSplits(dataset, 64 * 1024 * 1024);
+ * List&lt;Long&gt; counts = DatasetSplits.readInParallel(splits, 8,
+ *     new Function&lt;DatasetReader&lt;User&gt;, Long&gt;() {
+ *       public Long apply(DatasetReader&lt;User&gt; reader) {
+ *         long count = 0;
+ *         for (User user : reader) {
+ *           count++;
+ *         }
+ *         return count;
+ *       }
+ *     });
+ * </pre>
+ */
+public class DatasetSplits {
+
+  private DatasetSplits() {
+  }
+
+  /**
+   * Returns splits of about {@code splitSize} bytes that together read all
+   * entities of {@code view}.
+   *
+   * @param view a filesystem {@code Dataset} or a {@code View} of one
+   * @param splitSize the approximate size of a split in bytes
+   * @return the splits of {@code view}
+   *
+   * @throws IllegalArgumentException If {@code view} is not a filesystem
+   *                                  dataset or view.
+   */
+  public static List<ReaderSplit> getSplits(View view, long splitSize) {
+    if (view instanceof FileSystemDataset) {
+      return ((FileSystemDataset) view).getSplits(splitSize);
+    } else if (view instanceof FileSystemView) {
+      return ((FileSystemView) view).getSplits(splitSize);
+    }
+    throw new IllegalArgumentException(
+      "Splits are only supported for filesystem datasets: " + view);
+  }
+
+  /**
+   * Reads the splits on {@code numThreads} threads and returns the results of
+   * {@code function} for each split, in the order of the splits.
+   * <p>
+   * The function is given the open reader of a split, which is closed after
+   * the function returns. It is called concurrently for different splits.
+   *
+   * @throws DatasetReaderException If a split can't be read or the function
+   *                                fails. The remaining splits are cancelled.
+   */
+  public static <E, R> List<R> readInParallel(List<ReaderSplit> splits,
+    int numThreads, final Function<? super DatasetReader<E>, R> function) {
+
+    Preconditions.checkArgument(splits != null, "Splits cannot be null");
+    Preconditions.checkArgument(numThreads > 0,
+      "Number of threads must be positive: %s", numThreads);
+    Preconditions.checkArgument(function != null, "Function cannot be null");
+
+    ExecutorService executor = Executors.newFixedThreadPool(
+      Math.max(1, Math.min(numThreads, splits.size())),
+      new ThreadFactoryBuilder().setDaemon(true)
+        .setNameFormat("split-reader-%d").build());
+
+    try {
+      List<Future<R>> futures = Lists.newArrayListWithCapacity(splits.size());
+      for (final ReaderSplit split : splits) {
+        futures.add(executor.submit(new Callable<R>() {
+          @Override
+          public R call() {
+            DatasetReader<E> reader = split.newReader();
+            try {
+              reader.open();
+              return function.apply(reader);
+            } finally {
+              reader.close();
+            }
+          }
+        }));
+      }
+
+      List<R> results = Lists.newArrayListWithCapacity(splits.size());
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          results.add(futures.get(i).get());
+        } catch (ExecutionException e) {
+          throw new DatasetReaderException(
+            "Unable to read split:" + splits.get(i), e.getCause());
+        }
+      }
+      return results;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DatasetReaderException(
+        "Interrupted while waiting for splits", e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+}
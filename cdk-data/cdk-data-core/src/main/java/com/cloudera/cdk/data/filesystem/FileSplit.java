@@ -0,0 +1,118 @@
+/**
+ * Copyright 2013 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.cdk.data.filesystem;
+
+import com.cloudera.cdk.data.DatasetDescriptor;
+import com.cloudera.cdk.data.DatasetReader;
+import com.cloudera.cdk.data.FieldPredicate;
+import com.cloudera.cdk.data.Formats;
+import com.cloudera.cdk.data.ReaderSplit;
+import com.google.common.base.Objects;
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.apache.avro.Schema;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * A {@link ReaderSplit} of a range of bytes of a data file.
+ * <p>
+ * Avro files are split into ranges that readers align to the next sync
+ * marker, so a range holds the blocks that start in it. Parquet files are not
+ * split, because the Parquet reader can't read a subset of row groups.
+ */
+class FileSplit implements ReaderSplit {
+
+  private final FileSystem fileSystem;
+  private final DatasetDescriptor descriptor;
+  private final Path path;
+  private final long start;
+  private final long length;
+  @Nullable private final Schema projection;
+  private final List<FieldPredicate> predicates;
+
+  FileSplit(FileSystem fileSystem, DatasetDescriptor descriptor, Path path,
+    long start, long length, @Nullable Schema projection,
+    List<FieldPredicate> predicates) {
+    this.fileSystem = fileSystem;
+    this.descriptor = descriptor;
+    this.path = path;
+    this.start = start;
+    this.length = length;
+    this.projection = projection;
+    this.predicates = ImmutableList.copyOf(predicates);
+  }
+
+  /** Adds the splits of a file of {@code fileLength} bytes to {@code splits} */
+  static void addSplits(FileSystem fileSystem, DatasetDescriptor descriptor,
+    Path path, long fileLength, long splitSize, @Nullable Schema projection,
+    List<FieldPredicate> predicates, List<ReaderSplit> splits) {
+
+    if (Formats.PARQUET.equals(descriptor.getFormat())) {
+      splits.add(new FileSplit(fileSystem, descriptor, path, 0, fileLength,
+        projection, predicates));
+      return;
+    }
+
+    long start = 0;
+    // the last split may be up to 10% larger, like Hadoop's input formats
+    while (fileLength - start > splitSize * 1.1) {
+      splits.add(new FileSplit(fileSystem, descriptor, path, start, splitSize,
+        projection, predicates));
+      start += splitSize;
+    }
+    splits.add(new FileSplit(fileSystem, descriptor, path, start,
+      fileLength - start, projection, predicates));
+  }
+
+  @Override
+  @SuppressWarnings("unchecked") // See https://github.com/Parquet/parquet-mr/issues/106
+  public <E> DatasetReader<E> newReader() {
+    DatasetReader<E> reader;
+    if (Formats.PARQUET.equals(descriptor.getFormat())) {
+      reader = new ParquetFileSystemDatasetReader(fileSystem, path,
+        descriptor.getSchema(), projection);
+    } else {
+      reader = new FileSystemDatasetReader<E>(fileSystem, path,
+        projection != null ? projection : descriptor.getSchema(),
+        start, length);
+    }
+    if (predicates.isEmpty()) {
+      return reader;
+    }
+    return new FilteredDatasetReader<E>(reader,
+      Predicates.<Object>and(predicates));
+  }
+
+  @Override
+  public long getLength() {
+    return length;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("path", path)
+      .add("start", start)
+      .add("length", length)
+      .add("projection", projection)
+      .add("predicates", predicates)
+      .toString();
+  }
+
+}
@@ -22,23 +22,30 @@ import com.cloudera.cdk.data.DatasetException;
 import com.cloudera.cdk.data.DatasetReader;
 import com.cloudera.cdk.data.DatasetWriter;
 import com.cloudera.cdk.data.FieldPartitioner;
+import com.cloudera.cdk.data.FieldPredicate;
 import com.cloudera.cdk.data.Formats;
+import com.cloudera.cdk.data.Marker;
 import com.cloudera.cdk.data.PartitionKey;
 import com.cloudera.cdk.data.PartitionStrategy;
+import com.cloudera.cdk.data.ReaderSplit;
 import com.cloudera.cdk.data.View;
 import com.cloudera.cdk.data.impl.Accessor;
 import com.cloudera.cdk.data.spi.AbstractDataset;
 import com.google.common.base.Joiner;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Predicates;
 import com.google.common.base.Splitter;
 import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import java.io.IOException;
 import java.util.List;
+import java.util.UUID;
 import javax.annotation.Nullable;
 import org.apache.avro.Schema;
+import org.apache.avro.io.DatumWriter;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
@@ -56,18 +63,23 @@ class FileSystemDataset extends AbstractDataset {
   private final String name;
   private final DatasetDescriptor descriptor;
   private final PartitionKey partitionKey;
+  private final PartitionIndex partitionIndex;
 
   private final PartitionStrategy partitionStrategy;
   private final Schema schema;
 
   FileSystemDataset(FileSystem fileSystem, Path directory, String name,
-    DatasetDescriptor descriptor, @Nullable PartitionKey partitionKey) {
+    DatasetDescriptor descriptor, @Nullable PartitionKey partitionKey,
+    @Nullable PartitionIndex partitionIndex) {
 
     this.fileSystem = fileSystem;
     this.directory = directory;
     this.name = name;
     this.descriptor = descriptor;
     this.partitionKey = partitionKey;
+    // partitions share the index of the dataset they were loaded from
+    this.partitionIndex = (partitionIndex != null ? partitionIndex :
+      new PartitionIndex(fileSystem, getIndexTimeToLive(descriptor)));
     this.partitionStrategy =
       descriptor.isPartitioned() ? descriptor.getPartitionStrategy() : null;
     this.schema = descriptor.getSchema();
@@ -95,9 +107,48 @@ class FileSystemDataset extends AbstractDataset {
     return directory;
   }
 
+  PartitionIndex getPartitionIndex() {
+    return partitionIndex;
+  }
+
+  private static long getIndexTimeToLive(DatasetDescriptor descriptor) {
+    String value = descriptor.getProperty(PartitionIndex.TTL_MILLIS_PROPERTY);
+    if (value == null) {
+      return 0;
+    }
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid value for property " +
+        PartitionIndex.TTL_MILLIS_PROPERTY + ": " + value, e);
+    }
+  }
+
   @Override
-  @SuppressWarnings("unchecked") // See https://github.com/Parquet/parquet-mr/issues/106
   public <E> DatasetWriter<E> newWriter() {
+    String writerThreads = descriptor.getProperty(
+      ConcurrentDatasetWriter.WRITER_THREADS_PROPERTY);
+    if (writerThreads != null) {
+      int numThreads;
+      try {
+        numThreads = Integer.parseInt(writerThreads.trim());
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid value for property " +
+          ConcurrentDatasetWriter.WRITER_THREADS_PROPERTY + ": " +
+          writerThreads, e);
+      }
+      return new ConcurrentDatasetWriter<E>(this, numThreads);
+    }
+
+    return newWriter(null);
+  }
+
+  /**
+   * Returns a writer that writes Avro files with {@code datumWriter}, if not
+   * null, which partitioned writers share among the writers of a partition.
+   */
+  @SuppressWarnings("unchecked") // See https://github.com/Parquet/parquet-mr/issues/106
+  <E> DatasetWriter<E> newWriter(@Nullable DatumWriter<E> datumWriter) {
     logger.debug("Getting writer to dataset:{}", this);
 
     DatasetWriter<E> writer;
@@ -107,10 +158,15 @@ class FileSystemDataset extends AbstractDataset {
     } else {
       Path dataFile = new Path(directory, uniqueFilename());
       if (Formats.PARQUET.equals(descriptor.getFormat())) {
-        writer = new ParquetFileSystemDatasetWriter(fileSystem, dataFile, schema);
+        writer = new ParquetFileSystemDatasetWriter(fileSystem, dataFile, schema,
+          true, partitionIndex);
       } else {
         writer = new FileSystemDatasetWriter.Builder<E>().fileSystem(fileSystem)
-          .path(dataFile).schema(schema).get();
+          .path(dataFile).schema(schema)
+          .codec(FileSystemDatasetWriter.codecFor(descriptor))
+          .syncInterval(FileSystemDatasetWriter.syncIntervalFor(descriptor))
+          .datumWriter(datumWriter)
+          .partitionIndex(partitionIndex).get();
       }
     }
 
@@ -129,7 +185,86 @@ class FileSystemDataset extends AbstractDataset {
       throw new DatasetException("Unable to retrieve data file list for directory " + directory, e);
     }
 
-    return new MultiFileDatasetReader<E>(fileSystem, paths, descriptor);
+    return newReader(paths);
+  }
+
+  /** Returns a reader over the given data files of this dataset */
+  <E> DatasetReader<E> newReader(List<Path> paths) {
+    return newReader(paths, null, ImmutableList.<FieldPredicate>of());
+  }
+
+  /**
+   * Returns a reader over the given data files of this dataset that reads the
+   * fields of {@code projection}, or all fields if it is null, and returns
+   * the entities that match all of {@code predicates}.
+   */
+  <E> DatasetReader<E> newReader(List<Path> paths,
+    @Nullable Schema projection, List<FieldPredicate> predicates) {
+    DatasetReader<E> reader = newFileListReader(paths, projection);
+    if (predicates.isEmpty()) {
+      return reader;
+    }
+    return new FilteredDatasetReader<E>(reader,
+      Predicates.<Object>and(predicates));
+  }
+
+  private <E> DatasetReader<E> newFileListReader(List<Path> paths,
+    @Nullable Schema projection) {
+    String readAheadFiles = descriptor.getProperty(
+      ReadAheadDatasetReader.READ_AHEAD_FILES_PROPERTY);
+    if (readAheadFiles != null) {
+      int numFiles;
+      try {
+        numFiles = Integer.parseInt(readAheadFiles.trim());
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid value for property " +
+          ReadAheadDatasetReader.READ_AHEAD_FILES_PROPERTY + ": " +
+          readAheadFiles, e);
+      }
+      boolean ordered = !"false".equalsIgnoreCase(descriptor.getProperty(
+        ReadAheadDatasetReader.ORDERED_PROPERTY));
+      return new ReadAheadDatasetReader<E>(fileSystem, paths, descriptor,
+        projection, numFiles, ordered);
+    }
+
+    return new MultiFileDatasetReader<E>(fileSystem, paths, descriptor,
+      projection);
+  }
+
+  /**
+   * Returns splits of about {@code splitSize} bytes that together read all
+   * entities of this dataset.
+   */
+  List<ReaderSplit> getSplits(long splitSize) {
+    List<Path> paths = Lists.newArrayList();
+
+    try {
+      accumulateDatafilePaths(directory, paths);
+    } catch (IOException e) {
+      throw new DatasetException("Unable to retrieve data file list for directory " + directory, e);
+    }
+
+    return getSplits(paths, splitSize, null, ImmutableList.<FieldPredicate>of());
+  }
+
+  /** Returns splits of the given data files of this dataset */
+  List<ReaderSplit> getSplits(List<Path> paths, long splitSize,
+    @Nullable Schema projection, List<FieldPredicate> predicates) {
+    Preconditions.checkArgument(splitSize > 0,
+      "Split size must be positive: %s", splitSize);
+
+    List<ReaderSplit> splits = Lists.newArrayList();
+    for (Path path : paths) {
+      long length;
+      try {
+        length = fileSystem.getFileStatus(path).getLen();
+      } catch (IOException e) {
+        throw new DatasetException("Unable to get the length of path:" + path, e);
+      }
+      FileSplit.addSplits(fileSystem, descriptor, path, length, splitSize,
+        projection, predicates, splits);
+    }
+    return splits;
   }
 
   @Override
@@ -146,9 +281,9 @@ class FileSystemDataset extends AbstractDataset {
         toDirectoryName(directory, key));
 
     try {
-      if (!fileSystem.exists(partitionDirectory)) {
+      if (!partitionIndex.exists(partitionDirectory)) {
         if (allowCreate) {
-          fileSystem.mkdirs(partitionDirectory);
+          partitionIndex.mkdirs(partitionDirectory);
         } else {
           return null;
         }
@@ -169,6 +304,7 @@ class FileSystemDataset extends AbstractDataset {
             .partitionStrategy(subpartitionStrategy)
             .get())
         .partitionKey(key)
+        .partitionIndex(partitionIndex)
         .get();
   }
 
@@ -190,6 +326,8 @@ class FileSystemDataset extends AbstractDataset {
       }
     } catch (IOException e) {
       throw new DatasetException("Unable to locate or drop dataset partition directory " + partitionDirectory, e);
+    } finally {
+      partitionIndex.invalidateTree(partitionDirectory);
     }
   }
 
@@ -199,7 +337,42 @@ class FileSystemDataset extends AbstractDataset {
       "Attempt to get partitions on a non-partitioned dataset (name:%s)",
       name);
 
-    throw new UnsupportedOperationException("Not supported yet.");
+    return new FileSystemView(this, null, null).getCoveringPartitions();
+  }
+
+  @Override
+  public View from(Marker start) {
+    return new FileSystemView(this, null, null).from(start);
+  }
+
+  @Override
+  public View fromAfter(Marker start) {
+    return new FileSystemView(this, null, null).fromAfter(start);
+  }
+
+  @Override
+  public View to(Marker end) {
+    return new FileSystemView(this, null, null).to(end);
+  }
+
+  @Override
+  public View toBefore(Marker end) {
+    return new FileSystemView(this, null, null).toBefore(end);
+  }
+
+  @Override
+  public View in(Marker partial) {
+    return new FileSystemView(this, null, null).in(partial);
+  }
+
+  @Override
+  public View project(Schema projection) {
+    return new FileSystemView(this, null, null).project(projection);
+  }
+
+  @Override
+  public View filter(FieldPredicate predicate) {
+    return new FileSystemView(this, null, null).filter(predicate);
   }
 
   @Override
@@ -210,11 +383,10 @@ class FileSystemDataset extends AbstractDataset {
 
     List<Dataset> partitions = Lists.newArrayList();
 
-    FileStatus[] fileStatuses;
+    List<FileStatus> fileStatuses;
 
     try {
-      fileStatuses = fileSystem.listStatus(directory,
-        PathFilters.notHidden());
+      fileStatuses = partitionIndex.listStatus(directory);
     } catch (IOException e) {
       throw new DatasetException("Unable to list partition directory for directory " + directory, e);
     }
@@ -231,7 +403,8 @@ class FileSystemDataset extends AbstractDataset {
               .location(p)
               .partitionStrategy(subPartitionStrategy)
               .get())
-          .partitionKey(key);
+          .partitionKey(key)
+          .partitionIndex(partitionIndex);
 
       partitions.add(builder.get());
     }
@@ -253,23 +426,15 @@ class FileSystemDataset extends AbstractDataset {
   }
 
   private String uniqueFilename() {
-    // FIXME: This file name is not guaranteed to be truly unique.
+    // writers that roll files may create several files per millisecond
     return Joiner.on('-').join(System.currentTimeMillis(),
-        Thread.currentThread().getId() + "." + descriptor.getFormat().getExtension());
+        UUID.randomUUID() + "." + descriptor.getFormat().getExtension());
   }
 
   void accumulateDatafilePaths(Path directory, List<Path> paths)
     throws IOException {
 
-    for (FileStatus status : fileSystem.listStatus(directory,
-      PathFilters.notHidden())) {
-
-      if (status.isDirectory()) {
-        accumulateDatafilePaths(status.getPath(), paths);
-      } else {
-        paths.add(status.getPath());
-      }
-    }
+    partitionIndex.accumulateDataFiles(directory, paths);
   }
 
   private Path toDirectoryName(Path dir, PartitionKey key) {
@@ -307,6 +472,7 @@ class FileSystemDataset extends AbstractDataset {
     private String name;
     private DatasetDescriptor descriptor;
     private PartitionKey partitionKey;
+    private PartitionIndex partitionIndex;
 
     public Builder name(String name) {
       this.name = name;
@@ -337,6 +503,11 @@ class FileSystemDataset extends AbstractDataset {
       return this;
     }
 
+    Builder partitionIndex(@Nullable PartitionIndex partitionIndex) {
+      this.partitionIndex = partitionIndex;
+      return this;
+    }
+
     @Override
     public FileSystemDataset get() {
       Preconditions.checkState(this.name != null, "No dataset name defined");
@@ -356,8 +527,8 @@ class FileSystemDataset extends AbstractDataset {
       }
 
       Path absoluteDirectory = fileSystem.makeQualified(directory);
-      return new FileSystemDataset(
-          fileSystem, absoluteDirectory, name, descriptor, partitionKey);
+      return new FileSystemDataset(fileSystem, absoluteDirectory, name,
+          descriptor, partitionKey, partitionIndex);
     }
   }
 
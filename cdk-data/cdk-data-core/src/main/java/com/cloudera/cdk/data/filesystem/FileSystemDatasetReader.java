@@ -35,6 +35,8 @@ class FileSystemDatasetReader<E> extends AbstractDatasetReader<E> {
   private final FileSystem fileSystem;
   private final Path path;
   private final Schema schema;
+  private final long start;
+  private final long end;
 
   private ReaderWriterState state;
   private DataFileReader<E> reader;
@@ -43,12 +45,28 @@ class FileSystemDatasetReader<E> extends AbstractDatasetReader<E> {
     .getLogger(FileSystemDatasetReader.class);
 
   public FileSystemDatasetReader(FileSystem fileSystem, Path path, Schema schema) {
+    this(fileSystem, path, schema, 0, Long.MAX_VALUE);
+  }
+
+  /**
+   * Creates a reader of the blocks of the file that start after the first
+   * sync marker at or after {@code start} and at or before the first sync
+   * marker after {@code start + length}, like Avro's MapReduce input formats
+   * read splits. Readers of adjacent ranges read each block exactly once.
+   */
+  FileSystemDatasetReader(FileSystem fileSystem, Path path, Schema schema,
+    long start, long length) {
     Preconditions.checkArgument(fileSystem != null, "FileSystem cannot be null");
     Preconditions.checkArgument(path != null, "Path cannot be null");
+    Preconditions.checkArgument(start >= 0 && length >= 0,
+      "Invalid range start:%s length:%s", start, length);
 
     this.fileSystem = fileSystem;
     this.path = path;
     this.schema = schema;
+    this.start = start;
+    // saturates, so that the whole file is read by default
+    this.end = (start + length < 0 ? Long.MAX_VALUE : start + length);
 
     this.state = ReaderWriterState.NEW;
   }
@@ -64,6 +82,9 @@ class FileSystemDatasetReader<E> extends AbstractDatasetReader<E> {
       reader = new DataFileReader<E>(new AvroFSInput(fileSystem.open(path),
         fileSystem.getFileStatus(path).getLen()), new ReflectDatumReader<E>(
         schema));
+      if (start > 0) {
+        reader.sync(start);
+      }
     } catch (IOException e) {
       throw new DatasetReaderException("Unable to create reader path:" + path, e);
     }
@@ -75,7 +96,13 @@ class FileSystemDatasetReader<E> extends AbstractDatasetReader<E> {
   public boolean hasNext() {
     Preconditions.checkState(state.equals(ReaderWriterState.OPEN),
       "Attempt to read from a file in state:%s", state);
-    return reader.hasNext();
+    try {
+      // pastSync overflows for the end of an unbounded range
+      return reader.hasNext() &&
+        (end == Long.MAX_VALUE || !reader.pastSync(end));
+    } catch (IOException e) {
+      throw new DatasetReaderException("Unable to read path:" + path, e);
+    }
   }
 
   @Override
@@ -114,6 +141,8 @@ class FileSystemDatasetReader<E> extends AbstractDatasetReader<E> {
       .add("fileSystem", fileSystem)
       .add("path", path)
       .add("schema", schema)
+      .add("start", start)
+      .add("end", end)
       .add("state", state)
       .add("reader", reader)
       .toString();
@@ -15,6 +15,7 @@
  */
 package com.cloudera.cdk.data.filesystem;
 
+import com.cloudera.cdk.data.DatasetDescriptor;
 import com.cloudera.cdk.data.DatasetWriter;
 import com.cloudera.cdk.data.DatasetWriterException;
 import com.google.common.base.Objects;
@@ -23,42 +24,158 @@ import com.google.common.base.Supplier;
 import com.google.common.io.Closeables;
 import org.apache.avro.Schema;
 import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileConstants;
 import org.apache.avro.file.DataFileWriter;
 import org.apache.avro.io.DatumWriter;
 import org.apache.avro.reflect.ReflectDatumWriter;
+import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import javax.annotation.Nullable;
 
+/**
+ * A {@link DatasetWriter} that writes entities to a single Avro data file,
+ * which is committed to its final path when the writer is closed.
+ * <p>
+ * Datasets configure their Avro writers with these {@link DatasetDescriptor}
+ * properties:
+ * <ul>
+ * <li><code>cdk.avro.codec</code>: the block codec, one of
+ * <code>snappy</code> (the default), <code>deflate</code>,
+ * <code>bzip2</code> or <code>null</code>.</li>
+ * <li><code>cdk.avro.codec-level</code>: the compression level of the
+ * <code>deflate</code> codec, from 1 to 9, 6 by default.</li>
+ * <li><code>cdk.avro.sync-interval</code>: the approximate number of bytes
+ * of a block, which is buffered in memory before it is compressed and
+ * written. Avro's default of 16000 bytes is used if not set.</li>
+ * </ul>
+ */
 class FileSystemDatasetWriter<E> implements DatasetWriter<E> {
 
   private static final Logger logger = LoggerFactory
     .getLogger(FileSystemDatasetWriter.class);
 
+  static final String CODEC_PROPERTY = "cdk.avro.codec";
+  static final String CODEC_LEVEL_PROPERTY = "cdk.avro.codec-level";
+  static final String SYNC_INTERVAL_PROPERTY = "cdk.avro.sync-interval";
+
+  private static final int DEFAULT_CODEC_LEVEL = 6;
+
   private Path path;
   private Schema schema;
   private FileSystem fileSystem;
   private boolean enableCompression;
+  private CodecFactory codec;
+  private int syncInterval;
+  private PartitionIndex partitionIndex;
 
   private Path pathTmp;
+  private FSDataOutputStream out;
   private DataFileWriter<E> dataFileWriter;
   private DatumWriter<E> writer;
   private ReaderWriterState state;
+  // the bytes appended to the current block with writeEncoded
+  private long blockBytes;
 
   public FileSystemDatasetWriter(FileSystem fileSystem, Path path,
     Schema schema, boolean enableCompression) {
+    this(fileSystem, path, schema, enableCompression, null);
+  }
+
+  FileSystemDatasetWriter(FileSystem fileSystem, Path path, Schema schema,
+    boolean enableCompression, @Nullable PartitionIndex partitionIndex) {
+    this(fileSystem, path, schema,
+      enableCompression ? CodecFactory.snappyCodec() : null, 0, null,
+      partitionIndex);
+  }
 
+  /**
+   * Creates a writer that compresses blocks with {@code codec}, if not null,
+   * and starts a new block after about {@code syncInterval} bytes, or Avro's
+   * default if 0.
+   * <p>
+   * A {@code datumWriter} may be shared by the writers of a dataset, as long
+   * as they write the same schema from a single thread.
+   */
+  FileSystemDatasetWriter(FileSystem fileSystem, Path path, Schema schema,
+    @Nullable CodecFactory codec, int syncInterval,
+    @Nullable DatumWriter<E> datumWriter,
+    @Nullable PartitionIndex partitionIndex) {
+
+    this.partitionIndex = partitionIndex;
     this.fileSystem = fileSystem;
     this.path = path;
     this.pathTmp = new Path(path.getParent(), "." + path.getName() + ".tmp");
     this.schema = schema;
-    this.enableCompression = enableCompression;
+    this.enableCompression = (codec != null);
+    this.codec = codec;
+    this.syncInterval = syncInterval;
+    this.writer = datumWriter;
     this.state = ReaderWriterState.NEW;
   }
 
+  /**
+   * Returns the codec selected by the descriptor's
+   * <code>cdk.avro.codec</code> and <code>cdk.avro.codec-level</code>
+   * properties, or null for no compression.
+   */
+  @Nullable
+  static CodecFactory codecFor(DatasetDescriptor descriptor) {
+    String name = descriptor.getProperty(CODEC_PROPERTY);
+    name = (name == null ? "snappy" : name.trim().toLowerCase(Locale.ENGLISH));
+    int level = getIntProperty(descriptor, CODEC_LEVEL_PROPERTY,
+      DEFAULT_CODEC_LEVEL);
+    Preconditions.checkArgument(level >= 1 && level <= 9,
+      "Invalid value for property %s: %s", CODEC_LEVEL_PROPERTY, level);
+
+    if ("snappy".equals(name)) {
+      return CodecFactory.snappyCodec();
+    } else if ("deflate".equals(name)) {
+      return CodecFactory.deflateCodec(level);
+    } else if ("bzip2".equals(name)) {
+      return CodecFactory.bzip2Codec();
+    } else if ("null".equals(name)) {
+      return null;
+    }
+    throw new IllegalArgumentException("Invalid value for property " +
+      CODEC_PROPERTY + ": " + name);
+  }
+
+  /**
+   * Returns the sync interval set by the descriptor's
+   * <code>cdk.avro.sync-interval</code> property, or 0 if not set.
+   */
+  static int syncIntervalFor(DatasetDescriptor descriptor) {
+    int syncInterval = getIntProperty(descriptor, SYNC_INTERVAL_PROPERTY, 0);
+    // the same bounds DataFileWriter#setSyncInterval enforces
+    Preconditions.checkArgument(syncInterval == 0 ||
+      (syncInterval >= 32 && syncInterval <= (1 << 30)),
+      "Invalid value for property %s: %s", SYNC_INTERVAL_PROPERTY,
+      syncInterval);
+    return syncInterval;
+  }
+
+  private static int getIntProperty(DatasetDescriptor descriptor, String name,
+    int defaultValue) {
+
+    String value = descriptor.getProperty(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(
+        "Invalid value for property " + name + ": " + value, e);
+    }
+  }
+
   @Override
   public void open() {
     Preconditions.checkState(state.equals(ReaderWriterState.NEW),
@@ -68,20 +185,21 @@ class FileSystemDatasetWriter<E> implements DatasetWriter<E> {
       "Opening data file with pathTmp:{} (final path will be path:{})",
       pathTmp, path);
 
-    writer = new ReflectDatumWriter<E>();
+    if (writer == null) {
+      writer = new ReflectDatumWriter<E>();
+    }
     dataFileWriter = new DataFileWriter<E>(writer);
 
-    /*
-     * We may want to expose the codec in the writer and simply rely on the
-     * builder and proper instantiation from dataset-level configuration.
-     * Hard-coding snappy seems a little too draconian.
-     */
-    if (enableCompression) {
-      dataFileWriter.setCodec(CodecFactory.snappyCodec());
+    if (codec != null) {
+      dataFileWriter.setCodec(codec);
+    }
+    if (syncInterval > 0) {
+      dataFileWriter.setSyncInterval(syncInterval);
     }
 
     try {
-      dataFileWriter.create(schema, fileSystem.create(pathTmp, true));
+      out = fileSystem.create(pathTmp, true);
+      dataFileWriter.create(schema, out);
     } catch (IOException e) {
       throw new DatasetWriterException("Unable to create writer to path:" + pathTmp, e);
     }
@@ -102,6 +220,28 @@ class FileSystemDatasetWriter<E> implements DatasetWriter<E> {
     }
   }
 
+  /**
+   * Appends an entity that is already encoded with the writer's schema, as
+   * {@link DataFileWriter#appendEncoded(ByteBuffer)} does.
+   */
+  void writeEncoded(ByteBuffer encoded) {
+    Preconditions.checkState(state.equals(ReaderWriterState.OPEN),
+      "Attempt to write to a writer in state:%s", state);
+
+    try {
+      blockBytes += encoded.remaining();
+      dataFileWriter.appendEncoded(encoded);
+      // the test DataFileWriter uses to write out a full block
+      if (blockBytes >= (syncInterval > 0 ?
+          syncInterval : DataFileConstants.DEFAULT_SYNC_INTERVAL)) {
+        blockBytes = 0;
+      }
+    } catch (IOException e) {
+      throw new DatasetWriterException(
+        "Unable to write encoded entity with writer:" + dataFileWriter, e);
+    }
+  }
+
   @Override
   public void flush() {
     Preconditions.checkState(state.equals(ReaderWriterState.OPEN),
@@ -109,6 +249,7 @@ class FileSystemDatasetWriter<E> implements DatasetWriter<E> {
 
     try {
       dataFileWriter.flush();
+      blockBytes = 0;
     } catch (IOException e) {
       throw new DatasetWriterException(
         "Unable to flush file writer:" + dataFileWriter);
@@ -139,10 +280,31 @@ class FileSystemDatasetWriter<E> implements DatasetWriter<E> {
           "Internal error while trying to commit path:" + pathTmp, e);
       }
 
+      if (partitionIndex != null) {
+        partitionIndex.invalidate(path.getParent());
+      }
+
       state = ReaderWriterState.CLOSED;
     }
   }
 
+  /**
+   * Returns the number of bytes written to the file so far, including the
+   * entities buffered in the current Avro block if they were appended with
+   * {@link #writeEncoded(ByteBuffer)}.
+   */
+  long getBytesWritten() {
+    if (out == null) {
+      return 0;
+    }
+    try {
+      return out.getPos() + blockBytes;
+    } catch (IOException e) {
+      throw new DatasetWriterException(
+        "Unable to get position of file writer:" + dataFileWriter, e);
+    }
+  }
+
   @Override
   public boolean isOpen() {
     return state.equals(ReaderWriterState.OPEN);
@@ -155,6 +317,8 @@ class FileSystemDatasetWriter<E> implements DatasetWriter<E> {
       .add("schema", schema)
       .add("fileSystem", fileSystem)
       .add("enableCompression", enableCompression)
+      .add("codec", codec)
+      .add("syncInterval", syncInterval)
       .add("pathTmp", pathTmp)
       .add("dataFileWriter", dataFileWriter)
       .add("writer", writer)
@@ -168,10 +332,13 @@ class FileSystemDatasetWriter<E> implements DatasetWriter<E> {
     private FileSystem fileSystem;
     private Path path;
     private Schema schema;
-    private boolean enableCompression;
+    private CodecFactory codec;
+    private int syncInterval;
+    private DatumWriter<E> datumWriter;
+    private PartitionIndex partitionIndex;
 
     public Builder() {
-      enableCompression = true;
+      codec = CodecFactory.snappyCodec();
     }
 
     public Builder<E> fileSystem(FileSystem fileSystem) {
@@ -190,7 +357,31 @@ class FileSystemDatasetWriter<E> implements DatasetWriter<E> {
     }
 
     public Builder<E> enableCompression(boolean enableCompression) {
-      this.enableCompression = enableCompression;
+      this.codec = enableCompression ? CodecFactory.snappyCodec() : null;
+      return this;
+    }
+
+    /** Sets the block codec, or null for no compression */
+    public Builder<E> codec(@Nullable CodecFactory codec) {
+      this.codec = codec;
+      return this;
+    }
+
+    /** Sets the approximate block size in bytes, or 0 for Avro's default */
+    public Builder<E> syncInterval(int syncInterval) {
+      this.syncInterval = syncInterval;
+      return this;
+    }
+
+    /** Sets a datum writer to share with other writers of the same schema */
+    Builder<E> datumWriter(@Nullable DatumWriter<E> datumWriter) {
+      this.datumWriter = datumWriter;
+      return this;
+    }
+
+    /** Sets the index to keep current with the committed file */
+    Builder<E> partitionIndex(@Nullable PartitionIndex partitionIndex) {
+      this.partitionIndex = partitionIndex;
       return this;
     }
 
@@ -201,8 +392,8 @@ class FileSystemDatasetWriter<E> implements DatasetWriter<E> {
       Preconditions.checkState(path != null, "Path is not defined");
       Preconditions.checkState(schema != null, "Schema is not defined");
 
-      return new FileSystemDatasetWriter<E>(
-        fileSystem, path, schema, enableCompression);
+      return new FileSystemDatasetWriter<E>(fileSystem, path, schema, codec,
+        syncInterval, datumWriter, partitionIndex);
     }
 
   }
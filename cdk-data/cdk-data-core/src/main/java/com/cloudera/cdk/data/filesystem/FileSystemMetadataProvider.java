@@ -27,10 +27,21 @@ import com.google.common.base.Charsets;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Supplier;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
 import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
 import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
@@ -60,6 +71,21 @@ import org.apache.hadoop.fs.FileStatus;
  * if it doesn't exist, and the serialized descriptor will be stored in the file
  * {@code descriptor.avro}.
  * </p>
+ * <p>
+ * Loaded descriptors are cached, so that repeated loads of a dataset don't
+ * read its metadata files again. A cached descriptor is used as is for
+ * {@code cdk.metadata.cache-ttl-ms} milliseconds (0 by default) after it was
+ * last checked. After that, the modification time and length of the
+ * descriptor file are compared to the ones it was loaded from, and the
+ * metadata is only read again if it changed. Updates and deletes through this
+ * provider invalidate the cached descriptor.
+ * </p>
+ * <p>
+ * If {@code cdk.metadata.snapshot-dir} is set to a local directory, loaded
+ * metadata is also written there, keyed by the version of the descriptor
+ * file, so that other processes on the same host (like the tasks of a
+ * MapReduce job) can load the descriptor without reading the metadata files.
+ * </p>
  */
 public class FileSystemMetadataProvider extends AbstractMetadataProvider {
 
@@ -75,6 +101,25 @@ public class FileSystemMetadataProvider extends AbstractMetadataProvider {
   private static final String FORMAT_FIELD_NAME = "format";
   private static final String LOCATION_FIELD_NAME = "location";
 
+  /**
+   * The {@link Configuration} property for the number of milliseconds a
+   * loaded descriptor is used without checking whether it changed.
+   */
+  public static final String CACHE_TTL_MILLIS_PROPERTY =
+      "cdk.metadata.cache-ttl-ms";
+
+  /**
+   * The {@link Configuration} property for a local directory where snapshots
+   * of loaded descriptors are shared between processes.
+   */
+  public static final String SNAPSHOT_DIRECTORY_PROPERTY =
+      "cdk.metadata.snapshot-dir";
+
+  private static final String DESCRIPTOR_SNAPSHOT_EXTENSION = ".properties";
+  private static final String SCHEMA_SNAPSHOT_EXTENSION = ".avsc";
+  private static final long RACY_MILLIS = 2000;
+  private static final int MAX_CACHED_DESCRIPTORS = 1000;
+
   private static final Set<String> RESERVED_PROPERTIES = Sets.newHashSet(
       PARTITION_EXPRESSION_FIELD_NAME, VERSION_FIELD_NAME, FORMAT_FIELD_NAME,
       LOCATION_FIELD_NAME);
@@ -85,6 +130,16 @@ public class FileSystemMetadataProvider extends AbstractMetadataProvider {
   // cache the rootDirectory's FileSystem to avoid multiple lookups
   private transient final FileSystem rootFileSystem;
 
+  private final long cacheTtlMillis;
+  @Nullable private final File snapshotDirectory;
+  private final Cache<String, CachedDescriptor> descriptors = CacheBuilder
+      .newBuilder().maximumSize(MAX_CACHED_DESCRIPTORS).build();
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong revalidations = new AtomicLong();
+  private final AtomicLong snapshotHits = new AtomicLong();
+
   /**
    * All metadata is stored under rootDirectory. Data may also be stored under
    * rootDirectory if no location is set on incoming descriptors.
@@ -101,6 +156,8 @@ public class FileSystemMetadataProvider extends AbstractMetadataProvider {
     // the default FS should be the one given
     this.conf.set("fs.defaultFS", fileSystem.getUri().toString());
     this.rootDirectory = fileSystem.makeQualified(rootDirectory);
+    this.cacheTtlMillis = cacheTtlMillis(conf);
+    this.snapshotDirectory = snapshotDirectory(conf);
     try {
       // get the FS for the root, in case they don't match
       this.rootFileSystem = rootDirectory.getFileSystem(conf);
@@ -119,6 +176,8 @@ public class FileSystemMetadataProvider extends AbstractMetadataProvider {
     Preconditions.checkArgument(rootDirectory != null, "Root cannot be null");
 
     this.conf = conf;
+    this.cacheTtlMillis = cacheTtlMillis(conf);
+    this.snapshotDirectory = snapshotDirectory(conf);
     try {
       this.rootFileSystem = rootDirectory.getFileSystem(conf);
       this.rootDirectory = rootFileSystem.makeQualified(rootDirectory);
@@ -134,12 +193,54 @@ public class FileSystemMetadataProvider extends AbstractMetadataProvider {
 
     logger.debug("Loading dataset metadata name:{}", name);
 
+    CachedDescriptor cached = descriptors.getIfPresent(name);
+    if (cached != null) {
+      long now = System.currentTimeMillis();
+      if (now - cached.checkedAt < cacheTtlMillis) {
+        hits.incrementAndGet();
+        return cached.descriptor;
+      }
+    }
+
     final Path metadataPath = pathForMetadata(name);
-    checkExists(rootFileSystem, metadataPath);
+    final FileStatus descriptorStatus = descriptorStatus(name, metadataPath);
+
+    if (cached != null && !cached.isRacy() &&
+        cached.matches(descriptorStatus)) {
+      revalidations.incrementAndGet();
+      cached.checkedAt = System.currentTimeMillis();
+      hits.incrementAndGet();
+      return cached.descriptor;
+    }
+
+    misses.incrementAndGet();
+    long loadedAt = System.currentTimeMillis();
+    // snapshots are keyed by the descriptor's version, so they are only used
+    // when it can't have changed without changing its modification time
+    boolean useSnapshot = snapshotDirectory != null &&
+        !isRacy(descriptorStatus, loadedAt);
+    DatasetDescriptor descriptor = null;
+    if (useSnapshot) {
+      descriptor = loadSnapshot(name, metadataPath, descriptorStatus);
+    }
+    if (descriptor == null) {
+      descriptor = loadDescriptor(name, metadataPath);
+      if (useSnapshot) {
+        writeSnapshot(name, metadataPath, descriptorStatus, descriptor);
+      }
+    }
 
+    descriptors.put(name,
+        new CachedDescriptor(descriptor, descriptorStatus, loadedAt));
+    return descriptor;
+  }
+
+  /**
+   * Reads the descriptor and schema files of a dataset.
+   */
+  private DatasetDescriptor loadDescriptor(String name, Path metadataPath) {
     InputStream inputStream = null;
     Properties properties = new Properties();
-    DatasetDescriptor.Builder builder = new DatasetDescriptor.Builder();
     Path descriptorPath = new Path(metadataPath, DESCRIPTOR_FILE_NAME);
 
     boolean threw = true;
@@ -158,6 +259,24 @@ public class FileSystemMetadataProvider extends AbstractMetadataProvider {
       }
     }
 
+    DatasetDescriptor.Builder builder = new DatasetDescriptor.Builder();
+    Path schemaPath = new Path(metadataPath, SCHEMA_FILE_NAME);
+    try {
+      builder.schemaUri(rootFileSystem.makeQualified(schemaPath).toUri());
+    } catch (IOException e) {
+      throw new MetadataProviderException(
+        "Unable to load schema file:" + schemaPath + " for dataset:" + name, e);
+    }
+
+    return fromProperties(builder, name, properties);
+  }
+
+  /**
+   * Configures {@code builder} with the format, partition strategy, location,
+   * and custom properties stored in descriptor {@code properties}.
+   */
+  private DatasetDescriptor fromProperties(DatasetDescriptor.Builder builder,
+      String name, Properties properties) {
     if (properties.containsKey(FORMAT_FIELD_NAME)) {
       builder.format(Accessor.getDefault().newFormat(
           properties.getProperty(FORMAT_FIELD_NAME)));
@@ -166,13 +285,6 @@ public class FileSystemMetadataProvider extends AbstractMetadataProvider {
       builder.partitionStrategy(Accessor.getDefault().fromExpression(properties
           .getProperty(PARTITION_EXPRESSION_FIELD_NAME)));
     }
-    Path schemaPath = new Path(metadataPath, SCHEMA_FILE_NAME);
-    try {
-      builder.schemaUri(rootFileSystem.makeQualified(schemaPath).toUri());
-    } catch (IOException e) {
-      throw new MetadataProviderException(
-        "Unable to load schema file:" + schemaPath + " for dataset:" + name, e);
-    }
 
     final Path location;
     if (properties.containsKey(LOCATION_FIELD_NAME)) {
@@ -195,6 +307,134 @@ public class FileSystemMetadataProvider extends AbstractMetadataProvider {
     return builder.get();
   }
 
+  /**
+   * Returns the status of the descriptor file, which is written after the
+   * schema file and so changes whenever the dataset's metadata changes.
+   */
+  private FileStatus descriptorStatus(String name, Path metadataPath) {
+    Path descriptorPath = new Path(metadataPath, DESCRIPTOR_FILE_NAME);
+    try {
+      return rootFileSystem.getFileStatus(descriptorPath);
+    } catch (FileNotFoundException e) {
+      descriptors.invalidate(name);
+      checkExists(rootFileSystem, metadataPath);
+      throw new MetadataProviderException(
+          "Unable to load descriptor file:" + descriptorPath + " for dataset:" + name, e);
+    } catch (IOException e) {
+      throw new MetadataProviderException(
+          "Unable to load descriptor file:" + descriptorPath + " for dataset:" + name, e);
+    }
+  }
+
+  /**
+   * Returns the descriptor from a local snapshot of the given version of the
+   * metadata, or null if there is no usable snapshot.
+   */
+  @Nullable
+  private DatasetDescriptor loadSnapshot(String name, Path metadataPath,
+      FileStatus descriptorStatus) {
+    String snapshotName = snapshotName(metadataPath, descriptorStatus);
+    File descriptorFile = new File(snapshotDirectory,
+        snapshotName + DESCRIPTOR_SNAPSHOT_EXTENSION);
+    File schemaFile = new File(snapshotDirectory,
+        snapshotName + SCHEMA_SNAPSHOT_EXTENSION);
+    // the descriptor snapshot is written last, so the schema is complete
+    if (!descriptorFile.exists()) {
+      return null;
+    }
+
+    InputStream inputStream = null;
+    try {
+      Properties properties = new Properties();
+      inputStream = new FileInputStream(descriptorFile);
+      properties.load(inputStream);
+
+      DatasetDescriptor.Builder builder = new DatasetDescriptor.Builder()
+          .schema(schemaFile);
+      URI schemaUri = rootFileSystem.makeQualified(
+          new Path(metadataPath, SCHEMA_FILE_NAME)).toUri();
+      DatasetDescriptor descriptor = Accessor.getDefault().withSchemaUri(
+          fromProperties(builder, name, properties), schemaUri);
+
+      snapshotHits.incrementAndGet();
+      logger.debug("Loaded dataset metadata name:{} from snapshot:{}",
+          name, descriptorFile);
+      return descriptor;
+    } catch (IOException e) {
+      logger.warn("Ignoring unreadable metadata snapshot:" + descriptorFile, e);
+      return null;
+    } catch (RuntimeException e) {
+      logger.warn("Ignoring invalid metadata snapshot:" + descriptorFile, e);
+      return null;
+    } finally {
+      Closeables.closeQuietly(inputStream);
+    }
+  }
+
+  /**
+   * Writes a local snapshot of the given version of the metadata, so that
+   * other processes on this host can load it without reading the file system.
+   * Failures are logged and ignored, because snapshots are only an
+   * optimization.
+   */
+  private void writeSnapshot(String name, Path metadataPath,
+      FileStatus descriptorStatus, DatasetDescriptor descriptor) {
+    String snapshotName = snapshotName(metadataPath, descriptorStatus);
+    Properties properties = toProperties(descriptor);
+    try {
+      if (!snapshotDirectory.isDirectory() && !snapshotDirectory.mkdirs() &&
+          !snapshotDirectory.isDirectory()) {
+        throw new IOException("Cannot create directory:" + snapshotDirectory);
+      }
+
+      // write to temporary files and rename, so that concurrent loads in
+      // other processes never see a partial snapshot
+      String tempPrefix = "." + snapshotName + "-" + UUID.randomUUID();
+      File tempSchema = new File(snapshotDirectory,
+          tempPrefix + SCHEMA_SNAPSHOT_EXTENSION);
+      File tempDescriptor = new File(snapshotDirectory,
+          tempPrefix + DESCRIPTOR_SNAPSHOT_EXTENSION);
+      Files.write(descriptor.getSchema().toString(true), tempSchema,
+          Charsets.UTF_8);
+
+      OutputStream outputStream = null;
+      boolean threw = true;
+      try {
+        outputStream = new FileOutputStream(tempDescriptor);
+        properties.store(outputStream, "Dataset descriptor snapshot for " + name);
+        threw = false;
+      } finally {
+        Closeables.close(outputStream, threw);
+      }
+
+      File schemaFile = new File(snapshotDirectory,
+          snapshotName + SCHEMA_SNAPSHOT_EXTENSION);
+      File descriptorFile = new File(snapshotDirectory,
+          snapshotName + DESCRIPTOR_SNAPSHOT_EXTENSION);
+      // another process may have written the same snapshot, which is fine
+      if (!tempSchema.renameTo(schemaFile) ||
+          !tempDescriptor.renameTo(descriptorFile)) {
+        tempSchema.delete();
+        tempDescriptor.delete();
+      }
+    } catch (IOException e) {
+      logger.warn("Unable to write metadata snapshot for dataset:" + name, e);
+    }
+  }
+
+  /**
+   * Returns the file name prefix of snapshots of a version of the metadata in
+   * {@code metadataPath}, identified by the descriptor file's modification
+   * time and length.
+   */
+  private String snapshotName(Path metadataPath, FileStatus descriptorStatus) {
+    String pathHash = Hashing.md5().hashString(
+        rootFileSystem.makeQualified(metadataPath).toString(), Charsets.UTF_8)
+        .toString();
+    return pathHash + "-" + descriptorStatus.getModificationTime() + "-" +
+        descriptorStatus.getLen();
+  }
+
   @Override
   public DatasetDescriptor create(String name, DatasetDescriptor descriptor) {
     Preconditions.checkArgument(name != null, "Name cannot be null");
@@ -234,6 +474,7 @@ public class FileSystemMetadataProvider extends AbstractMetadataProvider {
     }
 
     writeDescriptor(rootFileSystem, metadataLocation, name, newDescriptor);
+    descriptors.invalidate(name);
 
     return newDescriptor;
   }
@@ -247,8 +488,13 @@ public class FileSystemMetadataProvider extends AbstractMetadataProvider {
     logger.debug("Saving dataset metadata name:{} descriptor:{}", name,
       descriptor);
 
-    writeDescriptor(
-        rootFileSystem, pathForMetadata(name), name, descriptor);
+    try {
+      writeDescriptor(
+          rootFileSystem, pathForMetadata(name), name, descriptor);
+    } finally {
+      // a failed update may have replaced the schema file
+      descriptors.invalidate(name);
+    }
 
     return descriptor;
   }
@@ -260,6 +506,7 @@ public class FileSystemMetadataProvider extends AbstractMetadataProvider {
     logger.debug("Deleting dataset metadata name:{}", name);
 
     final Path metadataDirectory = pathForMetadata(name);
+    descriptors.invalidate(name);
 
     try {
       if (rootFileSystem.exists(metadataDirectory)) {
@@ -339,13 +586,69 @@ public class FileSystemMetadataProvider extends AbstractMetadataProvider {
     return rootFileSystem;
   }
 
+  /** Returns the number of loads that used a cached descriptor */
+  long getCacheHitCount() {
+    return hits.get();
+  }
+
+  /** Returns the number of loads that read the metadata */
+  long getCacheMissCount() {
+    return misses.get();
+  }
+
+  /** Returns the number of cached descriptors that were checked for changes */
+  long getRevalidationCount() {
+    return revalidations.get();
+  }
+
+  /** Returns the number of descriptors that were loaded from a snapshot */
+  long getSnapshotHitCount() {
+    return snapshotHits.get();
+  }
+
   @Override
   public String toString() {
     return Objects.toStringHelper(this)
         .add("rootDirectory", rootDirectory)
+        .add("cacheTtlMillis", cacheTtlMillis)
+        .add("snapshotDirectory", snapshotDirectory)
         .add("conf", conf).toString();
   }
 
+  /**
+   * Returns whether a descriptor read at {@code readAt} was read so soon after
+   * the file changed that another change may not have updated its
+   * modification time.
+   */
+  private static boolean isRacy(FileStatus descriptorStatus, long readAt) {
+    return readAt - descriptorStatus.getModificationTime() < RACY_MILLIS;
+  }
+
+  private static long cacheTtlMillis(Configuration conf) {
+    String value = conf.get(CACHE_TTL_MILLIS_PROPERTY);
+    if (value == null) {
+      return 0;
+    }
+    try {
+      long ttlMillis = Long.parseLong(value.trim());
+      Preconditions.checkArgument(ttlMillis >= 0,
+          "Time to live must not be negative: %s", ttlMillis);
+      return ttlMillis;
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid " +
+          CACHE_TTL_MILLIS_PROPERTY + ": " + value, e);
+    }
+  }
+
+  @Nullable
+  private static File snapshotDirectory(Configuration conf) {
+    String value = conf.get(SNAPSHOT_DIRECTORY_PROPERTY);
+    if (value == null || value.trim().isEmpty()) {
+      return null;
+    }
+    return new File(value.trim());
+  }
+
   private Path pathForDataset(String name) {
     Preconditions.checkState(rootDirectory != null,
       "Dataset repository root directory can not be null");
@@ -399,6 +702,32 @@ public class FileSystemMetadataProvider extends AbstractMetadataProvider {
       }
     }
 
+    Properties properties = toProperties(descriptor);
+
+    final Path descriptorPath = new Path(metadataLocation, DESCRIPTOR_FILE_NAME);
+    threw = true;
+    try {
+      outputStream = fs.create(descriptorPath, true /* overwrite */ );
+      properties.store(outputStream, "Dataset descriptor for " + name);
+      outputStream.flush();
+      threw = false;
+    } catch (IOException e) {
+      throw new MetadataProviderException(
+          "Unable to save descriptor file:" + descriptorPath + " for dataset:" + name, e);
+    } finally {
+      try {
+        Closeables.close(outputStream, threw);
+      } catch (IOException e) {
+        throw new MetadataProviderException(e);
+      }
+    }
+  }
+
+  /**
+   * Returns the properties that are stored in the descriptor file for
+   * {@code descriptor}.
+   */
+  private static Properties toProperties(DatasetDescriptor descriptor) {
     Properties properties = new Properties();
     properties.setProperty(VERSION_FIELD_NAME, METADATA_VERSION);
     properties.setProperty(FORMAT_FIELD_NAME, descriptor.getFormat().getName());
@@ -419,23 +748,7 @@ public class FileSystemMetadataProvider extends AbstractMetadataProvider {
       properties.setProperty(property, descriptor.getProperty(property));
     }
 
-    final Path descriptorPath = new Path(metadataLocation, DESCRIPTOR_FILE_NAME);
-    threw = true;
-    try {
-      outputStream = fs.create(descriptorPath, true /* overwrite */ );
-      properties.store(outputStream, "Dataset descriptor for " + name);
-      outputStream.flush();
-      threw = false;
-    } catch (IOException e) {
-      throw new MetadataProviderException(
-          "Unable to save descriptor file:" + descriptorPath + " for dataset:" + name, e);
-    } finally {
-      try {
-        Closeables.close(outputStream, threw);
-      } catch (IOException e) {
-        throw new MetadataProviderException(e);
-      }
-    }
+    return properties;
   }
 
   /**
@@ -480,6 +793,34 @@ public class FileSystemMetadataProvider extends AbstractMetadataProvider {
     }
   }
 
+  private static class CachedDescriptor {
+
+    private final DatasetDescriptor descriptor;
+    private final long modificationTime;
+    private final long length;
+    private final long loadedAt;
+    private volatile long checkedAt;
+
+    private CachedDescriptor(DatasetDescriptor descriptor,
+        FileStatus descriptorStatus, long loadedAt) {
+      this.descriptor = descriptor;
+      this.modificationTime = descriptorStatus.getModificationTime();
+      this.length = descriptorStatus.getLen();
+      this.loadedAt = loadedAt;
+      this.checkedAt = loadedAt;
+    }
+
+    private boolean matches(FileStatus descriptorStatus) {
+      return descriptorStatus.getModificationTime() == modificationTime &&
+          descriptorStatus.getLen() == length;
+    }
+
+    private boolean isRacy() {
+      // see FileSystemMetadataProvider#isRacy
+      return loadedAt - modificationTime < RACY_MILLIS;
+    }
+  }
+
   /**
    * A fluent builder to aid in the construction of {@link FileSystemMetadataProvider}
    * instances.
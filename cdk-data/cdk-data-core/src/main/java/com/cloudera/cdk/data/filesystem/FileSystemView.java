@@ -0,0 +1,485 @@
+/**
+ * Copyright 2013 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.cdk.data.filesystem;
+
+import com.cloudera.cdk.data.Dataset;
+import com.cloudera.cdk.data.DatasetAccessor;
+import com.cloudera.cdk.data.DatasetException;
+import com.cloudera.cdk.data.DatasetReader;
+import com.cloudera.cdk.data.DatasetWriter;
+import com.cloudera.cdk.data.FieldPartitioner;
+import com.cloudera.cdk.data.FieldPredicate;
+import com.cloudera.cdk.data.Marker;
+import com.cloudera.cdk.data.OrderedReader;
+import com.cloudera.cdk.data.PartitionKey;
+import com.cloudera.cdk.data.PartitionStrategy;
+import com.cloudera.cdk.data.ReaderSplit;
+import com.cloudera.cdk.data.View;
+import com.cloudera.cdk.data.impl.Accessor;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.apache.avro.Schema;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link View} of a {@link FileSystemDataset} that holds the partitions
+ * between a start and an end {@link Marker}, and may read only some fields of
+ * the entities or filter them.
+ * <p>
+ * Partition keys are ordered field by field, by the natural order of the
+ * partition values, so a range follows the order of the source data when the
+ * partition strategy goes from coarse to fine, as with year, month, day and
+ * hour. A {@code Marker} is mapped to the key values of the leading fields it
+ * has data for, as {@link PartitionStrategy#keyFor(Marker)} does, and stands
+ * for all partitions that share those values.
+ * <p>
+ * Readers and covering partitions only list the directories that can hold
+ * keys in the range, so a narrow range over a deeply partitioned dataset
+ * doesn't walk the whole directory tree.
+ * <p>
+ * A projection is passed to the file readers as the schema to read, so
+ * Parquet files only read the projected columns. Entities are then filtered by
+ * the view's {@link FieldPredicate}s. Ranges need a partitioned dataset, while
+ * projections and filters work on any dataset.
+ */
+class FileSystemView implements View {
+
+  private static final Logger logger = LoggerFactory
+    .getLogger(FileSystemView.class);
+
+  private final FileSystemDataset dataset;
+  @Nullable private final PartitionStrategy partitionStrategy;
+  @Nullable private final Bound start;
+  @Nullable private final Bound end;
+  @Nullable private final Schema projection;
+  private final List<FieldPredicate> predicates;
+
+  FileSystemView(FileSystemDataset dataset, @Nullable Bound start,
+    @Nullable Bound end) {
+    this(dataset, start, end, null, ImmutableList.<FieldPredicate>of());
+  }
+
+  FileSystemView(FileSystemDataset dataset, @Nullable Bound start,
+    @Nullable Bound end, @Nullable Schema projection,
+    List<FieldPredicate> predicates) {
+
+    Preconditions.checkState(dataset.getDescriptor().isPartitioned() ||
+      (start == null && end == null),
+      "Attempt to get a range of a non-partitioned dataset (name:%s)",
+      dataset.getName());
+
+    this.dataset = dataset;
+    this.partitionStrategy = dataset.getDescriptor().isPartitioned() ?
+      dataset.getDescriptor().getPartitionStrategy() : null;
+    this.start = start;
+    this.end = end;
+    this.projection = projection;
+    this.predicates = ImmutableList.copyOf(predicates);
+  }
+
+  /**
+   * Returns a bound for the partition space contained by {@code marker}
+   *
+   * @throws IllegalArgumentException If {@code marker} has no data for the
+   *                                  first field of the partition strategy.
+   */
+  @SuppressWarnings("unchecked")
+  static Bound bound(PartitionStrategy partitionStrategy, Marker marker,
+    boolean inclusive) {
+
+    Preconditions.checkArgument(marker != null, "Marker cannot be null");
+
+    List<Object> values = Lists.newArrayList();
+    for (FieldPartitioner fp : partitionStrategy.getFieldPartitioners()) {
+      // same lookup as PartitionStrategy#keyFor(Marker), but stops at the
+      // first field without data instead of failing
+      if (marker.has(fp.getSourceName())) {
+        values.add(fp.apply(
+          marker.getAs(fp.getSourceName(), fp.getSourceType())));
+      } else if (marker.has(fp.getName())) {
+        values.add(marker.getAs(fp.getName(), fp.getType()));
+      } else {
+        break;
+      }
+    }
+    // an empty bound would silently stand for the whole dataset
+    Preconditions.checkArgument(!values.isEmpty(),
+      "Marker %s has no data for the first partition field", marker);
+    return new Bound(values, inclusive);
+  }
+
+  @Override
+  public Dataset getDataset() {
+    return dataset;
+  }
+
+  @Override
+  public <E> DatasetReader<E> newReader() {
+    logger.debug("Getting reader for view:{}", this);
+
+    return dataset.newReader(dataFiles(), projection, predicates);
+  }
+
+  private List<Path> dataFiles() {
+    List<Path> paths = Lists.newArrayList();
+
+    try {
+      if (partitionStrategy == null) {
+        dataset.accumulateDatafilePaths(dataset.getDirectory(), paths);
+      } else {
+        for (Path partitionDirectory : coveringDirectories()) {
+          dataset.accumulateDatafilePaths(partitionDirectory, paths);
+        }
+      }
+    } catch (IOException e) {
+      throw new DatasetException("Unable to retrieve data file list for directory " +
+        dataset.getDirectory(), e);
+    }
+    return paths;
+  }
+
+  /**
+   * Returns splits of about {@code splitSize} bytes that together read all
+   * entities of this view.
+   */
+  List<ReaderSplit> getSplits(long splitSize) {
+    return dataset.getSplits(dataFiles(), splitSize, projection, predicates);
+  }
+
+  @Override
+  public <E> OrderedReader<E> newOrderedReader() {
+    throw new UnsupportedOperationException(
+      "This View does not support OrderedReaders");
+  }
+
+  @Override
+  public <E> DatasetWriter<E> newWriter() {
+    throw new UnsupportedOperationException("Not supported yet.");
+  }
+
+  @Override
+  public <E> DatasetAccessor<E> newAccessor() {
+    throw new UnsupportedOperationException(
+      "This View does not support random access");
+  }
+
+  @Override
+  public boolean contains(PartitionKey key) {
+    return overlaps(key.getValues());
+  }
+
+  @Override
+  public boolean contains(Marker marker) {
+    if (partitionStrategy == null) {
+      return true;
+    }
+    return overlaps(bound(partitionStrategy, marker, true).values);
+  }
+
+  @Override
+  public Iterable<View> getCoveringPartitions() {
+    checkPartitioned();
+    List<View> partitions = Lists.newArrayList();
+    for (Path partitionDirectory : coveringDirectories()) {
+      // the directory may have been removed since it was listed
+      Dataset partition = dataset.getPartition(keyFor(partitionDirectory), false);
+      if (partition != null) {
+        partitions.add(partition);
+      }
+    }
+    return partitions;
+  }
+
+  @Override
+  public View union(View view) {
+    Preconditions.checkArgument(dataset.equals(view.getDataset()),
+      "Views can only be unioned if they have the same underlying Dataset");
+    if (this.equals(view)) {
+      return this;
+    }
+    throw new UnsupportedOperationException("Not supported yet.");
+  }
+
+  @Override
+  public View from(Marker start) {
+    checkContains(start);
+    return new FileSystemView(dataset,
+      bound(partitionStrategy, start, true), end, projection, predicates);
+  }
+
+  @Override
+  public View fromAfter(Marker start) {
+    checkContains(start);
+    return new FileSystemView(dataset,
+      bound(partitionStrategy, start, false), end, projection, predicates);
+  }
+
+  @Override
+  public View to(Marker end) {
+    checkContains(end);
+    return new FileSystemView(dataset, start,
+      bound(partitionStrategy, end, true), projection, predicates);
+  }
+
+  @Override
+  public View toBefore(Marker end) {
+    checkContains(end);
+    return new FileSystemView(dataset, start,
+      bound(partitionStrategy, end, false), projection, predicates);
+  }
+
+  @Override
+  public View in(Marker partial) {
+    checkContains(partial);
+    Bound bound = bound(partitionStrategy, partial, true);
+    return new FileSystemView(dataset, bound, bound, projection, predicates);
+  }
+
+  @Override
+  public View project(Schema projection) {
+    Preconditions.checkArgument(projection != null,
+      "Projection cannot be null");
+    Preconditions.checkArgument(projection.getType() == Schema.Type.RECORD,
+      "Projection must be a record schema: %s", projection);
+    Schema schema = dataset.getDescriptor().getSchema();
+    for (Schema.Field field : projection.getFields()) {
+      Preconditions.checkArgument(schema.getField(field.name()) != null,
+        "Projected field %s is not in the dataset schema", field.name());
+    }
+    for (FieldPredicate predicate : predicates) {
+      checkProjected(projection, predicate);
+    }
+    return new FileSystemView(dataset, start, end, projection, predicates);
+  }
+
+  @Override
+  public View filter(FieldPredicate predicate) {
+    Preconditions.checkArgument(predicate != null, "Predicate cannot be null");
+    Preconditions.checkArgument(
+      dataset.getDescriptor().getSchema().getField(predicate.getName()) != null,
+      "Filtered field %s is not in the dataset schema", predicate.getName());
+    if (projection != null) {
+      checkProjected(projection, predicate);
+    }
+    return new FileSystemView(dataset, start, end, projection,
+      ImmutableList.<FieldPredicate>builder()
+        .addAll(predicates).add(predicate).build());
+  }
+
+  private static void checkProjected(Schema projection,
+    FieldPredicate predicate) {
+    // entities are filtered after they are read, so the field must be read
+    Preconditions.checkArgument(projection.getField(predicate.getName()) != null,
+      "Filtered field %s is not in the projection", predicate.getName());
+  }
+
+  private void checkPartitioned() {
+    Preconditions.checkState(partitionStrategy != null,
+      "Attempt to get partitions of a non-partitioned dataset (name:%s)",
+      dataset.getName());
+  }
+
+  private void checkContains(Marker marker) {
+    checkPartitioned();
+    Preconditions.checkArgument(marker != null, "Marker cannot be null");
+    Preconditions.checkArgument(contains(marker),
+      "Marker %s is not in this view", marker);
+  }
+
+  /** Returns whether any key starting with {@code values} is in this view */
+  private boolean overlaps(List<Object> values) {
+    boolean onStart = true;
+    boolean onEnd = true;
+    for (int i = 0; i < values.size(); i++) {
+      Position startPosition = position(start, onStart, true, i, values.get(i));
+      Position endPosition = position(end, onEnd, false, i, values.get(i));
+      if (startPosition == Position.OUTSIDE || endPosition == Position.OUTSIDE) {
+        return false;
+      }
+      onStart = (startPosition == Position.ON_BOUND);
+      onEnd = (endPosition == Position.ON_BOUND);
+    }
+    return true;
+  }
+
+  /** Returns the leaf partition directories that may hold keys in this view */
+  List<Path> coveringDirectories() {
+    List<Path> directories = Lists.newArrayList();
+    try {
+      accumulateDirectories(dataset.getDirectory(), 0, true, true, directories);
+    } catch (IOException e) {
+      throw new DatasetException("Unable to list partition directories for directory " +
+        dataset.getDirectory(), e);
+    }
+    return directories;
+  }
+
+  private void accumulateDirectories(Path directory, int depth,
+    boolean onStart, boolean onEnd, List<Path> directories)
+    throws IOException {
+
+    List<FieldPartitioner> fieldPartitioners =
+      partitionStrategy.getFieldPartitioners();
+    if (depth == fieldPartitioners.size()) {
+      directories.add(directory);
+      return;
+    }
+
+    FieldPartitioner fp = fieldPartitioners.get(depth);
+    for (FileStatus status :
+      dataset.getPartitionIndex().listStatus(directory)) {
+
+      if (!status.isDirectory()) {
+        continue;
+      }
+      Object value = fp.valueFromString(valueOf(status.getPath()));
+      Position startPosition = position(start, onStart, true, depth, value);
+      Position endPosition = position(end, onEnd, false, depth, value);
+      if (startPosition != Position.OUTSIDE && endPosition != Position.OUTSIDE) {
+        accumulateDirectories(status.getPath(), depth + 1,
+          startPosition == Position.ON_BOUND, endPosition == Position.ON_BOUND,
+          directories);
+      }
+    }
+  }
+
+  /**
+   * Returns where keys with the given value at {@code depth} fall relative to
+   * the bound, given whether the previous values are equal to the bound's.
+   */
+  @SuppressWarnings("unchecked")
+  private static Position position(@Nullable Bound bound, boolean onBound,
+    boolean isStart, int depth, Object value) {
+
+    if (bound == null || !onBound || depth >= bound.values.size()) {
+      return Position.INSIDE;
+    }
+    // natural order rather than FieldPartitioner#compare, which some
+    // partitioners apply to source values
+    int cmp = ((Comparable<Object>) value).compareTo(bound.values.get(depth));
+    if (isStart ? cmp < 0 : cmp > 0) {
+      return Position.OUTSIDE;
+    } else if (cmp != 0) {
+      return Position.INSIDE;
+    } else if (depth + 1 < bound.values.size()) {
+      return Position.ON_BOUND;
+    } else {
+      // all keys with this prefix are in the space contained by the marker
+      return bound.inclusive ? Position.INSIDE : Position.OUTSIDE;
+    }
+  }
+
+  private PartitionKey keyFor(Path partitionDirectory) {
+    List<FieldPartitioner> fieldPartitioners =
+      partitionStrategy.getFieldPartitioners();
+    Object[] values = new Object[fieldPartitioners.size()];
+    Path path = partitionDirectory;
+    for (int i = values.length - 1; i >= 0; i--) {
+      values[i] = fieldPartitioners.get(i).valueFromString(valueOf(path));
+      path = path.getParent();
+    }
+    return Accessor.getDefault().newPartitionKey(values);
+  }
+
+  private static String valueOf(Path partitionDirectory) {
+    return Iterables.get(
+      Splitter.on('=').split(partitionDirectory.getName()), 1);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    FileSystemView that = (FileSystemView) o;
+    return dataset.equals(that.dataset) &&
+      Objects.equal(start, that.start) && Objects.equal(end, that.end) &&
+      Objects.equal(projection, that.projection) &&
+      predicates.equals(that.predicates);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(dataset, start, end, projection, predicates);
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("dataset", dataset)
+      .add("start", start)
+      .add("end", end)
+      .add("projection", projection)
+      .add("predicates", predicates)
+      .toString();
+  }
+
+  private static enum Position {
+    OUTSIDE, ON_BOUND, INSIDE
+  }
+
+  /** The key values that a Marker resolves to, and whether they're included */
+  static class Bound {
+
+    private final List<Object> values;
+    private final boolean inclusive;
+
+    Bound(List<Object> values, boolean inclusive) {
+      this.values = Collections.unmodifiableList(values);
+      this.inclusive = inclusive;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Bound that = (Bound) o;
+      return inclusive == that.inclusive && values.equals(that.values);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(values, inclusive);
+    }
+
+    @Override
+    public String toString() {
+      return Objects.toStringHelper(this)
+        .add("values", values)
+        .add("inclusive", inclusive)
+        .toString();
+    }
+  }
+
+}
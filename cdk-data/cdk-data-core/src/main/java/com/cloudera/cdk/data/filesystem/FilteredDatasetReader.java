@@ -0,0 +1,91 @@
+/**
+ * Copyright 2013 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.cdk.data.filesystem;
+
+import com.cloudera.cdk.data.DatasetReader;
+import com.cloudera.cdk.data.spi.AbstractDatasetReader;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link DatasetReader} that returns the entities of another reader that
+ * match a predicate.
+ */
+class FilteredDatasetReader<E> extends AbstractDatasetReader<E> {
+
+  private final DatasetReader<E> reader;
+  private final Predicate<Object> predicate;
+
+  private E next;
+
+  public FilteredDatasetReader(DatasetReader<E> reader,
+      Predicate<Object> predicate) {
+    Preconditions.checkArgument(reader != null, "Reader cannot be null");
+    Preconditions.checkArgument(predicate != null, "Predicate cannot be null");
+
+    this.reader = reader;
+    this.predicate = predicate;
+  }
+
+  @Override
+  public void open() {
+    reader.open();
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (next == null && reader.hasNext()) {
+      E entity = reader.next();
+      if (predicate.apply(entity)) {
+        next = entity;
+      }
+    }
+    return next != null;
+  }
+
+  @Override
+  public E next() {
+    if (hasNext()) {
+      E current = next;
+      next = null;
+      return current;
+    } else {
+      throw new NoSuchElementException();
+    }
+  }
+
+  @Override
+  public void close() {
+    next = null;
+    reader.close();
+  }
+
+  @Override
+  public boolean isOpen() {
+    return reader.isOpen();
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("reader", reader)
+      .add("predicate", predicate)
+      .toString();
+  }
+
+}
@@ -24,6 +24,8 @@ import com.cloudera.cdk.data.spi.AbstractDatasetReader;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import javax.annotation.Nullable;
+import org.apache.avro.Schema;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 
@@ -35,6 +37,7 @@ class MultiFileDatasetReader<E> extends AbstractDatasetReader<E> {
 
   private final FileSystem fileSystem;
   private final DatasetDescriptor descriptor;
+  @Nullable private final Schema projection;
 
   private final Iterator<Path> filesIter;
   private DatasetReader<E> reader;
@@ -43,12 +46,18 @@ class MultiFileDatasetReader<E> extends AbstractDatasetReader<E> {
 
   public MultiFileDatasetReader(FileSystem fileSystem, List<Path> files,
       DatasetDescriptor descriptor) {
+    this(fileSystem, files, descriptor, null);
+  }
+
+  MultiFileDatasetReader(FileSystem fileSystem, List<Path> files,
+      DatasetDescriptor descriptor, @Nullable Schema projection) {
     Preconditions.checkArgument(fileSystem != null, "FileSystem cannot be null");
     Preconditions.checkArgument(descriptor != null, "Descriptor cannot be null");
     Preconditions.checkArgument(files != null, "Descriptor cannot be null");
 
     this.fileSystem = fileSystem;
     this.descriptor = descriptor;
+    this.projection = projection;
 
     // verify there are no null files
     try {
@@ -73,16 +82,27 @@ class MultiFileDatasetReader<E> extends AbstractDatasetReader<E> {
     this.state = ReaderWriterState.OPEN;
   }
 
-  @SuppressWarnings("unchecked") // See https://github.com/Parquet/parquet-mr/issues/106
   private void openNextReader() {
+    reader = newFileReader(fileSystem, filesIter.next(), descriptor,
+      projection);
+    reader.open();
+  }
+
+  /**
+   * Returns a reader, not yet opened, for a single data file that reads the
+   * fields of {@code projection}, or all fields if it is null.
+   */
+  @SuppressWarnings("unchecked") // See https://github.com/Parquet/parquet-mr/issues/106
+  static <E> DatasetReader<E> newFileReader(FileSystem fileSystem, Path path,
+      DatasetDescriptor descriptor, @Nullable Schema projection) {
     if (Formats.PARQUET.equals(descriptor.getFormat())) {
-      reader = new ParquetFileSystemDatasetReader(fileSystem, filesIter.next(),
-          descriptor.getSchema());
+      return new ParquetFileSystemDatasetReader(fileSystem, path,
+          descriptor.getSchema(), projection);
     } else {
-      reader = new FileSystemDatasetReader<E>(fileSystem, filesIter.next(),
-          descriptor.getSchema());
+      // Avro resolves the written schema to the projection as the read schema
+      return new FileSystemDatasetReader<E>(fileSystem, path,
+          projection != null ? projection : descriptor.getSchema());
     }
-    reader.open();
   }
 
   @Override
@@ -156,6 +176,7 @@ class MultiFileDatasetReader<E> extends AbstractDatasetReader<E> {
     return Objects.toStringHelper(this)
       .add("fileSystem", fileSystem)
       .add("descriptor", descriptor)
+      .add("projection", projection)
       .add("filesIter", filesIter)
       .add("reader", reader)
       .add("state", state)
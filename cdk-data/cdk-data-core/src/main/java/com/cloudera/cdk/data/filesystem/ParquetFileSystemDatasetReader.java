@@ -19,24 +19,33 @@ import com.cloudera.cdk.data.DatasetReaderException;
 import com.cloudera.cdk.data.spi.AbstractDatasetReader;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
 import java.io.EOFException;
 import java.io.IOException;
+import java.util.Map;
+import javax.annotation.Nullable;
 import org.apache.avro.Schema;
 import org.apache.avro.generic.IndexedRecord;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import parquet.avro.AvroParquetReader;
+import parquet.avro.AvroReadSupport;
+import parquet.hadoop.ParquetReader;
+import parquet.io.api.RecordMaterializer;
+import parquet.schema.MessageType;
 
 class ParquetFileSystemDatasetReader<E extends IndexedRecord> extends AbstractDatasetReader<E> {
 
   private FileSystem fileSystem;
   private Path path;
   private Schema schema;
+  @Nullable private Schema projection;
 
   private ReaderWriterState state;
-  private AvroParquetReader<E> reader;
+  private ParquetReader<E> reader;
 
   private E next;
 
@@ -44,9 +53,19 @@ class ParquetFileSystemDatasetReader<E extends IndexedRecord> extends AbstractDa
     .getLogger(ParquetFileSystemDatasetReader.class);
 
   public ParquetFileSystemDatasetReader(FileSystem fileSystem, Path path, Schema schema) {
+    this(fileSystem, path, schema, null);
+  }
+
+  /**
+   * Creates a reader that only reads the columns of the fields in
+   * {@code projection}, if it isn't null.
+   */
+  ParquetFileSystemDatasetReader(FileSystem fileSystem, Path path,
+    Schema schema, @Nullable Schema projection) {
     this.fileSystem = fileSystem;
     this.path = path;
     this.schema = schema;
+    this.projection = projection;
 
     this.state = ReaderWriterState.NEW;
   }
@@ -59,7 +78,12 @@ class ParquetFileSystemDatasetReader<E extends IndexedRecord> extends AbstractDa
     logger.debug("Opening reader on path:{}", path);
 
     try {
-      reader = new AvroParquetReader<E>(fileSystem.makeQualified(path));
+      if (projection == null) {
+        reader = new AvroParquetReader<E>(fileSystem.makeQualified(path));
+      } else {
+        reader = new ParquetReader<E>(fileSystem.makeQualified(path),
+          new ProjectionReadSupport<E>(projection));
+      }
     } catch (IOException e) {
       throw new DatasetReaderException("Unable to create reader path:" + path, e);
     }
@@ -121,9 +145,45 @@ class ParquetFileSystemDatasetReader<E extends IndexedRecord> extends AbstractDa
       .add("fileSystem", fileSystem)
       .add("path", path)
       .add("schema", schema)
+      .add("projection", projection)
       .add("state", state)
       .add("reader", reader)
       .toString();
   }
 
+  /**
+   * An {@link AvroReadSupport} that only reads the columns of
+   * {@code projection} and builds records of that schema. Parquet 1.2.0
+   * readers create their own {@code Configuration}, so the projection is set
+   * on the one that is passed to {@code init}.
+   */
+  private static class ProjectionReadSupport<E extends IndexedRecord>
+    extends AvroReadSupport<E> {
+
+    // the file metadata key that AvroReadSupport reads the record schema from
+    private static final String AVRO_SCHEMA_KEY = "avro.schema";
+
+    private final Schema projection;
+
+    public ProjectionReadSupport(Schema projection) {
+      this.projection = projection;
+    }
+
+    @Override
+    public ReadContext init(Configuration conf,
+      Map<String, String> keyValueMetaData, MessageType fileSchema) {
+      AvroReadSupport.setRequestedProjection(conf, projection);
+      return super.init(conf, keyValueMetaData, fileSchema);
+    }
+
+    @Override
+    public RecordMaterializer<E> prepareForRead(Configuration conf,
+      Map<String, String> keyValueMetaData, MessageType fileSchema,
+      ReadContext readContext) {
+      Map<String, String> metadata = Maps.newHashMap(keyValueMetaData);
+      metadata.put(AVRO_SCHEMA_KEY, projection.toString());
+      return super.prepareForRead(conf, metadata, fileSchema, readContext);
+    }
+  }
+
 }
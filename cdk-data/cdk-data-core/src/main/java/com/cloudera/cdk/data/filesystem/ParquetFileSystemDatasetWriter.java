@@ -21,16 +21,22 @@ import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.io.Closeables;
 import java.io.IOException;
+import javax.annotation.Nullable;
 import org.apache.avro.Schema;
 import org.apache.avro.generic.IndexedRecord;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.compress.SnappyCodec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import parquet.avro.AvroParquetWriter;
+import parquet.avro.AvroSchemaConverter;
+import parquet.avro.AvroWriteSupport;
 import parquet.hadoop.ParquetWriter;
+import parquet.hadoop.api.WriteSupport;
 import parquet.hadoop.metadata.CompressionCodecName;
+import parquet.io.api.Binary;
+import parquet.io.api.RecordConsumer;
 
 class ParquetFileSystemDatasetWriter<E extends IndexedRecord> implements DatasetWriter<E> {
 
@@ -42,9 +48,11 @@ class ParquetFileSystemDatasetWriter<E extends IndexedRecord> implements Dataset
   private Schema schema;
   private FileSystem fileSystem;
   private boolean enableCompression;
+  private PartitionIndex partitionIndex;
 
   private Path pathTmp;
-  private AvroParquetWriter<E> avroParquetWriter;
+  private SizeEstimatingWriteSupport<E> writeSupport;
+  private ParquetWriter<E> avroParquetWriter;
   private ReaderWriterState state;
 
   public ParquetFileSystemDatasetWriter(FileSystem fileSystem, Path path,
@@ -54,6 +62,13 @@ class ParquetFileSystemDatasetWriter<E extends IndexedRecord> implements Dataset
 
   public ParquetFileSystemDatasetWriter(FileSystem fileSystem, Path path,
       Schema schema, boolean enableCompression) {
+    this(fileSystem, path, schema, enableCompression, null);
+  }
+
+  ParquetFileSystemDatasetWriter(FileSystem fileSystem, Path path,
+      Schema schema, boolean enableCompression,
+      @Nullable PartitionIndex partitionIndex) {
+    this.partitionIndex = partitionIndex;
     this.fileSystem = fileSystem;
     this.path = path;
     this.pathTmp = new Path(path.getParent(), "." + path.getName() + ".tmp");
@@ -81,8 +96,11 @@ class ParquetFileSystemDatasetWriter<E extends IndexedRecord> implements Dataset
                "Parquet file will not be compressed.");
          }
       }
-      avroParquetWriter = new AvroParquetWriter<E>(fileSystem.makeQualified(pathTmp),
-          schema, codecName, DEFAULT_BLOCK_SIZE,
+      // what AvroParquetWriter does, with the size of the values counted
+      writeSupport = new SizeEstimatingWriteSupport<E>(new AvroWriteSupport(
+          new AvroSchemaConverter().convert(schema), schema));
+      avroParquetWriter = new ParquetWriter<E>(fileSystem.makeQualified(pathTmp),
+          writeSupport, codecName, DEFAULT_BLOCK_SIZE,
           ParquetWriter.DEFAULT_PAGE_SIZE);
     } catch (IOException e) {
       throw new DatasetWriterException("Unable to create writer to path:" + pathTmp, e);
@@ -136,10 +154,23 @@ class ParquetFileSystemDatasetWriter<E extends IndexedRecord> implements Dataset
           "Internal error while trying to commit path:" + pathTmp, e);
       }
 
+      if (partitionIndex != null) {
+        partitionIndex.invalidate(path.getParent());
+      }
+
       state = ReaderWriterState.CLOSED;
     }
   }
 
+  /**
+   * Returns an estimate of the bytes written so far, which is the size of the
+   * values before encoding and compression. Parquet buffers a whole row group
+   * in memory, so most of these bytes are usually not in the file yet.
+   */
+  long getBytesWritten() {
+    return writeSupport == null ? 0 : writeSupport.bytes;
+  }
+
   @Override
   public boolean isOpen() {
     return state.equals(ReaderWriterState.OPEN);
@@ -157,4 +188,86 @@ class ParquetFileSystemDatasetWriter<E extends IndexedRecord> implements Dataset
       .toString();
   }
 
+  /** Counts the bytes of the values that a write support passes on */
+  private static class SizeEstimatingWriteSupport<E extends IndexedRecord>
+      extends WriteSupport<E> {
+
+    private final WriteSupport<IndexedRecord> delegate;
+    private long bytes;
+
+    public SizeEstimatingWriteSupport(WriteSupport<IndexedRecord> delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public WriteContext init(Configuration configuration) {
+      return delegate.init(configuration);
+    }
+
+    @Override
+    public void prepareForWrite(final RecordConsumer recordConsumer) {
+      delegate.prepareForWrite(new RecordConsumer() {
+        @Override
+        public void startMessage() {
+          recordConsumer.startMessage();
+        }
+        @Override
+        public void endMessage() {
+          recordConsumer.endMessage();
+        }
+        @Override
+        public void startField(String field, int index) {
+          recordConsumer.startField(field, index);
+        }
+        @Override
+        public void endField(String field, int index) {
+          recordConsumer.endField(field, index);
+        }
+        @Override
+        public void startGroup() {
+          recordConsumer.startGroup();
+        }
+        @Override
+        public void endGroup() {
+          recordConsumer.endGroup();
+        }
+        @Override
+        public void addInteger(int value) {
+          bytes += 4;
+          recordConsumer.addInteger(value);
+        }
+        @Override
+        public void addLong(long value) {
+          bytes += 8;
+          recordConsumer.addLong(value);
+        }
+        @Override
+        public void addBoolean(boolean value) {
+          bytes += 1;
+          recordConsumer.addBoolean(value);
+        }
+        @Override
+        public void addBinary(Binary value) {
+          bytes += value.length();
+          recordConsumer.addBinary(value);
+        }
+        @Override
+        public void addFloat(float value) {
+          bytes += 4;
+          recordConsumer.addFloat(value);
+        }
+        @Override
+        public void addDouble(double value) {
+          bytes += 8;
+          recordConsumer.addDouble(value);
+        }
+      });
+    }
+
+    @Override
+    public void write(E record) {
+      delegate.write(record);
+    }
+  }
+
 }
@@ -0,0 +1,352 @@
+/**
+ * Copyright 2013 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.cdk.data.filesystem;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An in-memory index of the directory listings of a {@link FileSystemDataset}
+ * and its partitions, so that repeated reader creation and partition lookups
+ * don't list every directory again.
+ * <p>
+ * A cached listing is used as is for a configurable time to live after it was
+ * last checked. After that, the directory's modification time is compared to
+ * the one the listing was taken at, and the directory is only listed again if
+ * it changed. Because modification times can have a granularity as coarse as
+ * a second, listings taken shortly after a change are never trusted.
+ * <p>
+ * Writers of the dataset invalidate the listing of each directory they commit
+ * a file to, and partitions that are created are remembered, so that the
+ * index is kept current with the writes that go through the dataset. A
+ * remembered directory is trusted to exist for the same time to live, and is
+ * checked again after that, so that directories deleted by other processes
+ * are noticed.
+ * <p>
+ * Data files are collected by listing the partition subtrees directly under
+ * a directory in parallel.
+ */
+class PartitionIndex {
+
+  private static final Logger logger = LoggerFactory
+    .getLogger(PartitionIndex.class);
+
+  static final String TTL_MILLIS_PROPERTY = "cdk.partition-index.ttl-ms";
+
+  private static final long RACY_MILLIS = 2000;
+  private static final int MAX_CACHED_LISTINGS = 100000;
+  private static final int LISTING_THREADS = 8;
+
+  private static final ExecutorService LISTING_EXECUTOR =
+    Executors.newFixedThreadPool(LISTING_THREADS,
+      new ThreadFactoryBuilder().setDaemon(true)
+        .setNameFormat("partition-index-%d").build());
+
+  private final FileSystem fileSystem;
+  private final long ttlMillis;
+  private final Cache<Path, Listing> listings;
+  /** Directories known to exist, and when they were last seen */
+  private final ConcurrentHashMap<Path, Long> knownDirectories;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong revalidations = new AtomicLong();
+  private final AtomicLong listingCount = new AtomicLong();
+  private final AtomicLong listingNanos = new AtomicLong();
+
+  PartitionIndex(FileSystem fileSystem, long ttlMillis) {
+    Preconditions.checkArgument(ttlMillis >= 0,
+      "Time to live must not be negative: %s", ttlMillis);
+
+    this.fileSystem = fileSystem;
+    this.ttlMillis = ttlMillis;
+    this.listings = CacheBuilder.newBuilder()
+      .maximumSize(MAX_CACHED_LISTINGS).build();
+    this.knownDirectories = new ConcurrentHashMap<Path, Long>();
+  }
+
+  /** Returns the files and directories in {@code directory} that aren't hidden */
+  List<FileStatus> listStatus(Path directory) throws IOException {
+    Listing listing = listings.getIfPresent(directory);
+    if (listing != null) {
+      long now = System.currentTimeMillis();
+      if (now - listing.checkedAt < ttlMillis) {
+        hits.incrementAndGet();
+        return listing.children;
+      }
+      if (!listing.isRacy()) {
+        revalidations.incrementAndGet();
+        FileStatus status = fileSystem.getFileStatus(directory);
+        if (status.getModificationTime() == listing.modificationTime) {
+          listing.checkedAt = now;
+          hits.incrementAndGet();
+          return listing.children;
+        }
+      }
+    }
+    misses.incrementAndGet();
+    return list(directory).children;
+  }
+
+  private Listing list(Path directory) throws IOException {
+    long start = System.nanoTime();
+    long listedAt = System.currentTimeMillis();
+
+    // the modification time is read first, so a change during the listing
+    // is detected the next time around
+    FileStatus status = fileSystem.getFileStatus(directory);
+    FileStatus[] children = fileSystem.listStatus(directory,
+      PathFilters.notHidden());
+
+    long nanos = System.nanoTime() - start;
+    listingCount.incrementAndGet();
+    listingNanos.addAndGet(nanos);
+    logger.debug("Listed directory:{} in {} ms", directory, nanos / 1000000);
+
+    Listing listing = new Listing(status.getModificationTime(), listedAt,
+      ImmutableList.copyOf(children));
+    listings.put(directory, listing);
+    for (FileStatus child : children) {
+      if (child.isDirectory()) {
+        knownDirectories.put(child.getPath(), listedAt);
+      }
+    }
+    return listing;
+  }
+
+  /**
+   * Adds the data files under {@code directory} to {@code paths}, in the order
+   * of a depth-first walk.
+   */
+  void accumulateDataFiles(Path directory, List<Path> paths)
+    throws IOException {
+
+    List<FileStatus> children = listStatus(directory);
+
+    int numDirectories = 0;
+    for (FileStatus child : children) {
+      if (child.isDirectory()) {
+        numDirectories++;
+      }
+    }
+    if (numDirectories < 2) {
+      accumulateDataFiles(children, paths);
+      return;
+    }
+
+    List<Future<List<Path>>> subtrees = Lists.newArrayList();
+    for (final FileStatus child : children) {
+      if (child.isDirectory()) {
+        subtrees.add(LISTING_EXECUTOR.submit(new Callable<List<Path>>() {
+          @Override
+          public List<Path> call() throws IOException {
+            List<Path> subtreePaths = Lists.newArrayList();
+            accumulateDataFiles(listStatus(child.getPath()), subtreePaths);
+            return subtreePaths;
+          }
+        }));
+      }
+    }
+
+    Iterator<Future<List<Path>>> subtreeIter = subtrees.iterator();
+    try {
+      for (FileStatus child : children) {
+        if (child.isDirectory()) {
+          paths.addAll(subtreeIter.next().get());
+        } else {
+          paths.add(child.getPath());
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while listing directory:" + directory, e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException("Unable to list directory:" + directory, e.getCause());
+    } finally {
+      while (subtreeIter.hasNext()) {
+        subtreeIter.next().cancel(true);
+      }
+    }
+  }
+
+  private void accumulateDataFiles(List<FileStatus> statuses, List<Path> paths)
+    throws IOException {
+
+    for (FileStatus status : statuses) {
+      if (status.isDirectory()) {
+        accumulateDataFiles(listStatus(status.getPath()), paths);
+      } else {
+        paths.add(status.getPath());
+      }
+    }
+  }
+
+  /** Returns whether {@code directory} exists, which is remembered if so */
+  boolean exists(Path directory) throws IOException {
+    Long seenAt = knownDirectories.get(directory);
+    long now = System.currentTimeMillis();
+    if (seenAt != null) {
+      if (now - seenAt < ttlMillis) {
+        hits.incrementAndGet();
+        return true;
+      }
+      revalidations.incrementAndGet();
+      if (fileSystem.exists(directory)) {
+        knownDirectories.put(directory, now);
+        hits.incrementAndGet();
+        return true;
+      }
+      // deleted by someone else, so its listings are stale too
+      invalidateTree(directory);
+      misses.incrementAndGet();
+      return false;
+    }
+    misses.incrementAndGet();
+    boolean exists = fileSystem.exists(directory);
+    if (exists) {
+      knownDirectories.put(directory, now);
+    }
+    return exists;
+  }
+
+  /** Creates {@code directory} and any missing parents */
+  void mkdirs(Path directory) throws IOException {
+    fileSystem.mkdirs(directory);
+    knownDirectories.put(directory, System.currentTimeMillis());
+    for (Path parent = directory.getParent(); parent != null;
+        parent = parent.getParent()) {
+      listings.invalidate(parent);
+    }
+  }
+
+  /** Forgets the listing of {@code directory}, e.g. after a file was added */
+  void invalidate(Path directory) {
+    listings.invalidate(directory);
+  }
+
+  /** Forgets {@code directory} and everything under it, e.g. after a delete */
+  void invalidateTree(Path directory) {
+    String prefix = directory.toString() + Path.SEPARATOR;
+    for (Iterator<Path> iter = listings.asMap().keySet().iterator();
+        iter.hasNext();) {
+      Path path = iter.next();
+      if (path.equals(directory) || path.toString().startsWith(prefix)) {
+        iter.remove();
+      }
+    }
+    for (Iterator<Path> iter = knownDirectories.keySet().iterator();
+        iter.hasNext();) {
+      Path path = iter.next();
+      if (path.equals(directory) || path.toString().startsWith(prefix)) {
+        iter.remove();
+      }
+    }
+    if (directory.getParent() != null) {
+      listings.invalidate(directory.getParent());
+    }
+  }
+
+  /** Returns the number of lookups that didn't need a listing */
+  long getHitCount() {
+    return hits.get();
+  }
+
+  /** Returns the number of lookups that needed a listing or an existence check */
+  long getMissCount() {
+    return misses.get();
+  }
+
+  /** Returns the number of filesystem checks of expired listings and directories */
+  long getRevalidationCount() {
+    return revalidations.get();
+  }
+
+  /** Returns the number of directories that were listed */
+  long getListingCount() {
+    return listingCount.get();
+  }
+
+  /** Returns the total time spent listing directories */
+  long getListingTimeNanos() {
+    return listingNanos.get();
+  }
+
+  /** Returns a snapshot of the counters of this index */
+  PartitionIndexStats getStats() {
+    return new PartitionIndexStats(hits.get(), misses.get(),
+      revalidations.get(), listingCount.get(), listingNanos.get());
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("ttlMillis", ttlMillis)
+      .add("hits", hits)
+      .add("misses", misses)
+      .add("revalidations", revalidations)
+      .add("listingCount", listingCount)
+      .add("listingNanos", listingNanos)
+      .toString();
+  }
+
+  private static class Listing {
+
+    private final long modificationTime;
+    private final long listedAt;
+    private final List<FileStatus> children;
+    private volatile long checkedAt;
+
+    public Listing(long modificationTime, long listedAt,
+      List<FileStatus> children) {
+      this.modificationTime = modificationTime;
+      this.listedAt = listedAt;
+      this.children = children;
+      this.checkedAt = listedAt;
+    }
+
+    /**
+     * Returns whether the directory may have changed again within the
+     * granularity of its modification time after the listing was taken.
+     */
+    public boolean isRacy() {
+      return listedAt - modificationTime < RACY_MILLIS;
+    }
+  }
+
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright 2013 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.cdk.data.filesystem;
+
+import com.cloudera.cdk.data.View;
+import com.google.common.base.Objects;
+
+/**
+ * A snapshot of the counters of the index that caches the directory listings
+ * of a filesystem dataset and its partitions.
+ * <pre>
+ * PartitionIndexStats stats = PartitionIndexStats.of(dataset);
+ * logger.info("Listed {} directories in {} ms", stats.getListingCount(),
+ *     stats.getListingTimeNanos() / 1000000);
+ * </pre>
+ */
+public class PartitionIndexStats {
+
+  private final long hitCount;
+  private final long missCount;
+  private final long revalidationCount;
+  private final long listingCount;
+  private final long listingTimeNanos;
+
+  PartitionIndexStats(long hitCount, long missCount, long revalidationCount,
+    long listingCount, long listingTimeNanos) {
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.revalidationCount = revalidationCount;
+    this.listingCount = listingCount;
+    this.listingTimeNanos = listingTimeNanos;
+  }
+
+  /**
+   * Returns the current counters of the partition index of {@code view}.
+   * Partitions and views of a dataset share the index of the dataset.
+   *
+   * @param view a filesystem {@code Dataset} or a {@code View} of one
+   * @return the counters of the dataset's partition index
+   *
+   * @throws IllegalArgumentException If {@code view} is not a filesystem
+   *                                  dataset or view.
+   */
+  public static PartitionIndexStats of(View view) {
+    if (view instanceof FileSystemDataset) {
+      return ((FileSystemDataset) view).getPartitionIndex().getStats();
+    } else if (view instanceof FileSystemView) {
+      return of(((FileSystemView) view).getDataset());
+    }
+    throw new IllegalArgumentException(
+      "Partition index stats are only kept for filesystem datasets: " + view);
+  }
+
+  /** Returns the number of lookups that didn't need a listing */
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  /** Returns the number of lookups that needed a listing or an existence check */
+  public long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * Returns the number of checks of expired listings and directories against
+   * the filesystem
+   */
+  public long getRevalidationCount() {
+    return revalidationCount;
+  }
+
+  /** Returns the number of directories that were listed */
+  public long getListingCount() {
+    return listingCount;
+  }
+
+  /** Returns the total time spent listing directories */
+  public long getListingTimeNanos() {
+    return listingTimeNanos;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("hitCount", hitCount)
+      .add("missCount", missCount)
+      .add("revalidationCount", revalidationCount)
+      .add("listingCount", listingCount)
+      .add("listingTimeNanos", listingTimeNanos)
+      .toString();
+  }
+
+}
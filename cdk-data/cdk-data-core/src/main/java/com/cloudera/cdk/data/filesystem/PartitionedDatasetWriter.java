@@ -16,34 +16,94 @@
 package com.cloudera.cdk.data.filesystem;
 
 import com.cloudera.cdk.data.Dataset;
+import com.cloudera.cdk.data.DatasetDescriptor;
 import com.cloudera.cdk.data.DatasetWriter;
 import com.cloudera.cdk.data.DatasetWriterException;
 import com.cloudera.cdk.data.PartitionKey;
 import com.cloudera.cdk.data.PartitionStrategy;
+import com.cloudera.cdk.data.impl.Accessor;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import com.google.common.cache.RemovalListener;
-import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.reflect.ReflectDatumWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
-import java.util.Map;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * A {@link DatasetWriter} that writes each entity to the leaf partition that
+ * its {@link PartitionKey} maps to.
+ * <p>
+ * Open partition writers are kept in a pool that is bounded by the total
+ * number of bytes written to files that are not yet committed, as well as by
+ * the number of open writers. When a bound is exceeded, the least recently
+ * used writers are closed. Each partition's file can additionally be rolled,
+ * i.e. committed and replaced with a new file, once it reaches a size or an
+ * age. Writers are closed, which includes the commit of the temporary file,
+ * on background threads so that {@link #write(Object)} doesn't wait for the
+ * file system; {@link #flush()} and {@link #close()} wait for pending closes.
+ * <p>
+ * The bounds are read from these {@link DatasetDescriptor} properties:
+ * <ul>
+ * <li><code>cdk.writer.max-buffered-bytes</code>: the maximum number of bytes
+ * in uncommitted files, 256 MB by default. Avro files count their written
+ * blocks and the encoded entities of the current block. Parquet files count
+ * the size of their values before encoding and compression, since Parquet
+ * buffers whole row groups in memory.</li>
+ * <li><code>cdk.writer.max-open-writers</code>: the maximum number of open
+ * partition writers, 100 by default.</li>
+ * <li><code>cdk.writer.roll-size-bytes</code>: the size at which a file is
+ * rolled, unlimited by default.</li>
+ * <li><code>cdk.writer.roll-interval-ms</code>: the age at which a file is
+ * rolled, unlimited by default.</li>
+ * </ul>
+ */
 class PartitionedDatasetWriter<E> implements DatasetWriter<E> {
 
   private static final Logger logger = LoggerFactory
     .getLogger(PartitionedDatasetWriter.class);
 
+  static final String MAX_BUFFERED_BYTES_PROPERTY = "cdk.writer.max-buffered-bytes";
+  static final String MAX_OPEN_WRITERS_PROPERTY = "cdk.writer.max-open-writers";
+  static final String ROLL_SIZE_BYTES_PROPERTY = "cdk.writer.roll-size-bytes";
+  static final String ROLL_INTERVAL_MILLIS_PROPERTY = "cdk.writer.roll-interval-ms";
+
+  private static final long DEFAULT_MAX_BUFFERED_BYTES = 256L * 1024 * 1024;
+  private static final int DEFAULT_MAX_OPEN_WRITERS = 100;
+  private static final int CLOSE_THREADS = 4;
+
   private Dataset dataset;
+  private long maxBufferedBytes;
   private int maxWriters;
+  private long rollSizeBytes;
+  private long rollIntervalMillis;
 
   private final PartitionStrategy partitionStrategy;
-  private LoadingCache<PartitionKey, DatasetWriter<E>> cachedWriters;
+  // Avro partition writers share a datum writer, since they write one schema
+  private final DatumWriter<E> datumWriter = new ReflectDatumWriter<E>();
+  // Avro entities are encoded here, so that the size of each is known
+  private final EncodingBuffer encoded = new EncodingBuffer();
+  private BinaryEncoder encoder;
+  private LinkedHashMap<PartitionKey, PartitionWriter<E>> cachedWriters;
+  private long bufferedBytes;
+  private ThreadPoolExecutor closeExecutor;
+  private final List<Future<?>> pendingCloses = Lists.newArrayList();
   private PartitionKey key;
 
   private ReaderWriterState state;
@@ -52,9 +112,17 @@ class PartitionedDatasetWriter<E> implements DatasetWriter<E> {
     Preconditions.checkArgument(dataset.getDescriptor().isPartitioned(),
       "Dataset " + dataset + " is not partitioned");
 
+    DatasetDescriptor descriptor = dataset.getDescriptor();
     this.dataset = dataset;
-    this.partitionStrategy = dataset.getDescriptor().getPartitionStrategy();
-    this.maxWriters = Math.min(10, partitionStrategy.getCardinality());
+    this.partitionStrategy = descriptor.getPartitionStrategy();
+    this.maxBufferedBytes = getLongProperty(descriptor,
+      MAX_BUFFERED_BYTES_PROPERTY, DEFAULT_MAX_BUFFERED_BYTES);
+    this.maxWriters = (int) getLongProperty(descriptor,
+      MAX_OPEN_WRITERS_PROPERTY, DEFAULT_MAX_OPEN_WRITERS);
+    this.rollSizeBytes = getLongProperty(descriptor,
+      ROLL_SIZE_BYTES_PROPERTY, Long.MAX_VALUE);
+    this.rollIntervalMillis = getLongProperty(descriptor,
+      ROLL_INTERVAL_MILLIS_PROPERTY, Long.MAX_VALUE);
     this.state = ReaderWriterState.NEW;
   }
 
@@ -62,18 +130,34 @@ class PartitionedDatasetWriter<E> implements DatasetWriter<E> {
   public PartitionedDatasetWriter(Dataset dataset,
     PartitionStrategy partitionStrategy) {
 
-    Preconditions.checkArgument(dataset.getDescriptor().isPartitioned(),
-      "Dataset " + dataset + " is not partitioned");
+    this(dataset);
     Preconditions
       .checkArgument(
         dataset.getDescriptor().getPartitionStrategy()
           .equals(partitionStrategy),
         "Dataset descriptor's partitions strategy doesn't match the provided partition strategy");
+  }
 
-    this.dataset = dataset;
-    this.partitionStrategy = dataset.getDescriptor().getPartitionStrategy();
-    this.maxWriters = Math.min(10, this.partitionStrategy.getCardinality());
-    this.state = ReaderWriterState.NEW;
+  private static long getLongProperty(DatasetDescriptor descriptor,
+    String name, long defaultValue) {
+
+    String value = descriptor.getProperty(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    long result;
+    try {
+      result = Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(
+        "Invalid value for property " + name + ": " + value, e);
+    }
+    Preconditions.checkArgument(result > 0,
+      "Property %s must be positive: %s", name, result);
+    Preconditions.checkArgument(
+      !name.equals(MAX_OPEN_WRITERS_PROPERTY) || result <= Integer.MAX_VALUE,
+      "Property %s is too large: %s", name, result);
+    return result;
   }
 
   @Override
@@ -84,9 +168,16 @@ class PartitionedDatasetWriter<E> implements DatasetWriter<E> {
     logger.debug("Opening partitioned dataset writer w/strategy:{}",
       partitionStrategy);
 
-    cachedWriters = CacheBuilder.newBuilder().maximumSize(maxWriters)
-      .removalListener(new DatasetWriterRemovalStrategy<E>())
-      .build(new DatasetWriterCacheLoader<E>(dataset));
+    // iteration order is least recently used first
+    cachedWriters = new LinkedHashMap<PartitionKey, PartitionWriter<E>>(16, 0.75f, true);
+
+    // if closes fall behind, the writing thread closes writers itself
+    closeExecutor = new ThreadPoolExecutor(CLOSE_THREADS, CLOSE_THREADS,
+      0L, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<Runnable>(Math.min(maxWriters, 1000)),
+      new ThreadFactoryBuilder().setDaemon(true)
+        .setNameFormat("partitioned-writer-closer-%d").build(),
+      new ThreadPoolExecutor.CallerRunsPolicy());
 
     state = ReaderWriterState.OPEN;
   }
@@ -97,16 +188,151 @@ class PartitionedDatasetWriter<E> implements DatasetWriter<E> {
       "Attempt to write to a writer in state:%s", state);
 
     key = partitionStrategy.keyFor(entity, key);
-    DatasetWriter<E> writer;
+    PartitionWriter<E> partitionWriter;
 
     try {
-      writer = cachedWriters.get(key);
-    } catch (ExecutionException e) {
+      partitionWriter = writerFor(key);
+    } catch (RuntimeException e) {
       throw new DatasetWriterException("Unable to get a writer for entity:" + entity
         + " partition key:" + Arrays.asList(key), e);
     }
 
-    writer.write(entity);
+    if (partitionWriter.writer instanceof FileSystemDatasetWriter) {
+      ((FileSystemDatasetWriter<E>) partitionWriter.writer)
+        .writeEncoded(encode(entity));
+    } else {
+      partitionWriter.writer.write(entity);
+    }
+    written(partitionWriter);
+  }
+
+  /**
+   * Encodes an entity with the shared datum writer, which has the dataset's
+   * schema once a partition writer was opened. The buffer is reused by the
+   * next call.
+   */
+  private ByteBuffer encode(E entity) {
+    try {
+      encoded.reset();
+      encoder = EncoderFactory.get().directBinaryEncoder(encoded, encoder);
+      datumWriter.write(entity, encoder);
+      return encoded.asByteBuffer();
+    } catch (IOException e) {
+      throw new DatasetWriterException("Unable to encode entity:" + entity, e);
+    } catch (RuntimeException e) {
+      throw new DatasetWriterException("Unable to encode entity:" + entity, e);
+    }
+  }
+
+  /**
+   * Appends an entity that is already encoded with the dataset's Avro schema
+   * to the partition for {@code key}.
+   */
+  void writeEncoded(PartitionKey key, ByteBuffer encoded) {
+    Preconditions.checkState(state.equals(ReaderWriterState.OPEN),
+      "Attempt to write to a writer in state:%s", state);
+
+    PartitionWriter<E> partitionWriter;
+
+    try {
+      partitionWriter = writerFor(key);
+    } catch (RuntimeException e) {
+      throw new DatasetWriterException("Unable to get a writer for partition key:"
+        + key, e);
+    }
+
+    ((FileSystemDatasetWriter<E>) partitionWriter.writer).writeEncoded(encoded);
+    written(partitionWriter);
+  }
+
+  /** Returns the writer for the partition of {@code key}, opening it if needed */
+  private PartitionWriter<E> writerFor(PartitionKey key) {
+    PartitionWriter<E> partitionWriter = cachedWriters.get(key);
+
+    if (partitionWriter == null) {
+      // the key may be reused for the next entity, so don't keep it
+      PartitionKey newKey = Accessor.getDefault().newPartitionKey(
+        key.getValues().toArray());
+      partitionWriter = new PartitionWriter<E>(
+        newKey, dataset.getPartition(newKey, true), datumWriter);
+      cachedWriters.put(newKey, partitionWriter);
+    } else if (partitionWriter.bytesWritten >= rollSizeBytes ||
+      System.currentTimeMillis() - partitionWriter.openTime >= rollIntervalMillis) {
+      // roll lazily, so that no empty files are left behind
+      roll(partitionWriter);
+    }
+    return partitionWriter;
+  }
+
+  private void written(PartitionWriter<E> partitionWriter) {
+    long bytesWritten = partitionWriter.getBytesWritten();
+    bufferedBytes += bytesWritten - partitionWriter.bytesWritten;
+    partitionWriter.bytesWritten = bytesWritten;
+
+    evictIfNecessary();
+    checkPendingCloses(false);
+  }
+
+  /** Commits the current file of the given partition and starts a new one */
+  private void roll(PartitionWriter<E> partitionWriter) {
+    logger.debug("Rolling writer for partition:{}", partitionWriter.key);
+    closeInBackground(partitionWriter);
+    partitionWriter.openWriter();
+  }
+
+  /** Closes least recently used writers while the pool exceeds its bounds */
+  private void evictIfNecessary() {
+    Iterator<PartitionWriter<E>> iter = cachedWriters.values().iterator();
+    while ((bufferedBytes > maxBufferedBytes || cachedWriters.size() > maxWriters)
+      && cachedWriters.size() > 1) {
+
+      PartitionWriter<E> partitionWriter = iter.next();
+      logger.debug("Evicting writer for partition:{}", partitionWriter.key);
+      iter.remove();
+      closeInBackground(partitionWriter);
+    }
+  }
+
+  private void closeInBackground(PartitionWriter<E> partitionWriter) {
+    final DatasetWriter<E> writer = partitionWriter.writer;
+    bufferedBytes -= partitionWriter.bytesWritten;
+    partitionWriter.bytesWritten = 0;
+    pendingCloses.add(closeExecutor.submit(new Runnable() {
+      @Override
+      public void run() {
+        writer.close();
+      }
+    }));
+  }
+
+  /**
+   * Forgets about completed closes, optionally waiting for all pending closes
+   * to complete, and rethrows the first failure of a close.
+   */
+  private void checkPendingCloses(boolean wait) {
+    DatasetWriterException failure = null;
+    Iterator<Future<?>> iter = pendingCloses.iterator();
+    while (iter.hasNext()) {
+      Future<?> future = iter.next();
+      if (wait || future.isDone()) {
+        iter.remove();
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          if (failure == null) {
+            failure = new DatasetWriterException(
+              "Unable to close partition writer", e.getCause());
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new DatasetWriterException(
+            "Interrupted while waiting for partition writers to close", e);
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
   }
 
   @Override
@@ -117,19 +343,13 @@ class PartitionedDatasetWriter<E> implements DatasetWriter<E> {
     logger.debug("Flushing all cached writers for partition strategy:{}",
       partitionStrategy);
 
-    /*
-     * There's a potential for flushing entries that are created by other
-     * threads while looping through the writers. While normally just wasteful,
-     * on HDFS, this is particularly bad. We should probably do something about
-     * this, but it will be difficult as Cache (ideally) uses multiple
-     * partitions to prevent cached writer contention.
-     */
-    for (Map.Entry<PartitionKey, DatasetWriter<E>> entry : cachedWriters
-      .asMap().entrySet()) {
-      logger.debug("Flushing partition writer:{}.{}", entry.getKey(),
-        entry.getValue());
-      entry.getValue().flush();
+    for (PartitionWriter<E> partitionWriter : cachedWriters.values()) {
+      logger.debug("Flushing partition writer:{}.{}", partitionWriter.key,
+        partitionWriter.writer);
+      partitionWriter.writer.flush();
     }
+
+    checkPendingCloses(true);
   }
 
   @Override
@@ -139,14 +359,18 @@ class PartitionedDatasetWriter<E> implements DatasetWriter<E> {
       logger.debug("Closing all cached writers for partition strategy:{}",
         partitionStrategy);
 
-      for (Map.Entry<PartitionKey, DatasetWriter<E>> entry : cachedWriters
-        .asMap().entrySet()) {
-        logger.debug("Closing partition writer:{}.{}", entry.getKey(),
-          entry.getValue());
-        entry.getValue().close();
+      try {
+        for (PartitionWriter<E> partitionWriter : cachedWriters.values()) {
+          logger.debug("Closing partition writer:{}.{}", partitionWriter.key,
+            partitionWriter.writer);
+          closeInBackground(partitionWriter);
+        }
+        cachedWriters.clear();
+        checkPendingCloses(true);
+      } finally {
+        closeExecutor.shutdown();
+        state = ReaderWriterState.CLOSED;
       }
-
-      state = ReaderWriterState.CLOSED;
     }
   }
 
@@ -159,45 +383,67 @@ class PartitionedDatasetWriter<E> implements DatasetWriter<E> {
   public String toString() {
     return Objects.toStringHelper(this)
       .add("partitionStrategy", partitionStrategy)
-      .add("maxWriters", maxWriters).add("dataset", dataset)
+      .add("maxWriters", maxWriters)
+      .add("maxBufferedBytes", maxBufferedBytes)
+      .add("rollSizeBytes", rollSizeBytes)
+      .add("rollIntervalMillis", rollIntervalMillis)
+      .add("dataset", dataset)
       .add("cachedWriters", cachedWriters).toString();
   }
 
-  private static class DatasetWriterCacheLoader<E> extends
-    CacheLoader<PartitionKey, DatasetWriter<E>> {
-
-    private Dataset dataset;
-
-    public DatasetWriterCacheLoader(Dataset dataset) {
-      this.dataset = dataset;
+  /** The open writer of a partition along with its bookkeeping */
+  private static class PartitionWriter<E> {
+
+    private final PartitionKey key;
+    private final Dataset partition;
+    private final DatumWriter<E> datumWriter;
+    private DatasetWriter<E> writer;
+    private long openTime;
+    private long bytesWritten; // as of the last write
+
+    public PartitionWriter(PartitionKey key, Dataset partition,
+      DatumWriter<E> datumWriter) {
+      this.key = key;
+      this.partition = partition;
+      this.datumWriter = datumWriter;
+      openWriter();
     }
 
-    @Override
-    public DatasetWriter<E> load(PartitionKey key) throws Exception {
-      Dataset partition = dataset.getPartition(key, true);
-      DatasetWriter<E> writer = partition.newWriter();
-
+    private void openWriter() {
+      if (partition instanceof FileSystemDataset) {
+        writer = ((FileSystemDataset) partition).newWriter(datumWriter);
+      } else {
+        writer = partition.newWriter();
+      }
       writer.open();
-      return writer;
+      openTime = System.currentTimeMillis();
+      bytesWritten = 0;
     }
 
-  }
-
-  private static class DatasetWriterRemovalStrategy<E> implements
-    RemovalListener<PartitionKey, DatasetWriter<E>> {
+    private long getBytesWritten() {
+      if (writer instanceof FileSystemDatasetWriter) {
+        return ((FileSystemDatasetWriter<E>) writer).getBytesWritten();
+      } else if (writer instanceof ParquetFileSystemDatasetWriter) {
+        return ((ParquetFileSystemDatasetWriter<?>) writer).getBytesWritten();
+      }
+      return 0;
+    }
 
     @Override
-    public void onRemoval(
-      RemovalNotification<PartitionKey, DatasetWriter<E>> notification) {
-
-      DatasetWriter<E> writer = notification.getValue();
+    public String toString() {
+      return Objects.toStringHelper(this)
+        .add("key", key)
+        .add("writer", writer)
+        .add("bytesWritten", bytesWritten).toString();
+    }
+  }
 
-      logger.debug("Removing writer:{} for partition:{}", writer,
-        notification.getKey());
+  /** A byte array stream whose contents can be wrapped without a copy */
+  private static class EncodingBuffer extends ByteArrayOutputStream {
 
-      writer.close();
+    public ByteBuffer asByteBuffer() {
+      return ByteBuffer.wrap(buf, 0, count);
     }
-
   }
 
 }
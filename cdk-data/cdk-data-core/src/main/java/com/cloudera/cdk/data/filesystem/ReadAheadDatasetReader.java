@@ -0,0 +1,318 @@
+/**
+ * Copyright 2013 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.cdk.data.filesystem;
+
+import com.cloudera.cdk.data.DatasetDescriptor;
+import com.cloudera.cdk.data.DatasetReader;
+import com.cloudera.cdk.data.DatasetReaderException;
+import com.cloudera.cdk.data.Format;
+import com.cloudera.cdk.data.Formats;
+import com.cloudera.cdk.data.UnknownFormatException;
+import com.cloudera.cdk.data.spi.AbstractDatasetReader;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import javax.annotation.Nullable;
+import org.apache.avro.Schema;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A {@link DatasetReader} over a list of data files that opens and decodes
+ * up to a given number of files ahead of the consumer on a pool of
+ * background threads, so that the open latency and header reads of the
+ * files overlap with consuming entities.
+ * <p>
+ * If the reader is ordered, entities are returned file by file in the order
+ * of the file list, as {@link MultiFileDatasetReader} does. Otherwise,
+ * entities of the files being read are interleaved in whatever order they
+ * are decoded, which avoids waiting on a slow file while others are ready.
+ * <p>
+ * Entities are handed over in batches through bounded queues, so memory use
+ * is bounded by the number of files read ahead. Failures to open or read a
+ * file are thrown by {@link #hasNext()} as {@link DatasetReaderException}.
+ * <p>
+ * {@link FileSystemDataset#newReader()} returns this reader if the
+ * <code>cdk.reader.read-ahead-files</code> descriptor property is set to the
+ * number of files to read ahead. Setting <code>cdk.reader.ordered</code> to
+ * <code>false</code> opts in to interleaved entities.
+ */
+class ReadAheadDatasetReader<E> extends AbstractDatasetReader<E> {
+
+  private static final Logger logger = LoggerFactory
+    .getLogger(ReadAheadDatasetReader.class);
+
+  static final String READ_AHEAD_FILES_PROPERTY = "cdk.reader.read-ahead-files";
+  static final String ORDERED_PROPERTY = "cdk.reader.ordered";
+
+  private static final int BATCH_SIZE = 100;
+  private static final int BATCHES_PER_FILE = 4;
+
+  private final FileSystem fileSystem;
+  private final DatasetDescriptor descriptor;
+  @Nullable private final Schema projection;
+  private final List<Path> files;
+  private final int readAheadFiles;
+  private final boolean ordered;
+
+  private ExecutorService executor;
+  // one queue per file if ordered, otherwise a single queue for all files
+  private Iterator<BlockingQueue<Batch<E>>> queues;
+  private BlockingQueue<Batch<E>> queue;
+  private int remainingFiles;
+  private Batch<E> batch;
+  private int batchIndex;
+
+  private ReaderWriterState state;
+
+  public ReadAheadDatasetReader(FileSystem fileSystem, List<Path> files,
+      DatasetDescriptor descriptor, int readAheadFiles, boolean ordered) {
+    this(fileSystem, files, descriptor, null, readAheadFiles, ordered);
+  }
+
+  ReadAheadDatasetReader(FileSystem fileSystem, List<Path> files,
+      DatasetDescriptor descriptor, @Nullable Schema projection,
+      int readAheadFiles, boolean ordered) {
+    Preconditions.checkArgument(fileSystem != null, "FileSystem cannot be null");
+    Preconditions.checkArgument(descriptor != null, "Descriptor cannot be null");
+    Preconditions.checkArgument(files != null, "Files cannot be null");
+    Preconditions.checkArgument(readAheadFiles > 0,
+      "Number of files to read ahead must be positive: %s", readAheadFiles);
+
+    this.fileSystem = fileSystem;
+    this.descriptor = descriptor;
+    this.projection = projection;
+    this.readAheadFiles = readAheadFiles;
+    this.ordered = ordered;
+
+    // verify there are no null files
+    try {
+      this.files = ImmutableList.copyOf(files);
+    } catch (NullPointerException ex) {
+      throw new IllegalArgumentException("File list cannot contain null Paths");
+    }
+
+    this.state = ReaderWriterState.NEW;
+  }
+
+  @Override
+  public void open() {
+    Preconditions.checkState(state.equals(ReaderWriterState.NEW),
+      "A reader may not be opened more than once - current state:%s", state);
+
+    final Format format = descriptor.getFormat();
+    if (!(Formats.AVRO.equals(format) || Formats.PARQUET.equals(format))) {
+      throw new UnknownFormatException("Cannot open format:" + format.getName());
+    }
+
+    logger.debug("Opening reader on {} files, reading ahead:{} ordered:{}",
+      new Object[] { files.size(), readAheadFiles, ordered });
+
+    // the files are read in list order, so in ordered mode the file being
+    // consumed is always running or done and can't be starved by later files
+    executor = Executors.newFixedThreadPool(
+      Math.max(1, Math.min(readAheadFiles, files.size())),
+      new ThreadFactoryBuilder().setDaemon(true)
+        .setNameFormat("read-ahead-reader-%d").build());
+
+    List<BlockingQueue<Batch<E>>> fileQueues = Lists.newArrayList();
+    BlockingQueue<Batch<E>> sharedQueue = null;
+    if (!ordered) {
+      sharedQueue = new LinkedBlockingQueue<Batch<E>>(
+        readAheadFiles * BATCHES_PER_FILE);
+      fileQueues.add(sharedQueue);
+    }
+    for (Path file : files) {
+      BlockingQueue<Batch<E>> fileQueue = sharedQueue;
+      if (ordered) {
+        fileQueue = new LinkedBlockingQueue<Batch<E>>(BATCHES_PER_FILE);
+        fileQueues.add(fileQueue);
+      }
+      executor.execute(new FileTask<E>(fileSystem, file, descriptor,
+        projection, fileQueue));
+    }
+
+    queues = fileQueues.iterator();
+    queue = queues.hasNext() ? queues.next() : null;
+    remainingFiles = files.size();
+
+    state = ReaderWriterState.OPEN;
+  }
+
+  @Override
+  public boolean hasNext() {
+    Preconditions.checkState(state.equals(ReaderWriterState.OPEN),
+      "Attempt to read from a file in state:%s", state);
+
+    while (true) {
+      if (batch != null && batchIndex < batch.entities.size()) {
+        return true;
+      } else if (remainingFiles == 0) {
+        return false;
+      }
+
+      try {
+        batch = queue.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new DatasetReaderException(
+          "Interrupted while waiting for entities", e);
+      }
+      batchIndex = 0;
+
+      if (batch.failure != null) {
+        remainingFiles = 0;
+        throw new DatasetReaderException(
+          "Unable to read path:" + batch.path, batch.failure);
+      }
+      if (batch.isLast) {
+        remainingFiles--;
+        if (ordered && remainingFiles > 0) {
+          queue = queues.next();
+        }
+      }
+    }
+  }
+
+  @Override
+  public E next() {
+    Preconditions.checkState(state.equals(ReaderWriterState.OPEN),
+      "Attempt to read from a file in state:%s", state);
+    if (hasNext()) {
+      return batch.entities.get(batchIndex++);
+    } else {
+      throw new NoSuchElementException();
+    }
+  }
+
+  @Override
+  public void close() {
+    if (!state.equals(ReaderWriterState.OPEN)) {
+      return;
+    }
+
+    logger.debug("Closing reader on {} files", files.size());
+
+    // interrupts tasks blocked on full queues; each task closes its reader
+    executor.shutdownNow();
+    batch = null;
+    state = ReaderWriterState.CLOSED;
+  }
+
+  @Override
+  public boolean isOpen() {
+    return state.equals(ReaderWriterState.OPEN);
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("fileSystem", fileSystem)
+      .add("descriptor", descriptor)
+      .add("projection", projection)
+      .add("files", files.size())
+      .add("readAheadFiles", readAheadFiles)
+      .add("ordered", ordered)
+      .add("remainingFiles", remainingFiles)
+      .add("state", state)
+      .toString();
+  }
+
+  /** Entities decoded from a file, or the failure that ended reading it */
+  private static class Batch<E> {
+
+    private final Path path;
+    private final List<E> entities;
+    private final boolean isLast;
+    private final Throwable failure;
+
+    public Batch(Path path, List<E> entities, boolean isLast, Throwable failure) {
+      this.path = path;
+      this.entities = entities;
+      this.isLast = isLast;
+      this.failure = failure;
+    }
+  }
+
+  /** Reads a single file into its queue */
+  private static class FileTask<E> implements Runnable {
+
+    private final FileSystem fileSystem;
+    private final Path path;
+    private final DatasetDescriptor descriptor;
+    @Nullable private final Schema projection;
+    private final BlockingQueue<Batch<E>> queue;
+
+    public FileTask(FileSystem fileSystem, Path path,
+        DatasetDescriptor descriptor, @Nullable Schema projection,
+        BlockingQueue<Batch<E>> queue) {
+      this.fileSystem = fileSystem;
+      this.path = path;
+      this.descriptor = descriptor;
+      this.projection = projection;
+      this.queue = queue;
+    }
+
+    @Override
+    public void run() {
+      DatasetReader<E> reader = null;
+      try {
+        try {
+          reader = MultiFileDatasetReader.newFileReader(fileSystem, path,
+            descriptor, projection);
+          reader.open();
+
+          List<E> entities = Lists.newArrayListWithCapacity(BATCH_SIZE);
+          while (reader.hasNext()) {
+            entities.add(reader.next());
+            if (entities.size() == BATCH_SIZE) {
+              queue.put(new Batch<E>(path, entities, false, null));
+              entities = Lists.newArrayListWithCapacity(BATCH_SIZE);
+            }
+          }
+          queue.put(new Batch<E>(path, entities, true, null));
+        } catch (InterruptedException e) {
+          throw e;
+        } catch (Throwable t) {
+          queue.put(new Batch<E>(path, ImmutableList.<E>of(), true, t));
+        }
+      } catch (InterruptedException e) {
+        logger.debug("Stopped reading path:{}", path);
+      } finally {
+        if (reader != null) {
+          try {
+            reader.close();
+          } catch (RuntimeException e) {
+            logger.warn("Unable to close reader path:" + path, e);
+          }
+        }
+      }
+    }
+  }
+
+}
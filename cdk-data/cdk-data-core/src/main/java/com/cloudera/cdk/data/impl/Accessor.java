@@ -15,9 +15,12 @@
  */
 package com.cloudera.cdk.data.impl;
 
+import com.cloudera.cdk.data.DatasetDescriptor;
 import com.cloudera.cdk.data.Format;
 import com.cloudera.cdk.data.PartitionStrategy;
 import com.cloudera.cdk.data.PartitionKey;
+import java.net.MalformedURLException;
+import java.net.URI;
 
 /**
  * <p>
@@ -65,4 +68,7 @@ public abstract class Accessor {
 
   public abstract PartitionStrategy fromExpression(String partitionExpression);
 
+  public abstract DatasetDescriptor withSchemaUri(DatasetDescriptor descriptor, URI schemaUri)
+      throws MalformedURLException;
+
 }
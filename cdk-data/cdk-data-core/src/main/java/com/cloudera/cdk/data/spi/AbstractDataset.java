@@ -20,11 +20,13 @@ import com.cloudera.cdk.data.Dataset;
 import com.cloudera.cdk.data.DatasetAccessor;
 import com.cloudera.cdk.data.DatasetReader;
 import com.cloudera.cdk.data.DatasetWriter;
+import com.cloudera.cdk.data.FieldPredicate;
 import com.cloudera.cdk.data.Marker;
 import com.cloudera.cdk.data.OrderedReader;
 import com.cloudera.cdk.data.PartitionKey;
 import com.cloudera.cdk.data.View;
 import com.google.common.base.Preconditions;
+import org.apache.avro.Schema;
 
 public abstract class AbstractDataset implements Dataset {
 
@@ -103,6 +105,16 @@ public abstract class AbstractDataset implements Dataset {
     throw new UnsupportedOperationException("Not supported yet.");
   }
 
+  @Override
+  public View project(Schema projection) {
+    throw new UnsupportedOperationException("Not supported yet.");
+  }
+
+  @Override
+  public View filter(FieldPredicate predicate) {
+    throw new UnsupportedOperationException("Not supported yet.");
+  }
+
   @Override
   public Iterable<View> getCoveringPartitions() {
     throw new UnsupportedOperationException("Not supported yet.");
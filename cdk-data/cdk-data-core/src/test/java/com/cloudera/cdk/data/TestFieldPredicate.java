@@ -0,0 +1,87 @@
+/**
+ * Copyright 2013 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.cdk.data;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.util.Utf8;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestFieldPredicate {
+
+  private static final Schema SCHEMA = new Schema.Parser().parse(
+    "{\"type\": \"record\", \"name\": \"Event\", \"fields\": [" +
+    "{\"type\": \"string\", \"name\": \"name\"}," +
+    "{\"type\": \"long\", \"name\": \"timestamp\"}," +
+    "{\"type\": [\"null\", \"int\"], \"name\": \"count\"}]}");
+
+  public static class Event {
+    private String name;
+    private long timestamp;
+
+    public Event(String name, long timestamp) {
+      this.name = name;
+      this.timestamp = timestamp;
+    }
+  }
+
+  private static GenericData.Record record(Object name, long timestamp,
+    Integer count) {
+    GenericData.Record record = new GenericData.Record(SCHEMA);
+    record.put("name", name);
+    record.put("timestamp", timestamp);
+    record.put("count", count);
+    return record;
+  }
+
+  @Test
+  public void testEqualTo() {
+    FieldPredicate predicate = FieldPredicate.equalTo("name", "a");
+    Assert.assertTrue(predicate.apply(record("a", 1L, null)));
+    Assert.assertTrue(predicate.apply(record(new Utf8("a"), 1L, null)));
+    Assert.assertFalse(predicate.apply(record("b", 1L, null)));
+    Assert.assertTrue(predicate.apply(new Event("a", 1L)));
+    Assert.assertFalse(predicate.apply(new Event("b", 1L)));
+  }
+
+  @Test
+  public void testRanges() {
+    // integer bounds match long fields
+    FieldPredicate between = FieldPredicate.between("timestamp", 10, 20);
+    Assert.assertFalse(between.apply(record("a", 9L, null)));
+    Assert.assertTrue(between.apply(record("a", 10L, null)));
+    Assert.assertTrue(between.apply(record("a", 20L, null)));
+    Assert.assertFalse(between.apply(record("a", 21L, null)));
+    Assert.assertTrue(between.apply(new Event("a", 15L)));
+
+    Assert.assertTrue(FieldPredicate.atLeast("timestamp", 9.5)
+      .apply(record("a", 10L, null)));
+    Assert.assertFalse(FieldPredicate.atMost("timestamp", 9.5)
+      .apply(record("a", 10L, null)));
+  }
+
+  @Test
+  public void testNullNeverMatches() {
+    Assert.assertFalse(FieldPredicate.atMost("count", 5)
+      .apply(record("a", 1L, null)));
+    Assert.assertTrue(FieldPredicate.atMost("count", 5)
+      .apply(record("a", 1L, 3)));
+    Assert.assertFalse(FieldPredicate.equalTo("missing", "a")
+      .apply(record("a", 1L, null)));
+  }
+
+}
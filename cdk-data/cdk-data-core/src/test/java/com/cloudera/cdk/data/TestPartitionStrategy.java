@@ -21,6 +21,8 @@ import com.cloudera.cdk.data.FieldPartitioner;
 import com.cloudera.cdk.data.PartitionStrategy;
 import java.util.List;
 
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
 import org.junit.Assert;
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -73,4 +75,55 @@ public class TestPartitionStrategy {
     assertEquals(12 * 7, p.getCardinality()); // useful for writers
   }
 
+  @Test
+  public void testKeyForEntity() throws Exception {
+    final PartitionStrategy p = new PartitionStrategy.Builder()
+        .identity("month", Integer.class, 12)
+        .identity("userId", Integer.class, 7)
+        .get();
+
+    Entity entity = new Entity();
+    PartitionKey key = null;
+    for (int i = 0; i < 3; i++) {
+      entity.setMonth(i + 1);
+      entity.setUserId(i * 10);
+      key = p.keyFor(entity, key);
+      assertEquals(i + 1, key.get(0));
+      assertEquals(i * 10, key.get(1));
+    }
+  }
+
+  @Test
+  public void testKeyForGenericRecordsWithDifferentSchemas() throws Exception {
+    final PartitionStrategy p = new PartitionStrategy.Builder()
+        .identity("month", Integer.class, 12)
+        .identity("userId", Integer.class, 7)
+        .get();
+
+    Schema schema1 = new Schema.Parser().parse("{\"type\":\"record\"," +
+        "\"name\":\"Event\",\"fields\":[{\"name\":\"month\",\"type\":\"int\"}," +
+        "{\"name\":\"userId\",\"type\":\"int\"}]}");
+    Schema schema2 = new Schema.Parser().parse("{\"type\":\"record\"," +
+        "\"name\":\"Event\",\"fields\":[{\"name\":\"userId\",\"type\":\"int\"}," +
+        "{\"name\":\"month\",\"type\":\"int\"}]}");
+
+    for (Schema schema : new Schema[] { schema1, schema2, schema1 }) {
+      GenericData.Record record = new GenericData.Record(schema);
+      record.put("month", 3);
+      record.put("userId", 42);
+      PartitionKey key = p.keyFor(record);
+      assertEquals(3, key.get(0));
+      assertEquals(42, key.get(1));
+    }
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void testKeyForEntityWithoutGetter() throws Exception {
+    final PartitionStrategy p = new PartitionStrategy.Builder()
+        .identity("year", Integer.class, 12)
+        .get();
+
+    p.keyFor(new Entity());
+  }
+
 }
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2013 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.cdk.data.filesystem;
+
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.generic.GenericData.Record;
+import org.apache.avro.generic.GenericRecordBuilder;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import static com.cloudera.cdk.data.filesystem.DatasetTestUtilities.USER_SCHEMA;
+
+/**
+ * Compares the write throughput and file size of {@link FileSystemDatasetWriter}
+ * for each Avro codec and two sync intervals. This is not a unit test; run
+ * its {@code main} method by hand and compare the printed results.
+ */
+public class CodecBenchmark {
+
+  public static void main(String[] args) throws IOException {
+    int numRecords = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+    File testDirectory = Files.createTempDir();
+    FileSystem fileSystem = FileSystem.get(new Configuration());
+    List<CodecFactory> codecs = Arrays.asList(null,
+        CodecFactory.snappyCodec(), CodecFactory.deflateCodec(1),
+        CodecFactory.deflateCodec(6), CodecFactory.bzip2Codec());
+    try {
+      for (CodecFactory codec : codecs) {
+        for (int syncInterval : new int[] { 64000, 1024 * 1024 }) {
+          Path path = new Path(testDirectory.getAbsolutePath(),
+              "benchmark-" + codec + "-" + syncInterval + ".avro");
+          FileSystemDatasetWriter<Record> writer =
+              new FileSystemDatasetWriter.Builder<Record>()
+                  .fileSystem(fileSystem)
+                  .path(path)
+                  .schema(USER_SCHEMA)
+                  .codec(codec)
+                  .syncInterval(syncInterval)
+                  .get();
+          long start = System.currentTimeMillis();
+          writer.open();
+          try {
+            for (int i = 0; i < numRecords; i++) {
+              writer.write(new GenericRecordBuilder(USER_SCHEMA)
+                  .set("username", "user-" + (i % 5000))
+                  .set("email", "user-" + (i % 5000) + "@example.com")
+                  .build());
+            }
+          } finally {
+            writer.close();
+          }
+          float secs = (System.currentTimeMillis() - start) / 1000.0f;
+          long bytes = fileSystem.getFileStatus(path).getLen();
+          System.out.println("Results: codec=" + codec + ", syncInterval=" +
+              syncInterval + ", took[secs]=" + secs + ", records/secs=" +
+              (numRecords / secs) + ", bytes=" + bytes + ", bytes/record=" +
+              ((float) bytes / numRecords));
+        }
+      }
+    } finally {
+      fileSystem.delete(new Path(testDirectory.getAbsolutePath()), true);
+    }
+  }
+
+}
@@ -31,6 +31,9 @@ import java.util.Set;
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericRecordBuilder;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.junit.Assert;
 
 public class DatasetTestUtilities {
@@ -142,6 +145,25 @@ public class DatasetTestUtilities {
     return records;
   }
 
+  /**
+   * Counts the data files under {@code directory}, skipping hidden files such
+   * as temporary files and the dataset's .metadata directory.
+   */
+  public static int countDataFiles(FileSystem fileSystem, Path directory)
+      throws IOException {
+    int count = 0;
+    for (FileStatus status : fileSystem.listStatus(directory)) {
+      if (status.getPath().getName().startsWith(".")) {
+        continue;
+      } else if (status.isDirectory()) {
+        count += countDataFiles(fileSystem, status.getPath());
+      } else {
+        count++;
+      }
+    }
+    return count;
+  }
+
   public static int datasetSize(Dataset ds) {
     return materialize(ds).size();
   }
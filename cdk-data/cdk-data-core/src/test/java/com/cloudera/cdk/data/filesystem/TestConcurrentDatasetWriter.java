@@ -0,0 +1,219 @@
+/**
+ * Copyright 2013 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.cdk.data.filesystem;
+
+import com.cloudera.cdk.data.Dataset;
+import com.cloudera.cdk.data.DatasetDescriptor;
+import com.cloudera.cdk.data.DatasetWriter;
+import com.cloudera.cdk.data.Format;
+import com.cloudera.cdk.data.Formats;
+import com.cloudera.cdk.data.MetadataProvider;
+import com.cloudera.cdk.data.PartitionStrategy;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.avro.generic.GenericData.Record;
+import org.apache.avro.generic.GenericRecordBuilder;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.cloudera.cdk.data.filesystem.DatasetTestUtilities.USER_SCHEMA;
+import static com.cloudera.cdk.data.filesystem.DatasetTestUtilities.checkTestUsers;
+import static com.cloudera.cdk.data.filesystem.DatasetTestUtilities.countDataFiles;
+import static com.cloudera.cdk.data.filesystem.DatasetTestUtilities.datasetSize;
+
+public class TestConcurrentDatasetWriter {
+
+  private static final int PRODUCERS = 8;
+  private static final int USERS_PER_PRODUCER = 1000;
+
+  private FileSystem fileSystem;
+  private Path testDirectory;
+  private FileSystemDatasetRepository repo;
+
+  @Before
+  public void setUp() throws IOException {
+    Configuration conf = new Configuration();
+    this.fileSystem = FileSystem.get(conf);
+    this.testDirectory = new Path(Files.createTempDir().getAbsolutePath());
+    MetadataProvider provider = new FileSystemMetadataProvider.Builder()
+        .configuration(conf).rootDirectory(testDirectory).get();
+    this.repo = new FileSystemDatasetRepository.Builder().configuration(conf)
+        .metadataProvider(provider).get();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    fileSystem.delete(testDirectory, true);
+  }
+
+  @Test
+  public void testPartitionedProducers() throws Exception {
+    Dataset users = repo.create("users", new DatasetDescriptor.Builder()
+        .schema(USER_SCHEMA)
+        .partitionStrategy(new PartitionStrategy.Builder()
+            .hash("username", 2).get())
+        .property(ConcurrentDatasetWriter.WRITER_THREADS_PROPERTY, "2")
+        .get());
+
+    writeConcurrently(users, true);
+
+    // each partition is owned by a single writer thread
+    Assert.assertEquals(2,
+        countDataFiles(fileSystem, ((FileSystemDataset) users).getDirectory()));
+    checkTestUsers(users, PRODUCERS * USERS_PER_PRODUCER);
+  }
+
+  @Test
+  public void testUnpartitionedProducers() throws Exception {
+    for (Format format : new Format[] { Formats.AVRO, Formats.PARQUET }) {
+      Dataset users = repo.create("users-" + format.getName(),
+          new DatasetDescriptor.Builder()
+              .schema(USER_SCHEMA)
+              .format(format)
+              .property(ConcurrentDatasetWriter.WRITER_THREADS_PROPERTY, "3")
+              .get());
+
+      // Parquet entities are handed over as they are, so can't be reused
+      writeConcurrently(users, Formats.AVRO.equals(format));
+
+      Assert.assertEquals(3,
+          countDataFiles(fileSystem, ((FileSystemDataset) users).getDirectory()));
+      checkTestUsers(users, PRODUCERS * USERS_PER_PRODUCER);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidWriterThreads() {
+    Dataset invalid = repo.create("invalid", new DatasetDescriptor.Builder()
+        .schema(USER_SCHEMA)
+        .property(ConcurrentDatasetWriter.WRITER_THREADS_PROPERTY, "0")
+        .get());
+    invalid.newWriter();
+  }
+
+  @Test
+  public void testWriteWhileClosing() throws Exception {
+    Dataset users = repo.create("users", new DatasetDescriptor.Builder()
+        .schema(USER_SCHEMA)
+        .property(ConcurrentDatasetWriter.WRITER_THREADS_PROPERTY, "2")
+        .get());
+
+    final DatasetWriter<Record> writer = users.newWriter();
+    writer.open();
+
+    // producers write until the writer is closed under them
+    final AtomicInteger written = new AtomicInteger();
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    List<Thread> producers = Lists.newArrayList();
+    for (int p = 0; p < PRODUCERS; p++) {
+      final String prefix = "test-" + p + "-";
+      producers.add(new Thread() {
+        @Override
+        public void run() {
+          Record record = new Record(USER_SCHEMA);
+          try {
+            for (int i = 0; true; i++) {
+              record.put("username", prefix + i);
+              record.put("email", "email-" + i);
+              writer.write(record);
+              written.incrementAndGet();
+            }
+          } catch (IllegalStateException e) {
+            // expected once the writer is closing
+          } catch (Throwable t) {
+            failure.set(t);
+          }
+        }
+      });
+    }
+    for (Thread producer : producers) {
+      producer.start();
+    }
+    while (written.get() < USERS_PER_PRODUCER) {
+      Thread.sleep(1);
+    }
+    writer.close();
+    for (Thread producer : producers) {
+      producer.join(10000);
+      Assert.assertFalse("Producer should not block after close",
+          producer.isAlive());
+    }
+
+    if (failure.get() != null) {
+      throw new AssertionError(failure.get());
+    }
+    // every accepted entity was written before the files were closed
+    Assert.assertEquals(written.get(), datasetSize(users));
+  }
+
+  private void writeConcurrently(Dataset dataset, final boolean reuseRecords)
+      throws Exception {
+    final DatasetWriter<Record> writer = dataset.newWriter();
+    Assert.assertTrue(writer instanceof ConcurrentDatasetWriter);
+    writer.open();
+
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    List<Thread> producers = Lists.newArrayList();
+    for (int p = 0; p < PRODUCERS; p++) {
+      final int start = p * USERS_PER_PRODUCER;
+      producers.add(new Thread() {
+        @Override
+        public void run() {
+          try {
+            Record record = new Record(USER_SCHEMA);
+            for (int i = start; i < start + USERS_PER_PRODUCER; i++) {
+              if (reuseRecords) {
+                record.put("username", "test-" + i);
+                record.put("email", "email-" + i);
+                writer.write(record);
+              } else {
+                writer.write(new GenericRecordBuilder(USER_SCHEMA)
+                    .set("username", "test-" + i)
+                    .set("email", "email-" + i).build());
+              }
+              if (i % 250 == 0) {
+                writer.flush();
+              }
+            }
+          } catch (Throwable t) {
+            failure.set(t);
+          }
+        }
+      });
+    }
+    for (Thread producer : producers) {
+      producer.start();
+    }
+    for (Thread producer : producers) {
+      producer.join();
+    }
+    writer.close();
+
+    if (failure.get() != null) {
+      throw new AssertionError(failure.get());
+    }
+  }
+
+}
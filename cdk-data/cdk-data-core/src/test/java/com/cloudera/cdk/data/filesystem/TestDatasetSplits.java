@@ -0,0 +1,145 @@
+/**
+ * Copyright 2013 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.cdk.data.filesystem;
+
+import com.cloudera.cdk.data.Dataset;
+import com.cloudera.cdk.data.DatasetDescriptor;
+import com.cloudera.cdk.data.DatasetReader;
+import com.cloudera.cdk.data.FieldPredicate;
+import com.cloudera.cdk.data.Formats;
+import com.cloudera.cdk.data.MetadataProvider;
+import com.cloudera.cdk.data.PartitionStrategy;
+import com.cloudera.cdk.data.ReaderSplit;
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import org.apache.avro.generic.GenericData.Record;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.cloudera.cdk.data.filesystem.DatasetTestUtilities.USER_SCHEMA;
+import static com.cloudera.cdk.data.filesystem.DatasetTestUtilities.writeTestUsers;
+
+public class TestDatasetSplits {
+
+  private static final Function<DatasetReader<Record>, List<String>> USERNAMES =
+      new Function<DatasetReader<Record>, List<String>>() {
+        @Override
+        public List<String> apply(DatasetReader<Record> reader) {
+          List<String> usernames = Lists.newArrayList();
+          for (Record record : reader) {
+            usernames.add(record.get("username").toString());
+          }
+          return usernames;
+        }
+      };
+
+  private FileSystem fileSystem;
+  private Path testDirectory;
+  private FileSystemDatasetRepository repo;
+
+  @Before
+  public void setUp() throws IOException {
+    Configuration conf = new Configuration();
+    this.fileSystem = FileSystem.get(conf);
+    this.testDirectory = new Path(Files.createTempDir().getAbsolutePath());
+    MetadataProvider provider = new FileSystemMetadataProvider.Builder()
+        .configuration(conf).rootDirectory(testDirectory).get();
+    this.repo = new FileSystemDatasetRepository.Builder().configuration(conf)
+        .metadataProvider(provider).get();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    fileSystem.delete(testDirectory, true);
+  }
+
+  @Test
+  public void testAvroSplitsReadEachEntityOnce() {
+    Dataset users = repo.create("users", new DatasetDescriptor.Builder()
+        .schema(USER_SCHEMA)
+        // small blocks, so that files have many sync markers
+        .property(FileSystemDatasetWriter.SYNC_INTERVAL_PROPERTY, "256")
+        .get());
+    writeTestUsers(users, 5000);
+
+    List<ReaderSplit> splits = DatasetSplits.getSplits(users, 4096);
+    Assert.assertTrue("Should split the file", splits.size() > 1);
+
+    checkUsernames(DatasetSplits.readInParallel(splits, 4, USERNAMES), 5000);
+  }
+
+  @Test
+  public void testParquetFilesAreNotSplit() {
+    Dataset users = repo.create("users", new DatasetDescriptor.Builder()
+        .schema(USER_SCHEMA)
+        .format(Formats.PARQUET)
+        .get());
+    writeTestUsers(users, 100);
+    writeTestUsers(users, 100, 100);
+
+    List<ReaderSplit> splits = DatasetSplits.getSplits(users, 16);
+    Assert.assertEquals(2, splits.size());
+
+    checkUsernames(DatasetSplits.readInParallel(splits, 2, USERNAMES), 200);
+  }
+
+  @Test
+  public void testViewSplits() {
+    Dataset users = repo.create("users", new DatasetDescriptor.Builder()
+        .schema(USER_SCHEMA)
+        .partitionStrategy(new PartitionStrategy.Builder()
+            .hash("username", "username_part", 2).get())
+        .property(FileSystemDatasetWriter.SYNC_INTERVAL_PROPERTY, "256")
+        .get());
+    writeTestUsers(users, 1000);
+
+    List<ReaderSplit> splits = DatasetSplits.getSplits(
+        users.filter(FieldPredicate.atMost("username", "test-4")), 1024);
+
+    // test-0 to test-3, test-10 to test-39, test-100 to test-399 and test-4
+    checkUsernames(DatasetSplits.readInParallel(splits, 3, USERNAMES), 335);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSplitSizeMustBePositive() {
+    Dataset users = repo.create("users", new DatasetDescriptor.Builder()
+        .schema(USER_SCHEMA)
+        .get());
+    DatasetSplits.getSplits(users, 0);
+  }
+
+  private static void checkUsernames(List<List<String>> results, int expected) {
+    Set<String> usernames = Sets.newHashSet();
+    int total = 0;
+    for (List<String> result : results) {
+      total += result.size();
+      usernames.addAll(result);
+    }
+    Assert.assertEquals("Should read each entity once", expected, total);
+    Assert.assertEquals(expected, usernames.size());
+  }
+
+}
@@ -20,12 +20,15 @@ import com.cloudera.cdk.data.DatasetDescriptor;
 import com.cloudera.cdk.data.DatasetException;
 import com.cloudera.cdk.data.DatasetReader;
 import com.cloudera.cdk.data.FieldPartitioner;
+import com.cloudera.cdk.data.FieldPredicate;
 import com.cloudera.cdk.data.Format;
 import com.cloudera.cdk.data.Formats;
 import com.cloudera.cdk.data.Marker;
 import com.cloudera.cdk.data.MiniDFSTest;
 import com.cloudera.cdk.data.PartitionKey;
 import com.cloudera.cdk.data.PartitionStrategy;
+import com.cloudera.cdk.data.View;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
 import com.google.common.io.Files;
 import java.io.IOException;
@@ -33,6 +36,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericData.Record;
 import org.apache.hadoop.fs.FileSystem;
@@ -69,6 +73,10 @@ public class TestFileSystemDataset extends MiniDFSTest {
     return Arrays.asList(data);
   }
 
+  private static final Schema USERNAME_SCHEMA = new Schema.Parser().parse(
+    "{\"type\": \"record\", \"name\": \"user\", \"fields\": [" +
+    "{\"type\": \"string\", \"name\": \"username\"}]}");
+
   private Format format;
   private FileSystem fileSystem;
   private Path testDirectory;
@@ -301,6 +309,214 @@ public class TestFileSystemDataset extends MiniDFSTest {
     Assert.assertNotNull(caught);
   }
 
+  @Test
+  public void testMarkerRangeViews() throws IOException {
+    PartitionStrategy partitionStrategy = new PartitionStrategy.Builder()
+      .hash("username", "username_part", 2).hash("email", "email_part", 3)
+      .get();
+
+    FileSystemDataset ds = new FileSystemDataset.Builder()
+        .name("partitioned-users")
+        .configuration(getConfiguration())
+        .descriptor(new DatasetDescriptor.Builder()
+            .schema(USER_SCHEMA)
+            .format(format)
+            .location(testDirectory)
+            .partitionStrategy(partitionStrategy)
+            .get())
+        .get();
+
+    writeTestUsers(ds, 10);
+
+    Assert.assertEquals(6, Iterables.size(ds.getCoveringPartitions()));
+
+    View user1 = ds.in(partMarker(1));
+    Assert.assertEquals(3, Iterables.size(user1.getCoveringPartitions()));
+    Assert.assertTrue(user1.contains(
+      Accessor.getDefault().newPartitionKey(1, 2)));
+    Assert.assertFalse(user1.contains(
+      Accessor.getDefault().newPartitionKey(0, 2)));
+    Assert.assertEquals(10,
+      countRecords(ds.in(partMarker(0))) + countRecords(user1));
+
+    Assert.assertEquals(2,
+      Iterables.size(ds.from(partMarker(1, 1)).getCoveringPartitions()));
+    Assert.assertEquals(3,
+      Iterables.size(ds.fromAfter(partMarker(0)).getCoveringPartitions()));
+    Assert.assertEquals(2,
+      Iterables.size(ds.to(partMarker(0, 1)).getCoveringPartitions()));
+    Assert.assertEquals(3,
+      Iterables.size(ds.toBefore(partMarker(1, 0)).getCoveringPartitions()));
+
+    View range = ds.from(partMarker(0, 2)).to(partMarker(1, 0));
+    Set<PartitionKey> keys = Sets.newHashSet();
+    for (View partition : range.getCoveringPartitions()) {
+      keys.add(((FileSystemDataset) partition).getPartitionKey());
+    }
+    Assert.assertEquals(Sets.newHashSet(
+      Accessor.getDefault().newPartitionKey(0, 2),
+      Accessor.getDefault().newPartitionKey(1, 0)), keys);
+    Assert.assertEquals(
+      readTestUsersInPartition(ds, Accessor.getDefault().newPartitionKey(0, 2), null) +
+      readTestUsersInPartition(ds, Accessor.getDefault().newPartitionKey(1, 0), null),
+      countRecords(range));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRangeMustBeInView() throws IOException {
+    PartitionStrategy partitionStrategy = new PartitionStrategy.Builder()
+      .hash("username", "username_part", 2).hash("email", "email_part", 3)
+      .get();
+
+    FileSystemDataset ds = new FileSystemDataset.Builder()
+        .name("partitioned-users")
+        .configuration(getConfiguration())
+        .descriptor(new DatasetDescriptor.Builder()
+            .schema(USER_SCHEMA)
+            .format(format)
+            .location(testDirectory)
+            .partitionStrategy(partitionStrategy)
+            .get())
+        .get();
+
+    ds.in(partMarker(1)).to(partMarker(0, 1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRangeMarkerNeedsLeadingField() throws IOException {
+    PartitionStrategy partitionStrategy = new PartitionStrategy.Builder()
+      .hash("username", "username_part", 2).hash("email", "email_part", 3)
+      .get();
+
+    FileSystemDataset ds = new FileSystemDataset.Builder()
+        .name("partitioned-users")
+        .configuration(getConfiguration())
+        .descriptor(new DatasetDescriptor.Builder()
+            .schema(USER_SCHEMA)
+            .format(format)
+            .location(testDirectory)
+            .partitionStrategy(partitionStrategy)
+            .get())
+        .get();
+
+    // only the second field, which would otherwise bound nothing
+    ds.toBefore(new Marker.Builder().add("email_part", 1).get());
+  }
+
+  @Test
+  public void testProjectedAndFilteredView() throws IOException {
+    PartitionStrategy partitionStrategy = new PartitionStrategy.Builder()
+      .hash("username", "username_part", 2).hash("email", "email_part", 3)
+      .get();
+
+    FileSystemDataset ds = new FileSystemDataset.Builder()
+        .name("partitioned-users")
+        .configuration(getConfiguration())
+        .descriptor(new DatasetDescriptor.Builder()
+            .schema(USER_SCHEMA)
+            .format(format)
+            .location(testDirectory)
+            .partitionStrategy(partitionStrategy)
+            .get())
+        .get();
+
+    writeTestUsers(ds, 10);
+
+    int expected = 0;
+    DatasetReader<Record> reader = ds.in(partMarker(1)).newReader();
+    try {
+      reader.open();
+      for (Record record : reader) {
+        if (record.get("username").toString().compareTo("test-5") >= 0) {
+          expected++;
+        }
+      }
+    } finally {
+      reader.close();
+    }
+
+    View view = ds.in(partMarker(1))
+      .project(USERNAME_SCHEMA)
+      .filter(FieldPredicate.atLeast("username", "test-5"));
+
+    int count = 0;
+    reader = view.newReader();
+    try {
+      reader.open();
+      for (Record record : reader) {
+        Assert.assertEquals(1, record.getSchema().getFields().size());
+        Assert.assertTrue(
+          record.get("username").toString().compareTo("test-5") >= 0);
+        count++;
+      }
+    } finally {
+      reader.close();
+    }
+    Assert.assertEquals(expected, count);
+  }
+
+  @Test
+  public void testFilterUnpartitioned() throws IOException {
+    FileSystemDataset ds = new FileSystemDataset.Builder()
+        .name("test")
+        .configuration(getConfiguration())
+        .descriptor(new DatasetDescriptor.Builder()
+            .schema(USER_SCHEMA)
+            .format(format)
+            .location(testDirectory)
+            .get())
+        .get();
+
+    writeTestUsers(ds, 10);
+
+    Assert.assertEquals(1, countRecords(
+      ds.filter(FieldPredicate.equalTo("username", "test-3"))));
+    Assert.assertEquals(3, countRecords(ds.project(USERNAME_SCHEMA)
+      .filter(FieldPredicate.between("username", "test-2", "test-4"))));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFilteredFieldMustBeProjected() throws IOException {
+    FileSystemDataset ds = new FileSystemDataset.Builder()
+        .name("test")
+        .configuration(getConfiguration())
+        .descriptor(new DatasetDescriptor.Builder()
+            .schema(USER_SCHEMA)
+            .format(format)
+            .location(testDirectory)
+            .get())
+        .get();
+
+    ds.project(USERNAME_SCHEMA)
+      .filter(FieldPredicate.equalTo("email", "email-3@example.com"));
+  }
+
+  private static Marker partMarker(int... values) {
+    Marker.Builder builder = new Marker.Builder();
+    String[] names = { "username_part", "email_part" };
+    for (int i = 0; i < values.length; i++) {
+      builder.add(names[i], values[i]);
+    }
+    return builder.get();
+  }
+
+  private static int countRecords(View view) {
+    int count = 0;
+    DatasetReader<Record> reader = null;
+    try {
+      reader = view.newReader();
+      reader.open();
+      for (Record record : reader) {
+        count++;
+      }
+    } finally {
+      if (reader != null) {
+        reader.close();
+      }
+    }
+    return count;
+  }
+
   private int readTestUsersInPartition(FileSystemDataset ds, PartitionKey key,
       String subpartitionName) {
     int readCount = 0;
@@ -15,19 +15,27 @@
  */
 package com.cloudera.cdk.data.filesystem;
 
+import com.cloudera.cdk.data.DatasetDescriptor;
 import com.cloudera.cdk.data.filesystem.FileSystemDatasetWriter;
 import com.google.common.io.Files;
 import java.io.File;
 import java.io.IOException;
 import org.apache.avro.Schema;
 import org.apache.avro.Schema.Type;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericData.Record;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecordBuilder;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.junit.After;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import static com.cloudera.cdk.data.filesystem.DatasetTestUtilities.USER_SCHEMA;
+
 public class TestFileSystemDatasetWriter {
 
   private File testDirectory;
@@ -63,4 +71,81 @@ public class TestFileSystemDatasetWriter {
     writer.close();
   }
 
+  @Test
+  public void testCodecFromDescriptor() throws IOException {
+    String[][] codecs = {
+        { null, "snappy" },
+        { "Deflate", "deflate" },
+        { "bzip2", "bzip2" },
+        // without a codec, Avro doesn't write the avro.codec metadata
+        { "null", null } };
+
+    for (String[] codec : codecs) {
+      DatasetDescriptor.Builder builder = new DatasetDescriptor.Builder()
+          .schema(USER_SCHEMA)
+          .property(FileSystemDatasetWriter.CODEC_LEVEL_PROPERTY, "9")
+          .property(FileSystemDatasetWriter.SYNC_INTERVAL_PROPERTY, "1024");
+      if (codec[0] != null) {
+        builder.property(FileSystemDatasetWriter.CODEC_PROPERTY, codec[0]);
+      }
+      DatasetDescriptor descriptor = builder.get();
+
+      File file = new File(testDirectory, codec[1] + ".avro");
+      FileSystemDatasetWriter<Record> writer =
+          new FileSystemDatasetWriter.Builder<Record>()
+              .fileSystem(fileSystem)
+              .path(new Path(file.getAbsolutePath()))
+              .schema(USER_SCHEMA)
+              .codec(FileSystemDatasetWriter.codecFor(descriptor))
+              .syncInterval(FileSystemDatasetWriter.syncIntervalFor(descriptor))
+              .get();
+      writeUsers(writer, 1000);
+
+      DataFileReader<Record> reader = new DataFileReader<Record>(file,
+          new GenericDatumReader<Record>());
+      try {
+        Assert.assertEquals(codec[1], reader.getMetaString("avro.codec"));
+        int count = 0;
+        while (reader.hasNext()) {
+          reader.next();
+          count++;
+        }
+        Assert.assertEquals(1000, count);
+      } finally {
+        reader.close();
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownCodec() {
+    FileSystemDatasetWriter.codecFor(new DatasetDescriptor.Builder()
+        .schema(USER_SCHEMA)
+        .property(FileSystemDatasetWriter.CODEC_PROPERTY, "lzo")
+        .get());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidSyncInterval() {
+    FileSystemDatasetWriter.syncIntervalFor(new DatasetDescriptor.Builder()
+        .schema(USER_SCHEMA)
+        .property(FileSystemDatasetWriter.SYNC_INTERVAL_PROPERTY, "16")
+        .get());
+  }
+
+  private static void writeUsers(FileSystemDatasetWriter<Record> writer,
+    int count) {
+    writer.open();
+    try {
+      for (int i = 0; i < count; i++) {
+        writer.write(new GenericRecordBuilder(USER_SCHEMA)
+            .set("username", "user-" + (i % 5000))
+            .set("email", "user-" + (i % 5000) + "@example.com")
+            .build());
+      }
+    } finally {
+      writer.close();
+    }
+  }
+
 }
@@ -17,10 +17,13 @@ package com.cloudera.cdk.data.filesystem;
 
 import com.cloudera.cdk.data.DatasetDescriptor;
 import com.cloudera.cdk.data.MetadataProvider;
+import com.cloudera.cdk.data.NoSuchDatasetException;
 import com.cloudera.cdk.data.TestMetadataProviders;
 import com.google.common.io.Files;
+import java.io.File;
 import java.io.IOException;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileUtil;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.junit.After;
@@ -151,4 +154,131 @@ public class TestFileSystemMetadataProvider extends TestMetadataProviders {
         fileSystem.exists(namedDirectory));
   }
 
+  @Test
+  public void testLoadIsCached() throws IOException {
+    ensureCreated();
+    backdateDescriptor();
+
+    FileSystemMetadataProvider fsProvider = (FileSystemMetadataProvider) provider;
+    DatasetDescriptor loaded = provider.load(NAME);
+    Assert.assertEquals(1, fsProvider.getCacheMissCount());
+
+    Assert.assertSame("Should return the cached descriptor",
+        loaded, provider.load(NAME));
+    Assert.assertEquals(1, fsProvider.getCacheHitCount());
+    Assert.assertEquals(1, fsProvider.getRevalidationCount());
+    Assert.assertEquals(1, fsProvider.getCacheMissCount());
+  }
+
+  @Test
+  public void testRecentlyChangedDescriptorIsReloaded() {
+    ensureCreated();
+
+    // the descriptor file may change again without a new modification time
+    FileSystemMetadataProvider fsProvider = (FileSystemMetadataProvider) provider;
+    provider.load(NAME);
+    provider.load(NAME);
+    Assert.assertEquals(2, fsProvider.getCacheMissCount());
+  }
+
+  @Test
+  public void testUpdateInvalidatesCache() {
+    ensureCreated();
+
+    DatasetDescriptor loaded = provider.load(NAME);
+    provider.update(NAME, new DatasetDescriptor.Builder(loaded)
+        .property("cdk.test.property", "updated")
+        .get());
+
+    Assert.assertEquals("updated",
+        provider.load(NAME).getProperty("cdk.test.property"));
+  }
+
+  @Test
+  public void testDeleteInvalidatesCache() {
+    ensureCreated();
+
+    provider.load(NAME);
+    provider.delete(NAME);
+
+    try {
+      provider.load(NAME);
+      Assert.fail("Should not load a deleted dataset");
+    } catch (NoSuchDatasetException ex) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testLoadSeesUpdatesFromOtherProviders() {
+    ensureCreated();
+
+    DatasetDescriptor loaded = provider.load(NAME);
+    MetadataProvider other = new FileSystemMetadataProvider.Builder()
+        .configuration(conf).rootDirectory(testDirectory).get();
+    other.update(NAME, new DatasetDescriptor.Builder(loaded)
+        .property("cdk.test.property", "updated")
+        .get());
+
+    Assert.assertEquals("updated",
+        provider.load(NAME).getProperty("cdk.test.property"));
+  }
+
+  @Test
+  public void testSnapshotIsSharedBetweenProviders() throws IOException {
+    ensureCreated();
+    backdateDescriptor();
+
+    File snapshots = Files.createTempDir();
+    try {
+      Configuration snapshotConf = new Configuration(conf);
+      snapshotConf.set(FileSystemMetadataProvider.SNAPSHOT_DIRECTORY_PROPERTY,
+          snapshots.getAbsolutePath());
+
+      FileSystemMetadataProvider first = new FileSystemMetadataProvider.Builder()
+          .configuration(snapshotConf).rootDirectory(testDirectory).get();
+      DatasetDescriptor expected = first.load(NAME);
+      Assert.assertEquals(0, first.getSnapshotHitCount());
+
+      FileSystemMetadataProvider second = new FileSystemMetadataProvider.Builder()
+          .configuration(snapshotConf).rootDirectory(testDirectory).get();
+      DatasetDescriptor loaded = second.load(NAME);
+      Assert.assertEquals(1, second.getSnapshotHitCount());
+
+      Assert.assertEquals(expected.getSchema(), loaded.getSchema());
+      Assert.assertEquals(expected.getSchemaUrl(), loaded.getSchemaUrl());
+      Assert.assertEquals(expected.getFormat(), loaded.getFormat());
+      Assert.assertEquals(expected.getLocation(), loaded.getLocation());
+      Assert.assertEquals(expected.getPartitionStrategy(),
+          loaded.getPartitionStrategy());
+    } finally {
+      FileUtil.fullyDelete(snapshots);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidCacheTtl() {
+    Configuration invalidConf = new Configuration(conf);
+    invalidConf.set(FileSystemMetadataProvider.CACHE_TTL_MILLIS_PROPERTY, "-1");
+    new FileSystemMetadataProvider.Builder()
+        .configuration(invalidConf).rootDirectory(testDirectory).get();
+  }
+
+  /**
+   * Moves the descriptor file's modification time into the past, so that it
+   * isn't considered to be recently changed.
+   */
+  private void backdateDescriptor() throws IOException {
+    Path descriptorFile = new Path(new Path(new Path(testDirectory, NAME),
+        ".metadata"), "descriptor.properties");
+    long backdated = System.currentTimeMillis() - 60000;
+    if (distributed) {
+      fileSystem.setTimes(descriptorFile, backdated, -1);
+    } else {
+      // the local filesystem doesn't implement setTimes
+      Assert.assertTrue(new File(descriptorFile.toUri().getPath())
+          .setLastModified(backdated));
+    }
+  }
+
 }
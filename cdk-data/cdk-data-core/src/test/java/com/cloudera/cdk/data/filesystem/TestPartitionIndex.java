@@ -0,0 +1,190 @@
+/**
+ * Copyright 2013 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.cdk.data.filesystem;
+
+import com.cloudera.cdk.data.DatasetDescriptor;
+import com.cloudera.cdk.data.FieldPredicate;
+import com.cloudera.cdk.data.PartitionStrategy;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.cloudera.cdk.data.filesystem.DatasetTestUtilities.USER_SCHEMA;
+import static com.cloudera.cdk.data.filesystem.DatasetTestUtilities.checkTestUsers;
+import static com.cloudera.cdk.data.filesystem.DatasetTestUtilities.writeTestUsers;
+
+public class TestPartitionIndex {
+
+  private FileSystem fileSystem;
+  private Path testDirectory;
+
+  @Before
+  public void setUp() throws IOException {
+    this.fileSystem = FileSystem.get(new Configuration());
+    this.testDirectory = fileSystem.makeQualified(
+        new Path(Files.createTempDir().getAbsolutePath()));
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    fileSystem.delete(testDirectory, true);
+  }
+
+  @Test
+  public void testListingIsCachedForTimeToLive() throws IOException {
+    fileSystem.createNewFile(new Path(testDirectory, "a.avro"));
+    PartitionIndex index = new PartitionIndex(fileSystem, 60 * 1000);
+
+    Assert.assertEquals(1, index.listStatus(testDirectory).size());
+    fileSystem.createNewFile(new Path(testDirectory, "b.avro"));
+    Assert.assertEquals(1, index.listStatus(testDirectory).size());
+
+    Assert.assertEquals(1, index.getHitCount());
+    Assert.assertEquals(1, index.getMissCount());
+    Assert.assertEquals(1, index.getListingCount());
+
+    index.invalidate(testDirectory);
+    Assert.assertEquals(2, index.listStatus(testDirectory).size());
+    Assert.assertEquals(2, index.getListingCount());
+  }
+
+  @Test
+  public void testExpiredListingIsRevalidated() throws IOException {
+    fileSystem.createNewFile(new Path(testDirectory, "a.avro"));
+    // an old modification time, so the listing isn't racy; the local
+    // filesystem doesn't implement setTimes, so this goes through java.io
+    Assert.assertTrue(new File(testDirectory.toUri().getPath())
+        .setLastModified(1000000000000L));
+    PartitionIndex index = new PartitionIndex(fileSystem, 0);
+
+    Assert.assertEquals(1, index.listStatus(testDirectory).size());
+    Assert.assertEquals(1, index.listStatus(testDirectory).size());
+    Assert.assertEquals(1, index.getRevalidationCount());
+    Assert.assertEquals(1, index.getListingCount());
+
+    fileSystem.createNewFile(new Path(testDirectory, "b.avro"));
+    Assert.assertEquals(2, index.listStatus(testDirectory).size());
+    Assert.assertEquals(2, index.getRevalidationCount());
+    Assert.assertEquals(2, index.getListingCount());
+  }
+
+  @Test
+  public void testHiddenFilesAreIgnored() throws IOException {
+    fileSystem.createNewFile(new Path(testDirectory, "a.avro"));
+    fileSystem.createNewFile(new Path(testDirectory, ".a.avro.tmp"));
+    fileSystem.createNewFile(new Path(testDirectory, "_SUCCESS"));
+    PartitionIndex index = new PartitionIndex(fileSystem, 0);
+
+    Assert.assertEquals(1, index.listStatus(testDirectory).size());
+  }
+
+  @Test
+  public void testAccumulateDataFiles() throws IOException {
+    List<Path> expected = Lists.newArrayList();
+    for (int i = 0; i < 4; i++) {
+      for (int j = 0; j < 3; j++) {
+        Path file = new Path(testDirectory, "a=" + i + "/b=" + j + "/data.avro");
+        fileSystem.createNewFile(file);
+        expected.add(file);
+      }
+    }
+    PartitionIndex index = new PartitionIndex(fileSystem, 60 * 1000);
+
+    List<Path> paths = Lists.newArrayList();
+    index.accumulateDataFiles(testDirectory, paths);
+    Assert.assertEquals(expected.size(), paths.size());
+    Assert.assertTrue(paths.containsAll(expected));
+
+    long listings = index.getListingCount();
+    paths.clear();
+    index.accumulateDataFiles(testDirectory, paths);
+    Assert.assertEquals(expected.size(), paths.size());
+    Assert.assertEquals(listings, index.getListingCount());
+  }
+
+  @Test
+  public void testCreatedDirectoriesAreKnown() throws IOException {
+    PartitionIndex index = new PartitionIndex(fileSystem, 60 * 1000);
+    Path partition = new Path(testDirectory, "a=1/b=2");
+
+    Assert.assertEquals(0, index.listStatus(testDirectory).size());
+    Assert.assertFalse(index.exists(partition));
+    index.mkdirs(partition);
+    Assert.assertTrue(index.exists(partition));
+    Assert.assertTrue(fileSystem.isDirectory(partition));
+    Assert.assertEquals(1, index.listStatus(testDirectory).size());
+
+    fileSystem.delete(new Path(testDirectory, "a=1"), true);
+    index.invalidateTree(new Path(testDirectory, "a=1"));
+    Assert.assertFalse(index.exists(partition));
+    Assert.assertEquals(0, index.listStatus(testDirectory).size());
+  }
+
+  @Test
+  public void testDeletedDirectoriesAreNoticed() throws IOException {
+    PartitionIndex index = new PartitionIndex(fileSystem, 0);
+    Path partition = new Path(testDirectory, "a=1");
+
+    index.mkdirs(partition);
+    Assert.assertTrue(index.exists(partition));
+    Assert.assertEquals(1, index.getRevalidationCount());
+
+    // deleted without going through the index
+    fileSystem.delete(partition, true);
+    Assert.assertFalse(index.exists(partition));
+    Assert.assertEquals(2, index.getRevalidationCount());
+    Assert.assertFalse(index.exists(partition));
+    Assert.assertEquals(2, index.getRevalidationCount());
+  }
+
+  @Test
+  public void testDatasetStats() throws IOException {
+    FileSystemDataset users = new FileSystemDataset.Builder()
+        .name("users")
+        .configuration(new Configuration())
+        .descriptor(new DatasetDescriptor.Builder()
+            .schema(USER_SCHEMA)
+            .location(testDirectory)
+            .partitionStrategy(new PartitionStrategy.Builder()
+                .hash("username", 2).get())
+            .property(PartitionIndex.TTL_MILLIS_PROPERTY, "60000")
+            .get())
+        .get();
+    writeTestUsers(users, 10);
+    checkTestUsers(users, 10);
+    checkTestUsers(users, 10);
+
+    PartitionIndexStats stats = PartitionIndexStats.of(users);
+    Assert.assertTrue(stats.getListingCount() > 0);
+    Assert.assertTrue(stats.getHitCount() > 0);
+    Assert.assertEquals(users.getPartitionIndex().getHitCount(),
+        stats.getHitCount());
+    Assert.assertEquals(stats.getListingCount(),
+        PartitionIndexStats.of(
+            users.filter(FieldPredicate.atMost("username", "test-4")))
+            .getListingCount());
+  }
+
+}
@@ -17,21 +17,30 @@ package com.cloudera.cdk.data.filesystem;
 
 import com.cloudera.cdk.data.Dataset;
 import com.cloudera.cdk.data.DatasetDescriptor;
+import com.cloudera.cdk.data.Formats;
 import com.cloudera.cdk.data.MetadataProvider;
 import com.cloudera.cdk.data.PartitionStrategy;
 import com.google.common.io.Closeables;
 import com.google.common.io.Files;
+import java.io.File;
 import java.io.IOException;
+import org.apache.avro.file.DataFileReader;
 import org.apache.avro.generic.GenericData.Record;
+import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericRecordBuilder;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.junit.After;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
 import static com.cloudera.cdk.data.filesystem.DatasetTestUtilities.USER_SCHEMA;
+import static com.cloudera.cdk.data.filesystem.DatasetTestUtilities.checkTestUsers;
+import static com.cloudera.cdk.data.filesystem.DatasetTestUtilities.countDataFiles;
+import static com.cloudera.cdk.data.filesystem.DatasetTestUtilities.writeTestUsers;
 
 public class TestPartitionedDatasetWriter {
 
@@ -97,4 +106,99 @@ public class TestPartitionedDatasetWriter {
     writer.write(record);
   }
 
+  @Test
+  public void testRollBySize() throws IOException {
+    // every record pushes the file past the roll size, so each one gets a file
+    Dataset rolled = repo.create("rolled", new DatasetDescriptor.Builder()
+        .schema(USER_SCHEMA)
+        .partitionStrategy(new PartitionStrategy.Builder()
+            .hash("username", 2).get())
+        .property(PartitionedDatasetWriter.ROLL_SIZE_BYTES_PROPERTY, "1")
+        .get());
+
+    writeTestUsers(rolled, 10);
+
+    Assert.assertEquals(10,
+        countDataFiles(fileSystem, ((FileSystemDataset) rolled).getDirectory()));
+    checkTestUsers(rolled, 10);
+  }
+
+  @Test
+  public void testRollParquetBySize() throws IOException {
+    // Parquet buffers row groups, so its size is estimated from the values
+    Dataset rolled = repo.create("rolled", new DatasetDescriptor.Builder()
+        .schema(USER_SCHEMA)
+        .format(Formats.PARQUET)
+        .partitionStrategy(new PartitionStrategy.Builder()
+            .hash("username", 2).get())
+        .property(PartitionedDatasetWriter.ROLL_SIZE_BYTES_PROPERTY, "1")
+        .get());
+
+    writeTestUsers(rolled, 10);
+
+    Assert.assertEquals(10,
+        countDataFiles(fileSystem, ((FileSystemDataset) rolled).getDirectory()));
+    checkTestUsers(rolled, 10);
+  }
+
+  @Test
+  public void testMaxOpenWriters() throws IOException {
+    // only one writer may be open, so switching partitions closes the other
+    Dataset bounded = repo.create("bounded", new DatasetDescriptor.Builder()
+        .schema(USER_SCHEMA)
+        .partitionStrategy(new PartitionStrategy.Builder()
+            .hash("username", 2).get())
+        .property(PartitionedDatasetWriter.MAX_OPEN_WRITERS_PROPERTY, "1")
+        .get());
+
+    writeTestUsers(bounded, 10);
+
+    Assert.assertTrue(
+        countDataFiles(fileSystem, ((FileSystemDataset) bounded).getDirectory()) >= 2);
+    checkTestUsers(bounded, 10);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidWriterProperty() throws IOException {
+    Dataset invalid = repo.create("invalid", new DatasetDescriptor.Builder()
+        .schema(USER_SCHEMA)
+        .partitionStrategy(new PartitionStrategy.Builder()
+            .hash("username", 2).get())
+        .property(PartitionedDatasetWriter.MAX_OPEN_WRITERS_PROPERTY, "0")
+        .get());
+    new PartitionedDatasetWriter<Object>(invalid).open();
+  }
+
+  @Test
+  public void testCodecFromDescriptor() throws IOException {
+    Dataset deflated = repo.create("deflated", new DatasetDescriptor.Builder()
+        .schema(USER_SCHEMA)
+        .partitionStrategy(new PartitionStrategy.Builder()
+            .hash("username", 2).get())
+        .property(FileSystemDatasetWriter.CODEC_PROPERTY, "deflate")
+        .property(FileSystemDatasetWriter.CODEC_LEVEL_PROPERTY, "1")
+        .get());
+
+    writeTestUsers(deflated, 10);
+
+    for (int i = 0; i < 2; i++) {
+      Path partition = new Path(
+          ((FileSystemDataset) deflated).getDirectory(), "username=" + i);
+      if (!fileSystem.exists(partition)) {
+        continue;
+      }
+      for (FileStatus status : fileSystem.listStatus(partition)) {
+        DataFileReader<Record> reader = new DataFileReader<Record>(
+            new File(status.getPath().toUri().getPath()),
+            new GenericDatumReader<Record>());
+        try {
+          Assert.assertEquals("deflate", reader.getMetaString("avro.codec"));
+        } finally {
+          reader.close();
+        }
+      }
+    }
+    checkTestUsers(deflated, 10);
+  }
+
 }
@@ -0,0 +1,144 @@
+/**
+ * Copyright 2013 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.cdk.data.filesystem;
+
+import com.cloudera.cdk.data.DatasetReader;
+import com.cloudera.cdk.data.DatasetReaderException;
+import com.cloudera.cdk.data.TestDatasetReaders;
+import com.google.common.collect.Lists;
+import java.io.IOException;
+import java.util.List;
+import org.apache.avro.generic.GenericData.Record;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.cloudera.cdk.data.filesystem.DatasetTestUtilities.*;
+import static com.cloudera.cdk.data.filesystem.TestMultiFileDatasetReader.DESCRIPTOR;
+import static com.cloudera.cdk.data.filesystem.TestMultiFileDatasetReader.TEST_FILE;
+import static com.cloudera.cdk.data.filesystem.TestMultiFileDatasetReader.VALIDATOR;
+
+public class TestReadAheadDatasetReader extends TestDatasetReaders {
+
+  @Override
+  public DatasetReader newReader() throws IOException {
+    return new ReadAheadDatasetReader<Record>(
+        FileSystem.get(new Configuration()),
+        Lists.newArrayList(TEST_FILE, TEST_FILE, TEST_FILE),
+        DESCRIPTOR, 2, true);
+  }
+
+  @Override
+  public int getTotalRecords() {
+    return 300;
+  }
+
+  @Override
+  public DatasetTestUtilities.RecordValidator getValidator() {
+    return VALIDATOR;
+  }
+
+  private FileSystem fileSystem;
+  @Before
+  public void setUp() throws IOException {
+    this.fileSystem = FileSystem.get(new Configuration());
+  }
+
+  @Test
+  public void testEmptyPathList() throws IOException {
+    ReadAheadDatasetReader<Record> reader = new ReadAheadDatasetReader<Record>(
+        fileSystem, Lists.<Path>newArrayList(), DESCRIPTOR, 2, true);
+
+    checkReaderBehavior(reader, 0, VALIDATOR);
+  }
+
+  @Test
+  public void testMoreFilesThanReadAhead() throws IOException {
+    List<Path> files = Lists.newArrayList();
+    for (int i = 0; i < 10; i++) {
+      files.add(TEST_FILE);
+    }
+    ReadAheadDatasetReader<Record> reader = new ReadAheadDatasetReader<Record>(
+        fileSystem, files, DESCRIPTOR, 3, true);
+
+    checkReaderBehavior(reader, 1000, VALIDATOR);
+  }
+
+  @Test
+  public void testUnordered() throws IOException {
+    List<Path> files = Lists.newArrayList();
+    for (int i = 0; i < 10; i++) {
+      files.add(TEST_FILE);
+    }
+    ReadAheadDatasetReader<Record> reader = new ReadAheadDatasetReader<Record>(
+        fileSystem, files, DESCRIPTOR, 3, false);
+
+    // entities may be interleaved, so only check that each appears per file
+    final int[] counts = new int[100];
+    checkReaderBehavior(reader, 1000, new RecordValidator<Record>() {
+      @Override
+      public void validate(Record record, int recordNum) {
+        Assert.assertNotNull(record);
+        counts[Integer.parseInt(record.get("text").toString())]++;
+      }
+    });
+    for (int count : counts) {
+      Assert.assertEquals(10, count);
+    }
+  }
+
+  @Test
+  public void testCloseBeforeEnd() throws IOException {
+    List<Path> files = Lists.newArrayList();
+    for (int i = 0; i < 10; i++) {
+      files.add(TEST_FILE);
+    }
+    ReadAheadDatasetReader<Record> reader = new ReadAheadDatasetReader<Record>(
+        fileSystem, files, DESCRIPTOR, 2, true);
+
+    reader.open();
+    Assert.assertTrue(reader.hasNext());
+    reader.next();
+    reader.close();
+    Assert.assertFalse("Reader is open after close()", reader.isOpen());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRequiresPositiveReadAhead() throws IOException {
+    new ReadAheadDatasetReader<Record>(
+        fileSystem, Lists.newArrayList(TEST_FILE), DESCRIPTOR, 0, true);
+  }
+
+  @Test(expected = DatasetReaderException.class)
+  public void testMissingPath() throws IOException {
+    Path missingFile = new Path("data/no-such-file.avro");
+
+    ReadAheadDatasetReader<Record> reader = new ReadAheadDatasetReader<Record>(
+        fileSystem, Lists.newArrayList(missingFile, TEST_FILE), DESCRIPTOR,
+        2, true);
+
+    try {
+      reader.open();
+      checkReaderIteration(reader, 200, VALIDATOR);
+    } finally {
+      reader.close();
+    }
+  }
+
+}
@@ -18,6 +18,7 @@ package com.cloudera.cdk.data.dao;
 import com.cloudera.cdk.data.DatasetAccessor;
 import com.cloudera.cdk.data.PartitionKey;
 import com.cloudera.cdk.data.PartitionStrategy;
+import java.util.List;
 
 /**
  * Interface for HBase Data Access Objects (DAOs). Supports basic get, put,
@@ -39,6 +40,18 @@ public interface Dao<E> extends DatasetAccessor<E> {
    */
   public E get(PartitionKey key);
 
+  /**
+   * Return the entities stored in HBase at the rows keyed on the PartitionKeys
+   * keys. The rows are fetched with one request per region server, rather than
+   * one per key.
+   * 
+   * @param keys
+   *          The keys of the rows to fetch
+   * @return The entities of type E, in the same order as the keys. The entity
+   *         of a key that is not found is null.
+   */
+  public List<E> get(List<PartitionKey> keys);
+
   /**
    * Put the entity into the HBase table with K key.
    * 
@@ -50,6 +63,19 @@ public interface Dao<E> extends DatasetAccessor<E> {
    */
   public boolean put(E entity);
 
+  /**
+   * Put the entities into the HBase table. Entities without a checkConflict
+   * field are sent with one request per region server. Entities with a
+   * checkConflict field are put one at a time, because HBase can't batch
+   * conditional puts.
+   * 
+   * @param entities
+   *          The entities to store
+   * @return For each entity, in order, True if the put succeeded, False if
+   *         the put failed due to update conflict
+   */
+  public List<Boolean> put(List<E> entities);
+
   /**
    * Increment a field named fieldName on the entity by value.
    * 
@@ -72,6 +98,15 @@ public interface Dao<E> extends DatasetAccessor<E> {
    */
   public void delete(PartitionKey key);
 
+  /**
+   * Deletes the entities in the HBase table at the keys. The deletes are sent
+   * with one request per region server.
+   * 
+   * @param keys
+   *          The keys of the entities to delete.
+   */
+  public void delete(List<PartitionKey> keys);
+
   /**
    * Deletes the entity in the HBase table. If that entity has a checkConflict
    * field, then the delete will only be performed if the entity has the
@@ -15,6 +15,8 @@
  */
 package com.cloudera.cdk.data.hbase;
 
+import java.util.List;
+
 import org.apache.hadoop.hbase.client.HTablePool;
 
 import com.cloudera.cdk.data.PartitionKey;
@@ -77,11 +79,21 @@ public class BaseDao<E> implements Dao<E> {
     return clientTemplate.get(key, entityMapper);
   }
 
+  @Override
+  public List<E> get(List<PartitionKey> keys) {
+    return clientTemplate.get(keys, entityMapper);
+  }
+
   @Override
   public boolean put(E entity) {
     return clientTemplate.put(entity, entityMapper);
   }
 
+  @Override
+  public List<Boolean> put(List<E> entities) {
+    return clientTemplate.put(entities, entityMapper);
+  }
+
   @Override
   public long increment(PartitionKey key, String fieldName, long amount) {
     return clientTemplate.increment(key, fieldName, amount, entityMapper);
@@ -92,6 +104,12 @@ public class BaseDao<E> implements Dao<E> {
         entityMapper.getKeySerDe());
   }
 
+  @Override
+  public void delete(List<PartitionKey> keys) {
+    clientTemplate.delete(keys, entityMapper.getRequiredColumns(),
+        entityMapper.getKeySerDe());
+  }
+
   @Override
   public boolean delete(E entity) {
     VersionCheckAction checkAction = entityMapper.mapFromEntity(entity)
@@ -79,26 +79,39 @@ public class BaseEntityScanner<E> implements EntityScanner<E> {
     this.entityMapper = scanBuilder.getEntityMapper();
     this.tablePool = scanBuilder.getTablePool();
     this.tableName = scanBuilder.getTableName();
-    this.scan = new Scan();
+    this.scan = buildScan(scanBuilder);
+  }
+
+  /**
+   * Build the Scan for the keys, filters and ScanModifiers of a scanner
+   * builder.
+   * 
+   * @param scanBuilder
+   *          The builder to build the Scan from
+   * @return The Scan
+   */
+  static <E> Scan buildScan(EntityScannerBuilder<E> scanBuilder) {
+    EntityMapper<E> entityMapper = scanBuilder.getEntityMapper();
+    Scan scan = new Scan();
 
     if (scanBuilder.getStartKey() != null) {
       byte[] keyBytes = entityMapper.getKeySerDe().serialize(
           scanBuilder.getStartKey());
-      this.scan.setStartRow(keyBytes);
+      scan.setStartRow(keyBytes);
     }
 
     if (scanBuilder.getStopKey() != null) {
       byte[] keyBytes = entityMapper.getKeySerDe().serialize(
           scanBuilder.getStopKey());
-      this.scan.setStopRow(keyBytes);
+      scan.setStopRow(keyBytes);
     }
 
     if (scanBuilder.getCaching() != 0) {
-      this.scan.setCaching(scanBuilder.getCaching());
+      scan.setCaching(scanBuilder.getCaching());
     }
 
     if (scanBuilder.getEntityMapper() != null) {
-      HBaseUtils.addColumnsToScan(entityMapper.getRequiredColumns(), this.scan);
+      HBaseUtils.addColumnsToScan(entityMapper.getRequiredColumns(), scan);
     }
 
     // If Filter List Was Built, Add It To The Scanner
@@ -107,17 +120,18 @@ public class BaseEntityScanner<E> implements EntityScanner<E> {
       if (scanBuilder.getPassAllFilters()) {
         FilterList filterList = new FilterList(
             FilterList.Operator.MUST_PASS_ALL, scanBuilder.getFilterList());
-        this.scan.setFilter(filterList);
+        scan.setFilter(filterList);
       } else {
         FilterList filterList = new FilterList(
             FilterList.Operator.MUST_PASS_ONE, scanBuilder.getFilterList());
-        this.scan.setFilter(filterList);
+        scan.setFilter(filterList);
       }
     }
 
     for (ScanModifier scanModifier : scanBuilder.getScanModifiers()) {
-      this.scan = scanModifier.modifyScan(this.scan);
+      scan = scanModifier.modifyScan(scan);
     }
+    return scan;
   }
 
   @Override
@@ -200,7 +214,8 @@ public class BaseEntityScanner<E> implements EntityScanner<E> {
 
 
   /**
-   * Scanner builder for BaseEntityScanner
+   * Scanner builder for BaseEntityScanner. If the builder's parallelism is
+   * greater than one, it builds a ParallelEntityScanner instead.
    * 
    * @param <K>
    * @param <E>
@@ -213,8 +228,14 @@ public class BaseEntityScanner<E> implements EntityScanner<E> {
     }
 
     @Override
-    public BaseEntityScanner<E> build() {
-      BaseEntityScanner<E> scanner = new BaseEntityScanner<E>(this);
+    public EntityScanner<E> build() {
+      EntityScanner<E> scanner;
+      if (getParallelism() > 1) {
+        scanner = new ParallelEntityScanner<E>(buildScan(this), getTablePool(),
+            getTableName(), getEntityMapper(), getParallelism(), getOrdered());
+      } else {
+        scanner = new BaseEntityScanner<E>(this);
+      }
       scanner.open();
       return scanner;
     }
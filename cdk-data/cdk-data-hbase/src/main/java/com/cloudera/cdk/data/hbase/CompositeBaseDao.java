@@ -185,11 +185,21 @@ public abstract class CompositeBaseDao<E, S> implements CompositeDao<E, S> {
     return baseDao.get(key);
   }
 
+  @Override
+  public List<E> get(List<PartitionKey> keys) {
+    return baseDao.get(keys);
+  }
+
   @Override
   public boolean put(E entity) {
     return baseDao.put(entity);
   }
 
+  @Override
+  public List<Boolean> put(List<E> entities) {
+    return baseDao.put(entities);
+  }
+
   @Override
   public long increment(PartitionKey key, String fieldName, long amount) {
     throw new UnsupportedOperationException(
@@ -201,6 +211,11 @@ public abstract class CompositeBaseDao<E, S> implements CompositeDao<E, S> {
     baseDao.delete(key);
   }
 
+  @Override
+  public void delete(List<PartitionKey> keys) {
+    baseDao.delete(keys);
+  }
+
   @Override
   public boolean delete(E entity) {
     return baseDao.delete(entity);
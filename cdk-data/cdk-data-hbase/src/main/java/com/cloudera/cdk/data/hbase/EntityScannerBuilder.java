@@ -45,6 +45,8 @@ public abstract class EntityScannerBuilder<E> {
   private PartitionKey startKey;
   private PartitionKey stopKey;
   private int caching;
+  private int parallelism = 1;
+  private boolean ordered = true;
   private EntityMapper<E> entityMapper;
   private List<ScanModifier> scanModifiers = new ArrayList<ScanModifier>();
   private boolean passAllFilters = true;
@@ -161,6 +163,59 @@ public abstract class EntityScannerBuilder<E> {
     return this;
   }
 
+  /**
+   * Get the number of region shards scanned concurrently
+   * 
+   * @return the parallelism
+   */
+  int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Set the number of shards to scan concurrently. When this is greater than
+   * one, the key range of the scan is split at the table's region boundaries,
+   * and each shard is scanned by one of parallelism threads. Filters and
+   * ScanModifiers apply to the scan of every shard. The default of one scans
+   * the whole range with a single scanner.
+   * 
+   * @param parallelism
+   *          The number of shards to scan at the same time
+   * @return ScannerBuilder
+   */
+  public EntityScannerBuilder<E> setParallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1: "
+          + parallelism);
+    }
+    this.parallelism = parallelism;
+    return this;
+  }
+
+  /**
+   * Check if a parallel scan returns entities in key order
+   * 
+   * @return boolean
+   */
+  boolean getOrdered() {
+    return ordered;
+  }
+
+  /**
+   * Set whether a parallel scan returns entities in key order, like a scan
+   * with a single scanner. When false, entities are returned as soon as any
+   * shard has scanned them, which avoids waiting for the shards in key order.
+   * The default is true.
+   * 
+   * @param ordered
+   *          true to return entities in key order
+   * @return ScannerBuilder
+   */
+  public EntityScannerBuilder<E> setOrdered(boolean ordered) {
+    this.ordered = ordered;
+    return this;
+  }
+
   /**
    * Add an Equality Filter to the Scanner, Will Filter Results Not Equal to the
    * Filter Value
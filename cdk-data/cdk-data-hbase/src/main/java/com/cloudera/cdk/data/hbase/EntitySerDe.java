@@ -23,6 +23,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.util.Bytes;
@@ -156,6 +157,28 @@ public abstract class EntitySerDe<E> {
   public abstract Object deserializeColumnValueFromBytes(String fieldName,
       byte[] columnBytes);
 
+  /**
+   * Deserialize a column mapped entity field from a range of a byte array,
+   * like the value of a KeyValue in its backing array. SerDes that can decode
+   * the range in place should override this, the default implementation
+   * copies the range.
+   * 
+   * @param fieldName
+   *          The name of the entity's field
+   * @param bytes
+   *          The array holding the bytes to deserialize
+   * @param offset
+   *          The index of the first byte of the column value
+   * @param length
+   *          The length of the column value
+   * @return The field value we've deserialized.
+   */
+  public Object deserializeColumnValueFromBytes(String fieldName,
+      byte[] bytes, int offset, int length) {
+    return deserializeColumnValueFromBytes(fieldName,
+        Arrays.copyOfRange(bytes, offset, offset + length));
+  }
+
   /**
    * Deserialize a value from a keyAsColumn entity field. The value is keyed on
    * key.
@@ -291,11 +314,13 @@ public abstract class EntitySerDe<E> {
    */
   private Object deserializeColumn(String fieldName, byte[] family,
       byte[] qualifier, Result result) {
-    byte[] bytes = result.getValue(family, qualifier);
-    if (bytes == null) {
+    // decode the value in the KeyValue's buffer, rather than a copy of it
+    KeyValue kv = result.getColumnLatest(family, qualifier);
+    if (kv == null) {
       return null;
     } else {
-      return deserializeColumnValueFromBytes(fieldName, bytes);
+      return deserializeColumnValueFromBytes(fieldName, kv.getBuffer(),
+          kv.getValueOffset(), kv.getValueLength());
     }
   }
 
@@ -16,6 +16,7 @@
 package com.cloudera.cdk.data.hbase;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
@@ -27,6 +28,7 @@ import org.apache.hadoop.hbase.client.HTablePool;
 import org.apache.hadoop.hbase.client.Increment;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Row;
 import org.apache.hadoop.hbase.util.Bytes;
 
 import com.cloudera.cdk.data.PartitionKey;
@@ -312,6 +314,69 @@ public class HBaseClientTemplate {
     }
   }
 
+  /**
+   * Execute a list of Gets on HBase. The Gets are grouped by region server, so
+   * this takes one round trip per server rather than one per Get.
+   * 
+   * Any GetModifers registered with registerGetModifier will be invoked on
+   * each Get before the Gets are executed.
+   * 
+   * @param gets
+   *          The Gets to execute
+   * @return The Results of the Gets, in the same order as the Gets.
+   */
+  public Result[] get(List<Get> gets) {
+    List<Get> modifiedGets = new ArrayList<Get>(gets.size());
+    for (Get get : gets) {
+      for (GetModifier getModifier : getModifiers) {
+        get = getModifier.modifyGet(get);
+      }
+      modifiedGets.add(get);
+    }
+    HTableInterface table = pool.getTable(tableName);
+    try {
+      return table.get(modifiedGets);
+    } catch (IOException e) {
+      throw new HBaseClientException("Error performing multi-get", e);
+    } finally {
+      returnTable(table);
+    }
+  }
+
+  /**
+   * Execute a Get on HBase for each key, creating the Gets from the keys'
+   * toByteArray method. The Gets are grouped by region server, and the
+   * returned Results are mapped to entities with the entityMapper.
+   * 
+   * Any GetModifers registered with registerGetModifier will be invoked on
+   * each Get before the Gets are executed.
+   * 
+   * @param keys
+   *          The Keys to create Gets from.
+   * @param entityMapper
+   *          The EntityMapper to use to map the Results to entities to return.
+   * @return The entities created by the entityMapper, in the same order as the
+   *         keys. The entity of a key that is not found is null.
+   */
+  public <E> List<E> get(List<PartitionKey> keys, EntityMapper<E> entityMapper) {
+    List<Get> gets = new ArrayList<Get>(keys.size());
+    for (PartitionKey key : keys) {
+      Get get = new Get(entityMapper.getKeySerDe().serialize(key));
+      HBaseUtils.addColumnsToGet(entityMapper.getRequiredColumns(), get);
+      gets.add(get);
+    }
+    Result[] results = get(gets);
+    List<E> entities = new ArrayList<E>(results.length);
+    for (Result result : results) {
+      if (result == null || result.isEmpty()) {
+        entities.add(null);
+      } else {
+        entities.add(entityMapper.mapToEntity(result));
+      }
+    }
+    return entities;
+  }
+
   /**
    * Execute a Put on HBase.
    * 
@@ -356,23 +421,11 @@ public class HBaseClientTemplate {
     for (PutActionModifier putActionModifier : putActionModifiers) {
       putAction = putActionModifier.modifyPutAction(putAction);
     }
-    Put put = putAction.getPut();
     if (putAction.getVersionCheckAction() != null) {
-      byte[] versionBytes = null;
-      long version = putAction.getVersionCheckAction().getVersion();
-      if (version != 0) {
-        versionBytes = Bytes.toBytes(version);
-      }
-      try {
-        return table.checkAndPut(put.getRow(), Constants.SYS_COL_FAMILY,
-            Constants.VERSION_CHECK_COL_QUALIFIER, versionBytes, put);
-      } catch (IOException e) {
-        throw new HBaseClientException(
-            "Error putting row from table with checkAndPut", e);
-      }
+      return checkAndPut(putAction, table);
     } else {
       try {
-        table.put(put);
+        table.put(putAction.getPut());
         return true;
       } catch (IOException e) {
         throw new HBaseClientException("Error putting row from table", e);
@@ -380,6 +433,22 @@ public class HBaseClientTemplate {
     }
   }
 
+  private boolean checkAndPut(PutAction putAction, HTableInterface table) {
+    Put put = putAction.getPut();
+    byte[] versionBytes = null;
+    long version = putAction.getVersionCheckAction().getVersion();
+    if (version != 0) {
+      versionBytes = Bytes.toBytes(version);
+    }
+    try {
+      return table.checkAndPut(put.getRow(), Constants.SYS_COL_FAMILY,
+          Constants.VERSION_CHECK_COL_QUALIFIER, versionBytes, put);
+    } catch (IOException e) {
+      throw new HBaseClientException(
+          "Error putting row from table with checkAndPut", e);
+    }
+  }
+
   /**
    * Execute the put on HBase, invoking the putModifier before executing the put
    * if putModifier is not null.
@@ -450,6 +519,67 @@ public class HBaseClientTemplate {
     return put(putAction, putActionModifier);
   }
 
+  /**
+   * Execute a list of Puts on HBase. Puts without a VersionCheckAction are
+   * sent in batches that are grouped by region server. Puts with a
+   * VersionCheckAction are executed one at a time with checkAndPut, because
+   * HBase can't batch them. Puts of the same row in one call are not applied
+   * in a guaranteed order.
+   * 
+   * Any PutModifers registered with registerPutModifier will be invoked on
+   * each PutAction before it is executed.
+   * 
+   * @param putActions
+   *          The puts to execute on HBase.
+   * @return For each put, in order, True if the put succeeded, False if the
+   *         put failed due to update conflict
+   */
+  public List<Boolean> put(List<PutAction> putActions) {
+    List<Boolean> results = new ArrayList<Boolean>(putActions.size());
+    List<Put> puts = new ArrayList<Put>(putActions.size());
+    HTableInterface table = pool.getTable(tableName);
+    try {
+      for (PutAction putAction : putActions) {
+        for (PutActionModifier putActionModifier : putActionModifiers) {
+          putAction = putActionModifier.modifyPutAction(putAction);
+        }
+        if (putAction.getVersionCheckAction() != null) {
+          results.add(checkAndPut(putAction, table));
+        } else {
+          puts.add(putAction.getPut());
+          results.add(true);
+        }
+      }
+      batch(puts, table, "Error putting rows to table");
+      return results;
+    } finally {
+      returnTable(table);
+    }
+  }
+
+  /**
+   * Execute a Put on HBase for each entity, creating the Puts by mapping the
+   * entities with the entityMapper. See {@link #put(List)} for how the Puts
+   * are batched.
+   * 
+   * Any PutModifers registered with registerPutModifier will be invoked on
+   * each PutAction before it is executed.
+   * 
+   * @param entities
+   *          The entities to map to Puts with the entityMapper.
+   * @param entityMapper
+   *          The EntityMapper to map the entities to puts.
+   * @return For each entity, in order, True if the put succeeded, False if the
+   *         put failed due to update conflict
+   */
+  public <E> List<Boolean> put(List<E> entities, EntityMapper<E> entityMapper) {
+    List<PutAction> putActions = new ArrayList<PutAction>(entities.size());
+    for (E entity : entities) {
+      putActions.add(entityMapper.mapFromEntity(entity));
+    }
+    return put(putActions);
+  }
+
   /**
    * Execute an increment on an entity field. This field must be a type that
    * supports increments. Returns the new increment value of type long.
@@ -496,21 +626,11 @@ public class HBaseClientTemplate {
       for (DeleteActionModifier deleteActionModifier : deleteActionModifiers) {
         deleteAction = deleteActionModifier.modifyDeleteAction(deleteAction);
       }
-      Delete delete = deleteAction.getDelete();
       if (deleteAction.getVersionCheckAction() != null) {
-        byte[] versionBytes = Bytes.toBytes(deleteAction
-            .getVersionCheckAction().getVersion());
-        try {
-          return table.checkAndDelete(delete.getRow(),
-              Constants.SYS_COL_FAMILY, Constants.VERSION_CHECK_COL_QUALIFIER,
-              versionBytes, delete);
-        } catch (IOException e) {
-          throw new HBaseClientException(
-              "Error deleteing row from table with checkAndDelete", e);
-        }
+        return checkAndDelete(deleteAction, table);
       } else {
         try {
-          table.delete(delete);
+          table.delete(deleteAction.getDelete());
           return true;
         } catch (IOException e) {
           throw new HBaseClientException("Error deleteing row from table", e);
@@ -528,6 +648,82 @@ public class HBaseClientTemplate {
     }
   }
 
+  private boolean checkAndDelete(DeleteAction deleteAction,
+      HTableInterface table) {
+    Delete delete = deleteAction.getDelete();
+    byte[] versionBytes = Bytes.toBytes(deleteAction.getVersionCheckAction()
+        .getVersion());
+    try {
+      return table.checkAndDelete(delete.getRow(), Constants.SYS_COL_FAMILY,
+          Constants.VERSION_CHECK_COL_QUALIFIER, versionBytes, delete);
+    } catch (IOException e) {
+      throw new HBaseClientException(
+          "Error deleteing row from table with checkAndDelete", e);
+    }
+  }
+
+  /**
+   * Execute a list of Deletes on HBase. Deletes without a VersionCheckAction
+   * are sent in batches that are grouped by region server. Deletes with a
+   * VersionCheckAction are executed one at a time with checkAndDelete, because
+   * HBase can't batch them.
+   * 
+   * Any DeleteActionModifers registered with registerDeleteModifier will be
+   * invoked on each DeleteAction before it is executed.
+   * 
+   * @param deleteActions
+   *          The deletes to execute on HBase.
+   * @return For each delete, in order, True if the delete succeeded, False if
+   *         the delete failed due to update conflict
+   */
+  public List<Boolean> delete(List<DeleteAction> deleteActions) {
+    List<Boolean> results = new ArrayList<Boolean>(deleteActions.size());
+    List<Delete> deletes = new ArrayList<Delete>(deleteActions.size());
+    HTableInterface table = pool.getTable(tableName);
+    try {
+      for (DeleteAction deleteAction : deleteActions) {
+        for (DeleteActionModifier deleteActionModifier : deleteActionModifiers) {
+          deleteAction = deleteActionModifier.modifyDeleteAction(deleteAction);
+        }
+        if (deleteAction.getVersionCheckAction() != null) {
+          results.add(checkAndDelete(deleteAction, table));
+        } else {
+          deletes.add(deleteAction.getDelete());
+          results.add(true);
+        }
+      }
+      batch(deletes, table, "Error deleteing rows from table");
+      return results;
+    } finally {
+      returnTable(table);
+    }
+  }
+
+  /**
+   * Execute a Delete on HBase for each key, creating the Deletes from the keys
+   * and the set of columns. Only the columns specified in this set will be
+   * deleted in the rows. The Deletes are sent in batches that are grouped by
+   * region server.
+   * 
+   * Any DeleteActionModifers registered with registerDeleteModifier will be
+   * invoked on each DeleteAction before it is executed.
+   * 
+   * @param keys
+   *          The Keys of the rows to delete.
+   * @param columns
+   *          The set of columns to delete from the rows.
+   */
+  public void delete(List<PartitionKey> keys, Set<String> columns,
+      KeySerDe keySerDe) {
+    List<DeleteAction> deleteActions = new ArrayList<DeleteAction>(
+        keys.size());
+    for (PartitionKey key : keys) {
+      deleteActions.add(new DeleteAction(createDelete(keySerDe.serialize(key),
+          columns)));
+    }
+    delete(deleteActions);
+  }
+
   /**
    * Execute the delete on HBase, invoking the deleteModifier before executing
    * the delete if deleteModifier is not null.
@@ -601,6 +797,11 @@ public class HBaseClientTemplate {
       VersionCheckAction checkAction,
       DeleteActionModifier deleteActionModifier, KeySerDe keySerDe) {
     byte[] keyBytes = keySerDe.serialize(key);
+    Delete delete = createDelete(keyBytes, columns);
+    return delete(new DeleteAction(delete, checkAction), deleteActionModifier);
+  }
+
+  private static Delete createDelete(byte[] keyBytes, Set<String> columns) {
     Delete delete = new Delete(keyBytes);
     for (String requiredColumn : columns) {
       String[] familyAndColumn = requiredColumn.split(":");
@@ -611,7 +812,38 @@ public class HBaseClientTemplate {
             Bytes.toBytes(familyAndColumn[1]));
       }
     }
-    return delete(new DeleteAction(delete, checkAction), deleteActionModifier);
+    return delete;
+  }
+
+  /**
+   * Execute the actions with HTableInterface.batch, which groups them by
+   * region server.
+   */
+  private static void batch(List<? extends Row> actions, HTableInterface table,
+      String errorMessage) {
+    if (actions.isEmpty()) {
+      return;
+    }
+    try {
+      table.batch(actions);
+    } catch (IOException e) {
+      throw new HBaseClientException(errorMessage, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      InterruptedIOException ioe = new InterruptedIOException(errorMessage);
+      ioe.initCause(e);
+      throw new HBaseClientException(errorMessage, ioe);
+    }
+  }
+
+  private void returnTable(HTableInterface table) {
+    if (table != null) {
+      try {
+        table.close();
+      } catch (IOException e) {
+        throw new HBaseClientException("Error putting table back into pool", e);
+      }
+    }
   }
 
   /**
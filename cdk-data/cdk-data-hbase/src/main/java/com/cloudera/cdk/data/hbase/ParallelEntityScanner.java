@@ -0,0 +1,397 @@
+/**
+ * Copyright 2013 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.cdk.data.hbase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.HTablePool;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
+
+import com.cloudera.cdk.data.dao.EntityScanner;
+import com.cloudera.cdk.data.dao.HBaseClientException;
+import com.cloudera.cdk.data.dao.HBaseCommonException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * An EntityScanner that splits its scan at the table's region boundaries, and
+ * scans the resulting shards concurrently on a bounded number of threads.
+ *
+ * Each shard is scanned with a copy of the scan, so filters and ScanModifiers
+ * apply to every shard. Rows are mapped to entities on the scanning threads,
+ * and handed to the reader through bounded queues.
+ *
+ * The shards are disjoint key ranges, so an ordered scanner returns the
+ * entities of each shard in the order of the shards, which is the key order of
+ * a scan with a single scanner. An unordered scanner returns entities from
+ * whichever shard has them first.
+ *
+ * A shard whose queue is full closes its region scanner while it waits, and
+ * reopens it after the last row it read, so that a slow reader, or an ordered
+ * reader that hasn't reached the shard yet, doesn't let the scanner lease
+ * expire. Scans that return partial rows with setBatch are not supported.
+ *
+ * @param <E>
+ *          The entity type this scanner scans.
+ */
+public class ParallelEntityScanner<E> implements EntityScanner<E> {
+
+  /**
+   * The number of entities each queue holds before its shards wait for the
+   * reader to catch up.
+   */
+  static final int QUEUE_CAPACITY = 1000;
+
+  /**
+   * Put in a shard's queue after its last entity.
+   */
+  private static final Object SHARD_DONE = new Object();
+
+  /**
+   * Put in a shard's queue for a row the EntityMapper maps to null, since the
+   * queues can't hold nulls.
+   */
+  private static final Object NULL_ENTITY = new Object();
+
+  private final Scan scan;
+  private final HTablePool tablePool;
+  private final String tableName;
+  private final EntityMapper<E> entityMapper;
+  private final int parallelism;
+  private final boolean ordered;
+
+  private ExecutorService executor;
+
+  /**
+   * The queue of each shard. All shards of an unordered scanner share a
+   * single queue.
+   */
+  private List<BlockingQueue<Object>> queues;
+
+  /**
+   * The index of the shard being read by an ordered scanner, or the number of
+   * shards read by an unordered scanner.
+   */
+  private int shardsDone;
+  private int numShards;
+
+  private E next;
+  private boolean hasNext;
+  private volatile boolean open;
+
+  /**
+   * @param scan
+   *          The Scan object that will be split into shards
+   * @param tablePool
+   *          The HTablePool instance to get tables to open scanners on.
+   * @param tableName
+   *          The table name to perform the scan on.
+   * @param entityMapper
+   *          The EntityMapper to map rows to entities.
+   * @param parallelism
+   *          The number of shards to scan at the same time.
+   * @param ordered
+   *          true to return entities in key order.
+   */
+  public ParallelEntityScanner(Scan scan, HTablePool tablePool,
+      String tableName, EntityMapper<E> entityMapper, int parallelism,
+      boolean ordered) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1: "
+          + parallelism);
+    }
+    this.scan = scan;
+    this.tablePool = tablePool;
+    this.tableName = tableName;
+    this.entityMapper = entityMapper;
+    this.parallelism = parallelism;
+    this.ordered = ordered;
+  }
+
+  @Override
+  public void open() {
+    List<Scan> shards;
+    try {
+      Pair<byte[][], byte[][]> regionKeys = getRegionKeys();
+      shards = splitScan(scan, regionKeys.getFirst(), regionKeys.getSecond());
+    } catch (IOException e) {
+      throw new HBaseClientException("Failed to split scan at regions", e);
+    }
+
+    numShards = shards.size();
+    queues = new ArrayList<BlockingQueue<Object>>(numShards);
+    if (ordered) {
+      for (int i = 0; i < numShards; i++) {
+        queues.add(new LinkedBlockingQueue<Object>(QUEUE_CAPACITY));
+      }
+    } else {
+      BlockingQueue<Object> queue = new LinkedBlockingQueue<Object>(
+          QUEUE_CAPACITY);
+      for (int i = 0; i < numShards; i++) {
+        queues.add(queue);
+      }
+    }
+
+    // Shards are submitted in key order, so an ordered scanner's next shard
+    // is always being scanned, or done.
+    open = true;
+    executor = Executors.newFixedThreadPool(
+        Math.max(1, Math.min(parallelism, numShards)),
+        new ThreadFactoryBuilder().setDaemon(true)
+            .setNameFormat("scanner-" + tableName + "-%d").build());
+    for (int i = 0; i < numShards; i++) {
+      executor.execute(new ShardScan(shards.get(i), queues.get(i)));
+    }
+  }
+
+  /**
+   * Split the scan into a scan for each region it overlaps.
+   *
+   * @param scan
+   *          The scan to split
+   * @param startKeys
+   *          The start keys of the table's regions, in order
+   * @param endKeys
+   *          The end keys of the table's regions
+   * @return The scans of the shards, in key order
+   * @throws IOException
+   */
+  static List<Scan> splitScan(Scan scan, byte[][] startKeys, byte[][] endKeys)
+      throws IOException {
+    byte[] scanStart = scan.getStartRow();
+    byte[] scanStop = scan.getStopRow();
+    List<Scan> shards = new ArrayList<Scan>();
+    for (int i = 0; i < startKeys.length; i++) {
+      byte[] regionStart = startKeys[i];
+      byte[] regionEnd = endKeys[i];
+      // An empty key means the first or last region, or no start or stop row.
+      if (regionEnd.length > 0 && Bytes.compareTo(regionEnd, scanStart) <= 0) {
+        continue;
+      }
+      if (scanStop.length > 0 && Bytes.compareTo(regionStart, scanStop) >= 0) {
+        continue;
+      }
+      Scan shard = new Scan(scan);
+      if (Bytes.compareTo(regionStart, scanStart) > 0) {
+        shard.setStartRow(regionStart);
+      }
+      if (scanStop.length == 0
+          || (regionEnd.length > 0 && Bytes.compareTo(regionEnd, scanStop) < 0)) {
+        shard.setStopRow(regionEnd);
+      }
+      shards.add(shard);
+    }
+    return shards;
+  }
+
+  private Pair<byte[][], byte[][]> getRegionKeys() throws IOException {
+    HTableInterface pooledTable = tablePool.getTable(tableName);
+    try {
+      HTable table = new HTable(pooledTable.getConfiguration(), tableName);
+      try {
+        return table.getStartEndKeys();
+      } finally {
+        table.close();
+      }
+    } finally {
+      pooledTable.close();
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (!open) {
+      return false;
+    }
+    if (hasNext) {
+      return true;
+    }
+    while (shardsDone < numShards) {
+      Object item;
+      try {
+        item = queues.get(ordered ? shardsDone : 0).take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new HBaseCommonException("Interrupted while scanning", e);
+      }
+      if (!open) {
+        // woken up by close
+        return false;
+      } else if (item == SHARD_DONE) {
+        shardsDone++;
+      } else if (item instanceof ShardFailure) {
+        throw new HBaseCommonException("Failed to scan shard",
+            ((ShardFailure) item).cause);
+      } else if (item == NULL_ENTITY) {
+        next = null;
+        hasNext = true;
+        return true;
+      } else {
+        @SuppressWarnings("unchecked")
+        E entity = (E) item;
+        next = entity;
+        hasNext = true;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public E next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    E entity = next;
+    next = null;
+    hasNext = false;
+    return entity;
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException(
+        "remove() not supported by a parallel scanner");
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    return this;
+  }
+
+  @Override
+  public void close() {
+    open = false;
+    if (executor != null) {
+      // Shards stop once they see the scanner is closed. They aren't
+      // interrupted, since interrupting a thread in an HBase RPC closes the
+      // connection that other scanners share.
+      executor.shutdown();
+      executor = null;
+    }
+    if (queues != null) {
+      // wakes up shards waiting for room in their queue and a reader waiting
+      // in hasNext, and drops unread entities
+      for (BlockingQueue<Object> queue : queues) {
+        queue.clear();
+        queue.offer(SHARD_DONE);
+      }
+    }
+  }
+
+  @Override
+  public boolean isOpen() {
+    return open;
+  }
+
+  /**
+   * Put in a shard's queue when scanning it fails.
+   */
+  private static class ShardFailure {
+    private final Throwable cause;
+
+    private ShardFailure(Throwable cause) {
+      this.cause = cause;
+    }
+  }
+
+  /**
+   * Scans a shard, and puts its entities in the shard's queue.
+   */
+  private class ShardScan implements Runnable {
+
+    private final Scan shard;
+    private final BlockingQueue<Object> queue;
+
+    private ShardScan(Scan shard, BlockingQueue<Object> queue) {
+      this.shard = shard;
+      this.queue = queue;
+    }
+
+    @Override
+    public void run() {
+      Object last = SHARD_DONE;
+      HTableInterface table = null;
+      ResultScanner resultScanner = null;
+      if (!open) {
+        // the scanner was closed before this shard started
+        return;
+      }
+      try {
+        table = tablePool.getTable(tableName);
+        resultScanner = table.getScanner(shard);
+        Result result;
+        while (open && (result = resultScanner.next()) != null) {
+          // rows whose non-key fields are all null map to null entities
+          E entity = entityMapper.mapToEntity(result);
+          Object item = entity != null ? entity : NULL_ENTITY;
+          if (!queue.offer(item)) {
+            // don't hold the region scanner while the reader catches up
+            resultScanner.close();
+            resultScanner = null;
+            queue.put(item);
+            if (!open) {
+              return;
+            }
+            Scan rest = new Scan(shard);
+            // the smallest row key after the row just read
+            rest.setStartRow(Bytes.add(result.getRow(), new byte[] { 0 }));
+            resultScanner = table.getScanner(rest);
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (Throwable t) {
+        last = new ShardFailure(t);
+      } finally {
+        if (resultScanner != null) {
+          resultScanner.close();
+        }
+        if (table != null) {
+          try {
+            table.close();
+          } catch (IOException e) {
+            if (last == SHARD_DONE) {
+              last = new ShardFailure(e);
+            }
+          }
+        }
+      }
+      if (!open) {
+        return;
+      }
+      try {
+        queue.put(last);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
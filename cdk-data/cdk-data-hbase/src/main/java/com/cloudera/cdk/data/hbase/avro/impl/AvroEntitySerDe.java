@@ -15,10 +15,7 @@
  */
 package com.cloudera.cdk.data.hbase.avro.impl;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -29,6 +26,8 @@ import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericDatumWriter;
 import org.apache.avro.generic.IndexedRecord;
 import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
 import org.apache.avro.io.DatumWriter;
 import org.apache.avro.io.Decoder;
 import org.apache.avro.io.DecoderFactory;
@@ -49,6 +48,9 @@ import com.cloudera.cdk.data.hbase.avro.io.ColumnEncoder;
 /**
  * An EntitySerDe implementation that serializes and deserializes Avro records.
  * 
+ * Each thread that uses a SerDe gets its own encoders, decoders and output
+ * buffer, which are reused for every column it serializes or deserializes.
+ * 
  * @param <E>
  *          The type of entity this SerDe works with.
  */
@@ -91,6 +93,22 @@ public class AvroEntitySerDe<E extends IndexedRecord> extends EntitySerDe<E> {
    */
   private final Map<String, Map<String, DatumWriter<Object>>> kacRecordDatumWriters = new HashMap<String, Map<String, DatumWriter<Object>>>();
 
+  /**
+   * A thread that serializes a value larger than this drops its codecs after
+   * copying the value out, so it doesn't hold on to the grown output buffer.
+   */
+  private static final int MAX_REUSED_BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * The encoders and decoders of each thread using this SerDe.
+   */
+  private final ThreadLocal<ColumnCodecs> columnCodecs = new ThreadLocal<ColumnCodecs>() {
+    @Override
+    protected ColumnCodecs initialValue() {
+      return new ColumnCodecs();
+    }
+  };
+
   /**
    * Constructor for AvroEntitySerDe instances.
    * 
@@ -161,11 +179,17 @@ public class AvroEntitySerDe<E extends IndexedRecord> extends EntitySerDe<E> {
           + fieldName);
     }
 
-    ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
-    Encoder encoder = getColumnEncoder(field.schema(), byteOut);
-    AvroUtils.writeAvroEntity(columnValue, encoder,
-        fieldDatumWriters.get(fieldName));
-    return byteOut.toByteArray();
+    ColumnCodecs codecs = columnCodecs.get();
+    codecs.out.reset();
+    Encoder encoder = getColumnEncoder(field.schema(), codecs);
+    try {
+      AvroUtils.writeAvroEntity(columnValue, encoder, datumWriter);
+    } catch (RuntimeException e) {
+      // the encoder may still buffer part of the value, so don't reuse it
+      columnCodecs.remove();
+      throw e;
+    }
+    return toByteArray(codecs);
   }
 
   @Override
@@ -184,7 +208,7 @@ public class AvroEntitySerDe<E extends IndexedRecord> extends EntitySerDe<E> {
         throw new SchemaValidationException("No datum writer for field name: "
             + fieldName);
       }
-      return AvroUtils.writeAvroEntity(columnValue, datumWriter);
+      return writeBinary(columnValue, datumWriter);
     } else if (schemaType == Schema.Type.RECORD) {
       if (!kacRecordDatumWriters.containsKey(fieldName)) {
         throw new SchemaValidationException("Invalid field name " + fieldName
@@ -197,7 +221,7 @@ public class AvroEntitySerDe<E extends IndexedRecord> extends EntitySerDe<E> {
       }
       DatumWriter<Object> datumWriter = kacRecordDatumWriters.get(fieldName)
           .get(columnKey.toString());
-      return AvroUtils.writeAvroEntity(columnValue, datumWriter);
+      return writeBinary(columnValue, datumWriter);
     } else {
       throw new SchemaValidationException("Unsupported type for keyAsColumn: "
           + schemaType);
@@ -218,6 +242,12 @@ public class AvroEntitySerDe<E extends IndexedRecord> extends EntitySerDe<E> {
 
   @Override
   public Object deserializeColumnValueFromBytes(String fieldName, byte[] bytes) {
+    return deserializeColumnValueFromBytes(fieldName, bytes, 0, bytes.length);
+  }
+
+  @Override
+  public Object deserializeColumnValueFromBytes(String fieldName, byte[] bytes,
+      int offset, int length) {
     Field field = avroSchema.getAvroSchema().getField(fieldName);
     DatumReader<Object> datumReader = fieldDatumReaders.get(fieldName);
     if (field == null) {
@@ -229,8 +259,8 @@ public class AvroEntitySerDe<E extends IndexedRecord> extends EntitySerDe<E> {
           + fieldName);
     }
 
-    ByteArrayInputStream byteIn = new ByteArrayInputStream(bytes);
-    Decoder decoder = getColumnDecoder(field.schema(), byteIn);
+    Decoder decoder = getColumnDecoder(field.schema(), bytes, offset, length,
+        columnCodecs.get());
     return AvroUtils.readAvroEntity(decoder, datumReader);
   }
 
@@ -250,7 +280,7 @@ public class AvroEntitySerDe<E extends IndexedRecord> extends EntitySerDe<E> {
         throw new SchemaValidationException("No datum reader for field name: "
             + fieldName);
       }
-      return AvroUtils.readAvroEntity(columnValueBytes, datumReader);
+      return readBinary(columnValueBytes, datumReader);
     } else if (schemaType == Schema.Type.RECORD) {
       if (!kacRecordDatumReaders.containsKey(fieldName)) {
         throw new SchemaValidationException("Invalid field name " + fieldName
@@ -263,7 +293,7 @@ public class AvroEntitySerDe<E extends IndexedRecord> extends EntitySerDe<E> {
       }
       DatumReader<Object> datumReader = kacRecordDatumReaders.get(fieldName)
           .get(columnKey);
-      return AvroUtils.readAvroEntity(columnValueBytes, datumReader);
+      return readBinary(columnValueBytes, datumReader);
     } else {
       throw new SchemaValidationException("Unsupported type for keyAsColumn: "
           + schemaType);
@@ -339,43 +369,128 @@ public class AvroEntitySerDe<E extends IndexedRecord> extends EntitySerDe<E> {
   }
 
   /**
-   * Returns an Avro Decoder. The implementation it chooses will depend on the
-   * schema of the field.
+   * Encode the value with the Avro BinaryEncoder of the calling thread.
+   * 
+   * @param value
+   *          The value to encode
+   * @param datumWriter
+   *          The DatumWriter to encode the value with
+   * @return The encoded bytes
+   */
+  private byte[] writeBinary(Object value, DatumWriter<Object> datumWriter) {
+    ColumnCodecs codecs = columnCodecs.get();
+    codecs.out.reset();
+    try {
+      AvroUtils.writeAvroEntity(value, codecs.binaryEncoder, datumWriter);
+    } catch (RuntimeException e) {
+      columnCodecs.remove();
+      throw e;
+    }
+    return toByteArray(codecs);
+  }
+
+  /**
+   * Copy the value the calling thread's encoders wrote out of its output
+   * buffer. If the value was larger than MAX_REUSED_BUFFER_SIZE, the thread's
+   * codecs are dropped, and new ones are created the next time they're needed.
    * 
-   * @param in
-   *          InputStream to decode bytes from
+   * @param codecs
+   *          The encoders and decoders of the calling thread
+   * @return The encoded bytes
+   */
+  private byte[] toByteArray(ColumnCodecs codecs) {
+    byte[] bytes = codecs.out.toByteArray();
+    if (bytes.length > MAX_REUSED_BUFFER_SIZE) {
+      columnCodecs.remove();
+    }
+    return bytes;
+  }
+
+  /**
+   * Decode the bytes with the Avro BinaryDecoder of the calling thread.
+   * 
+   * @param bytes
+   *          The bytes to decode
+   * @param datumReader
+   *          The DatumReader to decode the value with
+   * @return The decoded value
+   */
+  private Object readBinary(byte[] bytes, DatumReader<Object> datumReader) {
+    ColumnCodecs codecs = columnCodecs.get();
+    codecs.binaryDecoder = DecoderFactory.get().binaryDecoder(bytes,
+        codecs.binaryDecoder);
+    return AvroUtils.readAvroEntity(codecs.binaryDecoder, datumReader);
+  }
+
+  /**
+   * Returns an Avro Decoder that decodes the range of the array. The
+   * implementation it chooses will depend on the schema of the field. The
+   * decoders of the calling thread are reused.
+   * 
+   * @param writtenFieldAvroSchema
+   *          The schema the field was written with
+   * @param bytes
+   *          The array to decode bytes from
+   * @param offset
+   *          The index of the first byte of the value
+   * @param length
+   *          The length of the value
+   * @param codecs
+   *          The encoders and decoders of the calling thread
    * @return The avro decoder.
    */
-  private Decoder getColumnDecoder(Schema writtenFieldAvroSchema, InputStream in) {
+  private Decoder getColumnDecoder(Schema writtenFieldAvroSchema, byte[] bytes,
+      int offset, int length, ColumnCodecs codecs) {
     // Use a special Avro decoder that has special handling for int, long,
     // and String types. See ColumnDecoder for more information.
     if (writtenFieldAvroSchema.getType() == Type.INT
         || writtenFieldAvroSchema.getType() == Type.LONG
         || writtenFieldAvroSchema.getType() == Type.STRING) {
-      return new ColumnDecoder(in);
+      return codecs.columnDecoder.configure(bytes, offset, length);
     } else {
-      return DecoderFactory.get().binaryDecoder(in, null);
+      codecs.binaryDecoder = DecoderFactory.get().binaryDecoder(bytes, offset,
+          length, codecs.binaryDecoder);
+      return codecs.binaryDecoder;
     }
   }
 
   /**
-   * Returns an Avro Encoder. The implementation it chooses will depend on the
-   * schema of the field.
+   * Returns an Avro Encoder that writes to the output buffer of the calling
+   * thread. The implementation it chooses will depend on the schema of the
+   * field.
    * 
-   * @param out
-   *          Output stream to encode bytes to
+   * @param fieldAvroSchema
+   *          The schema of the field
+   * @param codecs
+   *          The encoders and decoders of the calling thread
    * @return The avro encoder
    */
-  private Encoder getColumnEncoder(Schema fieldAvroSchema, OutputStream out) {
+  private Encoder getColumnEncoder(Schema fieldAvroSchema, ColumnCodecs codecs) {
     // Use a special Avro encoder that has special handling for int, long,
     // and String types. See ColumnEncoder for more information.
     if (fieldAvroSchema.getType() == Type.INT
         || fieldAvroSchema.getType() == Type.LONG
         || fieldAvroSchema.getType() == Type.STRING) {
-      return new ColumnEncoder(out);
+      return codecs.columnEncoder;
     } else {
-      return EncoderFactory.get().binaryEncoder(out, null);
+      return codecs.binaryEncoder;
     }
   }
 
+  /**
+   * The encoders, decoders, and output buffer of a thread. The encoders write
+   * to the output buffer, which is reset before each value is written. The
+   * ColumnDecoder is configured with each value it reads, and the
+   * BinaryDecoder is replaced by one that reuses it.
+   */
+  private static class ColumnCodecs {
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ColumnEncoder columnEncoder = new ColumnEncoder(out);
+    private final BinaryEncoder binaryEncoder = EncoderFactory.get()
+        .binaryEncoder(out, null);
+    private final ColumnDecoder columnDecoder = new ColumnDecoder();
+    private BinaryDecoder binaryDecoder;
+  }
+
 }
@@ -15,8 +15,6 @@
  */
 package com.cloudera.cdk.data.hbase.avro.impl;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -28,8 +26,6 @@ import org.apache.avro.generic.GenericDatumWriter;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.io.DatumReader;
 import org.apache.avro.io.DatumWriter;
-import org.apache.avro.io.Decoder;
-import org.apache.avro.io.Encoder;
 
 import com.cloudera.cdk.data.PartitionKey;
 import com.cloudera.cdk.data.PartitionStrategy;
@@ -42,6 +38,9 @@ import com.cloudera.cdk.data.hbase.avro.io.MemcmpEncoder;
  * Avro implementation of the KeySerDe interface. This will serialize Keys and
  * PartialKeys to a special ordered memcmp-able avro encoding.
  * 
+ * Keys are encoded into a reusable per-thread buffer, or into a
+ * caller-provided MemcmpEncoder, and decoded directly from the key bytes.
+ * 
  * @param <K>
  *          The Key type.
  */
@@ -51,6 +50,21 @@ public class AvroKeySerDe implements KeySerDe {
   private final Schema[] partialSchemas;
   private final PartitionStrategy partitionStrategy;
 
+  /**
+   * DatumWriters for each partial schema, and the full schema at the last
+   * index. They hold no state between writes, so they are shared.
+   */
+  private final DatumWriter<GenericRecord>[] datumWriters;
+  private final DatumReader<GenericRecord> datumReader;
+
+  private final ThreadLocal<MemcmpEncoder> encoders = new ThreadLocal<MemcmpEncoder>() {
+    @Override
+    protected MemcmpEncoder initialValue() {
+      return new MemcmpEncoder();
+    }
+  };
+
+  @SuppressWarnings("unchecked")
   public AvroKeySerDe(Schema schema, PartitionStrategy partitionStrategy) {
     this.schema = schema;
     int fieldSize = schema.getFields().size();
@@ -66,6 +80,13 @@ public class AvroKeySerDe implements KeySerDe {
       partialSchemas[i] = Schema.createRecord(partialFieldList);
     }
     this.partitionStrategy = partitionStrategy;
+
+    datumWriters = new DatumWriter[fieldSize];
+    for (int i = 0; i < fieldSize; i++) {
+      datumWriters[i] = new GenericDatumWriter<GenericRecord>(
+          i == fieldSize - 1 ? schema : partialSchemas[i]);
+    }
+    datumReader = new GenericDatumReader<GenericRecord>(schema);
   }
 
   @Override
@@ -74,8 +95,25 @@ public class AvroKeySerDe implements KeySerDe {
       return new byte[0];
     }
 
-    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-    Encoder encoder = new MemcmpEncoder(outputStream);
+    MemcmpEncoder encoder = encoders.get();
+    encoder.reset();
+    serialize(key, encoder);
+    return encoder.toByteArray();
+  }
+
+  /**
+   * Serialize the key by appending it to the encoder's buffer. This allows
+   * callers to encode keys into a buffer they reuse.
+   * 
+   * @param key
+   *          The key to serialize
+   * @param encoder
+   *          A MemcmpEncoder that was created without an OutputStream.
+   */
+  public void serialize(PartitionKey key, MemcmpEncoder encoder) {
+    if (key.getLength() == 0) {
+      return;
+    }
 
     Schema schemaToUse;
     if (key.getLength() == schema.getFields().size()) {
@@ -83,8 +121,7 @@ public class AvroKeySerDe implements KeySerDe {
     } else {
       schemaToUse = partialSchemas[key.getLength() - 1];
     }
-    DatumWriter<GenericRecord> datumWriter = new GenericDatumWriter<GenericRecord>(
-        schemaToUse);
+    DatumWriter<GenericRecord> datumWriter = datumWriters[key.getLength() - 1];
     GenericRecord record = new GenericData.Record(schemaToUse);
     for (int i = 0; i < key.getLength(); i++) {
       Object keyPart = key.get(i);
@@ -112,15 +149,27 @@ public class AvroKeySerDe implements KeySerDe {
       record.put(i, keyPart);
     }
     AvroUtils.writeAvroEntity(record, encoder, datumWriter);
-    return outputStream.toByteArray();
   }
 
   @Override
   public PartitionKey deserialize(byte[] keyBytes) {
-    ByteArrayInputStream inputStream = new ByteArrayInputStream(keyBytes);
-    Decoder decoder = new MemcmpDecoder(inputStream);
-    DatumReader<GenericRecord> datumReader = new GenericDatumReader<GenericRecord>(
-        schema);
+    return deserialize(keyBytes, 0, keyBytes.length);
+  }
+
+  /**
+   * Deserialize the key from a range of a byte array, like the row of a
+   * KeyValue in its backing array.
+   * 
+   * @param bytes
+   *          The byte array to deserialize the key from.
+   * @param offset
+   *          The index of the first byte of the key.
+   * @param length
+   *          The length of the key in bytes.
+   * @return The key
+   */
+  public PartitionKey deserialize(byte[] bytes, int offset, int length) {
+    MemcmpDecoder decoder = new MemcmpDecoder(bytes, offset, length);
     GenericRecord genericRecord = AvroUtils
         .readAvroEntity(decoder, datumReader);
 
@@ -16,6 +16,7 @@
 package com.cloudera.cdk.data.hbase.avro.io;
 
 import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
@@ -36,17 +37,67 @@ import org.apache.avro.util.Utf8;
  * 
  * Strings are encoding as UTF-8 bytes. This is for backward compatibility
  * reasons, and is something we want to change in the future.
+ * 
+ * A ColumnDecoder can decode directly from a range of a byte array, like the
+ * value of a KeyValue in its backing array, without copying it.
  */
 public class ColumnDecoder extends Decoder {
 
-  private final BinaryDecoder wrappedDecoder;
+  private BinaryDecoder wrappedDecoder;
   private final InputStream in;
 
+  /**
+   * The array and its range to decode from when there is no InputStream.
+   */
+  private byte[] bytes;
+  private int pos;
+  private int limit;
+
   public ColumnDecoder(InputStream in) {
     this.in = in;
     this.wrappedDecoder = new DecoderFactory().binaryDecoder(in, null);
   }
 
+  /**
+   * Construct a ColumnDecoder that decodes from byte arrays. It must be given
+   * a range to decode with {@link #configure(byte[], int, int)} before it is
+   * used, and can be reconfigured for each value it decodes.
+   */
+  public ColumnDecoder() {
+    this.in = null;
+  }
+
+  /**
+   * Configure this ColumnDecoder to decode length bytes of the array, starting
+   * at offset. Only valid for a ColumnDecoder created without an InputStream.
+   * 
+   * @param bytes
+   *          The array to decode from
+   * @param offset
+   *          The index of the first byte to decode
+   * @param length
+   *          The number of bytes to decode
+   * @return This ColumnDecoder
+   */
+  public ColumnDecoder configure(byte[] bytes, int offset, int length) {
+    if (in != null) {
+      throw new IllegalStateException(
+          "Cannot configure a ColumnDecoder that reads from an InputStream");
+    }
+    this.bytes = bytes;
+    this.pos = offset;
+    this.limit = offset + length;
+    this.wrappedDecoder = DecoderFactory.get().binaryDecoder(bytes, offset,
+        length, wrappedDecoder);
+    return this;
+  }
+
+  private void require(int n) throws IOException {
+    if (limit - pos < n) {
+      throw new EOFException();
+    }
+  }
+
   @Override
   public void readNull() throws IOException {
     wrappedDecoder.readNull();
@@ -59,12 +110,28 @@ public class ColumnDecoder extends Decoder {
 
   @Override
   public int readInt() throws IOException {
+    if (in == null) {
+      require(4);
+      int n = ((bytes[pos] & 0xff) << 24) | ((bytes[pos + 1] & 0xff) << 16)
+          | ((bytes[pos + 2] & 0xff) << 8) | (bytes[pos + 3] & 0xff);
+      pos += 4;
+      return n;
+    }
     DataInputStream dataIn = new DataInputStream(in);
     return dataIn.readInt();
   }
 
   @Override
   public long readLong() throws IOException {
+    if (in == null) {
+      require(8);
+      long n = 0;
+      for (int i = 0; i < 8; i++) {
+        n = (n << 8) | (bytes[pos + i] & 0xff);
+      }
+      pos += 8;
+      return n;
+    }
     DataInputStream dataIn = new DataInputStream(in);
     return dataIn.readLong();
   }
@@ -81,6 +148,15 @@ public class ColumnDecoder extends Decoder {
 
   @Override
   public Utf8 readString(Utf8 old) throws IOException {
+    if (in == null) {
+      // the string is the rest of the column value
+      int length = limit - pos;
+      Utf8 result = old != null ? old : new Utf8();
+      result.setByteLength(length);
+      System.arraycopy(bytes, pos, result.getBytes(), 0, length);
+      pos = limit;
+      return result;
+    }
     int bytesAvailable = in.available();
     byte[] bytes = new byte[bytesAvailable];
     in.read(bytes);
@@ -95,6 +171,10 @@ public class ColumnDecoder extends Decoder {
 
   @Override
   public void skipString() throws IOException {
+    if (in == null) {
+      pos = limit;
+      return;
+    }
     int bytesAvailable = in.available();
     in.skip(bytesAvailable);
   }
@@ -15,7 +15,6 @@
  */
 package com.cloudera.cdk.data.hbase.avro.io;
 
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
@@ -43,6 +42,7 @@ public class ColumnEncoder extends Encoder {
 
   private final BinaryEncoder wrappedEncoder;
   private final OutputStream out;
+  private final byte[] buf = new byte[8];
 
   public ColumnEncoder(OutputStream out) {
     this.out = out;
@@ -71,14 +71,24 @@ public class ColumnEncoder extends Encoder {
 
   @Override
   public void writeInt(int n) throws IOException {
-    DataOutputStream dataOut = new DataOutputStream(out);
-    dataOut.writeInt(n);
+    buf[0] = (byte) (n >>> 24);
+    buf[1] = (byte) (n >>> 16);
+    buf[2] = (byte) (n >>> 8);
+    buf[3] = (byte) n;
+    out.write(buf, 0, 4);
   }
 
   @Override
   public void writeLong(long n) throws IOException {
-    DataOutputStream dataOut = new DataOutputStream(out);
-    dataOut.writeLong(n);
+    buf[0] = (byte) (n >>> 56);
+    buf[1] = (byte) (n >>> 48);
+    buf[2] = (byte) (n >>> 40);
+    buf[3] = (byte) (n >>> 32);
+    buf[4] = (byte) (n >>> 24);
+    buf[5] = (byte) (n >>> 16);
+    buf[6] = (byte) (n >>> 8);
+    buf[7] = (byte) n;
+    out.write(buf, 0, 8);
   }
 
   @Override
@@ -93,8 +103,8 @@ public class ColumnEncoder extends Encoder {
 
   @Override
   public void writeString(Utf8 utf8) throws IOException {
-    byte[] bytes = utf8.toString().getBytes("UTF-8");
-    out.write(bytes);
+    // Utf8 already holds the UTF-8 bytes, so write them without a copy
+    out.write(utf8.getBytes(), 0, utf8.getByteLength());
   }
 
   @Override
@@ -27,12 +27,60 @@ import org.apache.avro.io.Decoder;
  * A class that will decode Avro types, whose sort order can be determined by a
  * memcmp. Decodes avro types encoded with the MemcmpEncoder class. See that
  * class for information on how each type of value is encoded.
+ * 
+ * A decoder created with a byte array reads values directly from the array.
+ * A decoder created with an InputStream reads the bytes of each value into a
+ * small scratch buffer first.
  */
 public class MemcmpDecoder extends Decoder {
-  private InputStream in;
+
+  private final InputStream in;
+  private byte[] buf;
+  private int pos;
+  private int limit;
 
   public MemcmpDecoder(InputStream in) {
     this.in = in;
+    this.buf = new byte[8];
+  }
+
+  /**
+   * Create a decoder that reads from a range of a byte array.
+   * 
+   * @param bytes
+   *          The array to read from.
+   * @param offset
+   *          The index of the first byte to read.
+   * @param length
+   *          The number of bytes that can be read.
+   */
+  public MemcmpDecoder(byte[] bytes, int offset, int length) {
+    this.in = null;
+    this.buf = bytes;
+    this.pos = offset;
+    this.limit = offset + length;
+  }
+
+  /**
+   * Make the next n bytes available in buf, starting at pos.
+   */
+  private void require(int n) throws IOException {
+    if (in == null) {
+      if (limit - pos < n) {
+        throw new EOFException();
+      }
+    } else {
+      int read = 0;
+      while (read < n) {
+        int i = in.read(buf, read, n - read);
+        if (i < 0) {
+          throw new EOFException();
+        }
+        read += i;
+      }
+      pos = 0;
+      limit = n;
+    }
   }
 
   @Override
@@ -46,11 +94,7 @@ public class MemcmpDecoder extends Decoder {
    */
   @Override
   public boolean readBoolean() throws IOException {
-    int byteRead = in.read();
-    if (byteRead == -1) {
-      throw new EOFException();
-    }
-    return byteRead > 0;
+    return readByte() != 0;
   }
 
   /**
@@ -64,17 +108,11 @@ public class MemcmpDecoder extends Decoder {
    */
   @Override
   public int readInt() throws IOException {
-    byte[] intBytes = new byte[4];
-    int i = in.read(intBytes);
-    if (i < 4) {
-      throw new EOFException();
-    }
-    intBytes[0] = (byte) (intBytes[0] ^ 0x80);
-
-    int value = 0;
-    for (int j = 0; j < intBytes.length; ++j) {
-      value = (value << 8) + (intBytes[j] & 0xff);
-    }
+    require(4);
+    int value = (((buf[pos] ^ 0x80) & 0xff) << 24)
+        | ((buf[pos + 1] & 0xff) << 16) | ((buf[pos + 2] & 0xff) << 8)
+        | (buf[pos + 3] & 0xff);
+    pos += 4;
     return value;
   }
 
@@ -89,17 +127,15 @@ public class MemcmpDecoder extends Decoder {
    */
   @Override
   public long readLong() throws IOException {
-    byte[] longBytes = new byte[8];
-    int i = in.read(longBytes);
-    if (i < 8) {
-      throw new EOFException();
-    }
-    longBytes[0] = (byte) (longBytes[0] ^ 0x80);
-
-    long value = 0;
-    for (int j = 0; j < longBytes.length; ++j) {
-      value = (value << 8) + (longBytes[j] & 0xff);
-    }
+    require(8);
+    long value = (((long) ((buf[pos] ^ 0x80) & 0xff)) << 56)
+        | (((long) (buf[pos + 1] & 0xff)) << 48)
+        | (((long) (buf[pos + 2] & 0xff)) << 40)
+        | (((long) (buf[pos + 3] & 0xff)) << 32)
+        | (((long) (buf[pos + 4] & 0xff)) << 24)
+        | ((buf[pos + 5] & 0xff) << 16) | ((buf[pos + 6] & 0xff) << 8)
+        | (buf[pos + 7] & 0xff);
+    pos += 8;
     return value;
   }
 
@@ -151,8 +187,14 @@ public class MemcmpDecoder extends Decoder {
    */
   @Override
   public Utf8 readString(Utf8 old) throws IOException {
-    ByteBuffer stringBytes = readBytes(null);
-    return new Utf8(stringBytes.array());
+    if (in != null) {
+      ByteBuffer stringBytes = readBytes(null);
+      return new Utf8(stringBytes.array());
+    }
+    Utf8 result = (old != null ? old : new Utf8());
+    result.setByteLength(decodedLength());
+    decodeBytes(result.getBytes(), 0);
+    return result;
   }
 
   @Override
@@ -177,6 +219,19 @@ public class MemcmpDecoder extends Decoder {
    */
   @Override
   public ByteBuffer readBytes(ByteBuffer old) throws IOException {
+    if (in == null) {
+      int length = decodedLength();
+      ByteBuffer result;
+      if (old != null && old.hasArray() && old.capacity() >= length) {
+        result = old;
+        result.clear();
+      } else {
+        result = ByteBuffer.allocate(length);
+      }
+      decodeBytes(result.array(), result.arrayOffset());
+      result.limit(length);
+      return result;
+    }
     ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
     while (true) {
       int byteRead = in.read();
@@ -185,7 +240,7 @@ public class MemcmpDecoder extends Decoder {
       }
       if (byteRead == 0) {
         int secondByteRead = in.read();
-        if (byteRead < 0) {
+        if (secondByteRead < 0) {
           throw new EOFException();
         }
         if (secondByteRead == 0) {
@@ -205,6 +260,58 @@ public class MemcmpDecoder extends Decoder {
     return ByteBuffer.wrap(bytesOut.toByteArray());
   }
 
+  /**
+   * Get the decoded length of the bytes value at pos, checking its encoding.
+   * Only used when reading from an array.
+   */
+  private int decodedLength() throws IOException {
+    int length = 0;
+    int i = pos;
+    while (true) {
+      if (i >= limit) {
+        throw new EOFException();
+      }
+      if (buf[i] == 0) {
+        if (i + 1 >= limit) {
+          throw new EOFException();
+        }
+        if (buf[i + 1] == 0) {
+          return length;
+        } else if (buf[i + 1] != 1) {
+          String msg = "Illegal encoding. 0 byte cannot be followed by "
+              + "anything other than 0 or 1. It was followed by "
+              + Integer.toString(buf[i + 1] & 0xff);
+          throw new IOException(msg);
+        }
+        i += 2;
+      } else {
+        i++;
+      }
+      length++;
+    }
+  }
+
+  /**
+   * Decode the bytes value at pos, which has been checked by decodedLength,
+   * into dest at offset, and move pos past its end marker.
+   */
+  private void decodeBytes(byte[] dest, int offset) {
+    int d = offset;
+    while (true) {
+      byte b = buf[pos];
+      if (b == 0) {
+        if (buf[pos + 1] == 0) {
+          pos += 2;
+          return;
+        }
+        pos += 2;
+      } else {
+        pos++;
+      }
+      dest[d++] = b;
+    }
+  }
+
   /**
    * To skip bytes, we have to read the bytes, since we aren't length prefixing
    * the byte array.
@@ -226,9 +333,19 @@ public class MemcmpDecoder extends Decoder {
    */
   @Override
   public void readFixed(byte[] bytes, int start, int length) throws IOException {
-    int i = in.read(bytes, start, length);
-    if (i < length) {
-      throw new EOFException();
+    if (in == null) {
+      require(length);
+      System.arraycopy(buf, pos, bytes, start, length);
+      pos += length;
+      return;
+    }
+    int read = 0;
+    while (read < length) {
+      int i = in.read(bytes, start + read, length - read);
+      if (i < 0) {
+        throw new EOFException();
+      }
+      read += i;
     }
   }
 
@@ -240,7 +357,12 @@ public class MemcmpDecoder extends Decoder {
    */
   @Override
   public void skipFixed(int length) throws IOException {
-    in.skip(length);
+    if (in == null) {
+      require(length);
+      pos += length;
+    } else {
+      in.skip(length);
+    }
   }
 
   /**
@@ -316,10 +438,7 @@ public class MemcmpDecoder extends Decoder {
    * @return the byte read.
    */
   private byte readByte() throws IOException {
-    int byteRead = in.read();
-    if (byteRead == -1) {
-      throw new EOFException();
-    }
-    return (byte) byteRead;
+    require(1);
+    return buf[pos++];
   }
 }
@@ -18,18 +18,81 @@ package com.cloudera.cdk.data.hbase.avro.io;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import org.apache.avro.util.Utf8;
 import org.apache.avro.io.Encoder;
 
 /**
  * A class that will encode Avro types, whose sort order can be determined by a
  * memcmp.
+ * 
+ * Values are stored directly into a growable byte array. An encoder created
+ * with an OutputStream writes each value through to the stream. An encoder
+ * created without one keeps the encoded bytes, which can be read with
+ * getBuffer and size, and can be reused with reset, so that encoding many
+ * keys doesn't allocate per value or per key.
  */
 public class MemcmpEncoder extends Encoder {
-  private OutputStream out;
 
+  private static final int DEFAULT_CAPACITY = 64;
+
+  private final OutputStream out;
+  private byte[] buf;
+  private int count;
+
+  /**
+   * Create an encoder that writes to an internal, reusable buffer.
+   */
+  public MemcmpEncoder() {
+    this.out = null;
+    this.buf = new byte[DEFAULT_CAPACITY];
+  }
+
+  /**
+   * Create an encoder that writes each value to the output stream.
+   * 
+   * @param out
+   *          The OutputStream to write to.
+   */
   public MemcmpEncoder(OutputStream out) {
     this.out = out;
+    this.buf = new byte[DEFAULT_CAPACITY];
+  }
+
+  /**
+   * Discard the encoded bytes, so that the buffer can be reused.
+   */
+  public void reset() {
+    count = 0;
+  }
+
+  /**
+   * Get the number of encoded bytes in the buffer.
+   * 
+   * @return The number of valid bytes in the array returned by getBuffer.
+   */
+  public int size() {
+    return count;
+  }
+
+  /**
+   * Get the buffer the encoder writes to. Only the first size() bytes are
+   * valid, and the array is replaced when the buffer grows, so it should not
+   * be kept across writes.
+   * 
+   * @return The encoder's buffer.
+   */
+  public byte[] getBuffer() {
+    return buf;
+  }
+
+  /**
+   * Get a copy of the encoded bytes in the buffer.
+   * 
+   * @return The encoded bytes.
+   */
+  public byte[] toByteArray() {
+    return Arrays.copyOf(buf, count);
   }
 
   @Override
@@ -39,6 +102,31 @@ public class MemcmpEncoder extends Encoder {
     }
   }
 
+  /**
+   * Make room for n more bytes in the buffer.
+   */
+  private void ensureCapacity(int n) {
+    if (count + n > buf.length) {
+      buf = Arrays.copyOf(buf, Math.max(buf.length << 1, count + n));
+    }
+  }
+
+  /**
+   * Write the buffered bytes to the output stream, if there is one.
+   */
+  private void drain() throws IOException {
+    if (out != null) {
+      out.write(buf, 0, count);
+      count = 0;
+    }
+  }
+
+  private void writeByte(int b) throws IOException {
+    ensureCapacity(1);
+    buf[count++] = (byte) b;
+    drain();
+  }
+
   @Override
   public void writeNull() throws IOException {
   }
@@ -51,7 +139,7 @@ public class MemcmpEncoder extends Encoder {
    */
   @Override
   public void writeBoolean(boolean b) throws IOException {
-    out.write(b ? 1 : 0);
+    writeByte(b ? 1 : 0);
   }
 
   /**
@@ -63,9 +151,13 @@ public class MemcmpEncoder extends Encoder {
    */
   @Override
   public void writeInt(int n) throws IOException {
-    byte[] intBytes = new byte[] { (byte) ((n >>> 24) ^ 0x80),
-        (byte) (n >>> 16), (byte) (n >>> 8), (byte) n };
-    out.write(intBytes);
+    ensureCapacity(4);
+    buf[count] = (byte) ((n >>> 24) ^ 0x80);
+    buf[count + 1] = (byte) (n >>> 16);
+    buf[count + 2] = (byte) (n >>> 8);
+    buf[count + 3] = (byte) n;
+    count += 4;
+    drain();
   }
 
   /**
@@ -77,10 +169,17 @@ public class MemcmpEncoder extends Encoder {
    */
   @Override
   public void writeLong(long n) throws IOException {
-    byte[] intBytes = new byte[] { (byte) ((n >>> 56) ^ 0x80),
-        (byte) (n >>> 48), (byte) (n >>> 40), (byte) (n >>> 32),
-        (byte) (n >>> 24), (byte) (n >>> 16), (byte) (n >>> 8), (byte) n };
-    out.write(intBytes);
+    ensureCapacity(8);
+    buf[count] = (byte) ((n >>> 56) ^ 0x80);
+    buf[count + 1] = (byte) (n >>> 48);
+    buf[count + 2] = (byte) (n >>> 40);
+    buf[count + 3] = (byte) (n >>> 32);
+    buf[count + 4] = (byte) (n >>> 24);
+    buf[count + 5] = (byte) (n >>> 16);
+    buf[count + 6] = (byte) (n >>> 8);
+    buf[count + 7] = (byte) n;
+    count += 8;
+    drain();
   }
 
   /**
@@ -143,7 +242,13 @@ public class MemcmpEncoder extends Encoder {
    */
   @Override
   public void writeFixed(byte[] bytes, int start, int len) throws IOException {
-    out.write(bytes, start, len);
+    if (out != null) {
+      out.write(bytes, start, len);
+      return;
+    }
+    ensureCapacity(len);
+    System.arraycopy(bytes, start, buf, count, len);
+    count += len;
   }
 
   /**
@@ -157,7 +262,8 @@ public class MemcmpEncoder extends Encoder {
    */
   @Override
   public void writeBytes(ByteBuffer bytes) throws IOException {
-    writeBytes(bytes.array(), bytes.position(), bytes.remaining());
+    writeBytes(bytes.array(), bytes.arrayOffset() + bytes.position(),
+        bytes.remaining());
   }
 
   /**
@@ -175,16 +281,18 @@ public class MemcmpEncoder extends Encoder {
    */
   @Override
   public void writeBytes(byte[] bytes, int start, int len) throws IOException {
+    // at most every byte is escaped, plus the end marker
+    ensureCapacity(2 * len + 2);
     for (int i = start; i < start + len; ++i) {
-      if (bytes[i] == 0x00) {
-        out.write(0);
-        out.write(1);
-      } else {
-        out.write((int) bytes[i]);
+      byte b = bytes[i];
+      buf[count++] = b;
+      if (b == 0x00) {
+        buf[count++] = 1;
       }
     }
-    out.write(0);
-    out.write(0);
+    buf[count++] = 0;
+    buf[count++] = 0;
+    drain();
   }
 
   /**
@@ -210,7 +318,7 @@ public class MemcmpEncoder extends Encoder {
    */
   @Override
   public void startItem() throws IOException {
-    out.write(1);
+    writeByte(1);
   }
 
   /**
@@ -218,7 +326,7 @@ public class MemcmpEncoder extends Encoder {
    */
   @Override
   public void writeArrayEnd() throws IOException {
-    out.write(0);
+    writeByte(0);
   }
 
   /**
@@ -21,6 +21,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.hadoop.hbase.client.HTablePool;
 import org.slf4j.Logger;
@@ -62,6 +63,17 @@ public class DefaultSchemaManager implements SchemaManager {
    */
   private ConcurrentHashMap<String, KeyEntitySchemaParser<?, ?>> schemaParsers = new ConcurrentHashMap<String, KeyEntitySchemaParser<?, ?>>();
 
+  /**
+   * A mapping of managed schema row keys to the parsed key and entity schemas
+   * of the managed schema. Entries are removed when the managed schema is
+   * refreshed, created, migrated, or deleted, and are only used for the
+   * ManagedSchema instance they were parsed from.
+   */
+  private final ConcurrentHashMap<String, ParsedSchemas> parsedSchemaMap = new ConcurrentHashMap<String, ParsedSchemas>();
+
+  private final AtomicLong parsedSchemaHits = new AtomicLong();
+  private final AtomicLong parsedSchemaMisses = new AtomicLong();
+
   /**
    * Constructor which uses the default managed schema table name, which is
    * managed_schemas.
@@ -94,59 +106,28 @@ public class DefaultSchemaManager implements SchemaManager {
 
   @Override
   public KeySchema getKeySchema(String tableName, String entityName) {
-    ManagedSchema managedSchema = getManagedSchema(tableName, entityName);
-    KeyEntitySchemaParser<?, ?> schemaParser = getSchemaParser(managedSchema
-        .getSchemaType());
-    String greatestVersionedSchema = getGreatestEntitySchemaString(managedSchema);
-    return schemaParser.parseKeySchema(greatestVersionedSchema);
+    return getParsedSchemas(tableName, entityName).getGreatestKeySchema();
   }
 
   @Override
   public EntitySchema getEntitySchema(String tableName, String entityName) {
-    ManagedSchema managedSchema = getManagedSchema(tableName, entityName);
-    KeyEntitySchemaParser<?, ?> schemaParser = getSchemaParser(managedSchema
-        .getSchemaType());
-    String greatestVersionedSchema = getGreatestEntitySchemaString(managedSchema);
-    return schemaParser.parseEntitySchema(greatestVersionedSchema);
-  }
-  
-  private String getGreatestEntitySchemaString(ManagedSchema managedSchema) {
-    int greatestVersion = -1;
-    String greatestVersionedSchema = null;
-    for (Entry<String, String> entry : managedSchema.getEntitySchemas()
-        .entrySet()) {
-      int version = Integer.parseInt(entry.getKey());
-      if (version > greatestVersion) {
-        greatestVersion = version;
-        greatestVersionedSchema = entry.getValue();
-      }
-    }
-
-    if (greatestVersionedSchema == null) {
-      String msg = "No schema versions for " + managedSchema.getTable() + ", " + managedSchema.getName();
-      LOG.error(msg);
-      throw new SchemaNotFoundException(msg);
-    }
-    
-    return greatestVersionedSchema;
+    ParsedSchemas parsedSchemas = getParsedSchemas(tableName, entityName);
+    return parsedSchemas.getEntitySchema(parsedSchemas.getGreatestVersion());
   }
 
   @Override
   public EntitySchema getEntitySchema(String tableName, String entityName,
       int version) {
-    ManagedSchema managedSchema = getManagedSchema(tableName, entityName);
-    KeyEntitySchemaParser<?, ?> schemaParser = getSchemaParser(managedSchema
-        .getSchemaType());
-    if (!managedSchema.getEntitySchemas().containsKey(String.valueOf(version))) {
+    EntitySchema schema = getParsedSchemas(tableName, entityName)
+        .getEntitySchema(version);
+    if (schema == null) {
       // didn't contain the schema version, refresh the schema cache and refetch
       // the managed schema.
       refreshManagedSchemaCache(tableName, entityName);
-      managedSchema = getManagedSchema(tableName, entityName);
+      schema = getParsedSchemas(tableName, entityName).getEntitySchema(version);
     }
-    String schema = managedSchema.getEntitySchemas().get(
-        String.valueOf(version));
     if (schema != null) {
-      return schemaParser.parseEntitySchema(schema);
+      return schema;
     } else {
       String msg = "Could not find managed schema for " + tableName + ", "
           + entityName + ", and version " + Integer.toString(version);
@@ -158,14 +139,10 @@ public class DefaultSchemaManager implements SchemaManager {
   @Override
   public Map<Integer, EntitySchema> getEntitySchemas(String tableName,
       String entityName) {
-    ManagedSchema managedSchema = getManagedSchema(tableName, entityName);
-    KeyEntitySchemaParser<?, ?> schemaParser = getSchemaParser(managedSchema
-        .getSchemaType());
+    ParsedSchemas parsedSchemas = getParsedSchemas(tableName, entityName);
     Map<Integer, EntitySchema> retMap = new HashMap<Integer, EntitySchema>();
-    for (Entry<String, String> entry : managedSchema.getEntitySchemas()
-        .entrySet()) {
-      EntitySchema entitySchema = schemaParser.parseEntitySchema(entry.getValue());
-      retMap.put(Integer.parseInt(entry.getKey()), entitySchema);
+    for (int version : parsedSchemas.getVersions()) {
+      retMap.put(version, parsedSchemas.getEntitySchema(version));
     }
     return retMap;
   }
@@ -173,13 +150,10 @@ public class DefaultSchemaManager implements SchemaManager {
   @Override
   public int getEntityVersion(String tableName, String entityName,
       EntitySchema schema) {
-    KeyEntitySchemaParser<?, ?> schemaParser = getSchemaParser(getManagedSchema(
-        tableName, entityName).getSchemaType());
-    for (Entry<Integer, String> entry : getManagedSchemaVersions(tableName,
-        entityName).entrySet()) {
-      EntitySchema managedSchema = schemaParser.parseEntitySchema(entry.getValue());
-      if (schema.equals(managedSchema)) {
-        return entry.getKey();
+    ParsedSchemas parsedSchemas = getParsedSchemas(tableName, entityName);
+    for (int version : parsedSchemas.getVersions()) {
+      if (schema.equals(parsedSchemas.getEntitySchema(version))) {
+        return version;
       }
     }
     return -1;
@@ -221,6 +195,7 @@ public class DefaultSchemaManager implements SchemaManager {
           "The schema has been updated concurrently.");
     }
     getManagedSchemaMap().put(getManagedSchemaMapKey(managedSchema.getTable(), managedSchema.getName()), managedSchema);
+    invalidateParsedSchemas(tableName, entityName);
   }
 
   @Override
@@ -274,13 +249,21 @@ public class DefaultSchemaManager implements SchemaManager {
       }
     }
 
-    // at this point, the schema is a valid migration. persist it.
-    managedSchema.getEntitySchemas().put(
-        Integer.toString(greatestSchemaVersion + 1), newEntitySchema.getRawSchema());
-    if (!managedSchemaDao.save(managedSchema)) {
+    // at this point, the schema is a valid migration. persist it as a new
+    // ManagedSchema instance. The cached instance is never changed in place,
+    // so getParsedSchemas can tell parsed schemas of an old instance apart.
+    Map<String, String> entitySchemas = new HashMap<String, String>(
+        managedSchema.getEntitySchemas());
+    entitySchemas.put(Integer.toString(greatestSchemaVersion + 1),
+        newEntitySchema.getRawSchema());
+    ManagedSchema migratedSchema = ManagedSchema.newBuilder(managedSchema)
+        .setEntitySchemas(entitySchemas).build();
+    if (!managedSchemaDao.save(migratedSchema)) {
       throw new ConcurrentSchemaModificationException(
           "The schema has been updated concurrently.");
     }
+    getManagedSchemaMap().put(getManagedSchemaMapKey(migratedSchema.getTable(), migratedSchema.getName()), migratedSchema);
+    invalidateParsedSchemas(tableName, entityName);
   }
 
   @Override
@@ -297,6 +280,7 @@ public class DefaultSchemaManager implements SchemaManager {
     }
 
     getManagedSchemaMap().remove(getManagedSchemaMapKey(managedSchema.getTable(), managedSchema.getName()));
+    invalidateParsedSchemas(tableName, entityName);
   }
 
   /**
@@ -316,6 +300,26 @@ public class DefaultSchemaManager implements SchemaManager {
       getManagedSchemaMap().put(getManagedSchemaMapKey(managedSchema.getTable(), managedSchema.getName()),
           managedSchema);
     }
+    invalidateParsedSchemas(tableName, entityName);
+  }
+
+  /**
+   * Get the number of schema lookups that were answered with an already parsed
+   * key or entity schema.
+   * 
+   * @return The number of parsed schema cache hits
+   */
+  public long getParsedSchemaCacheHits() {
+    return parsedSchemaHits.get();
+  }
+
+  /**
+   * Get the number of schema lookups that had to parse a key or entity schema.
+   * 
+   * @return The number of parsed schema cache misses
+   */
+  public long getParsedSchemaCacheMisses() {
+    return parsedSchemaMisses.get();
   }
 
   @Override
@@ -382,7 +386,7 @@ public class DefaultSchemaManager implements SchemaManager {
   @SuppressWarnings("unchecked")
   private KeyEntitySchemaParser<?, ?> getSchemaParser(
       String schemaParserClassName) {
-    if (schemaParsers.contains(schemaParserClassName)) {
+    if (schemaParsers.containsKey(schemaParserClassName)) {
       return schemaParsers.get(schemaParserClassName);
     } else {
       try {
@@ -400,31 +404,6 @@ public class DefaultSchemaManager implements SchemaManager {
     }
   }
 
-  /**
-   * Get a map of schema versions for a managed schemas.
-   * 
-   * @param tableName
-   *          The table name of the managed schema.
-   * @param entityName
-   *          The entity name of the managed schema.
-   * @return The managed schema version map.
-   * @throws SchemaNotFoundException
-   *           Thrown if a managed schema can't be found for the table name
-   *           entity name.
-   */
-  private Map<Integer, String> getManagedSchemaVersions(String tableName,
-      String entityName) {
-
-    ManagedSchema managedSchema = getManagedSchema(tableName, entityName);
-    Map<Integer, String> returnMap = new HashMap<Integer, String>();
-    for (Map.Entry<String, String> versionsEntry : managedSchema
-        .getEntitySchemas().entrySet()) {
-      returnMap.put(Integer.parseInt(versionsEntry.getKey()),
-          versionsEntry.getValue());
-    }
-    return returnMap;
-  }
-
   /**
    * Get the ManagedSchema entity for the tableName, entityName managed schema.
    * 
@@ -453,4 +432,112 @@ public class DefaultSchemaManager implements SchemaManager {
   private String getManagedSchemaMapKey(String tableName, String entityName) {
     return tableName + ":" + entityName;
   }
+
+  /**
+   * Get the parsed schemas of the tableName, entityName managed schema,
+   * creating them if they don't exist for the current ManagedSchema entity.
+   * 
+   * @param tableName
+   *          The table name of the managed schema.
+   * @param entityName
+   *          The entity name of the managed schema.
+   * @return The ParsedSchemas
+   * @throws SchemaNotFoundException
+   */
+  private ParsedSchemas getParsedSchemas(String tableName, String entityName) {
+    ManagedSchema managedSchema = getManagedSchema(tableName, entityName);
+    String key = getManagedSchemaMapKey(tableName, entityName);
+    ParsedSchemas parsedSchemas = parsedSchemaMap.get(key);
+    if (parsedSchemas == null || parsedSchemas.managedSchema != managedSchema) {
+      parsedSchemas = new ParsedSchemas(managedSchema,
+          getSchemaParser(managedSchema.getSchemaType()));
+      parsedSchemaMap.put(key, parsedSchemas);
+    }
+    return parsedSchemas;
+  }
+
+  private void invalidateParsedSchemas(String tableName, String entityName) {
+    parsedSchemaMap.remove(getManagedSchemaMapKey(tableName, entityName));
+  }
+
+  /**
+   * The parsed schemas of a ManagedSchema entity. The greatest version is
+   * found when this is created, and each schema is parsed the first time it
+   * is requested.
+   */
+  private class ParsedSchemas {
+
+    private final ManagedSchema managedSchema;
+    private final KeyEntitySchemaParser<?, ?> schemaParser;
+    private final int greatestVersion;
+    private final ConcurrentHashMap<Integer, EntitySchema> entitySchemas = new ConcurrentHashMap<Integer, EntitySchema>();
+    private volatile KeySchema greatestKeySchema;
+
+    public ParsedSchemas(ManagedSchema managedSchema,
+        KeyEntitySchemaParser<?, ?> schemaParser) {
+      this.managedSchema = managedSchema;
+      this.schemaParser = schemaParser;
+      int greatest = -1;
+      for (String version : managedSchema.getEntitySchemas().keySet()) {
+        greatest = Math.max(greatest, Integer.parseInt(version));
+      }
+      this.greatestVersion = greatest;
+    }
+
+    /**
+     * @throws SchemaNotFoundException
+     *           if the managed schema has no versions.
+     */
+    public int getGreatestVersion() {
+      if (greatestVersion < 0) {
+        String msg = "No schema versions for " + managedSchema.getTable()
+            + ", " + managedSchema.getName();
+        LOG.error(msg);
+        throw new SchemaNotFoundException(msg);
+      }
+      return greatestVersion;
+    }
+
+    public List<Integer> getVersions() {
+      List<Integer> versions = Lists.newArrayList();
+      for (String version : managedSchema.getEntitySchemas().keySet()) {
+        versions.add(Integer.parseInt(version));
+      }
+      return versions;
+    }
+
+    public KeySchema getGreatestKeySchema() {
+      KeySchema keySchema = greatestKeySchema;
+      if (keySchema != null) {
+        parsedSchemaHits.incrementAndGet();
+        return keySchema;
+      }
+      parsedSchemaMisses.incrementAndGet();
+      keySchema = schemaParser.parseKeySchema(managedSchema.getEntitySchemas()
+          .get(String.valueOf(getGreatestVersion())));
+      greatestKeySchema = keySchema;
+      return keySchema;
+    }
+
+    /**
+     * @return The entity schema of the version, or null if the version
+     *         doesn't exist.
+     */
+    public EntitySchema getEntitySchema(int version) {
+      EntitySchema entitySchema = entitySchemas.get(version);
+      if (entitySchema != null) {
+        parsedSchemaHits.incrementAndGet();
+        return entitySchema;
+      }
+      String schemaString = managedSchema.getEntitySchemas().get(
+          String.valueOf(version));
+      if (schemaString == null) {
+        return null;
+      }
+      parsedSchemaMisses.incrementAndGet();
+      entitySchema = schemaParser.parseEntitySchema(schemaString);
+      entitySchemas.put(version, entitySchema);
+      return entitySchema;
+    }
+  }
 }
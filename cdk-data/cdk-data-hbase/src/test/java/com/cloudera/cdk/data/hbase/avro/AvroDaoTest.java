@@ -22,13 +22,19 @@ import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.client.HTableInterface;
 import org.apache.hadoop.hbase.client.HTablePool;
+import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -41,16 +47,34 @@ import com.cloudera.cdk.data.dao.Dao;
 import com.cloudera.cdk.data.dao.EntityBatch;
 import com.cloudera.cdk.data.dao.EntityScanner;
 import com.cloudera.cdk.data.dao.HBaseCommonException;
+import com.cloudera.cdk.data.hbase.BaseDao;
 import com.cloudera.cdk.data.hbase.avro.entities.ArrayRecord;
 import com.cloudera.cdk.data.hbase.avro.entities.EmbeddedRecord;
 import com.cloudera.cdk.data.hbase.avro.entities.TestEnum;
 import com.cloudera.cdk.data.hbase.avro.entities.TestRecord;
+import com.cloudera.cdk.data.hbase.avro.impl.AvroKeyEntitySchemaParser;
+import com.cloudera.cdk.data.hbase.avro.impl.AvroKeySchema;
+import com.cloudera.cdk.data.hbase.avro.impl.AvroKeySerDe;
 import com.cloudera.cdk.data.hbase.avro.impl.AvroUtils;
 import com.cloudera.cdk.data.hbase.testing.HBaseTestUtils;
 
 public class AvroDaoTest {
 
   private static final String schemaString;
+
+  /**
+   * A schema without a version column, so puts aren't version checked.
+   */
+  private static final String unversionedSchemaString = "{ \"name\": \"test\", "
+      + "\"type\": \"record\", \"fields\": [ "
+      + "{ \"name\": \"keyPart1\", \"type\": \"string\", \"mapping\": "
+      + "    { \"type\": \"key\", \"value\": \"0\" } }, "
+      + "{ \"name\": \"keyPart2\", \"type\": \"string\", \"mapping\": "
+      + "    { \"type\": \"key\", \"value\": \"1\" } }, "
+      + "{ \"name\": \"field1\", \"type\": [\"null\", \"string\"], \"mapping\": "
+      + "    { \"type\": \"column\", \"value\": \"meta:field1\" } }, "
+      + "{ \"name\": \"field2\", \"type\": [\"null\", \"string\"], \"mapping\": "
+      + "    { \"type\": \"column\", \"value\": \"meta:field2\" } } ]}";
   private static final String tableName = "testtable";
   private HTablePool tablePool;
 
@@ -348,6 +372,264 @@ public class AvroDaoTest {
     }
   }
   
+  @Test
+  public void testMultiGetPutAndDelete() throws Exception {
+    Dao<TestRecord> dao = new SpecificAvroDao<TestRecord>(tablePool, tableName,
+        schemaString, TestRecord.class);
+
+    List<TestRecord> entities = createSpecificEntities(10);
+    for (boolean result : dao.put(entities)) {
+      assertTrue(result);
+    }
+    // the entities have a checkConflict field, so putting them again conflicts
+    for (boolean result : dao.put(entities)) {
+      assertFalse(result);
+    }
+
+    List<PartitionKey> keys = new ArrayList<PartitionKey>();
+    for (int i = 9; i >= 0; i--) {
+      keys.add(dao.getPartitionStrategy().partitionKey("part1_" + i,
+          "part2_" + i));
+    }
+    keys.add(dao.getPartitionStrategy().partitionKey("part1_x", "part2_x"));
+
+    List<TestRecord> records = dao.get(keys);
+    assertEquals(11, records.size());
+    for (int i = 0; i < 10; i++) {
+      assertEquals("field1_" + (9 - i), records.get(i).getField1());
+    }
+    assertNull("Missing key should return null", records.get(10));
+
+    dao.delete(keys.subList(0, 5));
+    records = dao.get(keys);
+    for (int i = 0; i < 5; i++) {
+      assertNull(records.get(i));
+    }
+    for (int i = 5; i < 10; i++) {
+      assertEquals("field1_" + (9 - i), records.get(i).getField1());
+    }
+  }
+
+  @Test
+  public void testBatchedPut() throws Exception {
+    Dao<GenericRecord> dao = new GenericAvroDao(tablePool, tableName,
+        unversionedSchemaString);
+
+    List<GenericRecord> entities = new ArrayList<GenericRecord>();
+    List<PartitionKey> keys = new ArrayList<PartitionKey>();
+    for (int i = 0; i < 20; ++i) {
+      @SuppressWarnings("deprecation")
+      GenericRecord entity = new GenericData.Record(
+          Schema.parse(unversionedSchemaString));
+      entity.put("keyPart1", "part1_" + i);
+      entity.put("keyPart2", "part2_" + i);
+      entity.put("field1", "field1_" + i);
+      entity.put("field2", "field2_" + i);
+      entities.add(entity);
+      keys.add(dao.getPartitionStrategy().partitionKey("part1_" + i,
+          "part2_" + i));
+    }
+
+    // without version checks, the puts are sent in a single batch
+    List<Boolean> results = dao.put(entities);
+    assertEquals(20, results.size());
+    for (boolean result : results) {
+      assertTrue(result);
+    }
+
+    List<GenericRecord> records = dao.get(keys);
+    assertEquals(20, records.size());
+    for (int i = 0; i < 20; ++i) {
+      assertEquals("field1_" + i, records.get(i).get("field1").toString());
+      assertEquals("field2_" + i, records.get(i).get("field2").toString());
+    }
+  }
+
+  @Test
+  public void testParallelScan() throws Exception {
+    // a table with three regions
+    String splitTableName = "splittable";
+    HTableDescriptor desc = new HTableDescriptor(splitTableName);
+    for (String cfName : new String[] { "meta", "string", "embedded", "_s" }) {
+      desc.addFamily(new HColumnDescriptor(cfName));
+    }
+    HBaseTestUtils.util.getHBaseAdmin().createTable(desc,
+        new byte[][] { Bytes.toBytes("part1_3"), Bytes.toBytes("part1_6") });
+    try {
+      BaseDao<GenericRecord> dao = new GenericAvroDao(tablePool,
+          splitTableName, schemaString);
+      for (int i = 0; i < 10; ++i) {
+        @SuppressWarnings("deprecation")
+        GenericRecord entity = new GenericData.Record(
+            Schema.parse(schemaString));
+        entity.put("keyPart1", "part1_" + i);
+        entity.put("keyPart2", "part2_" + i);
+        entity.put("field1", "field1_" + i);
+        entity.put("field2", "field2_" + i);
+        dao.put(entity);
+      }
+
+      // ordered scans return entities in key order across regions
+      EntityScanner<GenericRecord> scanner = dao.getScannerBuilder()
+          .setParallelism(2).build();
+      int cnt = 0;
+      try {
+        for (GenericRecord entity : scanner) {
+          assertEquals("field1_" + cnt, entity.get("field1").toString());
+          cnt++;
+        }
+        assertEquals(10, cnt);
+      } finally {
+        scanner.close();
+      }
+
+      scanner = dao.getScannerBuilder()
+          .setStartKey(dao.getPartitionStrategy().partitionKey("part1_2"))
+          .setStopKey(dao.getPartitionStrategy().partitionKey("part1_8"))
+          .setParallelism(3).build();
+      cnt = 2;
+      try {
+        for (GenericRecord entity : scanner) {
+          assertEquals("field1_" + cnt, entity.get("field1").toString());
+          cnt++;
+        }
+        assertEquals(8, cnt);
+      } finally {
+        scanner.close();
+      }
+
+      // unordered scans return every entity once
+      scanner = dao.getScannerBuilder().setParallelism(3).setOrdered(false)
+          .build();
+      Set<String> values = new HashSet<String>();
+      try {
+        for (GenericRecord entity : scanner) {
+          assertTrue(values.add(entity.get("field1").toString()));
+        }
+        assertEquals(10, values.size());
+      } finally {
+        scanner.close();
+      }
+
+      // filters apply to every shard
+      scanner = dao.getScannerBuilder().setParallelism(3)
+          .addEqualFilter("field1", "field1_7").build();
+      try {
+        assertEquals("field1_7", scanner.next().get("field1").toString());
+        assertFalse(scanner.hasNext());
+      } finally {
+        scanner.close();
+      }
+    } finally {
+      HBaseTestUtils.util.deleteTable(Bytes.toBytes(splitTableName));
+    }
+  }
+
+  @Test
+  public void testParallelScanLargerThanQueues() throws Exception {
+    // more rows per region than a shard's queue holds, which is 1000
+    int rows = 3600;
+    String splitTableName = "largesplittable";
+    HTableDescriptor desc = new HTableDescriptor(splitTableName);
+    for (String cfName : new String[] { "meta", "string", "embedded", "_s" }) {
+      desc.addFamily(new HColumnDescriptor(cfName));
+    }
+    HBaseTestUtils.util.getHBaseAdmin().createTable(desc,
+        new byte[][] { Bytes.toBytes(String.format("part1_%05d", rows / 3)),
+            Bytes.toBytes(String.format("part1_%05d", 2 * rows / 3)) });
+    try {
+      BaseDao<GenericRecord> dao = new GenericAvroDao(tablePool,
+          splitTableName, schemaString);
+      EntityBatch<GenericRecord> batch = dao.newBatch();
+      for (int i = 0; i < rows; ++i) {
+        @SuppressWarnings("deprecation")
+        GenericRecord entity = new GenericData.Record(
+            Schema.parse(schemaString));
+        entity.put("keyPart1", String.format("part1_%05d", i));
+        entity.put("keyPart2", "part2_" + i);
+        entity.put("field1", "field1_" + i);
+        entity.put("field2", "field2_" + i);
+        batch.put(entity);
+      }
+      batch.close();
+
+      // the shards after the first wait for the reader, and resume after
+      // the last row they read
+      EntityScanner<GenericRecord> scanner = dao.getScannerBuilder()
+          .setParallelism(3).build();
+      int cnt = 0;
+      try {
+        for (GenericRecord entity : scanner) {
+          assertEquals("field1_" + cnt, entity.get("field1").toString());
+          cnt++;
+        }
+        assertEquals(rows, cnt);
+      } finally {
+        scanner.close();
+      }
+
+      // closing before the scan is exhausted ends the iteration
+      scanner = dao.getScannerBuilder().setParallelism(3).build();
+      try {
+        assertEquals("field1_0", scanner.next().get("field1").toString());
+      } finally {
+        scanner.close();
+      }
+      assertFalse(scanner.isOpen());
+      assertFalse(scanner.hasNext());
+    } finally {
+      HBaseTestUtils.util.deleteTable(Bytes.toBytes(splitTableName));
+    }
+  }
+
+  @Test
+  public void testParallelScanNullEntity() throws Exception {
+    BaseDao<GenericRecord> dao = new GenericAvroDao(tablePool, tableName,
+        unversionedSchemaString);
+    for (int i = 0; i < 3; i += 2) {
+      @SuppressWarnings("deprecation")
+      GenericRecord entity = new GenericData.Record(
+          Schema.parse(unversionedSchemaString));
+      entity.put("keyPart1", "part1_" + i);
+      entity.put("keyPart2", "part2_" + i);
+      entity.put("field1", "field1_" + i);
+      dao.put(entity);
+    }
+
+    // a row whose only field is null maps to a null entity
+    AvroKeySchema keySchema = new AvroKeyEntitySchemaParser()
+        .parseKeySchema(unversionedSchemaString);
+    byte[] row = new AvroKeySerDe(keySchema.getAvroSchema(),
+        keySchema.getPartitionStrategy()).serialize(dao.getPartitionStrategy()
+        .partitionKey("part1_1", "part2_1"));
+    Put put = new Put(row);
+    put.add(Bytes.toBytes("meta"), Bytes.toBytes("field1"),
+        new byte[] { (byte) 0 });
+    HTableInterface table = tablePool.getTable(tableName);
+    try {
+      table.put(put);
+    } finally {
+      table.close();
+    }
+
+    for (int parallelism : new int[] { 1, 2 }) {
+      EntityScanner<GenericRecord> scanner = dao.getScannerBuilder()
+          .setParallelism(parallelism).build();
+      List<GenericRecord> entities = new ArrayList<GenericRecord>();
+      try {
+        for (GenericRecord entity : scanner) {
+          entities.add(entity);
+        }
+      } finally {
+        scanner.close();
+      }
+      assertEquals(3, entities.size());
+      assertEquals("field1_0", entities.get(0).get("field1").toString());
+      assertNull(entities.get(1));
+      assertEquals("field1_2", entities.get(2).get("field1").toString());
+    }
+  }
+
   @Test(expected = HBaseCommonException.class)
   public void testPutWithNullKey() throws Exception {
     Dao<GenericRecord> dao = new GenericAvroDao(tablePool, tableName,
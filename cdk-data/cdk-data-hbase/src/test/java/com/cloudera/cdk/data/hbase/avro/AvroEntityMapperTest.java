@@ -19,6 +19,7 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -208,6 +209,52 @@ public class AvroEntityMapperTest {
         .get(1).getValue());
   }
 
+  @Test
+  public void testSerDeReusesBuffers() throws Exception {
+    AvroEntitySchema entitySchema = schemaParser.parseEntitySchema(schemaString);
+    AvroEntitySerDe<GenericRecord> entitySerDe = new AvroEntitySerDe<GenericRecord>(
+        new AvroEntityComposer<GenericRecord>(entitySchema, false),
+        entitySchema, entitySchema, false);
+
+    byte[] value1 = entitySerDe.serializeColumnValueToBytes("field1", 1);
+    byte[] value2 = entitySerDe.serializeColumnValueToBytes("field1", 2);
+    assertArrayEquals(new byte[] { (byte) 0, (byte) 0, (byte) 0, (byte) 1 },
+        value1);
+    assertArrayEquals(new byte[] { (byte) 0, (byte) 0, (byte) 0, (byte) 2 },
+        value2);
+
+    byte[] mapValue1 = entitySerDe.serializeKeyAsColumnValueToBytes("field3",
+        "1", new Utf8("string1"));
+    byte[] mapValue2 = entitySerDe.serializeKeyAsColumnValueToBytes("field3",
+        "2", new Utf8("str2"));
+    assertArrayEquals(concat(new byte[] { (byte) 14 }, stringToBytes("string1")),
+        mapValue1);
+    assertArrayEquals(concat(new byte[] { (byte) 8 }, stringToBytes("str2")),
+        mapValue2);
+
+    // decode values in place from a larger array
+    byte[] bytes = concat(concat(new byte[] { (byte) 0xff }, value1), value2);
+    assertEquals(1,
+        entitySerDe.deserializeColumnValueFromBytes("field1", bytes, 1, 4));
+    assertEquals(2,
+        entitySerDe.deserializeColumnValueFromBytes("field1", bytes, 5, 4));
+    assertEquals("str2", entitySerDe.deserializeKeyAsColumnValueFromBytes(
+        "field3", stringToBytes("2"), mapValue2).toString());
+
+    // a value larger than the reused buffer, then small values again
+    char[] chars = new char[100 * 1024];
+    Arrays.fill(chars, 'a');
+    String largeString = new String(chars);
+    byte[] largeValue = entitySerDe.serializeKeyAsColumnValueToBytes("field3",
+        "3", new Utf8(largeString));
+    assertEquals(largeString, entitySerDe.deserializeKeyAsColumnValueFromBytes(
+        "field3", stringToBytes("3"), largeValue).toString());
+    assertArrayEquals(value2,
+        entitySerDe.serializeColumnValueToBytes("field1", 2));
+    assertEquals(1,
+        entitySerDe.deserializeColumnValueFromBytes("field1", bytes, 1, 4));
+  }
+
   private byte[] stringToBytes(String str) throws UnsupportedEncodingException {
     return str.getBytes("UTF-8");
   }
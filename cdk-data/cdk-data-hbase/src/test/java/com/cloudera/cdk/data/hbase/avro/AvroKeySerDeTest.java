@@ -0,0 +1,96 @@
+/**
+ * Copyright 2013 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.cdk.data.hbase.avro;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cloudera.cdk.data.PartitionKey;
+import com.cloudera.cdk.data.PartitionStrategy;
+import com.cloudera.cdk.data.hbase.avro.impl.AvroKeyEntitySchemaParser;
+import com.cloudera.cdk.data.hbase.avro.impl.AvroKeySchema;
+import com.cloudera.cdk.data.hbase.avro.impl.AvroKeySerDe;
+import com.cloudera.cdk.data.hbase.avro.io.MemcmpEncoder;
+
+public class AvroKeySerDeTest {
+
+  private static final String schemaString = "{ \"name\": \"test\", \"type\": \"record\", "
+      + "\"fields\": [ "
+      + "{ \"name\": \"keyPart1\", \"type\": \"string\", \"mapping\": "
+      + "    { \"type\": \"key\", \"value\": \"0\" } "
+      + "}, "
+      + "{ \"name\": \"keyPart2\", \"type\": \"long\",  \"mapping\": "
+      + "    { \"type\": \"key\", \"value\": \"1\" } "
+      + "}, "
+      + "{ \"name\": \"field1\", \"type\": \"int\", \"mapping\": "
+      + "    { \"type\": \"column\", \"value\": \"int:1\" } "
+      + "}]}";
+
+  private PartitionStrategy partitionStrategy;
+  private AvroKeySerDe keySerDe;
+
+  @Before
+  public void before() {
+    AvroKeySchema keySchema = new AvroKeyEntitySchemaParser()
+        .parseKeySchema(schemaString);
+    partitionStrategy = keySchema.getPartitionStrategy();
+    keySerDe = new AvroKeySerDe(keySchema.getAvroSchema(), partitionStrategy);
+  }
+
+  @Test
+  public void testRoundTrip() {
+    for (int i = 0; i < 10; i++) {
+      PartitionKey key = partitionStrategy.partitionKey("part" + i, (long) i);
+      PartitionKey decoded = keySerDe.deserialize(keySerDe.serialize(key));
+      assertEquals("part" + i, decoded.get(0).toString());
+      assertEquals((long) i, decoded.get(1));
+    }
+  }
+
+  @Test
+  public void testPartialKey() {
+    byte[] partial = keySerDe.serialize(partitionStrategy.partitionKey("part"));
+    byte[] full = keySerDe.serialize(partitionStrategy.partitionKey("part",
+        1L));
+    // a partial key is a prefix of the full keys it matches
+    assertArrayEquals(partial, Arrays.copyOf(full, partial.length));
+  }
+
+  @Test
+  public void testSerializeIntoBuffer() {
+    PartitionKey key1 = partitionStrategy.partitionKey("part1", 1L);
+    PartitionKey key2 = partitionStrategy.partitionKey("part2", 2L);
+    byte[] bytes1 = keySerDe.serialize(key1);
+    byte[] bytes2 = keySerDe.serialize(key2);
+
+    MemcmpEncoder encoder = new MemcmpEncoder();
+    keySerDe.serialize(key1, encoder);
+    keySerDe.serialize(key2, encoder);
+    assertEquals(bytes1.length + bytes2.length, encoder.size());
+
+    byte[] buffer = encoder.getBuffer();
+    assertArrayEquals(bytes1, Arrays.copyOf(buffer, bytes1.length));
+    PartitionKey decoded = keySerDe.deserialize(buffer, bytes1.length,
+        bytes2.length);
+    assertEquals("part2", decoded.get(0).toString());
+    assertEquals(2L, decoded.get(1));
+  }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright 2013 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.cdk.data.hbase.avro;
+
+import com.cloudera.cdk.data.PartitionKey;
+import com.cloudera.cdk.data.PartitionStrategy;
+import com.cloudera.cdk.data.hbase.avro.impl.AvroKeyEntitySchemaParser;
+import com.cloudera.cdk.data.hbase.avro.impl.AvroKeySchema;
+import com.cloudera.cdk.data.hbase.avro.impl.AvroKeySerDe;
+import com.cloudera.cdk.data.hbase.avro.io.MemcmpEncoder;
+
+/**
+ * Measures the time {@link AvroKeySerDe} takes to serialize a key to a new
+ * array, to serialize it into a reused {@link MemcmpEncoder}, and to
+ * deserialize it. This is not a unit test; run its {@code main} method by hand
+ * and compare the printed results.
+ */
+public class KeySerDeBenchmark {
+
+  private static final String schemaString = "{ \"name\": \"test\", \"type\": \"record\", "
+      + "\"fields\": [ "
+      + "{ \"name\": \"keyPart1\", \"type\": \"string\", \"mapping\": "
+      + "    { \"type\": \"key\", \"value\": \"0\" } "
+      + "}, "
+      + "{ \"name\": \"keyPart2\", \"type\": \"long\",  \"mapping\": "
+      + "    { \"type\": \"key\", \"value\": \"1\" } "
+      + "}, "
+      + "{ \"name\": \"field1\", \"type\": \"int\", \"mapping\": "
+      + "    { \"type\": \"column\", \"value\": \"int:1\" } "
+      + "}]}";
+
+  public static void main(String[] args) {
+    int numKeys = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+    AvroKeySchema keySchema = new AvroKeyEntitySchemaParser()
+        .parseKeySchema(schemaString);
+    PartitionStrategy partitionStrategy = keySchema.getPartitionStrategy();
+    AvroKeySerDe keySerDe = new AvroKeySerDe(keySchema.getAvroSchema(),
+        partitionStrategy);
+
+    PartitionKey[] keys = new PartitionKey[1000];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = partitionStrategy.partitionKey("part" + i, (long) i);
+    }
+    MemcmpEncoder encoder = new MemcmpEncoder();
+    for (int round = 0; round < 3; round++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < numKeys; i++) {
+        keySerDe.serialize(keys[i % keys.length]);
+      }
+      long serialize = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (int i = 0; i < numKeys; i++) {
+        encoder.reset();
+        keySerDe.serialize(keys[i % keys.length], encoder);
+      }
+      long serializeIntoBuffer = System.nanoTime() - start;
+
+      byte[] bytes = keySerDe.serialize(keys[0]);
+      start = System.nanoTime();
+      for (int i = 0; i < numKeys; i++) {
+        keySerDe.deserialize(bytes);
+      }
+      long deserialize = System.nanoTime() - start;
+
+      System.out.println("Results: round=" + round + ", serialize[ns/key]="
+          + (serialize / numKeys) + ", serializeIntoBuffer[ns/key]="
+          + (serializeIntoBuffer / numKeys) + ", deserialize[ns/key]="
+          + (deserialize / numKeys));
+    }
+  }
+
+}
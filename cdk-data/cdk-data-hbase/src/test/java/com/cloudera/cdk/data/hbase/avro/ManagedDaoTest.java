@@ -17,7 +17,9 @@ package com.cloudera.cdk.data.hbase.avro;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
@@ -42,8 +44,10 @@ import org.junit.Test;
 import com.cloudera.cdk.data.PartitionKey;
 import com.cloudera.cdk.data.PartitionStrategy;
 import com.cloudera.cdk.data.dao.Dao;
+import com.cloudera.cdk.data.dao.EntitySchema;
 import com.cloudera.cdk.data.dao.EntityScanner;
 import com.cloudera.cdk.data.dao.IncompatibleSchemaException;
+import com.cloudera.cdk.data.dao.KeySchema;
 import com.cloudera.cdk.data.dao.SchemaManager;
 import com.cloudera.cdk.data.dao.SchemaNotFoundException;
 import com.cloudera.cdk.data.hbase.avro.entities.ArrayRecord;
@@ -539,6 +543,32 @@ public class ManagedDaoTest {
         goodMigrationRecordAddSubField);
   }
 
+  @Test
+  public void testParsedSchemaCache() throws Exception {
+    AvroKeyEntitySchemaParser parser = new AvroKeyEntitySchemaParser();
+    DefaultSchemaManager manager = new DefaultSchemaManager(tablePool);
+
+    EntitySchema entitySchema = manager.getEntitySchema(tableName,
+        "TestRecord");
+    KeySchema keySchema = manager.getKeySchema(tableName, "TestRecord");
+    assertEquals(2, manager.getParsedSchemaCacheMisses());
+    assertSame(entitySchema, manager.getEntitySchema(tableName, "TestRecord"));
+    assertSame(keySchema, manager.getKeySchema(tableName, "TestRecord"));
+    assertEquals(2, manager.getParsedSchemaCacheHits());
+    assertEquals(2, manager.getParsedSchemaCacheMisses());
+
+    // a migration replaces the greatest version
+    manager.migrateSchema(tableName, "TestRecord", goodMigrationRecordAddField);
+    EntitySchema migrated = manager.getEntitySchema(tableName, "TestRecord");
+    assertNotSame(entitySchema, migrated);
+    assertEquals(parser.parseEntitySchema(goodMigrationRecordAddField),
+        migrated);
+
+    // a refresh drops the parsed schemas
+    manager.refreshManagedSchemaCache(tableName, "TestRecord");
+    assertNotSame(migrated, manager.getEntitySchema(tableName, "TestRecord"));
+  }
+
   @Test
   public void testCreate() throws Exception {
     AvroKeyEntitySchemaParser parser = new AvroKeyEntitySchemaParser();
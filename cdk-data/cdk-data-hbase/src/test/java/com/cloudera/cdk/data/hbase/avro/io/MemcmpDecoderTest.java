@@ -17,9 +17,11 @@ package com.cloudera.cdk.data.hbase.avro.io;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 
@@ -111,4 +113,52 @@ public class MemcmpDecoderTest {
     Utf8 readString = decoder.readString(null);
     assertEquals("hello there", readString.toString());
   }
+
+  @Test
+  public void testReadByteArray() throws Exception {
+    MemcmpEncoder encoder = new MemcmpEncoder();
+    encoder.writeInt(-7);
+    encoder.writeString("hello");
+    encoder.writeLong(42L);
+    encoder.writeBytes(new byte[] { (byte) 0x00, (byte) 0x01 }, 0, 2);
+
+    // decode from the middle of a larger array
+    byte[] bytes = new byte[encoder.size() + 6];
+    System.arraycopy(encoder.getBuffer(), 0, bytes, 3, encoder.size());
+    MemcmpDecoder decoder = new MemcmpDecoder(bytes, 3, encoder.size());
+    assertEquals(-7, decoder.readInt());
+    assertEquals("hello", decoder.readString(null).toString());
+    assertEquals(42L, decoder.readLong());
+    assertArrayEquals(new byte[] { (byte) 0x00, (byte) 0x01 },
+        decoder.readBytes(null).array());
+  }
+
+  @Test
+  public void testReadByteArrayReuse() throws Exception {
+    MemcmpEncoder encoder = new MemcmpEncoder();
+    encoder.writeString("first");
+    encoder.writeString("2nd");
+    encoder.writeBytes(new byte[] { (byte) 0x01, (byte) 0x02 }, 0, 2);
+    encoder.writeBytes(new byte[] { (byte) 0x03 }, 0, 1);
+    MemcmpDecoder decoder = new MemcmpDecoder(encoder.getBuffer(), 0,
+        encoder.size());
+
+    Utf8 utf8 = decoder.readString(null);
+    assertEquals("first", utf8.toString());
+    assertSame(utf8, decoder.readString(utf8));
+    assertEquals("2nd", utf8.toString());
+
+    ByteBuffer bytes = decoder.readBytes(null);
+    assertEquals(2, bytes.remaining());
+    assertSame(bytes, decoder.readBytes(bytes));
+    assertEquals(1, bytes.remaining());
+    assertEquals((byte) 0x03, bytes.get(0));
+  }
+
+  @Test(expected = EOFException.class)
+  public void testReadPastLength() throws Exception {
+    byte[] bytes = new byte[] { (byte) 0x80, (byte) 0x00, (byte) 0x00,
+        (byte) 0x01, (byte) 0x80 };
+    new MemcmpDecoder(bytes, 1, 4).readLong();
+  }
 }
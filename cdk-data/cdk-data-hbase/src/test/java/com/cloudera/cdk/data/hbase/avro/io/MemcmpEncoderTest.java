@@ -16,6 +16,8 @@
 package com.cloudera.cdk.data.hbase.avro.io;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import java.io.ByteArrayOutputStream;
 
@@ -74,4 +76,40 @@ public class MemcmpEncoderTest {
     assertArrayEquals(new byte[] { (byte) 0x01, (byte) 0x00, (byte) 0x01,
         (byte) 0xff, (byte) 0x00, (byte) 0x00 }, byteOutputStream.toByteArray());
   }
+
+  @Test
+  public void testBufferReuse() throws Exception {
+    MemcmpEncoder bufferEncoder = new MemcmpEncoder();
+    bufferEncoder.writeInt(1);
+    bufferEncoder.writeBytes(new byte[] { (byte) 0x00 }, 0, 1);
+    assertArrayEquals(new byte[] { (byte) 0x80, (byte) 0x00, (byte) 0x00,
+        (byte) 0x01, (byte) 0x00, (byte) 0x01, (byte) 0x00, (byte) 0x00 },
+        bufferEncoder.toByteArray());
+    byte[] buffer = bufferEncoder.getBuffer();
+
+    bufferEncoder.reset();
+    assertEquals(0, bufferEncoder.size());
+    bufferEncoder.writeLong(-1L);
+    assertEquals(8, bufferEncoder.size());
+    assertSame(buffer, bufferEncoder.getBuffer());
+    assertArrayEquals(new byte[] { (byte) 0x7f, (byte) 0xff, (byte) 0xff,
+        (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff },
+        bufferEncoder.toByteArray());
+  }
+
+  @Test
+  public void testBufferGrows() throws Exception {
+    MemcmpEncoder bufferEncoder = new MemcmpEncoder();
+    byte[] bytes = new byte[1000];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) (i % 255 + 1);
+    }
+    bufferEncoder.writeString("key");
+    bufferEncoder.writeFixed(bytes, 0, bytes.length);
+    byte[] encoded = bufferEncoder.toByteArray();
+    assertEquals(5 + bytes.length, encoded.length);
+    for (int i = 0; i < bytes.length; i++) {
+      assertEquals(bytes[i], encoded[5 + i]);
+    }
+  }
 }
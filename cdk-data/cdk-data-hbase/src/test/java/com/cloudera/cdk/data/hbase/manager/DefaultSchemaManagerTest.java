@@ -0,0 +1,95 @@
+/**
+ * Copyright 2013 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.cdk.data.hbase.manager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.cloudera.cdk.data.dao.ConcurrentSchemaModificationException;
+import com.cloudera.cdk.data.dao.EntitySchema;
+import com.cloudera.cdk.data.hbase.avro.impl.AvroUtils;
+import com.cloudera.cdk.data.hbase.manager.generated.ManagedSchema;
+
+public class DefaultSchemaManagerTest {
+
+  private static final String tableName = "testtable";
+
+  @Test
+  public void testConcurrentMigrationKeepsCachedSchemas() throws Exception {
+    String testRecord = AvroUtils.inputStreamToString(
+        DefaultSchemaManagerTest.class.getResourceAsStream("/TestRecord.avsc"));
+    String goodMigrationRecordAddField = AvroUtils.inputStreamToString(
+        DefaultSchemaManagerTest.class
+            .getResourceAsStream("/GoodMigrationRecordAddField.avsc"));
+
+    final ManagedSchema managedSchema = ManagedSchema.newBuilder()
+        .setName("TestRecord").setTable(tableName)
+        .setEntitySchemas(new HashMap<String, String>())
+        .setSchemaType(
+            "com.cloudera.cdk.data.hbase.avro.impl.AvroKeyEntitySchemaParser")
+        .setKeySerDeType("com.cloudera.cdk.data.hbase.avro.impl.AvroKeySerDe")
+        .setEntitySerDeType(
+            "com.cloudera.cdk.data.hbase.avro.impl.AvroEntitySerDe").build();
+    managedSchema.getEntitySchemas().put("0", testRecord);
+
+    // every save loses to a concurrent modification
+    DefaultSchemaManager manager = new DefaultSchemaManager(
+        new ManagedSchemaDao() {
+          @Override
+          public List<ManagedSchema> getManagedSchemas() {
+            return Arrays.asList(managedSchema);
+          }
+
+          @Override
+          public ManagedSchema getManagedSchema(String tableName,
+              String entityName) {
+            return managedSchema;
+          }
+
+          @Override
+          public boolean save(ManagedSchema schema) {
+            return false;
+          }
+
+          @Override
+          public boolean delete(ManagedSchema schema) {
+            return false;
+          }
+        });
+
+    EntitySchema entitySchema = manager.getEntitySchema(tableName,
+        "TestRecord");
+    try {
+      manager.migrateSchema(tableName, "TestRecord",
+          goodMigrationRecordAddField);
+      fail();
+    } catch (ConcurrentSchemaModificationException e) {
+      // expected
+    }
+
+    // the failed migration didn't change the cached managed schema
+    assertEquals(1, managedSchema.getEntitySchemas().size());
+    assertEquals(1, manager.getEntitySchemas(tableName, "TestRecord").size());
+    assertEquals(entitySchema,
+        manager.getEntitySchema(tableName, "TestRecord"));
+  }
+}
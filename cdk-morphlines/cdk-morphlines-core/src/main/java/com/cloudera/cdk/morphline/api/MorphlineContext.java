@@ -18,10 +18,15 @@ package com.cloudera.cdk.morphline.api;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -32,7 +37,11 @@ import com.cloudera.cdk.morphline.shaded.com.google.common.reflect.ClassPath;
 import com.cloudera.cdk.morphline.shaded.com.google.common.reflect.ClassPath.ClassInfo;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.health.HealthCheckRegistry;
+import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.Resources;
 
 /**
  * Additional user defined parameters that will be passed to all morphline commands.
@@ -43,6 +52,22 @@ public class MorphlineContext {
   private MetricRegistry metricRegistry;
   private HealthCheckRegistry healthCheckRegistry;
   private Map<String, Class<CommandBuilder>> commandBuilders = Collections.EMPTY_MAP;
+  private List<String> importSpecs;
+  private boolean isScanned;
+  private final SymbolTable symbolTable = new SymbolTable();
+
+  /**
+   * Command builder classes found via the class index or by scanning the classpath, keyed by class
+   * loader and import specs, such that creating many morphlines within the same JVM resolves the
+   * command builders only once.
+   */
+  private static final Cache<ClassLoader, Map<List, Map<String, Class<CommandBuilder>>>> COMMAND_BUILDER_CACHE = 
+      CacheBuilder.newBuilder().weakKeys().softValues().build();
+
+  private static final String CLASS_INDEX_PREFIX = "META-INF/services/";
+
+  private static final boolean IS_USING_CLASS_INDEX = 
+      "true".equals(System.getProperty("isUsingMorphlineClassIndex", "true"));
 
   private static final Logger LOG = LoggerFactory.getLogger(MorphlineContext.class);
 
@@ -65,30 +90,71 @@ public class MorphlineContext {
     return healthCheckRegistry;
   }
 
+  /**
+   * Returns the table into which commands intern the names of the record fields they operate on.
+   * Records created via {@link Record#Record(SymbolTable)} with this table can be accessed by
+   * these commands without hashing field names.
+   */
+  public SymbolTable getSymbolTable() {
+    return symbolTable;
+  }
+
   public Class<CommandBuilder> getCommandBuilder(String builderName) {
-    return commandBuilders.get(builderName);
+    Class<CommandBuilder> builderClass = commandBuilders.get(builderName);
+    if (builderClass == null && importSpecs != null && !isScanned) {
+      // the command isn't listed in the class index; fall back to scanning the classpath
+      isScanned = true;
+      commandBuilders = getCommandBuilders(importSpecs, false);
+      builderClass = commandBuilders.get(builderName);
+    }
+    return builderClass;
   }
 
   public void importCommandBuilders(Collection<String> importSpecs) {
     if (commandBuilders == Collections.EMPTY_MAP) { // intentionally effective no more than once
-      commandBuilders = new HashMap();
-      LOG.info("Importing commands");
-      Collection<Class<CommandBuilder>> builderClasses = getTopLevelClasses(importSpecs, CommandBuilder.class);
-      for (Class<CommandBuilder> builderClass : builderClasses) {
-        try {
-          CommandBuilder builder = builderClass.newInstance();
-          for (String builderName : builder.getNames()) {
-            LOG.debug("Importing command: {} from class: {}", builderName, builderClass.getName());
-            if (builderName.contains(".")) {
-              LOG.warn("Command name should not contain a period character: " + builderName);
-            }
-            commandBuilders.put(builderName, builderClass);
+      this.importSpecs = new ArrayList(importSpecs);
+      this.isScanned = !IS_USING_CLASS_INDEX;
+      commandBuilders = getCommandBuilders(this.importSpecs, IS_USING_CLASS_INDEX);
+    }
+  }
+
+  private Map<String, Class<CommandBuilder>> getCommandBuilders(List<String> importSpecs, boolean isUsingClassIndex) {
+    List key = Arrays.asList(importSpecs, getClass(), isUsingClassIndex); // getClass() may use another loader
+    ClassLoader loader = getClassLoaders()[0];
+    synchronized (COMMAND_BUILDER_CACHE) {
+      Map<List, Map<String, Class<CommandBuilder>>> loaderCache = COMMAND_BUILDER_CACHE.getIfPresent(loader);
+      if (loaderCache == null) {
+        loaderCache = new HashMap();
+        COMMAND_BUILDER_CACHE.put(loader, loaderCache);
+      }
+      Map<String, Class<CommandBuilder>> cachedBuilders = loaderCache.get(key);
+      if (cachedBuilders == null) {
+        cachedBuilders = Collections.unmodifiableMap(findCommandBuilders(importSpecs, isUsingClassIndex));
+        loaderCache.put(key, cachedBuilders);
+      }
+      return cachedBuilders;
+    }
+  }
+
+  private Map<String, Class<CommandBuilder>> findCommandBuilders(Collection<String> importSpecs, boolean isUsingClassIndex) {
+    Map<String, Class<CommandBuilder>> builders = new HashMap();
+    LOG.info(isUsingClassIndex ? "Importing commands from class index" : "Importing commands");
+    Collection<Class<CommandBuilder>> builderClasses = getTopLevelClasses(importSpecs, CommandBuilder.class, isUsingClassIndex);
+    for (Class<CommandBuilder> builderClass : builderClasses) {
+      try {
+        CommandBuilder builder = builderClass.newInstance();
+        for (String builderName : builder.getNames()) {
+          LOG.debug("Importing command: {} from class: {}", builderName, builderClass.getName());
+          if (builderName.contains(".")) {
+            LOG.warn("Command name should not contain a period character: " + builderName);
           }
-        } catch (Exception e) {
-          throw new MorphlineRuntimeException(e);
+          builders.put(builderName, builderClass);
         }
+      } catch (Exception e) {
+        throw new MorphlineRuntimeException(e);
       }
     }
+    return builders;
   }
 
   /**
@@ -100,22 +166,44 @@ public class MorphlineContext {
    * Uses a shaded version of com.google.guava.reflect-14.0.1 to enable running with prior versions
    * of guava without issues.
    */
-  <T> Collection<Class<T>> getTopLevelClasses(Iterable<String> importSpecs, Class<T> iface) {    
+  <T> Collection<Class<T>> getTopLevelClasses(Iterable<String> importSpecs, Class<T> iface) {
+    return getTopLevelClasses(importSpecs, iface, false);
+  }
+  
+  /**
+   * Same as {@link #getTopLevelClasses(Iterable, Class)} except that if isUsingClassIndex is true,
+   * the classes of packages are found in the class index, i.e. the
+   * <code>META-INF/services/</code> resources named after the given interface, instead of by
+   * scanning the classpath, which requires loading every class in the package.
+   */
+  <T> Collection<Class<T>> getTopLevelClasses(Iterable<String> importSpecs, Class<T> iface, boolean isUsingClassIndex) {    
     HashMap<String,Class<T>> classes = new LinkedHashMap();
     for (ClassLoader loader : getClassLoaders()) {
-      ClassPath classPath;
-      try {
-        classPath = ClassPath.from(loader);
-      } catch (IOException e) {
-        continue;
+      List<String> classIndex = null;
+      ClassPath classPath = null;
+      if (isUsingClassIndex) {
+        classIndex = readClassIndex(loader, iface);
+      } else {
+        classPath = getClassPath(loader);
+        if (classPath == null) {
+          continue;
+        }
       }
       for (String importSpec : importSpecs) {
         Set<ClassInfo> classInfos = null;
         if (importSpec.endsWith(".**")) {
           String packageName = importSpec.substring(0, importSpec.length() - ".**".length());
+          if (isUsingClassIndex) {
+            addIndexedClasses(classIndex, packageName, true, loader, classes, iface);
+            continue;
+          }
           classInfos = classPath.getTopLevelClassesRecursive(packageName);
         } else if (importSpec.endsWith(".*")) {
           String packageName = importSpec.substring(0, importSpec.length() - ".*".length());
+          if (isUsingClassIndex) {
+            addIndexedClasses(classIndex, packageName, false, loader, classes, iface);
+            continue;
+          }
           classInfos = classPath.getTopLevelClasses(packageName);
         } else { // importSpec is assumed to be a fully qualified class name
           Class clazz;
@@ -148,6 +236,61 @@ public class MorphlineContext {
     return classes.values();
   }
   
+  private ClassPath getClassPath(ClassLoader loader) {
+    try {
+      return ClassPath.from(loader);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+  
+  /** Returns the names of the classes listed in all index resources of the given interface */
+  private List<String> readClassIndex(ClassLoader loader, Class iface) {
+    List<String> classNames = new ArrayList();
+    try {
+      Enumeration<URL> resources = loader.getResources(CLASS_INDEX_PREFIX + iface.getName());
+      while (resources.hasMoreElements()) {
+        for (String line : Resources.readLines(resources.nextElement(), Charsets.UTF_8)) {
+          int i = line.indexOf('#');
+          if (i >= 0) {
+            line = line.substring(0, i);
+          }
+          line = line.trim();
+          if (line.length() > 0) {
+            classNames.add(line);
+          }
+        }
+      }
+    } catch (IOException e) {
+      LOG.warn("Cannot read class index of " + iface.getName(), e);
+    }
+    return classNames;
+  }
+  
+  /** Adds the indexed classes that are contained in the given package or its subpackages */
+  private <T> void addIndexedClasses(List<String> classIndex, String packageName, boolean isRecursive, 
+      ClassLoader loader, HashMap<String,Class<T>> classes, Class<T> iface) {
+    
+    for (String className : classIndex) {
+      int i = className.lastIndexOf('.');
+      String classPackageName = i < 0 ? "" : className.substring(0, i);
+      boolean isMatch = isRecursive 
+          ? classPackageName.equals(packageName) || classPackageName.startsWith(packageName + ".") 
+          : classPackageName.equals(packageName);
+      if (isMatch) {
+        Class clazz;
+        try {
+          clazz = loader.loadClass(className);
+        } catch (ClassNotFoundException e) {
+          continue;
+        } catch (LinkageError e) {
+          continue;
+        }
+        addClass(clazz, classes, iface);
+      }
+    }
+  }
+  
   private <T> void addClass(Class clazz, HashMap<String,Class<T>> classes, Class<T> iface) {
     if (!classes.containsKey(clazz.getName()) 
         && iface.isAssignableFrom(clazz) 
@@ -18,6 +18,7 @@ package com.cloudera.cdk.morphline.api;
 import java.util.List;
 import java.util.TreeMap;
 
+import com.cloudera.cdk.morphline.api.SymbolTable.Symbol;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ListMultimap;
@@ -30,23 +31,44 @@ import com.google.common.collect.ListMultimap;
  * records need not use common field names. This flexible data model corresponds exactly to the
  * characteristics of the Solr/Lucene data model (i.e. a record is a SolrInputDocument). A field
  * with zero values is removed from the record - it does not exist as such.
+ * 
+ * A record created via {@link #Record(SymbolTable)} stores its fields in a flat array indexed by
+ * the slots of the given {@link SymbolTable} rather than in a hash table. Commands that resolve
+ * their field names to {@link Symbol}s at construction time can then access fields without
+ * hashing. Fields whose names were not interned before the record was created, such as arbitrary
+ * field names found in the data, are stored in a hash table instead. {@link #copy()} of such a
+ * record is copy-on-write for slotted fields: it clones the slot array, and the copy and the
+ * original share their value lists until either of them first mutates a given field.
+ * Both kinds of records behave identically through the methods of this class and through
+ * {@link #getFields()}.
  */
 public final class Record {
   
-  private ArrayListMultimap<String, Object> fields;
+  private ListMultimap<String, Object> fields;
 
   /** Creates a new empty record. */
   public Record() {
     this(create());
   }
   
-  private Record(ArrayListMultimap<String, Object> fields) {
+  /**
+   * Creates a new empty record that stores its fields in slots of the given symbol table, typically
+   * the one returned by {@link MorphlineContext#getSymbolTable()}.
+   */
+  public Record(SymbolTable symbols) {
+    this(new SlotMultimap(symbols));
+  }
+  
+  private Record(ListMultimap<String, Object> fields) {
     Preconditions.checkNotNull(fields);
     this.fields = fields;
   }
 
   /** Returns a shallow copy of this record. */
   public Record copy() {
+    if (fields instanceof SlotMultimap) {
+      return new Record(((SlotMultimap) fields).copy());
+    }
     //return new Record(ArrayListMultimap.create(fields)); // adding fields later causes (slow) rehashing
     ArrayListMultimap copy = ArrayListMultimap.create(fields.size() + 16, 10);
     copy.putAll(fields);
@@ -104,6 +126,57 @@ public final class Record {
     }
   }
   
+  /**
+   * Returns a view of the values associated with the given symbol. An empty collection may be
+   * returned, but never <code>null</null>.
+   */
+  public List get(Symbol symbol) {
+    if (isSlotted(symbol)) {
+      return ((SlotMultimap) fields).get(symbol); // fast path
+    }
+    return fields.get(symbol.getName());
+  }
+  
+  /** Adds the given value to the values currently associated with the given symbol. */
+  public void put(Symbol symbol, Object value) {
+    if (isSlotted(symbol)) {
+      ((SlotMultimap) fields).put(symbol, value); // fast path
+    } else {
+      fields.put(symbol.getName(), value);
+    }
+  }
+  
+  /** Returns the first value associated with the given symbol, or null if no such value exists */
+  public Object getFirstValue(Symbol symbol) {
+    if (isSlotted(symbol)) {
+      List values = ((SlotMultimap) fields).getIfPresent(symbol); // fast path
+      return values == null ? null : values.get(0);
+    }
+    return getFirstValue(symbol.getName());
+  }
+
+  /**
+   * Removes all values that are associated with the given symbol, and then associates the given
+   * value with the given symbol.
+   */
+  public void replaceValues(Symbol symbol, Object value) {
+    removeAll(symbol);
+    put(symbol, value);
+  }
+  
+  /** Removes all values that are associated with the given symbol */
+  public void removeAll(Symbol symbol) {
+    if (isSlotted(symbol)) {
+      ((SlotMultimap) fields).removeAll(symbol); // fast path
+    } else {
+      removeAll(symbol.getName());
+    }
+  }
+  
+  private boolean isSlotted(Symbol symbol) {
+    return fields instanceof SlotMultimap && ((SlotMultimap) fields).getSymbolTable() == symbol.getTable();
+  }
+  
   @Override
   public boolean equals(Object other) {
     if (other instanceof Record) {
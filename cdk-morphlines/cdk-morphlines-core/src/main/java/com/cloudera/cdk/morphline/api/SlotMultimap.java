@@ -0,0 +1,739 @@
+/*
+ * Copyright 2013 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.cdk.morphline.api;
+
+import java.util.AbstractCollection;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import com.cloudera.cdk.morphline.api.SymbolTable.Symbol;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableMultiset;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Multiset;
+
+/**
+ * A {@link ListMultimap} that stores the values of keys interned into a {@link SymbolTable} in a
+ * flat array of small lists, indexed by symbol slot.
+ *
+ * Only keys that were interned before this multimap was created get a slot, i.e. in practice the
+ * field names that commands resolve at morphline compile time. The values of all other keys live
+ * in a plain {@code ArrayListMultimap}. This multimap never interns a key itself, so arbitrary
+ * field names in the data neither grow the symbol table nor the slot arrays of later records.
+ *
+ * As with Guava's {@code ArrayListMultimap}, the list returned by {@link #get(String)} is a live
+ * view, and a key with zero values is considered absent. The views never expose the underlying
+ * slot lists, because these may be shared with copies.
+ *
+ * {@link #copy()} is copy-on-write for slotted keys: the copy shares the slot lists of this
+ * multimap, and each of the two multimaps copies the list of a given slot only upon its first
+ * mutation of that slot. Each slot list records the token of the multimap that owns it, i.e. that
+ * may mutate it in place. The copy gets a fresh token, whereas this multimap is merely flagged as
+ * shared and replaces its own token on its next mutation. Hence {@link #copy()} writes nothing but
+ * that flag, and concurrent copies of a multimap that no thread mutates are safe. The values of
+ * unslotted keys are copied eagerly.
+ *
+ * This class is not thread-safe.
+ */
+final class SlotMultimap implements ListMultimap<String, Object> {
+
+  private final SymbolTable symbols;
+  private final int numSlots; // symbols with a slot at or beyond this are stored in 'others'
+  private Values[] slots;
+  private ListMultimap<String, Object> others; // values of keys without a slot; null until needed
+  private Object owner = new Object(); // token identifying the lists this multimap may mutate in place
+  private boolean isShared = false; // whether lists owned by this multimap may have been shared by copy()
+
+  private static final Values[] EMPTY = new Values[0];
+
+  public SlotMultimap(SymbolTable symbols) {
+    this(symbols, symbols.size(), EMPTY, null);
+  }
+
+  private SlotMultimap(SymbolTable symbols, int numSlots, Values[] slots, ListMultimap<String, Object> others) {
+    Preconditions.checkNotNull(symbols);
+    this.symbols = symbols;
+    this.numSlots = numSlots;
+    this.slots = slots;
+    this.others = others;
+  }
+
+  /** Returns a shallow copy of this multimap that is copy-on-write for slotted keys. */
+  public SlotMultimap copy() {
+    isShared = true; // from now on both this and the copy must copy a list before mutating it
+    ListMultimap<String, Object> otherCopy = null;
+    if (others != null && !others.isEmpty()) {
+      otherCopy = ArrayListMultimap.create(others);
+    }
+    return new SlotMultimap(symbols, numSlots, slots.clone(), otherCopy);
+  }
+
+  public SymbolTable getSymbolTable() {
+    return symbols;
+  }
+
+  /** Returns the live list of values of the given symbol. */
+  public List<Object> get(Symbol symbol) {
+    assert symbol.getTable() == symbols;
+    if (symbol.getSlot() >= numSlots) {
+      return others().get(symbol.getName());
+    }
+    return new SlotValues(symbol.getSlot());
+  }
+
+  /** Returns the list of values of the given symbol if it has at least one value, or null otherwise */
+  public List<Object> getIfPresent(Symbol symbol) {
+    assert symbol.getTable() == symbols;
+    if (symbol.getSlot() >= numSlots) {
+      return others != null && others.containsKey(symbol.getName()) ? others.get(symbol.getName()) : null;
+    }
+    return getIfPresent(symbol.getSlot());
+  }
+
+  /** Adds the given value to the values of the given symbol. */
+  public void put(Symbol symbol, Object value) {
+    assert symbol.getTable() == symbols;
+    if (symbol.getSlot() >= numSlots) {
+      others().put(symbol.getName(), value);
+    } else {
+      getOwned(symbol.getSlot()).add(value);
+    }
+  }
+
+  /** Removes all values of the given symbol. */
+  public void removeAll(Symbol symbol) {
+    assert symbol.getTable() == symbols;
+    if (symbol.getSlot() >= numSlots) {
+      if (others != null) {
+        others.removeAll(symbol.getName());
+      }
+    } else {
+      clear(symbol.getSlot());
+    }
+  }
+
+  private Values getIfPresent(int slot) {
+    if (slot < slots.length) {
+      Values values = slots[slot];
+      if (values != null && values.size() > 0) {
+        return values;
+      }
+    }
+    return null;
+  }
+
+  /** Returns the list of the given slot, creating it or copying a shared list if necessary */
+  private Values getOwned(int slot) {
+    if (slot >= slots.length) {
+      slots = Arrays.copyOf(slots, Math.min(numSlots, Math.max(slot + 1, 2 * slots.length)));
+    }
+    Object token = getOwner();
+    Values values = slots[slot];
+    if (values == null) {
+      values = new Values(token, 1);
+      slots[slot] = values;
+    } else if (values.owner != token) {
+      values = new Values(token, values);
+      slots[slot] = values;
+    }
+    return values;
+  }
+
+  /**
+   * Returns the token of the lists this multimap may mutate in place; after a copy() that is a
+   * fresh token, which no existing list carries.
+   */
+  private Object getOwner() {
+    if (isShared) {
+      owner = new Object();
+      isShared = false;
+    }
+    return owner;
+  }
+
+  /** Removes all values of the given slot, without copying a shared list */
+  private void clear(int slot) {
+    if (slot < slots.length && slots[slot] != null) {
+      if (slots[slot].owner == getOwner()) {
+        slots[slot].clear();
+      } else {
+        slots[slot] = null;
+      }
+    }
+  }
+
+  /** Returns the slot of the given key, or -1 if the key has no slot in this multimap */
+  private int getSlot(Object key) {
+    if (!(key instanceof String)) {
+      return -1;
+    }
+    Symbol symbol = symbols.lookup((String) key);
+    return symbol == null || symbol.getSlot() >= numSlots ? -1 : symbol.getSlot();
+  }
+
+  /** Returns the multimap that holds the values of keys without a slot, creating it if necessary */
+  private ListMultimap<String, Object> others() {
+    if (others == null) {
+      others = ArrayListMultimap.create();
+    }
+    return others;
+  }
+
+  /** Returns the existing list of the given key, possibly empty or shared, or null if no such list exists */
+  private Values getExisting(Object key) {
+    int slot = getSlot(key);
+    return slot >= 0 && slot < slots.length ? slots[slot] : null;
+  }
+
+  @Override
+  public int size() {
+    int size = others == null ? 0 : others.size();
+    for (Values values : slots) {
+      if (values != null) {
+        size += values.size();
+      }
+    }
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    for (Values values : slots) {
+      if (values != null && values.size() > 0) {
+        return false;
+      }
+    }
+    return others == null || others.isEmpty();
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    if (getSlot(key) < 0) {
+      return others != null && others.containsKey(key);
+    }
+    Values values = getExisting(key);
+    return values != null && values.size() > 0;
+  }
+
+  @Override
+  public boolean containsValue(Object value) {
+    for (Values values : slots) {
+      if (values != null && values.contains(value)) {
+        return true;
+      }
+    }
+    return others != null && others.containsValue(value);
+  }
+
+  @Override
+  public boolean containsEntry(Object key, Object value) {
+    if (getSlot(key) < 0) {
+      return others != null && others.containsEntry(key, value);
+    }
+    Values values = getExisting(key);
+    return values != null && values.contains(value);
+  }
+
+  @Override
+  public boolean put(String key, Object value) {
+    int slot = getSlot(key);
+    if (slot < 0) {
+      return others().put(key, value);
+    }
+    return getOwned(slot).add(value);
+  }
+
+  @Override
+  public boolean remove(Object key, Object value) {
+    int slot = getSlot(key);
+    if (slot < 0) {
+      return others != null && others.remove(key, value);
+    }
+    Values values = getExisting(key);
+    if (values == null || !values.contains(value)) {
+      return false;
+    }
+    return getOwned(slot).remove(value);
+  }
+
+  @Override
+  public boolean putAll(String key, Iterable<? extends Object> values) {
+    int slot = getSlot(key);
+    if (slot < 0) {
+      return others().putAll(key, values);
+    }
+    if (values instanceof Collection) {
+      Collection<? extends Object> collection = (Collection) values;
+      return collection.size() > 0 && getOwned(slot).addAll(collection);
+    }
+    Iterator<? extends Object> iter = values.iterator();
+    if (!iter.hasNext()) {
+      return false;
+    }
+    Values list = getOwned(slot);
+    while (iter.hasNext()) {
+      list.add(iter.next());
+    }
+    return true;
+  }
+
+  @Override
+  public boolean putAll(Multimap<? extends String, ? extends Object> multimap) {
+    boolean changed = false;
+    for (Map.Entry<? extends String, ? extends Collection<? extends Object>> entry : multimap.asMap().entrySet()) {
+      changed |= putAll(entry.getKey(), entry.getValue());
+    }
+    return changed;
+  }
+
+  @Override
+  public List<Object> replaceValues(String key, Iterable<? extends Object> values) {
+    List<Object> newValues = new ArrayList();
+    for (Object value : values) { // copy first in case values is a view of this multimap
+      newValues.add(value);
+    }
+    int slot = getSlot(key);
+    if (slot < 0) {
+      return others().replaceValues(key, newValues);
+    }
+    Values list = getIfPresent(slot);
+    List<Object> oldValues = list == null ? new ArrayList() : new ArrayList(list);
+    clear(slot);
+    if (newValues.size() > 0) {
+      getOwned(slot).addAll(newValues);
+    }
+    return oldValues;
+  }
+
+  @Override
+  public List<Object> removeAll(Object key) {
+    if (getSlot(key) < 0) {
+      return others == null ? Collections.<Object>emptyList() : others.removeAll(key);
+    }
+    Values values = getExisting(key);
+    if (values == null || values.size() == 0) {
+      return Collections.emptyList();
+    }
+    List<Object> oldValues = new ArrayList(values);
+    clear(getSlot(key));
+    return oldValues;
+  }
+
+  @Override
+  public void clear() {
+    for (int slot = 0; slot < slots.length; slot++) {
+      clear(slot);
+    }
+    if (others != null) {
+      others.clear();
+    }
+  }
+
+  @Override
+  public List<Object> get(String key) {
+    int slot = getSlot(key);
+    if (slot < 0) {
+      return others().get(key);
+    }
+    return new SlotValues(slot);
+  }
+
+  @Override
+  public Set<String> keySet() {
+    return new KeySet();
+  }
+
+  @Override
+  public Multiset<String> keys() {
+    ImmutableMultiset.Builder<String> builder = ImmutableMultiset.builder();
+    for (int slot = 0; slot < slots.length; slot++) {
+      if (slots[slot] != null && slots[slot].size() > 0) {
+        builder.addCopies(symbols.getName(slot), slots[slot].size());
+      }
+    }
+    if (others != null) {
+      builder.addAll(others.keys());
+    }
+    return builder.build();
+  }
+
+  @Override
+  public Collection<Object> values() {
+    return new AbstractCollection<Object>() {
+
+      @Override
+      public Iterator<Object> iterator() {
+        final Iterator<Map.Entry<String, Object>> iter = entryIterator();
+        return new Iterator<Object>() {
+          @Override
+          public boolean hasNext() {
+            return iter.hasNext();
+          }
+
+          @Override
+          public Object next() {
+            return iter.next().getValue();
+          }
+
+          @Override
+          public void remove() {
+            iter.remove();
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return SlotMultimap.this.size();
+      }
+
+      @Override
+      public void clear() {
+        SlotMultimap.this.clear();
+      }
+    };
+  }
+
+  @Override
+  public Collection<Map.Entry<String, Object>> entries() {
+    return new AbstractCollection<Map.Entry<String, Object>>() {
+
+      @Override
+      public Iterator<Map.Entry<String, Object>> iterator() {
+        return entryIterator();
+      }
+
+      @Override
+      public int size() {
+        return SlotMultimap.this.size();
+      }
+
+      @Override
+      public void clear() {
+        SlotMultimap.this.clear();
+      }
+    };
+  }
+
+  @Override
+  public Map<String, Collection<Object>> asMap() {
+    return new AbstractMap<String, Collection<Object>>() {
+
+      @Override
+      public Set<Map.Entry<String, Collection<Object>>> entrySet() {
+        return new AbstractSet<Map.Entry<String, Collection<Object>>>() {
+
+          @Override
+          public Iterator<Map.Entry<String, Collection<Object>>> iterator() {
+            Iterator<Map.Entry<String, Collection<Object>>> iter =
+                new SlotIterator<Map.Entry<String, Collection<Object>>>() {
+              @Override
+              protected Map.Entry<String, Collection<Object>> get(int slot) {
+                String key = symbols.getName(slot);
+                return Maps.<String, Collection<Object>>immutableEntry(key, SlotMultimap.this.get(key));
+              }
+            };
+            return others == null ? iter : Iterators.concat(iter, others.asMap().entrySet().iterator());
+          }
+
+          @Override
+          public int size() {
+            return numKeys();
+          }
+        };
+      }
+
+      @Override
+      public boolean containsKey(Object key) {
+        return SlotMultimap.this.containsKey(key);
+      }
+
+      @Override
+      public Collection<Object> get(Object key) {
+        return containsKey(key) ? SlotMultimap.this.get((String) key) : null;
+      }
+
+      @Override
+      public Collection<Object> remove(Object key) {
+        return containsKey(key) ? removeAll(key) : null;
+      }
+
+      @Override
+      public int size() {
+        return numKeys();
+      }
+
+      @Override
+      public void clear() {
+        SlotMultimap.this.clear();
+      }
+    };
+  }
+
+  private int numKeys() {
+    int numKeys = others == null ? 0 : others.keySet().size();
+    for (Values values : slots) {
+      if (values != null && values.size() > 0) {
+        numKeys++;
+      }
+    }
+    return numKeys;
+  }
+
+  private Iterator<Map.Entry<String, Object>> entryIterator() {
+    Iterator<Map.Entry<String, Object>> iter = new EntryIterator();
+    return others == null ? iter : Iterators.concat(iter, others.entries().iterator());
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (other == this) {
+      return true;
+    }
+    if (other instanceof Multimap) {
+      return asMap().equals(((Multimap) other).asMap());
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    return asMap().hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return asMap().toString();
+  }
+
+
+  ///////////////////////////////////////////////////////////////////////////////
+  // Nested classes:
+  ///////////////////////////////////////////////////////////////////////////////
+  /** Iterates over all slots that have at least one value. */
+  private abstract class SlotIterator<T> implements Iterator<T> {
+
+    private int next = -1;
+    private int current = -1;
+
+    public SlotIterator() {
+      advance();
+    }
+
+    private void advance() {
+      do {
+        next++;
+      } while (next < slots.length && (slots[next] == null || slots[next].size() == 0));
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next < slots.length;
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      current = next;
+      advance();
+      return get(current);
+    }
+
+    @Override
+    public void remove() {
+      Preconditions.checkState(current >= 0);
+      clear(current);
+      current = -1;
+    }
+
+    protected abstract T get(int slot);
+  }
+
+
+  ///////////////////////////////////////////////////////////////////////////////
+  // Nested classes:
+  ///////////////////////////////////////////////////////////////////////////////
+  private final class EntryIterator implements Iterator<Map.Entry<String, Object>> {
+
+    private int slot = 0;
+    private int index = 0;
+    private int currentSlot = -1;
+    private int currentIndex = -1;
+
+    @Override
+    public boolean hasNext() {
+      while (slot < slots.length) {
+        if (slots[slot] != null && index < slots[slot].size()) {
+          return true;
+        }
+        slot++;
+        index = 0;
+      }
+      return false;
+    }
+
+    @Override
+    public Map.Entry<String, Object> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      currentSlot = slot;
+      currentIndex = index;
+      index++;
+      return Maps.immutableEntry(symbols.getName(slot), slots[slot].get(currentIndex));
+    }
+
+    @Override
+    public void remove() {
+      Preconditions.checkState(currentSlot >= 0);
+      getOwned(currentSlot).remove(currentIndex);
+      if (currentSlot == slot) {
+        index--;
+      }
+      currentSlot = -1;
+    }
+  }
+
+
+  ///////////////////////////////////////////////////////////////////////////////
+  // Nested classes:
+  ///////////////////////////////////////////////////////////////////////////////
+  private final class KeySet extends AbstractSet<String> {
+
+    @Override
+    public Iterator<String> iterator() {
+      Iterator<String> iter = new SlotIterator<String>() {
+        @Override
+        protected String get(int slot) {
+          return symbols.getName(slot);
+        }
+      };
+      return others == null ? iter : Iterators.concat(iter, others.keySet().iterator());
+    }
+
+    @Override
+    public int size() {
+      return numKeys();
+    }
+
+    @Override
+    public boolean contains(Object key) {
+      return containsKey(key);
+    }
+
+    @Override
+    public boolean remove(Object key) {
+      return SlotMultimap.this.removeAll(key).size() > 0;
+    }
+
+    @Override
+    public void clear() {
+      SlotMultimap.this.clear();
+    }
+  }
+
+
+  ///////////////////////////////////////////////////////////////////////////////
+  // Nested classes:
+  ///////////////////////////////////////////////////////////////////////////////
+  /**
+   * Live view of the values of a slot; reads go to the current list of the slot, whereas writes
+   * first create the list or copy it if it is shared.
+   */
+  private final class SlotValues extends AbstractList<Object> implements RandomAccess {
+
+    private final int slot;
+
+    public SlotValues(int slot) {
+      this.slot = slot;
+    }
+
+    private List<Object> delegate() {
+      Values values = slot < slots.length ? slots[slot] : null;
+      return values == null ? Collections.emptyList() : values;
+    }
+
+    @Override
+    public Object get(int index) {
+      return delegate().get(index);
+    }
+
+    @Override
+    public int size() {
+      return delegate().size();
+    }
+
+    @Override
+    public Object set(int index, Object element) {
+      delegate().get(index); // range check
+      return getOwned(slot).set(index, element);
+    }
+
+    @Override
+    public void add(int index, Object element) {
+      getOwned(slot).add(index, element);
+    }
+
+    @Override
+    public Object remove(int index) {
+      delegate().get(index); // range check
+      return getOwned(slot).remove(index);
+    }
+
+    @Override
+    public void clear() {
+      SlotMultimap.this.clear(slot);
+    }
+  }
+
+
+  ///////////////////////////////////////////////////////////////////////////////
+  // Nested classes:
+  ///////////////////////////////////////////////////////////////////////////////
+  /** The values of a slot, along with the token of the multimap that may mutate them in place. */
+  private static final class Values extends ArrayList<Object> {
+
+    private final Object owner;
+
+    public Values(Object owner, int initialCapacity) {
+      super(initialCapacity);
+      this.owner = owner;
+    }
+
+    public Values(Object owner, Collection<Object> values) {
+      super(values);
+      this.owner = owner;
+    }
+  }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2013 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.cdk.morphline.api;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Interns record field names into dense integer slots.
+ *
+ * A morphline typically uses a single symbol table, available via
+ * {@link MorphlineContext#getSymbolTable()}. Commands resolve the field names they operate on to
+ * {@link Symbol}s once, at construction time. A {@link Record} created via
+ * {@link Record#Record(SymbolTable)} stores its values in a flat array indexed by slot, such that
+ * access via a {@link Symbol} is a plain array lookup, and copying a record is an array clone.
+ * Such a record only uses slots for names that were interned before the record was created, and
+ * never interns names itself; all other fields are kept in a hash table as usual. Thus the table
+ * only ever holds the names that commands resolve at compile time.
+ *
+ * This class is thread-safe.
+ */
+public final class SymbolTable {
+
+  private final ConcurrentMap<String, Symbol> symbols = new ConcurrentHashMap();
+  private volatile String[] names = new String[16]; // slot -> field name
+  private volatile int size = 0;
+
+  public SymbolTable() {}
+
+  /** Returns the symbol for the given field name, allocating a new slot if necessary. */
+  public Symbol intern(String name) {
+    Symbol symbol = symbols.get(name);
+    if (symbol == null) {
+      symbol = internSlow(name);
+    }
+    return symbol;
+  }
+
+  private synchronized Symbol internSlow(String name) {
+    Preconditions.checkNotNull(name);
+    Symbol symbol = symbols.get(name);
+    if (symbol == null) {
+      String[] newNames = names;
+      if (size == newNames.length) {
+        newNames = Arrays.copyOf(newNames, 2 * newNames.length);
+      }
+      newNames[size] = name;
+      names = newNames; // volatile write publishes the new name to readers
+      symbol = new Symbol(this, name, size);
+      symbols.put(name, symbol);
+      size++;
+    }
+    return symbol;
+  }
+
+  /** Returns the symbol for the given field name, or null if the name has not yet been interned. */
+  public Symbol lookup(String name) {
+    return symbols.get(name);
+  }
+
+  /** Returns the number of interned field names. */
+  public int size() {
+    return size;
+  }
+
+  /** Returns the field name that is interned in the given slot. */
+  String getName(int slot) {
+    return names[slot];
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.asList(names).subList(0, size).toString();
+  }
+
+
+  ///////////////////////////////////////////////////////////////////////////////
+  // Nested classes:
+  ///////////////////////////////////////////////////////////////////////////////
+  /**
+   * A field name that has been interned into a {@link SymbolTable}.
+   */
+  public static final class Symbol {
+
+    private final SymbolTable table;
+    private final String name;
+    private final int slot;
+
+    private Symbol(SymbolTable table, String name, int slot) {
+      this.table = table;
+      this.name = name;
+      this.slot = slot;
+    }
+
+    /** Returns the field name of this symbol. */
+    public String getName() {
+      return name;
+    }
+
+    SymbolTable getTable() {
+      return table;
+    }
+
+    int getSlot() {
+      return slot;
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+}
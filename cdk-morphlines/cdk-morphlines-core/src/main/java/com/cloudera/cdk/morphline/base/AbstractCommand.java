@@ -177,6 +177,68 @@ public abstract class AbstractCommand implements Command {
     return getChild().process(record);
   }
   
+  /**
+   * Processes the given batch of records on the data plane of this command, as if each record had
+   * been passed to {@link #process(Record)} in list order.
+   * 
+   * Commands that can amortize per-record costs across many records override
+   * {@link #doProcessBatch(List)}. The caller must not modify the list while this call is in
+   * progress, and commands must not retain a reference to the list after this call returns.
+   * 
+   * @return true to indicate that processing shall continue, false to indicate that backtracking
+   *         shall be done
+   */
+  public final boolean processBatch(List<Record> records) {
+    if (isMeasuringMetrics()) {
+      numProcessCallsMeter.mark(records.size());
+    }
+    beforeProcessBatch(records);
+    return doProcessBatch(records);
+  }
+  
+  private void beforeProcessBatch(List<Record> records) {
+    if (LOG.isTraceEnabled()) {    
+      LOG.trace("beforeProcessBatch: {}", records);      
+    } else {
+      LOG.debug("beforeProcessBatch()");      
+    }
+  }
+  
+  /**
+   * Processes the given batch of records on the data plane of this command. The default
+   * implementation passes each record to {@link #doProcess(Record)}, stopping at the first failure.
+   * 
+   * @return true to indicate that processing shall continue, false to indicate that backtracking
+   *         shall be done
+   */
+  protected boolean doProcessBatch(List<Record> records) {
+    for (int i = 0; i < records.size(); i++) {
+      if (!doProcess(records.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+  
+  /**
+   * Helper that passes the given batch of records to the given command, typically the child of this
+   * command. Uses the batch path if the command supports it, and otherwise falls back to passing
+   * one record at a time to {@link Command#process(Record)}.
+   */
+  protected static boolean processBatch(Command command, List<Record> records) {
+    if (command instanceof AbstractCommand) {
+      return ((AbstractCommand) command).processBatch(records);
+    } else if (command instanceof Connector) {
+      return ((Connector) command).processBatch(records);
+    }
+    for (int i = 0; i < records.size(); i++) {
+      if (!command.process(records.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+  
   /** Helper that checks if the user provided configuration parameters are valid. */ 
   protected void validateArguments() {
     getConfigs().validateArguments(getConfig());
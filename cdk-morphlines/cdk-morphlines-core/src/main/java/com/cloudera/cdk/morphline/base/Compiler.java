@@ -18,6 +18,8 @@ package com.cloudera.cdk.morphline.base;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import com.cloudera.cdk.morphline.api.Command;
@@ -26,6 +28,8 @@ import com.cloudera.cdk.morphline.api.MorphlineContext;
 import com.cloudera.cdk.morphline.stdlib.DropRecordBuilder;
 import com.cloudera.cdk.morphline.stdlib.PipeBuilder;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 
@@ -36,23 +40,65 @@ public final class Compiler {
 
   private static final Object LOCK = new Object();
   
+  /**
+   * Parsed, resolved and validated morphline configs, keyed by file, file modification time, 
+   * morphline id, overrides and system properties.
+   */
+  private static final Cache<List<Object>, Config> MORPHLINE_CONFIG_CACHE = CacheBuilder.newBuilder()
+      .maximumSize(100)
+      .build();
+  
+  /**
+   * A file modified less than this many milliseconds before it is read may still be modified again
+   * without changing its modification time, because many file systems have a coarse timestamp
+   * granularity. The configs of such files aren't cached.
+   */
+  private static final long RACY_MILLIS = 2000;
+  
   public Compiler() {}
   
   /**
    * Parses the given morphlineFile, then finds the morphline with the given morphlineId within,
    * then compiles the morphline and returns the corresponding morphline command. The returned
    * command will feed records into finalChild.
+   * 
+   * The parsed morphline config is cached, so compiling the same unmodified file again with the
+   * same morphlineId and overrides only instantiates a fresh command tree.
    */
   public Command compile(File morphlineFile, String morphlineId, MorphlineContext morphlineContext, Command finalChild, Config... overrides) {
-    Config config;
+    Config morphlineConfig = findCached(morphlineFile, morphlineId, overrides);
+    Command morphlineCommand = compile(morphlineConfig, morphlineContext, finalChild);
+    return morphlineCommand;
+  }
+  
+  private Config findCached(File morphlineFile, String morphlineId, Config... overrides) {
+    if (morphlineFile == null || !morphlineFile.isFile()) { 
+      return find(morphlineId, parseOrFail(morphlineFile, overrides), String.valueOf(morphlineFile));
+    }
+    List<Object> key = new ArrayList();
+    key.add(morphlineFile.getAbsolutePath());
+    key.add(morphlineFile.lastModified());
+    key.add(morphlineFile.length());
+    key.add(String.valueOf(morphlineId).trim());
+    key.add(Arrays.asList(overrides));
+    key.add(getSystemOverrides()); // system properties may change between compilations
+    Config morphlineConfig = MORPHLINE_CONFIG_CACHE.getIfPresent(key);
+    if (morphlineConfig == null) {
+      long readTime = System.currentTimeMillis();
+      morphlineConfig = find(morphlineId, parseOrFail(morphlineFile, overrides), morphlineFile.getPath());
+      if (readTime - morphlineFile.lastModified() >= RACY_MILLIS) {
+        MORPHLINE_CONFIG_CACHE.put(key, morphlineConfig);
+      } // else the file may be modified again within the same timestamp, so don't trust the key
+    }
+    return morphlineConfig;
+  }
+  
+  private Config parseOrFail(File morphlineFile, Config... overrides) {
     try {
-      config = parse(morphlineFile, overrides);
+      return parse(morphlineFile, overrides);
     } catch (IOException e) {
       throw new MorphlineCompilationException("Cannot parse morphline file: " + morphlineFile, null, e);
     }
-    Config morphlineConfig = find(morphlineId, config, morphlineFile.getPath());
-    Command morphlineCommand = compile(morphlineConfig, morphlineContext, finalChild);
-    return morphlineCommand;
   }
   
   /** Loads the given config file from the local file system */
@@ -71,13 +117,25 @@ public final class Compiler {
       config = override.withFallback(config);
     }
     
+    // same as ConfigFactory.load(config) except that resolution and validation run outside of the lock
+    Config reference;
+    Config systemOverrides;
     synchronized (LOCK) {
-      ConfigFactory.invalidateCaches();
-      config = ConfigFactory.load(config);
-      config.checkValid(ConfigFactory.defaultReference()); // eagerly validate aspects of tree config
+      systemOverrides = getSystemOverrides();
+      reference = ConfigFactory.defaultReference();
     }
+    config = systemOverrides.withFallback(config).withFallback(reference).resolve();
+    config.checkValid(reference); // eagerly validate aspects of tree config
     return config;
   }
+  
+  /** Returns a config that reflects the current system properties */
+  private Config getSystemOverrides() {
+    synchronized (LOCK) {
+      ConfigFactory.invalidateCaches();
+      return ConfigFactory.defaultOverrides();
+    }
+  }
 
   /**
    * Finds the given morphline id within the given morphline config, using the given nameForErrorMsg
@@ -15,6 +15,8 @@
  */
 package com.cloudera.cdk.morphline.base;
 
+import java.util.List;
+
 import com.cloudera.cdk.morphline.api.Command;
 import com.cloudera.cdk.morphline.api.Record;
 import com.google.common.base.Preconditions;
@@ -61,4 +63,9 @@ final class Connector implements Command {
     return child.process(record);
   }
 
+  public boolean processBatch(List<Record> records) {
+    Preconditions.checkNotNull(records);
+    return AbstractCommand.processBatch(child, records);
+  }
+
 }
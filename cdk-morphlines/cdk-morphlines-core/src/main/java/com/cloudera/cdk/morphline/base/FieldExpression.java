@@ -16,8 +16,10 @@
 package com.cloudera.cdk.morphline.base;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+import com.cloudera.cdk.morphline.api.MorphlineCompilationException;
 import com.cloudera.cdk.morphline.api.Record;
 import com.google.common.base.Preconditions;
 import com.typesafe.config.Config;
@@ -25,58 +27,97 @@ import com.typesafe.config.Config;
 /**
  * Helper to fetch the values of a field of a {@link Record} referred to by a field expression,
  * which is a String of the form <code>@{fieldname}</code>.
+ * 
+ * The expression is compiled once on construction into a plan of alternating literal segments and
+ * field references, so that {@link #evaluate(Record)} never needs to rescan the expression string.
  */
 public final class FieldExpression {
   
-  private String expression;
+  private final String expression;
+  
+  // literals[i] is the text preceding refs[i]; literals[refs.length] is the trailing text
+  private final String[] literals;
+  private final String[] refs;
+  
+  // precomputed result if the expression contains no field references at all
+  private final List literalResult;
+  
+  // non-null if the expression consists of exactly one field reference such as "@{first_name}"
+  private final String singleRef;
   
   private static final String START_TOKEN = "@{";
   private static final char END_TOKEN = '}';
   
   public FieldExpression(String expression, Config config) {
     Preconditions.checkNotNull(expression);
-    this.expression = expression; // TODO: optimize by separating compilation and evaluation phase
+    this.expression = expression;
+    List<String> literalList = new ArrayList();
+    List<String> refList = new ArrayList();
+    int from = 0;
+    int start;
+    while ((start = expression.indexOf(START_TOKEN, from)) >= 0) {
+      int end = expression.indexOf(END_TOKEN, start + START_TOKEN.length());
+      if (end < 0) {
+        throw new MorphlineCompilationException("Missing closing token: " + END_TOKEN 
+            + " in field expression: " + expression, config);
+      }
+      literalList.add(expression.substring(from, start));
+      refList.add(expression.substring(start + START_TOKEN.length(), end));
+      from = end + 1;
+    }
+    literalList.add(expression.substring(from, expression.length()));
+    this.literals = literalList.toArray(new String[literalList.size()]);
+    this.refs = refList.toArray(new String[refList.size()]);
+    
+    this.literalResult = refs.length == 0 ? Collections.singletonList(expression) : null;
+    
+    boolean isSingleRef = refs.length == 1 && refs[0].length() > 0 
+        && literals[0].length() == 0 && literals[1].length() == 0;
+    this.singleRef = isSingleRef ? refs[0] : null; // "@{first_name}" resolves to object list rather than string concat
   }
   
-  /** Returns the values of a {@link Record} referred to by the given field expression */
+  /**
+   * Returns the values of a {@link Record} referred to by the given field expression.
+   * 
+   * The returned list is read-only and may be shared across calls. It is never a view of the values
+   * of the given record, so callers may modify the record while iterating over the result.
+   */
   public List evaluate(Record record) {
+    if (literalResult != null) {
+      return literalResult; // fast path
+    }
+    if (singleRef != null) {
+      // copy because a command like addValues { x : "@{x}" } modifies the field it iterates over
+      return Collections.unmodifiableList(new ArrayList(record.get(singleRef)));
+    }
     ArrayList results = new ArrayList(1);
     evaluate(0, record, new StringBuilder(), results);
     return results;
   }
 
-  private void evaluate(int from, Record record, StringBuilder buf, ArrayList results) {
-    int start = expression.indexOf(START_TOKEN, from);
-    if (start < 0) { // START_TOKEN not found
-      if (from == 0) {
-        results.add(expression); // fast path
-      } else {
-        buf.append(expression, from, expression.length());
-        results.add(buf.toString());
-      }
-    } else { // START_TOKEN found
-      int end = expression.indexOf(END_TOKEN, start + START_TOKEN.length());
-      if (end < 0) {
-        throw new IllegalArgumentException("Missing closing token: " + END_TOKEN);
-      }
-      buf.append(expression, from, start);
-      String ref = expression.substring(start + START_TOKEN.length(), end);
-      if (ref.length() == 0) {
-        buf.append(record.toString()); // @{} means dump string representation of entire record
-        evaluate(end + 1, record, buf, results);
-      } else {
-        List resolvedValues = record.get(ref);
-        if (start == 0 && end + 1 == expression.length()) { 
-          results.addAll(resolvedValues); // "@{first_name}" resolves to object list rather than string concat
-        } else {
-          for (Object value : resolvedValues) {
-            StringBuilder buf2 = new StringBuilder(buf);
-            buf2.append(value.toString());
-            evaluate(end + 1, record, buf2, results);
-          }
-        }
+  private void evaluate(int i, Record record, StringBuilder buf, ArrayList results) {
+    buf.append(literals[i]);
+    if (i == refs.length) {
+      results.add(buf.toString());
+      return;
+    }
+    String ref = refs[i];
+    if (ref.length() == 0) {
+      buf.append(record.toString()); // @{} means dump string representation of entire record
+      evaluate(i + 1, record, buf, results);
+    } else {
+      int len = buf.length();
+      for (Object value : record.get(ref)) {
+        buf.setLength(len); // backtrack to the prefix shared by all values of this ref
+        buf.append(value.toString());
+        evaluate(i + 1, record, buf, results);
       }
     }
   }
   
-}
\ No newline at end of file
+  @Override
+  public String toString() {
+    return expression;
+  }
+  
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright 2013 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.cdk.morphline.base;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.cloudera.cdk.morphline.api.Command;
+import com.cloudera.cdk.morphline.api.MorphlineCompilationException;
+import com.cloudera.cdk.morphline.api.MorphlineContext;
+import com.cloudera.cdk.morphline.api.MorphlineRuntimeException;
+import com.cloudera.cdk.morphline.api.Record;
+import com.google.common.base.Preconditions;
+import com.typesafe.config.Config;
+
+/**
+ * Facade that runs a morphline across N worker threads.
+ *
+ * Compiled morphline commands are not thread-safe, so the morphline config is compiled once per
+ * worker. {@link #process(Record)} hands each record to one of the workers via a bounded queue,
+ * blocking if that queue is full. If a key field is given, all records with the same value of that
+ * field are handled by the same worker, which preserves the relative order of such records.
+ * Otherwise records are distributed round-robin.
+ *
+ * {@link #notify(Record)} is a barrier: the notification is queued behind all records previously
+ * passed to {@link #process(Record)}, delivered to every worker, and the call returns only once all
+ * workers have handled it. The notification is then passed once to the final child. For example,
+ * once a COMMIT_TRANSACTION notification returns, all records of the transaction have been
+ * processed. A SHUTDOWN notification also terminates the worker threads.
+ *
+ * Processing happens asynchronously, so {@link #process(Record)} always returns true. The number of
+ * records for which a worker morphline returned false is available via
+ * {@link #getNumFailedRecords()}. An exception thrown by a worker morphline is rethrown, wrapped in
+ * a {@link MorphlineRuntimeException}, by the next call to {@link #process(Record)} or
+ * {@link #notify(Record)}.
+ *
+ * The final child is called concurrently from all worker threads and thus must be thread-safe.
+ * {@link #process(Record)} and {@link #notify(Record)} must be called from a single thread at a
+ * time.
+ */
+public final class ParallelMorphline implements Command {
+
+  private final Worker[] workers;
+  private final Command finalChild;
+  private final String keyField;
+  private int nextWorker = 0;
+  private boolean isShutdown = false;
+  private final AtomicLong numFailedRecords = new AtomicLong();
+  private final AtomicReference<Throwable> failure = new AtomicReference();
+
+  private static final Logger LOG = LoggerFactory.getLogger(ParallelMorphline.class);
+
+  /**
+   * Parses the given morphlineFile, then finds the morphline with the given morphlineId within,
+   * then compiles the morphline once per worker thread. The workers will feed records into
+   * finalChild.
+   *
+   * @param keyField
+   *          the name of the record field whose first value determines which worker handles a
+   *          record, or null to distribute records round-robin
+   */
+  public ParallelMorphline(File morphlineFile, String morphlineId, MorphlineContext morphlineContext,
+      Command finalChild, int numWorkers, int queueCapacity, String keyField, Config... overrides) {
+    this(parse(morphlineFile, morphlineId, overrides), morphlineContext, finalChild, numWorkers,
+        queueCapacity, keyField);
+  }
+
+  /**
+   * Compiles the given morphline config once per worker thread. The workers will feed records into
+   * finalChild.
+   *
+   * @param keyField
+   *          the name of the record field whose first value determines which worker handles a
+   *          record, or null to distribute records round-robin
+   */
+  public ParallelMorphline(Config morphlineConfig, MorphlineContext morphlineContext, Command finalChild,
+      int numWorkers, int queueCapacity, String keyField) {
+    Preconditions.checkNotNull(morphlineConfig);
+    Preconditions.checkNotNull(morphlineContext);
+    Preconditions.checkNotNull(finalChild);
+    Preconditions.checkArgument(numWorkers > 0, "numWorkers must be a positive number: %s", numWorkers);
+    Preconditions.checkArgument(queueCapacity > 0, "queueCapacity must be a positive number: %s", queueCapacity);
+    this.finalChild = finalChild;
+    this.keyField = keyField;
+    Command workerChild = new WorkerOutput(this, finalChild);
+    this.workers = new Worker[numWorkers];
+    for (int i = 0; i < numWorkers; i++) {
+      Command morphline = new Compiler().compile(morphlineConfig, morphlineContext, workerChild);
+      workers[i] = new Worker(morphline, new ArrayBlockingQueue(queueCapacity), "morphline-worker-" + i);
+    }
+    for (Worker worker : workers) {
+      worker.start();
+    }
+  }
+
+  private static Config parse(File morphlineFile, String morphlineId, Config... overrides) {
+    Compiler compiler = new Compiler();
+    Config config;
+    try {
+      config = compiler.parse(morphlineFile, overrides);
+    } catch (IOException e) {
+      throw new MorphlineCompilationException("Cannot parse morphline file: " + morphlineFile, null, e);
+    }
+    return compiler.find(morphlineId, config, morphlineFile.getPath());
+  }
+
+  @Override
+  public Command getParent() {
+    return null;
+  }
+
+  /** Returns the number of worker threads. */
+  public int getNumWorkers() {
+    return workers.length;
+  }
+
+  /** Returns the number of records for which a worker morphline has returned false so far. */
+  public long getNumFailedRecords() {
+    return numFailedRecords.get();
+  }
+
+  @Override
+  public boolean process(Record record) {
+    Preconditions.checkNotNull(record);
+    checkState();
+    Worker worker = workers[selectWorker(record)];
+    try {
+      worker.queue.put(record);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MorphlineRuntimeException(e);
+    }
+    return true;
+  }
+
+  private int selectWorker(Record record) {
+    if (keyField != null) {
+      Object key = record.getFirstValue(keyField);
+      if (key != null) {
+        return (key.hashCode() & Integer.MAX_VALUE) % workers.length;
+      }
+    }
+    int i = nextWorker;
+    nextWorker = (i + 1) % workers.length;
+    return i;
+  }
+
+  @Override
+  public void notify(Record notification) {
+    Preconditions.checkNotNull(notification);
+    checkState();
+    Barrier barrier = new Barrier(notification, workers.length);
+    try {
+      for (Worker worker : workers) {
+        worker.queue.put(barrier);
+      }
+      barrier.latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MorphlineRuntimeException(e);
+    }
+    if (Notifications.containsLifecycleEvent(notification, Notifications.LifecycleEvent.SHUTDOWN)) {
+      shutdown();
+    }
+    rethrowFailure();
+    finalChild.notify(notification);
+  }
+
+  private void shutdown() {
+    isShutdown = true;
+    for (Worker worker : workers) {
+      worker.interrupt();
+    }
+    for (Worker worker : workers) {
+      try {
+        worker.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new MorphlineRuntimeException(e);
+      }
+    }
+  }
+
+  private void checkState() {
+    if (isShutdown) {
+      throw new IllegalStateException("ParallelMorphline has already been shut down");
+    }
+    rethrowFailure();
+  }
+
+  private void rethrowFailure() {
+    Throwable t = failure.getAndSet(null);
+    if (t != null) {
+      throw new MorphlineRuntimeException(t);
+    }
+  }
+
+
+  ///////////////////////////////////////////////////////////////////////////////
+  // Nested classes:
+  ///////////////////////////////////////////////////////////////////////////////
+  /** A thread that feeds the records of its queue into its own copy of the morphline. */
+  private final class Worker extends Thread {
+
+    private final Command morphline;
+    private final BlockingQueue<Object> queue;
+
+    public Worker(Command morphline, BlockingQueue<Object> queue, String name) {
+      super(name);
+      setDaemon(true);
+      this.morphline = morphline;
+      this.queue = queue;
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        Object item;
+        try {
+          item = queue.take();
+        } catch (InterruptedException e) {
+          return; // shutdown
+        }
+        if (item instanceof Barrier) {
+          Barrier barrier = (Barrier) item;
+          try {
+            morphline.notify(barrier.notification.copy());
+          } catch (Throwable t) {
+            fail(t);
+          } finally {
+            barrier.latch.countDown();
+          }
+        } else {
+          try {
+            if (!morphline.process((Record) item)) {
+              numFailedRecords.incrementAndGet();
+            }
+          } catch (Throwable t) {
+            fail(t);
+          }
+        }
+      }
+    }
+
+    private void fail(Throwable t) {
+      LOG.warn("Morphline worker " + getName() + " failed", t);
+      failure.compareAndSet(null, t);
+    }
+  }
+
+
+  /** A notification that all workers must have handled before {@link #notify(Record)} returns. */
+  private static final class Barrier {
+
+    private final Record notification;
+    private final CountDownLatch latch;
+
+    public Barrier(Record notification, int numWorkers) {
+      this.notification = notification;
+      this.latch = new CountDownLatch(numWorkers);
+    }
+  }
+
+
+  /**
+   * The final child of each worker morphline; passes records on to the real final child, but swallows
+   * notifications, because the facade forwards each notification exactly once.
+   */
+  private static final class WorkerOutput implements Command {
+
+    private final Command parent;
+    private final Command child;
+
+    public WorkerOutput(Command parent, Command child) {
+      this.parent = parent;
+      this.child = child;
+    }
+
+    @Override
+    public Command getParent() {
+      return parent;
+    }
+
+    @Override
+    public void notify(Record notification) {
+    }
+
+    @Override
+    public boolean process(Record record) {
+      return child.process(record);
+    }
+  }
+
+}
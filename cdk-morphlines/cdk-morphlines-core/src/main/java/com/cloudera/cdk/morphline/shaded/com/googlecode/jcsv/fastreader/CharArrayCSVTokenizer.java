@@ -0,0 +1,327 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.cdk.morphline.shaded.com.googlecode.jcsv.fastreader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.cloudera.cdk.morphline.api.Record;
+import com.cloudera.cdk.morphline.api.SymbolTable;
+import com.cloudera.cdk.morphline.api.SymbolTable.Symbol;
+
+
+/**
+ * A streaming csv tokenizer that scans a reusable char[] window of the input directly, instead of
+ * first reading each line into a String and then copying each column into a String.
+ *
+ * A String is only materialized for columns that have a non-empty column name; other columns are
+ * skipped without copying. Unquoted columns are materialized straight from the window.
+ *
+ * The output is the same as the output of {@link SimpleCSVTokenizer} (if quoteChar is null) or of
+ * {@link QuotedCSVTokenizer} (otherwise) fed from <code>BufferedReader.readLine()</code>, including
+ * quoted fields that span multiple lines.
+ */
+public final class CharArrayCSVTokenizer {
+
+  private final char separatorChar;
+  private final boolean trim;
+  private final List<String> columnNames;
+  private final List<Symbol> columnSymbols = new ArrayList();
+  private final SymbolTable symbols;
+  private final boolean isQuoting;
+  private final char quoteChar;
+  private final boolean isCommenting;
+  private final char commentChar;
+  private final boolean ignoreEmptyLines;
+  private final StringBuilder sb = new StringBuilder(30);
+
+  private Reader reader;
+  private char[] buf = new char[0];
+  private int pos; // index of the next unconsumed char in buf
+  private int limit; // number of valid chars in buf
+  private boolean skipLF; // previous line ended with '\r'
+
+  /**
+   * @param quoteChar
+   *          the quote character, or null to disable quoting
+   * @param commentChar
+   *          lines starting with this character are ignored, or null to disable comments
+   */
+  public CharArrayCSVTokenizer(char separatorChar, boolean trim, List<String> columnNames, Character quoteChar,
+      Character commentChar, boolean ignoreEmptyLines, SymbolTable symbols) {
+    this.separatorChar = separatorChar;
+    this.trim = trim;
+    this.columnNames = columnNames;
+    this.isQuoting = quoteChar != null;
+    this.quoteChar = isQuoting ? quoteChar.charValue() : 0;
+    this.isCommenting = commentChar != null;
+    this.commentChar = isCommenting ? commentChar.charValue() : 0;
+    this.ignoreEmptyLines = ignoreEmptyLines;
+    this.symbols = symbols;
+  }
+
+  /** Prepares this tokenizer to read from the given reader, reusing the existing char window. */
+  public void reset(Reader reader, int bufferSize) {
+    this.reader = reader;
+    if (buf.length < bufferSize) {
+      buf = new char[bufferSize];
+    }
+    pos = 0;
+    limit = 0;
+    skipLF = false;
+  }
+
+  /** Skips the next line; returns false on end of input. */
+  public boolean skipLine() throws IOException {
+    int eol = findLineEnd();
+    if (eol < 0) {
+      return false;
+    }
+    consumeLine(eol);
+    return true;
+  }
+
+  /**
+   * Reads the columns of the next non-ignored line (or multiple lines, if a quoted field spans
+   * lines) into the given record; returns false on end of input.
+   */
+  public boolean readNext(Record record) throws IOException {
+    while (true) {
+      int eol = findLineEnd();
+      if (eol < 0) {
+        return false;
+      }
+      if ((ignoreEmptyLines && isTrimmedLineEmpty(pos, eol)) || (isCommenting && pos < eol && buf[pos] == commentChar)) {
+        consumeLine(eol);
+        continue;
+      }
+      tokenizeLine(eol, record);
+      return true;
+    }
+  }
+
+  private void tokenizeLine(int eol, Record record) throws IOException {
+    final char DELIMITER = separatorChar;
+    final char QUOTE = quoteChar;
+    final boolean isQuoting = this.isQuoting;
+    boolean isQuoted = false;
+    boolean isSlice = true; // column so far is the contiguous range buf[start, start + len)
+    int start = pos;
+    int len = 0;
+    int i = pos;
+    int j = 0;
+    Symbol symbol = getColumnSymbol(j);
+    sb.setLength(0);
+
+    while (true) {
+
+      if (!isQuoted) {
+        if (i == eol) {
+          break; // we're done
+        }
+        final char c = buf[i];
+        if (c == DELIMITER) {
+          put(symbol, isSlice, start, len, record);
+          j++;
+          symbol = getColumnSymbol(j);
+          isSlice = true;
+          start = i + 1;
+          len = 0;
+          sb.setLength(0);
+        } else if (isQuoting && c == QUOTE) {
+          if (isSlice) {
+            isSlice = false;
+            if (symbol != null) {
+              sb.append(buf, start, len);
+            }
+          }
+          if (len == 0) {
+            isQuoted = true;
+          } else if (i + 1 < eol && buf[i + 1] == QUOTE) {
+            append(c, symbol);
+            len++;
+            i++;
+          } else {
+            isQuoted = true;
+          }
+        } else if (isSlice) {
+          // fast path: skip ahead to the next special char without copying anything
+          int k = i + 1;
+          while (k < eol) {
+            char d = buf[k];
+            if (d == DELIMITER || (isQuoting && d == QUOTE)) {
+              break;
+            }
+            k++;
+          }
+          len += k - i;
+          i = k - 1;
+        } else {
+          append(c, symbol);
+          len++;
+        }
+
+      } else {
+        assert isQuoted;
+        if (i == eol) {
+          append('\n', symbol);
+          len++;
+          consumeLine(eol);
+          eol = findLineEnd(); // may move the window, but all chars of this column are in sb by now
+          if (eol < 0) {
+            throw new IllegalStateException("unexpected end of file, unclosed quotation");
+          }
+          i = pos;
+          continue;
+        } else {
+          final char c = buf[i];
+          if (c == QUOTE) {
+            if (i + 1 < eol && buf[i + 1] == QUOTE) {
+              append(c, symbol); // found two quotes -> insert single quote
+              len++;
+              i++;
+            } else {
+              isQuoted = false;
+            }
+          } else {
+            append(c, symbol);
+            len++;
+          }
+        }
+      }
+
+      i++;
+    }
+
+    if (!(isQuoting && j == 0 && len == 0)) {
+      put(symbol, isSlice, start, len, record);
+    }
+    consumeLine(eol);
+  }
+
+  private void append(char c, Symbol symbol) {
+    if (symbol != null) {
+      sb.append(c);
+    }
+  }
+
+  private void put(Symbol symbol, boolean isSlice, int start, int len, Record record) {
+    if (symbol != null) {
+      String col;
+      if (isSlice) {
+        int end = start + len;
+        if (trim) {
+          while (start < end && buf[start] <= ' ') {
+            start++;
+          }
+          while (end > start && buf[end - 1] <= ' ') {
+            end--;
+          }
+        }
+        col = new String(buf, start, end - start);
+      } else {
+        col = sb.toString();
+        col = trim ? col.trim() : col;
+      }
+      record.put(symbol, col);
+    }
+  }
+
+  private boolean isTrimmedLineEmpty(int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (buf[i] > ' ') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the index of the line terminator ending the line that starts at pos, or limit if the
+   * last line has no terminator, or -1 on end of input. Refills the window as required.
+   */
+  private int findLineEnd() throws IOException {
+    if (skipLF) {
+      if (pos == limit && !fill()) {
+        skipLF = false;
+        return -1;
+      }
+      if (buf[pos] == '\n') {
+        pos++; // second half of "\r\n"
+      }
+      skipLF = false;
+    }
+    int i = pos;
+    while (true) {
+      while (i < limit) {
+        char c = buf[i];
+        if (c == '\n' || c == '\r') {
+          return i;
+        }
+        i++;
+      }
+      int scanned = i - pos;
+      if (!fill()) {
+        return pos < limit ? limit : -1;
+      }
+      i = pos + scanned;
+    }
+  }
+
+  /** Consumes the line that ends at the given index, including its line terminator */
+  private void consumeLine(int eol) {
+    pos = eol;
+    if (pos < limit) {
+      if (buf[pos] == '\r') {
+        skipLF = true;
+      }
+      pos++;
+    }
+  }
+
+  /** Reads more chars into the window, compacting or growing it as required; returns false on EOF. */
+  private boolean fill() throws IOException {
+    if (pos > 0) {
+      System.arraycopy(buf, pos, buf, 0, limit - pos);
+      limit -= pos;
+      pos = 0;
+    }
+    if (limit == buf.length) {
+      char[] newBuf = new char[Math.max(1024, 2 * buf.length)];
+      System.arraycopy(buf, 0, newBuf, 0, limit);
+      buf = newBuf;
+    }
+    int n = reader.read(buf, limit, buf.length - limit);
+    if (n < 0) {
+      return false;
+    }
+    limit += n;
+    return true;
+  }
+
+  private Symbol getColumnSymbol(int j) {
+    while (j >= columnSymbols.size()) {
+      int k = columnSymbols.size();
+      if (k >= columnNames.size()) {
+        columnNames.add("column" + k);
+      }
+      String columnName = columnNames.get(k);
+      // empty column name indicates omit this field on output
+      columnSymbols.add(columnName.length() == 0 ? null : symbols.intern(columnName));
+    }
+    return columnSymbols.get(j);
+  }
+}
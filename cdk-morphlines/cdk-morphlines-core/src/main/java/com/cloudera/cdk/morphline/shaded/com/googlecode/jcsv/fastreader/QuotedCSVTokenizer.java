@@ -15,9 +15,12 @@ package com.cloudera.cdk.morphline.shaded.com.googlecode.jcsv.fastreader;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import com.cloudera.cdk.morphline.api.Record;
+import com.cloudera.cdk.morphline.api.SymbolTable;
+import com.cloudera.cdk.morphline.api.SymbolTable.Symbol;
 
 
 /**
@@ -34,13 +37,21 @@ public final class QuotedCSVTokenizer implements CSVTokenizer {
   private final char separatorChar;
   private final boolean trim;
   private final List<String> columnNames;
+  private final List<Symbol> columnSymbols = new ArrayList();
+  private final SymbolTable symbols;
   private final char quoteChar;
   
   public QuotedCSVTokenizer(char separatorChar, boolean trim, List<String> columnNames, char quoteChar) {
+    this(separatorChar, trim, columnNames, quoteChar, new SymbolTable());
+  }
+  
+  public QuotedCSVTokenizer(char separatorChar, boolean trim, List<String> columnNames, char quoteChar, 
+      SymbolTable symbols) {
     this.separatorChar = separatorChar;
     this.trim = trim;
     this.columnNames = columnNames;
     this.quoteChar = quoteChar;
+    this.symbols = symbols;
   }
   
   /** Splits the given input line into parts, using the given delimiter. */
@@ -110,15 +121,24 @@ public final class QuotedCSVTokenizer implements CSVTokenizer {
   }
   
   private void put(StringBuilder sb, int j, Record record) {
-    if (j >= columnNames.size()) {
-      columnNames.add("column" + j);
-    }
-    String columnName = columnNames.get(j);
-    if (columnName.length() != 0) { // empty column name indicates omit this field on output
+    Symbol columnSymbol = getColumnSymbol(j);
+    if (columnSymbol != null) {
       String col = sb.toString();
       col = trim ? col.trim() : col;
-      record.put(columnName, col);
+      record.put(columnSymbol, col);
     }
   }
 
+  private Symbol getColumnSymbol(int j) {
+    while (j >= columnSymbols.size()) {
+      int k = columnSymbols.size();
+      if (k >= columnNames.size()) {
+        columnNames.add("column" + k);
+      }
+      String columnName = columnNames.get(k);
+      // empty column name indicates omit this field on output
+      columnSymbols.add(columnName.length() == 0 ? null : symbols.intern(columnName));
+    }
+    return columnSymbols.get(j);
+  }
 }
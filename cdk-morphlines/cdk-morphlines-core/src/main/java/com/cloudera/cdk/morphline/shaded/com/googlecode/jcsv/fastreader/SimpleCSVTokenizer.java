@@ -15,9 +15,12 @@ package com.cloudera.cdk.morphline.shaded.com.googlecode.jcsv.fastreader;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import com.cloudera.cdk.morphline.api.Record;
+import com.cloudera.cdk.morphline.api.SymbolTable;
+import com.cloudera.cdk.morphline.api.SymbolTable.Symbol;
 
 
 /**
@@ -31,11 +34,18 @@ public final class SimpleCSVTokenizer implements CSVTokenizer {
   private final char separatorChar;
   private final boolean trim;
   private final List<String> columnNames;
+  private final List<Symbol> columnSymbols = new ArrayList();
+  private final SymbolTable symbols;
   
   public SimpleCSVTokenizer(char separatorChar, boolean trim, List<String> columnNames) {
+    this(separatorChar, trim, columnNames, new SymbolTable());
+  }
+  
+  public SimpleCSVTokenizer(char separatorChar, boolean trim, List<String> columnNames, SymbolTable symbols) {
     this.separatorChar = separatorChar;
     this.trim = trim;
     this.columnNames = columnNames;    
+    this.symbols = symbols;
   }
   
   /** Splits the given input line into parts, using the given delimiter. */
@@ -56,14 +66,24 @@ public final class SimpleCSVTokenizer implements CSVTokenizer {
   }
 
   private void put(String line, int start, int i, int j, Record record) {
-    if (j >= columnNames.size()) {
-      columnNames.add("column" + j);
-    }
-    String columnName = columnNames.get(j);
-    if (columnName.length() != 0) { // empty column name indicates omit this field on output
+    Symbol columnSymbol = getColumnSymbol(j);
+    if (columnSymbol != null) {
       String col = line.substring(start, i);
       col = trim ? col.trim() : col;
-      record.put(columnName, col);
+      record.put(columnSymbol, col);
+    }
+  }
+
+  private Symbol getColumnSymbol(int j) {
+    while (j >= columnSymbols.size()) {
+      int k = columnSymbols.size();
+      if (k >= columnNames.size()) {
+        columnNames.add("column" + k);
+      }
+      String columnName = columnNames.get(k);
+      // empty column name indicates omit this field on output
+      columnSymbols.add(columnName.length() == 0 ? null : symbols.intern(columnName));
     }
+    return columnSymbols.get(j);
   }
 }
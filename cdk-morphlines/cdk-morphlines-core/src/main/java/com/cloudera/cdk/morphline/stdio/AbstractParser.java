@@ -27,6 +27,7 @@ import java.util.Set;
 
 import com.cloudera.cdk.morphline.api.Command;
 import com.cloudera.cdk.morphline.api.CommandBuilder;
+import com.cloudera.cdk.morphline.api.MorphlineCompilationException;
 import com.cloudera.cdk.morphline.api.MorphlineContext;
 import com.cloudera.cdk.morphline.api.MorphlineRuntimeException;
 import com.cloudera.cdk.morphline.api.Record;
@@ -181,6 +182,65 @@ public abstract class AbstractParser extends AbstractCommand {
     }
   }
 
+  /**
+   * Returns a copy of the given input record, minus attachments, that serves as the template of all
+   * records emitted for the input record. The template stores the fields that commands resolved
+   * at compile time in slots of the symbol table of this morphline, so the per-output copies made
+   * of it are cheap copy-on-write copies. Other field names are kept out of the symbol table.
+   */
+  protected Record createTemplate(Record inputRecord) {
+    Record template = new Record(getContext().getSymbolTable());
+    template.getFields().putAll(inputRecord.getFields());
+    removeAttachments(template);
+    return template;
+  }
+  
+  /**
+   * Reads the optional <code>batchSize</code> parameter, i.e. the maximum number of output records
+   * that {@link #emit(Record, List, int)} passes to the child command in a single
+   * {@link AbstractCommand#processBatch(List)} call. The default is 1, meaning one record at a time.
+   */
+  protected int getBatchSize(Config config) {
+    int batchSize = getConfigs().getInt(config, "batchSize", 1);
+    if (batchSize <= 0) {
+      throw new MorphlineCompilationException("batchSize must be a positive number: " + batchSize, config);
+    }
+    return batchSize;
+  }
+  
+  /**
+   * Passes the given output record to the child command. If batchSize is greater than 1 the record
+   * is appended to the given batch instead, and the batch is passed on once it is full.
+   * 
+   * @return false if the child command failed, true otherwise
+   */
+  protected boolean emit(Record outputRecord, List<Record> batch, int batchSize) {
+    if (batchSize <= 1) {
+      return getChild().process(outputRecord);
+    }
+    batch.add(outputRecord);
+    if (batch.size() < batchSize) {
+      return true;
+    }
+    return flush(batch);
+  }
+  
+  /**
+   * Passes any records remaining in the given batch to the child command, and empties the batch.
+   * 
+   * @return false if the child command failed, true otherwise
+   */
+  protected boolean flush(List<Record> batch) {
+    if (batch.size() == 0) {
+      return true;
+    }
+    try {
+      return processBatch(getChild(), batch);
+    } finally {
+      batch.clear();
+    }
+  }
+  
   public static void removeAttachments(Record outputRecord) {
     outputRecord.removeAll(Fields.ATTACHMENT_BODY);
     outputRecord.removeAll(Fields.ATTACHMENT_MIME_TYPE);
@@ -19,7 +19,9 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -30,6 +32,7 @@ import com.cloudera.cdk.morphline.api.MorphlineCompilationException;
 import com.cloudera.cdk.morphline.api.MorphlineContext;
 import com.cloudera.cdk.morphline.api.Record;
 import com.cloudera.cdk.morphline.shaded.com.googlecode.jcsv.fastreader.CSVTokenizer;
+import com.cloudera.cdk.morphline.shaded.com.googlecode.jcsv.fastreader.CharArrayCSVTokenizer;
 import com.cloudera.cdk.morphline.shaded.com.googlecode.jcsv.fastreader.QuotedCSVTokenizer;
 import com.cloudera.cdk.morphline.shaded.com.googlecode.jcsv.fastreader.SimpleCSVTokenizer;
 import com.typesafe.config.Config;
@@ -67,6 +70,8 @@ public final class ReadCSVBuilder implements CommandBuilder {
     private final String quoteChar;
     private final boolean ignoreEmptyLines = true;
     private final CSVTokenizer tokenizer;
+    private final CharArrayCSVTokenizer streamingTokenizer; // null unless streaming is enabled
+    private final int batchSize;
   
     public ReadCSV(CommandBuilder builder, Config config, Command parent, Command child, MorphlineContext context) {
       super(builder, config, parent, child, context);
@@ -94,22 +99,34 @@ public final class ReadCSVBuilder implements CommandBuilder {
             "Comment prefix must not have a length of more than one character: " + commentPrefix, config);
       }
       this.tokenizer = quoteChar.length() == 0 ? 
-          new SimpleCSVTokenizer(separatorChar, trim, columnNames) : 
-          new QuotedCSVTokenizer(separatorChar, trim, columnNames, quoteChar.charAt(0));          
+          new SimpleCSVTokenizer(separatorChar, trim, columnNames, context.getSymbolTable()) : 
+          new QuotedCSVTokenizer(separatorChar, trim, columnNames, quoteChar.charAt(0), context.getSymbolTable());          
+      if (getConfigs().getBoolean(config, "streaming", false)) {
+        this.streamingTokenizer = new CharArrayCSVTokenizer(separatorChar, trim, columnNames, 
+            quoteChar.length() == 0 ? null : quoteChar.charAt(0), 
+            commentPrefix.length() == 0 ? null : commentPrefix.charAt(0), 
+            ignoreEmptyLines, context.getSymbolTable());
+      } else {
+        this.streamingTokenizer = null;
+      }
+      this.batchSize = getBatchSize(config);
       validateArguments();
     }
   
     @Override
     protected boolean doProcess(Record inputRecord, InputStream stream) throws IOException {
-      Record template = inputRecord.copy();
-      removeAttachments(template);
+      Record template = createTemplate(inputRecord);
       Charset detectedCharset = detectCharset(inputRecord, charset);  
+      if (streamingTokenizer != null) {
+        return doProcessStreaming(template, new InputStreamReader(stream, detectedCharset), getBufferSize(stream));
+      }
       BufferedReader reader = new BufferedReader(
           new InputStreamReader(stream, detectedCharset), getBufferSize(stream));
       if (ignoreFirstLine) {
         reader.readLine();
       }      
 
+      List<Record> batch = new ArrayList(Math.min(batchSize, 1024));
       while (true) {
         Record outputRecord = template.copy();
         if (!readNext(reader, outputRecord)) {
@@ -118,11 +135,33 @@ public final class ReadCSVBuilder implements CommandBuilder {
         incrementNumRecords();
         
         // pass record to next command in chain:
-        if (!getChild().process(outputRecord)) {
+        if (!emit(outputRecord, batch, batchSize)) {
           return false;
         }
       }
-      return true;
+      return flush(batch);
+    }
+
+    private boolean doProcessStreaming(Record template, Reader reader, int bufferSize) throws IOException {
+      streamingTokenizer.reset(reader, bufferSize);
+      if (ignoreFirstLine) {
+        streamingTokenizer.skipLine();
+      }      
+
+      List<Record> batch = new ArrayList(Math.min(batchSize, 1024));
+      while (true) {
+        Record outputRecord = template.copy();
+        if (!streamingTokenizer.readNext(outputRecord)) {
+          break;
+        }
+        incrementNumRecords();
+        
+        // pass record to next command in chain:
+        if (!emit(outputRecord, batch, batchSize)) {
+          return false;
+        }
+      }
+      return flush(batch);
     }
 
     private boolean readNext(BufferedReader reader, Record record) throws IOException {
@@ -21,8 +21,10 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 
 import com.cloudera.cdk.morphline.api.Command;
 import com.cloudera.cdk.morphline.api.CommandBuilder;
@@ -56,6 +58,7 @@ public final class ReadLineBuilder implements CommandBuilder {
     private final Charset charset;
     private final boolean ignoreFirstLine;
     private final String commentPrefix;
+    private final int batchSize;
   
     public ReadLine(CommandBuilder builder, Config config, Command parent, Command child, MorphlineContext context) {
       super(builder, config, parent, child, context);
@@ -66,19 +69,20 @@ public final class ReadLineBuilder implements CommandBuilder {
         throw new MorphlineCompilationException("commentPrefix must be at most one character long: " + cprefix, config);
       }
       this.commentPrefix = (cprefix.length() > 0 ? cprefix : null);
+      this.batchSize = getBatchSize(config);
       validateArguments();
     }
   
     @Override
     protected boolean doProcess(Record inputRecord, InputStream stream) throws IOException {
-      Record template = inputRecord.copy();
-      removeAttachments(template);
+      Record template = createTemplate(inputRecord);
       template.removeAll(Fields.MESSAGE);
       Charset detectedCharset = detectCharset(inputRecord, charset);  
       Reader reader = new InputStreamReader(stream, detectedCharset);
       BufferedReader lineReader = new BufferedReader(reader, getBufferSize(stream));
       boolean isFirst = true;
       String line;
+      List<Record> batch = new ArrayList(Math.min(batchSize, 1024));
 
       while ((line = lineReader.readLine()) != null) {
         if (isFirst && ignoreFirstLine) {
@@ -96,11 +100,11 @@ public final class ReadLineBuilder implements CommandBuilder {
         incrementNumRecords();
         
         // pass record to next command in chain:
-        if (!getChild().process(outputRecord)) {
+        if (!emit(outputRecord, batch, batchSize)) {
           return false;
         }
       }
-      return true;        
+      return flush(batch);        
     }
       
   }
@@ -21,8 +21,10 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -63,6 +65,7 @@ public final class ReadMultiLineBuilder implements CommandBuilder {
     private final boolean negate;
     private final What what;
     private final Charset charset;
+    private final int batchSize;
   
     public ReadMultiLine(CommandBuilder builder, Config config, Command parent, Command child, MorphlineContext context) {
       super(builder, config, parent, child, context);
@@ -73,19 +76,20 @@ public final class ReadMultiLineBuilder implements CommandBuilder {
           config,
           getConfigs().getString(config, "what", What.previous.toString()),
           What.class);
+      this.batchSize = getBatchSize(config);
       validateArguments();
     }
 
     @Override
     protected boolean doProcess(Record inputRecord, InputStream stream) throws IOException {
-      Record template = inputRecord.copy();
-      removeAttachments(template);
+      Record template = createTemplate(inputRecord);
       template.removeAll(Fields.MESSAGE);
       Charset detectedCharset = detectCharset(inputRecord, charset);  
       Reader reader = new InputStreamReader(stream, detectedCharset);
       BufferedReader lineReader = new BufferedReader(reader, getBufferSize(stream));
       StringBuilder lines = null;
       String line;
+      List<Record> batch = new ArrayList(Math.min(batchSize, 1024));
       
       while ((line = lineReader.readLine()) != null) {
         if (lines == null) {
@@ -110,7 +114,7 @@ public final class ReadMultiLineBuilder implements CommandBuilder {
             lines.append('\n');
             lines.append(line);
           } else {          // do next
-            if (lines.length() > 0 && !flushRecord(template.copy(), lines.toString())) {
+            if (lines.length() > 0 && !flushRecord(template.copy(), lines.toString(), batch)) {
               return false;
             }
             lines.setLength(0);
@@ -119,17 +123,19 @@ public final class ReadMultiLineBuilder implements CommandBuilder {
         }          
       }
       if (lines != null && lines.length() > 0) {
-        return flushRecord(template.copy(), lines.toString());
+        if (!flushRecord(template.copy(), lines.toString(), batch)) {
+          return false;
+        }
       }
-      return true;
+      return flush(batch);
     }
 
-    private boolean flushRecord(Record outputRecord, String lines) {
+    private boolean flushRecord(Record outputRecord, String lines, List<Record> batch) {
       outputRecord.put(Fields.MESSAGE, lines);
       incrementNumRecords();
       
       // pass record to next command in chain:
-      return getChild().process(outputRecord);
+      return emit(outputRecord, batch, batchSize);
     }
     
     
@@ -15,9 +15,10 @@
  */
 package com.cloudera.cdk.morphline.stdlib;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import com.cloudera.cdk.morphline.api.Command;
 import com.cloudera.cdk.morphline.api.CommandBuilder;
@@ -26,6 +27,7 @@ import com.cloudera.cdk.morphline.api.Record;
 import com.cloudera.cdk.morphline.base.AbstractCommand;
 import com.cloudera.cdk.morphline.base.Configs;
 import com.cloudera.cdk.morphline.base.FieldExpression;
+import com.google.common.collect.Maps;
 import com.typesafe.config.Config;
 
 /**
@@ -33,16 +35,39 @@ import com.typesafe.config.Config;
  */
 abstract class AbstractAddValuesCommand extends AbstractCommand {
   
-  private final Set<Map.Entry<String, Object>> entrySet;
+  private final List<Map.Entry<String, Object>> entries = new ArrayList();
   
   public AbstractAddValuesCommand(CommandBuilder builder, Config config, Command parent, Command child, MorphlineContext context) {
     super(builder, config, parent, child, context);      
-    entrySet = new Configs().getEntrySet(config);
+    for (Map.Entry<String, Object> entry : new Configs().getEntrySet(config)) {
+      Object value = entry.getValue();
+      if (!(value instanceof Collection)) {
+        value = new FieldExpression(value.toString(), getConfig());
+      }
+      entries.add(Maps.immutableEntry(entry.getKey(), value));
+    }
   }
       
   @Override
   protected boolean doProcess(Record record) { 
-    for (Map.Entry<String, Object> entry : entrySet) {
+    addValues(record);
+    
+    // pass record to next command in chain:
+    return super.doProcess(record);
+  }
+      
+  @Override
+  protected boolean doProcessBatch(List<Record> records) { 
+    for (int i = 0; i < records.size(); i++) {
+      addValues(records.get(i));
+    }
+    
+    // pass batch to next command in chain:
+    return processBatch(getChild(), records);
+  }
+  
+  private void addValues(Record record) { 
+    for (Map.Entry<String, Object> entry : entries) {
       String fieldName = entry.getKey();
       prepare(record, fieldName);
       Object entryValue = entry.getValue();
@@ -50,13 +75,10 @@ abstract class AbstractAddValuesCommand extends AbstractCommand {
       if (entryValue instanceof Collection) {
         results = (Collection)entryValue;
       } else {
-        results = new FieldExpression(entryValue.toString(), getConfig()).evaluate(record);
+        results = ((FieldExpression)entryValue).evaluate(record);
       }
       putAll(record, fieldName, results);
     }
-    
-    // pass record to next command in chain:
-    return super.doProcess(record);
   }
   
   protected void prepare(Record record, String key) {    
@@ -15,12 +15,14 @@
  */
 package com.cloudera.cdk.morphline.stdlib;
 
+import java.util.List;
 import java.util.ListIterator;
 
 import com.cloudera.cdk.morphline.api.Command;
 import com.cloudera.cdk.morphline.api.CommandBuilder;
 import com.cloudera.cdk.morphline.api.MorphlineContext;
 import com.cloudera.cdk.morphline.api.Record;
+import com.cloudera.cdk.morphline.api.SymbolTable.Symbol;
 import com.cloudera.cdk.morphline.base.AbstractCommand;
 import com.typesafe.config.Config;
 
@@ -29,27 +31,40 @@ import com.typesafe.config.Config;
  */
 public abstract class AbstractFieldTransformCommand extends AbstractCommand {
 
-  private final String fieldName;
+  private final Symbol field;
   
   protected AbstractFieldTransformCommand(CommandBuilder builder, Config config, Command parent, Command child, MorphlineContext context) {
     super(builder, config, parent, child, context);      
-    this.fieldName = getConfigs().getString(config, "field");
+    this.field = context.getSymbolTable().intern(getConfigs().getString(config, "field"));
   }
       
   /** Deprecated; Will be removed in the next release */
   @Deprecated
   protected AbstractFieldTransformCommand(Config config, Command parent, Command child, MorphlineContext context) {
     super(config, parent, child, context);      
-    this.fieldName = getConfigs().getString(config, "field");
+    this.field = context.getSymbolTable().intern(getConfigs().getString(config, "field"));
   }
       
   @Override
   protected final boolean doProcess(Record record) {
-    ListIterator iter = record.get(fieldName).listIterator();
+    transformField(record);
+    return super.doProcess(record);
+  }
+  
+  @Override
+  protected final boolean doProcessBatch(List<Record> records) {
+    for (int i = 0; i < records.size(); i++) {
+      transformField(records.get(i));
+    }
+    // pass batch to next command in chain:
+    return processBatch(getChild(), records);
+  }
+  
+  private void transformField(Record record) {
+    ListIterator iter = record.get(field).listIterator();
     while (iter.hasNext()) {
       iter.set(transformFieldValue(iter.next()));
     }
-    return super.doProcess(record);
   }
   
   /** Transforms the given input value to some output value */
@@ -15,11 +15,11 @@
  */
 package com.cloudera.cdk.morphline.stdlib;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import com.cloudera.cdk.morphline.api.Command;
 import com.cloudera.cdk.morphline.api.CommandBuilder;
@@ -28,6 +28,7 @@ import com.cloudera.cdk.morphline.api.Record;
 import com.cloudera.cdk.morphline.base.AbstractCommand;
 import com.cloudera.cdk.morphline.base.Configs;
 import com.cloudera.cdk.morphline.base.FieldExpression;
+import com.google.common.collect.Maps;
 import com.typesafe.config.Config;
 
 /**
@@ -53,16 +54,22 @@ public final class ContainsBuilder implements CommandBuilder {
   ///////////////////////////////////////////////////////////////////////////////
   private static final class Contains extends AbstractCommand {
 
-    private final Set<Map.Entry<String, Object>> entrySet;
+    private final List<Map.Entry<String, Object>> entries = new ArrayList();
     
     public Contains(CommandBuilder builder, Config config, Command parent, Command child, MorphlineContext context) {
       super(builder, config, parent, child, context);      
-      entrySet = new Configs().getEntrySet(config);
+      for (Map.Entry<String, Object> entry : new Configs().getEntrySet(config)) {
+        Object value = entry.getValue();
+        if (!(value instanceof Collection)) {
+          value = new FieldExpression(value.toString(), getConfig());
+        }
+        entries.add(Maps.immutableEntry(entry.getKey(), value));
+      }
     }
         
     @Override
     protected boolean doProcess(Record record) {
-      for (Map.Entry<String, Object> entry : entrySet) {
+      for (Map.Entry<String, Object> entry : entries) {
         String fieldName = entry.getKey();
         List values = record.get(fieldName);
         Object entryValue = entry.getValue();
@@ -70,7 +77,7 @@ public final class ContainsBuilder implements CommandBuilder {
         if (entryValue instanceof Collection) {
           results = (Collection)entryValue;
         } else {
-          results = new FieldExpression(entryValue.toString(), getConfig()).evaluate(record);
+          results = ((FieldExpression)entryValue).evaluate(record);
         }
         boolean found = false;
         for (Object result : results) {
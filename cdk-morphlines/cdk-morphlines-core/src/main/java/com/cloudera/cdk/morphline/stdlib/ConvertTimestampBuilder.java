@@ -15,7 +15,6 @@
  */
 package com.cloudera.cdk.morphline.stdlib;
 
-import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -62,12 +61,11 @@ public final class ConvertTimestampBuilder implements CommandBuilder {
   private static final class ConvertTimestamp extends AbstractCommand {
 
     private final String fieldName;
-    private final List<SimpleDateFormat> inputFormats = new ArrayList();
-    private final SimpleDateFormat outputFormat;
+    private final TimestampParser inputParser;
+    private final String outputFormatStr;
+    private final ThreadLocal<SimpleDateFormat> outputFormats; // SimpleDateFormat isn't thread-safe
     
     private static final String NATIVE_SOLR_FORMAT = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'"; // e.g. 2007-04-26T08:05:04.789Z
-    private static final SimpleDateFormat UNIX_TIME_IN_MILLIS = new SimpleDateFormat("'unixTimeInMillis'");
-    private static final SimpleDateFormat UNIX_TIME_IN_SECONDS = new SimpleDateFormat("'unixTimeInSeconds'");
     
     static {
       DateUtil.DEFAULT_DATE_FORMATS.add(0, NATIVE_SOLR_FORMAT); 
@@ -79,24 +77,32 @@ public final class ConvertTimestampBuilder implements CommandBuilder {
       this.fieldName = getConfigs().getString(config, "field", Fields.TIMESTAMP);
       TimeZone inputTimeZone = getTimeZone(getConfigs().getString(config, "inputTimezone", "UTC"));
       Locale inputLocale = getLocale(getConfigs().getString(config, "inputLocale", ""));
-      for (String inputFormat : getConfigs().getStringList(config, "inputFormats", DateUtil.DEFAULT_DATE_FORMATS)) {
-        SimpleDateFormat dateFormat = getUnixTimeFormat(inputFormat, inputTimeZone);
-        if (dateFormat == null) {
-          dateFormat = new SimpleDateFormat(inputFormat, inputLocale);
-          dateFormat.setTimeZone(inputTimeZone);
-          dateFormat.set2DigitYearStart(DateUtil.DEFAULT_TWO_DIGIT_YEAR_START);
-        }
-        this.inputFormats.add(dateFormat);
+      List<String> inputFormats = getConfigs().getStringList(config, "inputFormats", DateUtil.DEFAULT_DATE_FORMATS);
+      for (String inputFormat : inputFormats) {
+        checkUnixTimeFormat(inputFormat, inputTimeZone);
+      }
+      int cacheSize = getConfigs().getInt(config, "cacheSize", 100);
+      if (cacheSize < 0) {
+        throw new MorphlineCompilationException("cacheSize must not be negative: " + cacheSize, config);
       }
+      this.inputParser = new TimestampParser(
+          inputFormats, inputTimeZone, inputLocale, DateUtil.DEFAULT_TWO_DIGIT_YEAR_START, cacheSize);
+      
       TimeZone outputTimeZone = getTimeZone(getConfigs().getString(config, "outputTimezone", "UTC"));
       Locale outputLocale = getLocale(getConfigs().getString(config, "outputLocale", ""));
-      String outputFormatStr = getConfigs().getString(config, "outputFormat", NATIVE_SOLR_FORMAT);
-      SimpleDateFormat dateFormat = getUnixTimeFormat(outputFormatStr, outputTimeZone);
-      if (dateFormat == null) {
-        dateFormat = new SimpleDateFormat(outputFormatStr, outputLocale);
+      this.outputFormatStr = getConfigs().getString(config, "outputFormat", NATIVE_SOLR_FORMAT);
+      if (checkUnixTimeFormat(outputFormatStr, outputTimeZone)) {
+        this.outputFormats = null;
+      } else {
+        final SimpleDateFormat dateFormat = new SimpleDateFormat(outputFormatStr, outputLocale);
         dateFormat.setTimeZone(outputTimeZone);
+        this.outputFormats = new ThreadLocal<SimpleDateFormat>() {
+          @Override
+          protected SimpleDateFormat initialValue() {
+            return (SimpleDateFormat) dateFormat.clone();
+          }
+        };
       }
-      this.outputFormat = dateFormat;
       validateArguments();
       
       if (LOG.isTraceEnabled()) {
@@ -107,70 +113,36 @@ public final class ConvertTimestampBuilder implements CommandBuilder {
         
     @Override
     protected boolean doProcess(Record record) {
-      ParsePosition pos = new ParsePosition(0);
       ListIterator iter = record.get(fieldName).listIterator();
       while (iter.hasNext()) {
         String timestamp = iter.next().toString();
-        boolean foundMatchingFormat = false;
-        for (SimpleDateFormat inputFormat : inputFormats) {
-          Date date;
-          boolean isUnixTime;
-          if (inputFormat == UNIX_TIME_IN_MILLIS) {
-            isUnixTime = true;
-            date = parseUnixTime(timestamp, 1);
-          } else if (inputFormat == UNIX_TIME_IN_SECONDS) {
-            isUnixTime = true;
-            date = parseUnixTime(timestamp, 1000);
-          } else {
-            isUnixTime = false;
-            pos.setIndex(0);
-            date = inputFormat.parse(timestamp, pos);
-          }
-          if (date != null && (isUnixTime || pos.getIndex() == timestamp.length())) {
-            String result;
-            if (outputFormat == UNIX_TIME_IN_MILLIS) {
-              result = String.valueOf(date.getTime());
-            } else if (outputFormat == UNIX_TIME_IN_SECONDS) {
-              result = String.valueOf(date.getTime() / 1000);
-            } else {
-              result = outputFormat.format(date);
-            }
-            iter.set(result);
-            foundMatchingFormat = true;
-            break;
-          }
-        }
-        if (!foundMatchingFormat) {
+        long millis = inputParser.parse(timestamp);
+        if (millis == TimestampParser.NO_MATCH) {
           //LOG.debug("Cannot parse timestamp: " + timestamp + " with one of these inputFormats: " + inputFormats);
           return false;
         }
+        String result;
+        if (outputFormats != null) {
+          result = outputFormats.get().format(new Date(millis));
+        } else if (outputFormatStr.equals(TimestampParser.UNIX_TIME_IN_MILLIS)) {
+          result = String.valueOf(millis);
+        } else {
+          result = String.valueOf(millis / 1000);
+        }
+        iter.set(result);
       }
       return super.doProcess(record);
     }
 
     // work around the fact that SimpleDateFormat doesn't understand Unix time format
-    private SimpleDateFormat getUnixTimeFormat(String format, TimeZone timeZone) {
-      if (format.equals("unixTimeInMillis")) {
-        if (!"UTC".equals(timeZone.getID())) {
-          throw new MorphlineCompilationException("timeZone must be UTC for date format 'unixTimeInMillis'", getConfig());
-        }
-        return UNIX_TIME_IN_MILLIS;
-      } else if (format.equals("unixTimeInSeconds")) {
+    private boolean checkUnixTimeFormat(String format, TimeZone timeZone) {
+      if (format.equals(TimestampParser.UNIX_TIME_IN_MILLIS) || format.equals(TimestampParser.UNIX_TIME_IN_SECONDS)) {
         if (!"UTC".equals(timeZone.getID())) {
-          throw new MorphlineCompilationException("timeZone must be UTC for date format 'unixTimeInSeconds'", getConfig());
+          throw new MorphlineCompilationException("timeZone must be UTC for date format '" + format + "'", getConfig());
         }
-        return UNIX_TIME_IN_SECONDS;
+        return true;
       } else {
-        return null;
-      }
-    }
-    
-    // work around the fact that SimpleDateFormat doesn't understand Unix time format
-    private Date parseUnixTime(String timestamp, long scale) {
-      try {
-        return new Date(scale * Long.parseLong(timestamp));
-      } catch (NumberFormatException e) {
-        return null;
+        return false;
       }
     }
     
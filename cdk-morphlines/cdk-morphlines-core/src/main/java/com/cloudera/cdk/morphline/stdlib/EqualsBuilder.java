@@ -15,11 +15,11 @@
  */
 package com.cloudera.cdk.morphline.stdlib;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import com.cloudera.cdk.morphline.api.Command;
 import com.cloudera.cdk.morphline.api.CommandBuilder;
@@ -28,6 +28,7 @@ import com.cloudera.cdk.morphline.api.Record;
 import com.cloudera.cdk.morphline.base.AbstractCommand;
 import com.cloudera.cdk.morphline.base.Configs;
 import com.cloudera.cdk.morphline.base.FieldExpression;
+import com.google.common.collect.Maps;
 import com.typesafe.config.Config;
 
 /**
@@ -52,16 +53,22 @@ public final class EqualsBuilder implements CommandBuilder {
   ///////////////////////////////////////////////////////////////////////////////
   private static final class Equals extends AbstractCommand {
 
-    private final Set<Map.Entry<String, Object>> entrySet;
+    private final List<Map.Entry<String, Object>> entries = new ArrayList();
     
     public Equals(CommandBuilder builder, Config config, Command parent, Command child, MorphlineContext context) {
       super(builder, config, parent, child, context);      
-      entrySet = new Configs().getEntrySet(config);
+      for (Map.Entry<String, Object> entry : new Configs().getEntrySet(config)) {
+        Object value = entry.getValue();
+        if (!(value instanceof Collection)) {
+          value = new FieldExpression(value.toString(), getConfig());
+        }
+        entries.add(Maps.immutableEntry(entry.getKey(), value));
+      }
     }
         
     @Override
     protected boolean doProcess(Record record) {
-      for (Map.Entry<String, Object> entry : entrySet) {
+      for (Map.Entry<String, Object> entry : entries) {
         String fieldName = entry.getKey();
         List values = record.get(fieldName);
         Object entryValue = entry.getValue();
@@ -69,7 +76,7 @@ public final class EqualsBuilder implements CommandBuilder {
         if (entryValue instanceof Collection) {
           results = (Collection)entryValue;
         } else {
-          results = new FieldExpression(entryValue.toString(), getConfig()).evaluate(record);
+          results = ((FieldExpression)entryValue).evaluate(record);
         }
         if (!values.equals(results)) {
           return false;
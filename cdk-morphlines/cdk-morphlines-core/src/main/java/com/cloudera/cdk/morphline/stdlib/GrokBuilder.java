@@ -15,6 +15,7 @@
  */
 package com.cloudera.cdk.morphline.stdlib;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -25,11 +26,14 @@ import com.cloudera.cdk.morphline.api.Command;
 import com.cloudera.cdk.morphline.api.CommandBuilder;
 import com.cloudera.cdk.morphline.api.MorphlineContext;
 import com.cloudera.cdk.morphline.api.Record;
+import com.cloudera.cdk.morphline.api.SymbolTable;
+import com.cloudera.cdk.morphline.api.SymbolTable.Symbol;
 import com.cloudera.cdk.morphline.base.AbstractCommand;
 import com.cloudera.cdk.morphline.base.Configs;
 import com.cloudera.cdk.morphline.base.Validator;
 import com.cloudera.cdk.morphline.shaded.com.google.code.regexp.GroupInfo;
 import com.cloudera.cdk.morphline.shaded.com.google.code.regexp.Matcher;
+import com.cloudera.cdk.morphline.shaded.com.google.code.regexp.Pattern;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 
@@ -63,24 +67,26 @@ public final class GrokBuilder implements CommandBuilder {
   ///////////////////////////////////////////////////////////////////////////////
   private static final class Grok extends AbstractCommand {
 
-    private final Map<String, Matcher> regexes = new HashMap();
+    private final List<Expression> regexes = new ArrayList();
     private final boolean extract;
     private final boolean extractInPlace;
     private final NumRequiredMatches numRequiredMatches;
     private final boolean findSubstrings;
     private final boolean addEmptyStrings;
-    private final String firstKey; // cached value
 
     public Grok(CommandBuilder builder, Config config, Command parent, Command child, MorphlineContext context) {
       super(builder, config, parent, child, context);
       
       GrokDictionaries dict = new GrokDictionaries(config, getConfigs());
       Config exprConfig = getConfigs().getConfig(config, "expressions", ConfigFactory.empty());
+      Map<String, Pattern> patterns = new HashMap();
       for (Map.Entry<String, Object> entry : new Configs().getEntrySet(exprConfig)) {
         String expr = entry.getValue().toString();
-        this.regexes.put(entry.getKey(), dict.compileExpression(expr).matcher(""));
+        patterns.put(entry.getKey(), dict.compileExpression(expr));
+      }
+      for (Map.Entry<String, Pattern> entry : patterns.entrySet()) {
+        this.regexes.add(new Expression(entry.getKey(), entry.getValue(), context.getSymbolTable()));
       }
-      this.firstKey = (regexes.size() == 0 ? null : regexes.entrySet().iterator().next().getKey());
 
       String extractStr = getConfigs().getString(config, "extract", "true");
       this.extractInPlace = extractStr.equals("inplace");
@@ -116,8 +122,7 @@ public final class GrokBuilder implements CommandBuilder {
           isFast = true;
         } else { // all or once
           assert regexes.size() == 1;
-          assert firstKey != null;
-          isFast = (inputRecord.get(firstKey).size() <= 1);
+          isFast = (inputRecord.get(regexes.get(0).field).size() <= 1);
         }
         
         if (!isFast) {
@@ -140,9 +145,9 @@ public final class GrokBuilder implements CommandBuilder {
     }
 
     private boolean doMatch(Record inputRecord, Record outputRecord, boolean doExtract) {
-      for (Map.Entry<String, Matcher> regexEntry : regexes.entrySet()) {
-        Matcher matcher = regexEntry.getValue();
-        List values = inputRecord.get(regexEntry.getKey());
+      for (Expression regex : regexes) {
+        Matcher matcher = regex.matcher;
+        List values = inputRecord.get(regex.field);
         int todo = values.size();
         int minMatches = 1;
         int maxMatches = Integer.MAX_VALUE;
@@ -161,16 +166,20 @@ public final class GrokBuilder implements CommandBuilder {
         }        
         int numMatches = 0;
         for (Object value : values) {
-          matcher.reset(value.toString());
-          if (!findSubstrings) {
+          String str = value.toString();
+          if (!regex.prefilter.mayMatch(str)) {
+            ; // fast path: str lacks a literal that any match must contain
+          } else if (!findSubstrings) {
+            matcher.reset(str);
             if (matcher.matches()) {
               numMatches++;
               if (numMatches > maxMatches) {
                 return false;
               }
-              extract(outputRecord, matcher, doExtract);
+              extract(outputRecord, regex, doExtract);
             }
           } else {
+            matcher.reset(str);
             int previousNumMatches = numMatches;
             while (matcher.find()) {
               if (numMatches == previousNumMatches) {
@@ -182,7 +191,7 @@ public final class GrokBuilder implements CommandBuilder {
                   break; // fast path
                 }
               }
-              extract(outputRecord, matcher, doExtract);
+              extract(outputRecord, regex, doExtract);
             }
           }
           todo--;
@@ -197,26 +206,53 @@ public final class GrokBuilder implements CommandBuilder {
       return true;
     }
 
-    private void extract(Record outputRecord, Matcher matcher, boolean doExtract) {
+    private void extract(Record outputRecord, Expression regex, boolean doExtract) {
       if (doExtract) {
-        extractFast(outputRecord, matcher);
+        extractFast(outputRecord, regex);
       }
     }
 
-    private void extractFast(Record outputRecord, Matcher matcher) {
-      for (Map.Entry<String, List<GroupInfo>> entry : matcher.namedPattern().groupInfo().entrySet()) {
-        String groupName = entry.getKey();
-        List<GroupInfo> list = entry.getValue();
-        int idx = list.get(0).groupIndex();
-        int group = idx > -1 ? idx + 1 : -1; // TODO cache that number (perf)?
-        String value = matcher.group(group);
+    private void extractFast(Record outputRecord, Expression regex) {
+      Matcher matcher = regex.matcher;
+      for (int i = 0; i < regex.groups.length; i++) {
+        String value = matcher.group(regex.groups[i]);
         if (value != null && (value.length() > 0 || addEmptyStrings)) {
-          outputRecord.put(groupName, value);
+          outputRecord.put(regex.groupSymbols[i], value);
         }
       }
     }
 
     
+    ///////////////////////////////////////////////////////////////////////////////
+    // Nested classes:
+    ///////////////////////////////////////////////////////////////////////////////
+    /** A compiled expression along with the record fields it reads and writes */
+    private static final class Expression {
+      
+      private final Symbol field;
+      private final Matcher matcher;
+      private final LiteralPrefilter prefilter;
+      private final Symbol[] groupSymbols; // output field of each named group
+      private final int[] groups; // group number of each named group
+      
+      public Expression(String fieldName, Pattern pattern, SymbolTable symbols) {
+        this.field = symbols.intern(fieldName);
+        this.matcher = pattern.matcher("");
+        this.prefilter = LiteralPrefilter.compile(pattern.standardPattern(), pattern.flags());
+        Map<String, List<GroupInfo>> groupInfo = pattern.groupInfo();
+        this.groupSymbols = new Symbol[groupInfo.size()];
+        this.groups = new int[groupInfo.size()];
+        int i = 0;
+        for (Map.Entry<String, List<GroupInfo>> entry : groupInfo.entrySet()) {
+          int idx = entry.getValue().get(0).groupIndex();
+          groupSymbols[i] = symbols.intern(entry.getKey());
+          groups[i] = idx > -1 ? idx + 1 : -1;
+          i++;
+        }
+      }
+    }
+    
+    
     ///////////////////////////////////////////////////////////////////////////////
     // Nested classes:
     ///////////////////////////////////////////////////////////////////////////////
@@ -25,6 +25,7 @@ import java.io.StringReader;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -35,6 +36,9 @@ import com.cloudera.cdk.morphline.api.MorphlineCompilationException;
 import com.cloudera.cdk.morphline.base.Configs;
 import com.cloudera.cdk.morphline.shaded.com.google.code.regexp.Pattern;
 import com.google.common.base.Joiner;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.io.CharStreams;
 import com.google.common.io.Closeables;
 import com.typesafe.config.Config;
@@ -50,7 +54,19 @@ final class GrokDictionaries {
    */
   
   private final Config config;
-  private final Map<String, String> dictionary = new HashMap();
+  private Map<String, String> dictionary = new HashMap();
+  
+  /*
+   * Resolving a dictionary and compiling an expression is expensive, and commands that use the same
+   * dictionaries are typically compiled many times per process, e.g. for each grok rule of a
+   * tryRules command or for each worker thread. Hence share the results across the process.
+   * Compiled patterns are immutable and thus thread-safe; only their matchers aren't.
+   */
+  private static final Cache<Map<String, String>, Map<String, String>> RESOLVED_DICTIONARY_CACHE = 
+      CacheBuilder.newBuilder().maximumSize(100).build();
+  
+  private static final Cache<List<Object>, Pattern> PATTERN_CACHE = 
+      CacheBuilder.newBuilder().maximumSize(1000).build();
   
   private final Logger LOG = LoggerFactory.getLogger(GrokDictionaries.class);
   
@@ -65,14 +81,27 @@ final class GrokDictionaries {
     } catch (IOException e) {
       throw new MorphlineCompilationException("Cannot compile grok dictionary", config, e);
     }
-    resolveDictionaryExpressions();    
+    Map<String, String> key = ImmutableMap.copyOf(dictionary);
+    Map<String, String> resolvedDictionary = RESOLVED_DICTIONARY_CACHE.getIfPresent(key);
+    if (resolvedDictionary == null) {
+      resolveDictionaryExpressions();
+      resolvedDictionary = ImmutableMap.copyOf(dictionary);
+      RESOLVED_DICTIONARY_CACHE.put(key, resolvedDictionary);
+    }
+    dictionary = resolvedDictionary;
   }
   
   public Pattern compileExpression(String expr) {
-    expr = resolveExpression(expr);     
-    //LOG.debug("expr after : {}", expr);    
-    // TODO extract and replace conversions (?<queue_field:int>foo)    
-    return Pattern.compile(expr);
+    List<Object> key = Arrays.asList(dictionary, expr);
+    Pattern pattern = PATTERN_CACHE.getIfPresent(key);
+    if (pattern == null) {
+      expr = resolveExpression(expr);     
+      //LOG.debug("expr after : {}", expr);    
+      // TODO extract and replace conversions (?<queue_field:int>foo)    
+      pattern = Pattern.compile(expr);
+      PATTERN_CACHE.put(key, pattern);
+    }
+    return pattern;
   }
   
   private Config getConfig() {
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2013 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.cdk.morphline.stdlib;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Extracts literal substrings that any match of a java.util.regex expression must contain, such
+ * that input that lacks one of these substrings can be rejected with a cheap
+ * <code>String.indexOf()</code> before running the backtracking regex matcher.
+ *
+ * The analysis is conservative: literals inside alternations, optional elements and lookarounds are
+ * ignored, and expressions with constructs that aren't understood (e.g. inline flags, \Q quoting,
+ * hex or unicode escapes, back references) yield no literals at all, in which case all input is
+ * passed on to the regex matcher.
+ */
+final class LiteralPrefilter {
+
+  private final String[] literals; // longest first
+
+  /** Shorter literals aren't selective enough to pay for the extra scan */
+  private static final int MIN_LITERAL_LENGTH = 2;
+
+  private static final LiteralPrefilter EMPTY = new LiteralPrefilter(Collections.EMPTY_LIST);
+
+  private LiteralPrefilter(List<String> literals) {
+    this.literals = literals.toArray(new String[literals.size()]);
+  }
+
+  /** Returns a prefilter for the given regex, which must have been compiled with the given flags */
+  public static LiteralPrefilter compile(String regex, int flags) {
+    if (flags != 0) {
+      return EMPTY; // e.g. CASE_INSENSITIVE or COMMENTS change how literals match
+    }
+    List<String> found = new ArrayList();
+    try {
+      Parser parser = new Parser(regex);
+      parser.parseSequence(found);
+      if (parser.pos != regex.length()) {
+        return EMPTY; // unbalanced parenthesis
+      }
+    } catch (UnsupportedRegexException e) {
+      return EMPTY;
+    }
+    LinkedHashSet<String> literals = new LinkedHashSet();
+    for (String literal : found) {
+      if (literal.length() >= MIN_LITERAL_LENGTH) {
+        literals.add(literal);
+      }
+    }
+    if (literals.size() == 0) {
+      return EMPTY;
+    }
+    List<String> sorted = new ArrayList(literals);
+    Collections.sort(sorted, new Comparator<String>() {
+      @Override
+      public int compare(String s1, String s2) {
+        return s2.length() - s1.length();
+      }
+    });
+    return new LiteralPrefilter(sorted);
+  }
+
+  /**
+   * Returns false if the given input can't possibly contain a match of the regex; returns true if
+   * it may contain a match.
+   */
+  public boolean mayMatch(String input) {
+    for (String literal : literals) {
+      if (input.indexOf(literal) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns the literal substrings that any match must contain */
+  public List<String> getRequiredLiterals() {
+    return Collections.unmodifiableList(Arrays.asList(literals));
+  }
+
+  @Override
+  public String toString() {
+    return getRequiredLiterals().toString();
+  }
+
+
+  ///////////////////////////////////////////////////////////////////////////////
+  // Nested classes:
+  ///////////////////////////////////////////////////////////////////////////////
+  /** Recursive descent parser over the subset of the regex syntax that matters here */
+  private static final class Parser {
+
+    private final String regex;
+    private int pos = 0;
+
+    private static final int NO_QUANTIFIER = -1;
+
+    public Parser(String regex) {
+      this.regex = regex;
+    }
+
+    /**
+     * Parses a sequence up to the closing parenthesis of the enclosing group (or the end of the
+     * regex), adding the literals required by the sequence unless it contains an alternation.
+     */
+    public void parseSequence(List<String> literals) {
+      List<String> found = new ArrayList();
+      StringBuilder run = new StringBuilder(); // consecutive literal chars
+      boolean hasAlternation = false;
+      while (pos < regex.length()) {
+        char c = regex.charAt(pos);
+        if (c == ')') {
+          break;
+        } else if (c == '|') {
+          hasAlternation = true;
+          flush(run, found);
+          pos++;
+        } else if (c == '(') {
+          flush(run, found);
+          List<String> groupLiterals = parseGroup();
+          if (parseQuantifier() != 0) {
+            found.addAll(groupLiterals);
+          }
+        } else if (c == '[') {
+          flush(run, found);
+          skipCharClass();
+          parseQuantifier();
+        } else if (c == '.' || c == '^' || c == '$') {
+          flush(run, found);
+          pos++;
+          parseQuantifier();
+        } else if (c == '*' || c == '+' || c == '?' || c == '{') {
+          throw new UnsupportedRegexException(); // dangling quantifier
+        } else {
+          char literal = c;
+          if (c == '\\') {
+            if (pos + 1 >= regex.length()) {
+              throw new UnsupportedRegexException();
+            }
+            literal = regex.charAt(pos + 1);
+            if (Character.isLetterOrDigit(literal)) {
+              // predefined char class, boundary matcher or control char such as \d or \b or \t;
+              // anything else is something fancy such as \x41 or a back reference
+              if ("dDsSwWbBAGZztnrfae".indexOf(literal) < 0) {
+                throw new UnsupportedRegexException();
+              }
+              flush(run, found);
+              pos += 2;
+              parseQuantifier();
+              continue;
+            }
+            pos++;
+          }
+          pos++;
+          int min = parseQuantifier();
+          if (min == NO_QUANTIFIER) {
+            run.append(literal);
+          } else if (min == 0) {
+            flush(run, found);
+          } else {
+            run.append(literal);
+            flush(run, found);
+          }
+        }
+      }
+      flush(run, found);
+      if (!hasAlternation) {
+        literals.addAll(found);
+      }
+    }
+
+    /** Parses a group including its closing parenthesis and returns the literals it requires */
+    private List<String> parseGroup() {
+      assert regex.charAt(pos) == '(';
+      pos++;
+      boolean isLookaround = false;
+      if (regex.startsWith("?", pos)) {
+        if (regex.startsWith("?:", pos) || regex.startsWith("?>", pos)) {
+          pos += 2;
+        } else if (regex.startsWith("?=", pos) || regex.startsWith("?!", pos)) {
+          isLookaround = true;
+          pos += 2;
+        } else if (regex.startsWith("?<=", pos) || regex.startsWith("?<!", pos)) {
+          isLookaround = true;
+          pos += 3;
+        } else if (regex.startsWith("?<", pos)) { // named group
+          int end = regex.indexOf('>', pos);
+          if (end < 0) {
+            throw new UnsupportedRegexException();
+          }
+          pos = end + 1;
+        } else {
+          throw new UnsupportedRegexException(); // inline flags
+        }
+      }
+      List<String> literals = new ArrayList();
+      parseSequence(literals);
+      if (pos >= regex.length()) {
+        throw new UnsupportedRegexException(); // missing closing parenthesis
+      }
+      pos++;
+      return isLookaround ? Collections.EMPTY_LIST : literals;
+    }
+
+    private void skipCharClass() {
+      assert regex.charAt(pos) == '[';
+      pos++;
+      if (pos < regex.length() && regex.charAt(pos) == '^') {
+        pos++;
+      }
+      if (pos < regex.length() && regex.charAt(pos) == ']') {
+        pos++; // a leading ']' is a literal
+      }
+      while (pos < regex.length()) {
+        char c = regex.charAt(pos);
+        if (c == '\\') {
+          if (pos + 1 < regex.length() && regex.charAt(pos + 1) == 'Q') {
+            throw new UnsupportedRegexException();
+          }
+          pos += 2;
+        } else if (c == '[') {
+          skipCharClass(); // union or intersection
+        } else if (c == ']') {
+          pos++;
+          return;
+        } else {
+          pos++;
+        }
+      }
+      throw new UnsupportedRegexException(); // missing closing bracket
+    }
+
+    /**
+     * Consumes the quantifier at the current position, if any, and returns the minimum number of
+     * repetitions it requires, or NO_QUANTIFIER if there is no quantifier.
+     */
+    private int parseQuantifier() {
+      if (pos >= regex.length()) {
+        return NO_QUANTIFIER;
+      }
+      int min;
+      char c = regex.charAt(pos);
+      if (c == '?' || c == '*') {
+        min = 0;
+        pos++;
+      } else if (c == '+') {
+        min = 1;
+        pos++;
+      } else if (c == '{') {
+        int i = pos + 1;
+        while (i < regex.length() && Character.isDigit(regex.charAt(i))) {
+          i++;
+        }
+        if (i == pos + 1 || i - pos > 9) {
+          throw new UnsupportedRegexException();
+        }
+        min = Integer.parseInt(regex.substring(pos + 1, i));
+        int end = regex.indexOf('}', i);
+        if (end < 0) {
+          throw new UnsupportedRegexException();
+        }
+        pos = end + 1;
+      } else {
+        return NO_QUANTIFIER;
+      }
+      if (pos < regex.length() && (regex.charAt(pos) == '?' || regex.charAt(pos) == '+')) {
+        pos++; // reluctant or possessive
+      }
+      return min;
+    }
+
+    private void flush(StringBuilder run, List<String> found) {
+      if (run.length() > 0) {
+        found.add(run.toString());
+        run.setLength(0);
+      }
+    }
+  }
+
+
+  private static final class UnsupportedRegexException extends RuntimeException {
+  }
+
+}
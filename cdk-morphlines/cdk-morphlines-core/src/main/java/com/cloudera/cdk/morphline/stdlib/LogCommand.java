@@ -32,13 +32,16 @@ import com.typesafe.config.Config;
 abstract class LogCommand extends AbstractCommand {
   
   private String format;
-  private String[] args;  
+  private FieldExpression[] args;  
   
   public LogCommand(CommandBuilder builder, Config config, Command parent, Command child, MorphlineContext context) {
     super(builder, config, parent, child, context);
     this.format = getConfigs().getString(config, "format");
     List<String> argList = getConfigs().getStringList(config, "args", Collections.EMPTY_LIST);
-    this.args = argList.toArray(new String[argList.size()]);      
+    this.args = new FieldExpression[argList.size()];
+    for (int i = 0; i < args.length; i++) {
+      this.args[i] = new FieldExpression(argList.get(i), getConfig());
+    }
     validateArguments();
   }
 
@@ -46,7 +49,7 @@ abstract class LogCommand extends AbstractCommand {
   protected boolean doProcess(Record record) {
     Object[] resolvedArgs = new Object[args.length];
     for (int i = 0; i < args.length; i++) {
-      resolvedArgs[i] = new FieldExpression(args[i], getConfig()).evaluate(record);
+      resolvedArgs[i] = args[i].evaluate(record);
     }
     log(format, resolvedArgs);
     return super.doProcess(record);
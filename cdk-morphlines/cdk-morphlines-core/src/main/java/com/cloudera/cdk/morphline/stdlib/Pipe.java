@@ -21,6 +21,7 @@ import java.util.List;
 import com.cloudera.cdk.morphline.api.Command;
 import com.cloudera.cdk.morphline.api.CommandBuilder;
 import com.cloudera.cdk.morphline.api.MorphlineContext;
+import com.cloudera.cdk.morphline.api.Record;
 import com.cloudera.cdk.morphline.base.AbstractCommand;
 import com.typesafe.config.Config;
 
@@ -56,4 +57,9 @@ final class Pipe extends AbstractCommand {
     return realChild;
   }
   
+  @Override
+  protected boolean doProcessBatch(List<Record> records) {
+    return processBatch(getChild(), records);
+  }
+  
 }
@@ -0,0 +1,333 @@
+/*
+ * Copyright 2013 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.cdk.morphline.stdlib;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Thread-safe parser that converts a timestamp string to milliseconds since the epoch, trying a
+ * list of input date formats until one of them consumes the entire string.
+ *
+ * To reduce the number of failing parse attempts, the format that matched most recently is tried
+ * first. Note that this means that if a string matches more than one of the formats, the format
+ * that wins depends on the history of prior inputs.
+ *
+ * Results obtained via SimpleDateFormat are remembered in a small LRU cache keyed on the raw
+ * timestamp string, which pays off for logs with second granularity, where many consecutive records
+ * carry the same timestamp string. ISO-8601 strings in the formats used by Solr are parsed by a hand
+ * written fast path if the timezone is UTC, falling back to SimpleDateFormat for anything unusual,
+ * e.g. lenient out of range values.
+ *
+ * SimpleDateFormat isn't thread-safe, so each thread works on its own clones of the formats.
+ */
+final class TimestampParser {
+
+  private final InputFormat[] formats;
+  private final Cache<String, Long> cache; // null if disabled
+  private volatile int lastMatch = 0; // index of the format that matched most recently
+
+  /** The value returned if none of the formats match */
+  public static final long NO_MATCH = Long.MIN_VALUE;
+
+  public static final String UNIX_TIME_IN_MILLIS = "unixTimeInMillis";
+  public static final String UNIX_TIME_IN_SECONDS = "unixTimeInSeconds";
+
+  private static final String[] ISO_FORMATS = {
+    "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", // native Solr format, e.g. 2007-04-26T08:05:04.789Z
+    "yyyy-MM-dd'T'HH:mm:ss'Z'",
+    "yyyy-MM-dd'T'HH:mm:ss",
+    "yyyy-MM-dd",
+  };
+
+  private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+  /**
+   * @param cacheSize
+   *          the maximum number of entries of the LRU cache, or zero to disable caching
+   */
+  public TimestampParser(List<String> formats, TimeZone timeZone, Locale locale, Date twoDigitYearStart, int cacheSize) {
+    Preconditions.checkArgument(cacheSize >= 0, "cacheSize must not be negative: %s", cacheSize);
+    this.formats = new InputFormat[formats.size()];
+    boolean isUTC = "UTC".equals(timeZone.getID()) || "GMT".equals(timeZone.getID());
+    for (int i = 0; i < formats.size(); i++) {
+      String format = formats.get(i);
+      if (format.equals(UNIX_TIME_IN_MILLIS)) {
+        this.formats[i] = new UnixTimeFormat(1);
+      } else if (format.equals(UNIX_TIME_IN_SECONDS)) {
+        this.formats[i] = new UnixTimeFormat(1000);
+      } else {
+        SimpleDateFormat dateFormat = new SimpleDateFormat(format, locale);
+        dateFormat.setTimeZone(timeZone);
+        dateFormat.set2DigitYearStart(twoDigitYearStart);
+        int isoFormat = isUTC ? indexOf(ISO_FORMATS, format) : -1;
+        this.formats[i] = isoFormat >= 0 ? new ISOFormat(dateFormat, isoFormat) : new PatternFormat(dateFormat);
+      }
+    }
+    this.cache = cacheSize == 0 ? null : CacheBuilder.newBuilder().maximumSize(cacheSize).<String, Long>build();
+  }
+
+  /**
+   * Returns the given timestamp in milliseconds since the epoch, or {@link #NO_MATCH} if none of the
+   * input formats matches the entire timestamp string.
+   */
+  public long parse(String timestamp) {
+    if (formats.length == 0) {
+      return NO_MATCH;
+    }
+    final int hint = lastMatch;
+    InputFormat format = formats[hint];
+    if (format.isFast()) {
+      long millis = format.parse(timestamp);
+      if (millis != NO_MATCH) {
+        return millis;
+      }
+    }
+    if (cache != null) {
+      Long millis = cache.getIfPresent(timestamp);
+      if (millis != null) {
+        return millis.longValue();
+      }
+    }
+    if (!format.isFast()) {
+      long millis = format.parse(timestamp);
+      if (millis != NO_MATCH) {
+        putCache(timestamp, millis);
+        return millis;
+      }
+    }
+    for (int i = 0; i < formats.length; i++) {
+      if (i != hint) {
+        format = formats[i];
+        long millis = format.parse(timestamp);
+        if (millis != NO_MATCH) {
+          lastMatch = i;
+          if (!format.isFast()) {
+            putCache(timestamp, millis);
+          }
+          return millis;
+        }
+      }
+    }
+    return NO_MATCH;
+  }
+
+  private void putCache(String timestamp, long millis) {
+    if (cache != null) {
+      cache.put(timestamp, millis);
+    }
+  }
+
+  private static int indexOf(String[] items, String item) {
+    for (int i = 0; i < items.length; i++) {
+      if (items[i].equals(item)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+
+  ///////////////////////////////////////////////////////////////////////////////
+  // Nested classes:
+  ///////////////////////////////////////////////////////////////////////////////
+  private static abstract class InputFormat {
+
+    /** Returns milliseconds since the epoch, or NO_MATCH */
+    public abstract long parse(String timestamp);
+
+    /** Returns true if parsing is cheap enough that caching the result doesn't pay off */
+    public abstract boolean isFast();
+  }
+
+
+  /** Works around the fact that SimpleDateFormat doesn't understand Unix time format */
+  private static final class UnixTimeFormat extends InputFormat {
+
+    private final long scale;
+
+    public UnixTimeFormat(long scale) {
+      this.scale = scale;
+    }
+
+    @Override
+    public long parse(String timestamp) {
+      try {
+        return scale * Long.parseLong(timestamp);
+      } catch (NumberFormatException e) {
+        return NO_MATCH;
+      }
+    }
+
+    @Override
+    public boolean isFast() {
+      return true;
+    }
+  }
+
+
+  /** Parses via a thread-local clone of the given precompiled SimpleDateFormat */
+  private static class PatternFormat extends InputFormat {
+
+    private final ThreadLocal<SimpleDateFormat> dateFormats;
+
+    public PatternFormat(final SimpleDateFormat prototype) {
+      this.dateFormats = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+          return (SimpleDateFormat) prototype.clone();
+        }
+      };
+    }
+
+    @Override
+    public long parse(String timestamp) {
+      ParsePosition pos = new ParsePosition(0);
+      Date date = dateFormats.get().parse(timestamp, pos);
+      if (date != null && pos.getIndex() == timestamp.length()) {
+        return date.getTime();
+      }
+      return NO_MATCH;
+    }
+
+    @Override
+    public boolean isFast() {
+      return false;
+    }
+  }
+
+
+  /**
+   * Hand written parser for one of the ISO_FORMATS in UTC; falls back to SimpleDateFormat for
+   * anything other than fixed width digits in range, so the results are identical.
+   */
+  private static final class ISOFormat extends PatternFormat {
+
+    private final boolean hasTime;
+    private final boolean hasMillis;
+    private final boolean hasZulu;
+    private final int length;
+
+    public ISOFormat(SimpleDateFormat prototype, int isoFormat) {
+      super(prototype);
+      String format = ISO_FORMATS[isoFormat];
+      this.hasTime = format.contains("HH");
+      this.hasMillis = format.contains("SSS");
+      this.hasZulu = format.endsWith("'Z'");
+      this.length = (hasTime ? 19 : 10) + (hasMillis ? 4 : 0) + (hasZulu ? 1 : 0);
+    }
+
+    @Override
+    public long parse(String timestamp) {
+      long millis = parseFast(timestamp);
+      return millis != NO_MATCH ? millis : super.parse(timestamp);
+    }
+
+    private long parseFast(String s) {
+      if (s.length() != length) {
+        return NO_MATCH;
+      }
+      int year = digits(s, 0, 4);
+      if (year < 1583 || s.charAt(4) != '-') { // GregorianCalendar uses the Julian calendar before 1583
+        return NO_MATCH;
+      }
+      int month = digits(s, 5, 2);
+      if (month < 1 || month > 12 || s.charAt(7) != '-') {
+        return NO_MATCH;
+      }
+      int day = digits(s, 8, 2);
+      if (day < 1 || day > daysInMonth(year, month)) {
+        return NO_MATCH;
+      }
+      long millis = daysSinceEpoch(year, month, day) * MILLIS_PER_DAY;
+      int i = 10;
+      if (hasTime) {
+        if (s.charAt(10) != 'T' || s.charAt(13) != ':' || s.charAt(16) != ':') {
+          return NO_MATCH;
+        }
+        int hour = digits(s, 11, 2);
+        int minute = digits(s, 14, 2);
+        int second = digits(s, 17, 2);
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+          return NO_MATCH;
+        }
+        millis += ((hour * 60L + minute) * 60L + second) * 1000L;
+        i = 19;
+      }
+      if (hasMillis) {
+        int fraction = digits(s, i + 1, 3);
+        if (s.charAt(i) != '.' || fraction < 0) {
+          return NO_MATCH;
+        }
+        millis += fraction;
+        i += 4;
+      }
+      if (hasZulu && s.charAt(i) != 'Z') {
+        return NO_MATCH;
+      }
+      return millis;
+    }
+
+    @Override
+    public boolean isFast() {
+      return true;
+    }
+
+    /** Returns the value of the given number of ASCII digits, or -1 if there is a non-digit */
+    private static int digits(String s, int start, int len) {
+      int result = 0;
+      for (int i = start; i < start + len; i++) {
+        int digit = s.charAt(i) - '0';
+        if (digit < 0 || digit > 9) {
+          return -1;
+        }
+        result = result * 10 + digit;
+      }
+      return result;
+    }
+
+    private static int daysInMonth(int year, int month) {
+      switch (month) {
+        case 2:
+          boolean isLeapYear = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+          return isLeapYear ? 29 : 28;
+        case 4: case 6: case 9: case 11:
+          return 30;
+        default:
+          return 31;
+      }
+    }
+
+    /** Proleptic Gregorian calendar; see http://howardhinnant.github.io/date_algorithms.html */
+    private static long daysSinceEpoch(int year, int month, int day) {
+      long y = month <= 2 ? year - 1 : year;
+      long era = y / 400; // year >= 1583, so no need to round towards negative infinity
+      long yearOfEra = y - era * 400;
+      long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+      long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+      return era * 146097 + dayOfEra - 719468;
+    }
+  }
+
+}
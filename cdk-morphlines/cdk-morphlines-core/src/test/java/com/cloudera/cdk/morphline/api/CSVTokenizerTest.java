@@ -23,11 +23,14 @@ import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Assert;
+import org.junit.Ignore;
 import org.junit.Test;
 
 import com.cloudera.cdk.morphline.shaded.com.googlecode.jcsv.fastreader.CSVTokenizer;
+import com.cloudera.cdk.morphline.shaded.com.googlecode.jcsv.fastreader.CharArrayCSVTokenizer;
 import com.cloudera.cdk.morphline.shaded.com.googlecode.jcsv.fastreader.QuotedCSVTokenizer;
 import com.cloudera.cdk.morphline.shaded.com.googlecode.jcsv.fastreader.SimpleCSVTokenizer;
+import com.google.common.collect.ImmutableMultimap;
 
 public class CSVTokenizerTest extends Assert {
   
@@ -50,6 +53,22 @@ public class CSVTokenizerTest extends Assert {
       tokenizer = new SimpleCSVTokenizer(separator, false, new ArrayList());
       tokenizer.tokenizeLine(line, null, record);
     }
+    List results = getColumns(record);
+    
+    // the streaming tokenizer must produce the same columns
+    CharArrayCSVTokenizer streamingTokenizer = new CharArrayCSVTokenizer(
+        separator, false, new ArrayList(), isQuoted ? '"' : null, null, false, new SymbolTable());
+    streamingTokenizer.reset(new StringReader(line), 4);
+    Record streamingRecord = new Record();
+    if (streamingTokenizer.readNext(streamingRecord)) {
+      assertEquals(results, getColumns(streamingRecord));
+    } else {
+      assertEquals("", line);
+    }
+    return results;
+  }
+  
+  private List getColumns(Record record) {
     List results = new ArrayList();
     for (int i = 0; i < record.getFields().asMap().size(); i++) {
       assertEquals(1, record.get("column" + i).size());
@@ -71,4 +90,80 @@ public class CSVTokenizerTest extends Assert {
     split("foo,maybe\"", ',', true);
   }
 
+  @Test
+  public void testStreaming() throws Exception {
+    String input = "# comment\r\n a ,b,\"c\"\"d\"\r\n\r\n  \n1,\"multi\r\nline, \"\"x\"\"\",3\r4,5,6";
+    for (int bufferSize : new int[] {1, 3, 1024}) {
+      List<String> columnNames = new ArrayList(Arrays.asList("first", "", "third"));
+      CharArrayCSVTokenizer tokenizer = new CharArrayCSVTokenizer(
+          ',', true, columnNames, '"', '#', true, new SymbolTable());
+      tokenizer.reset(new StringReader(input), bufferSize);
+      List<Record> records = new ArrayList();
+      Record record = new Record();
+      while (tokenizer.readNext(record)) {
+        records.add(record);
+        record = new Record();
+      }
+      assertEquals(3, records.size());
+      assertEquals(ImmutableMultimap.of("first", "a", "third", "c\"d"), records.get(0).getFields());
+      assertEquals(ImmutableMultimap.of("first", "1", "third", "3"), records.get(1).getFields());
+      assertEquals(ImmutableMultimap.of("first", "4", "third", "6"), records.get(2).getFields());
+    }
+    
+    // quoted newlines are normalized to '\n', and the second column is projected away
+    CharArrayCSVTokenizer tokenizer = new CharArrayCSVTokenizer(
+        ',', false, new ArrayList(Arrays.asList("", "second")), '"', null, true, new SymbolTable());
+    tokenizer.reset(new StringReader(input), 8);
+    assertTrue(tokenizer.skipLine());
+    Record record = new Record();
+    assertTrue(tokenizer.readNext(record));
+    assertTrue(tokenizer.readNext(record));
+    assertEquals(Arrays.asList("b", "multi\nline, \"x\""), record.get("second"));
+  }
+
+  @Test
+  @Ignore
+  public void benchmarkStreaming() throws Exception {
+    int numColumns = 40;
+    int numLines = 10000;
+    StringBuilder buf = new StringBuilder();
+    for (int i = 0; i < numLines; i++) {
+      for (int j = 0; j < numColumns; j++) {
+        buf.append(j == 0 ? "" : ",").append(j % 5 == 0 ? "\"quoted, value " + j + "\"" : "value" + j);
+      }
+      buf.append('\n');
+    }
+    String input = buf.toString();
+    List<String> columnNames = new ArrayList();
+    for (int j = 0; j < numColumns; j++) {
+      columnNames.add(j % 7 == 0 ? "column" + j : ""); // keep 6 of 40 columns
+    }
+    for (boolean isStreaming : new boolean[] {false, true, false, true}) {
+      SymbolTable symbols = new SymbolTable();
+      CSVTokenizer tokenizer = new QuotedCSVTokenizer(',', true, new ArrayList(columnNames), '"', symbols);
+      CharArrayCSVTokenizer streamingTokenizer = new CharArrayCSVTokenizer(',', true, new ArrayList(columnNames), '"', null, true, symbols);
+      System.out.println("Now benchmarking isStreaming: " + isStreaming + " ...");
+      long durationSecs = 10;
+      long start = System.currentTimeMillis();
+      int iters = 0;
+      while (System.currentTimeMillis() < start + durationSecs * 1000) {
+        if (isStreaming) {
+          streamingTokenizer.reset(new StringReader(input), 8192);
+          while (streamingTokenizer.readNext(new Record(symbols))) {
+            iters++;
+          }
+        } else {
+          BufferedReader reader = new BufferedReader(new StringReader(input));
+          String line;
+          while ((line = reader.readLine()) != null) {
+            tokenizer.tokenizeLine(line, reader, new Record(symbols));
+            iters++;
+          }
+        }
+      }
+      float secs = (System.currentTimeMillis() - start) / 1000.0f;
+      System.out.println("Results: iters=" + iters + ", took[secs]=" + secs + ", iters/secs=" + (iters/secs));
+    }
+  }
+
 }
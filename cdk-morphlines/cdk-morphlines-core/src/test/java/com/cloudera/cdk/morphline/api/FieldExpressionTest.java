@@ -134,6 +134,50 @@ public class FieldExpressionTest extends Assert {
     }
   }
   
+  @Test
+  public void testCompiledExpressionIsReusable() throws Exception {
+    FieldExpression expr = new FieldExpression("@{first_name}-@{tags}", null);
+    Record record = new Record();
+    record.put("first_name", "Nadja");
+    record.put("tags", "one");
+    record.put("tags", 2);
+    assertEquals(Arrays.asList("Nadja-one", "Nadja-2"), expr.evaluate(record));
+    
+    record = new Record();
+    record.put("first_name", "Pembo");
+    record.put("tags", "three");
+    assertEquals(Arrays.asList("Pembo-three"), expr.evaluate(record));
+    assertEquals(Arrays.asList(), expr.evaluate(new Record()));
+    
+    assertEquals(Arrays.asList("[" + record + "]"), new FieldExpression("[@{}]", null).evaluate(record));
+  }
+  
+  @Test
+  public void testSingleReferenceIsSnapshot() throws Exception {
+    FieldExpression expr = new FieldExpression("@{first_name}", null);
+    Record record = new Record();
+    record.put("first_name", "Nadja");
+    List values = expr.evaluate(record);
+    record.put("first_name", "Pembo");
+    assertEquals(Arrays.asList("Nadja"), values);
+    try {
+      values.add("Shanti");
+      fail();
+    } catch (UnsupportedOperationException e) {
+      ;
+    }
+  }
+  
+  @Test
+  public void testMissingClosingToken() throws Exception {
+    try {
+      new FieldExpression("Ms. @{first_name", null);
+      fail();
+    } catch (MorphlineCompilationException e) {
+      ;
+    }
+  }
+  
   private List resolveExpression(String expr, Record record) {
     return new FieldExpression(expr, null).evaluate(record);
   }
@@ -27,10 +27,12 @@ import java.net.URI;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import javax.management.AttributeNotFoundException;
 import javax.management.InstanceNotFoundException;
@@ -43,11 +45,13 @@ import javax.management.ReflectionException;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import com.cloudera.cdk.morphline.base.AbstractCommand;
 import com.cloudera.cdk.morphline.base.Compiler;
 import com.cloudera.cdk.morphline.base.FaultTolerance;
 import com.cloudera.cdk.morphline.base.Fields;
 import com.cloudera.cdk.morphline.base.Metrics;
 import com.cloudera.cdk.morphline.base.Notifications;
+import com.cloudera.cdk.morphline.stdio.ReadCSVBuilder;
 import com.cloudera.cdk.morphline.shaded.com.google.code.regexp.Matcher;
 import com.cloudera.cdk.morphline.shaded.com.google.code.regexp.Pattern;
 import com.cloudera.cdk.morphline.shaded.com.google.common.reflect.ClassPath;
@@ -203,6 +207,58 @@ public class MorphlineTest extends AbstractMorphlineTest {
     assertNotNull(morphline);
   }
   
+  @Test
+  public void testCompileCached() throws Exception {
+    File file = new File("target/compileCached.conf");
+    Files.write("morphlines : [{ id : morphline1, importCommands : [\"com.cloudera.**\"], "
+        + "commands : [{ addValues { source : [v1, ${ENV_SOURCE}] } }] }]", file, Charsets.UTF_8);
+    System.setProperty("ENV_SOURCE", "a");
+    try {
+      Command first = new Compiler().compile(file, null, new MorphlineContext.Builder().build(), collector);
+      Command second = new Compiler().compile(file, null, new MorphlineContext.Builder().build(), collector);
+      assertNotSame(first, second);
+      second.process(new Record());
+      assertEquals(Arrays.asList("v1", "a"), collector.getFirstRecord().get("source"));
+      
+      // a changed system property is reflected in the compiled morphline
+      collector.reset();
+      System.setProperty("ENV_SOURCE", "b");
+      new Compiler().compile(file, null, new MorphlineContext.Builder().build(), collector).process(new Record());
+      assertEquals(Arrays.asList("v1", "b"), collector.getFirstRecord().get("source"));
+      
+      // a modified file is reflected in the compiled morphline
+      collector.reset();
+      Files.write("morphlines : [{ id : morphline1, importCommands : [\"com.cloudera.**\"], "
+          + "commands : [{ addValues { source : v2 } }] }]", file, Charsets.UTF_8);
+      new Compiler().compile(file, null, new MorphlineContext.Builder().build(), collector).process(new Record());
+      assertEquals(Arrays.asList("v2"), collector.getFirstRecord().get("source"));
+      
+      // so is a recently modified file whose length and modification time didn't change, as on a
+      // file system with a coarse timestamp granularity
+      collector.reset();
+      long lastModified = file.lastModified();
+      Files.write("morphlines : [{ id : morphline1, importCommands : [\"com.cloudera.**\"], "
+          + "commands : [{ addValues { source : v3 } }] }]", file, Charsets.UTF_8);
+      file.setLastModified(lastModified);
+      new Compiler().compile(file, null, new MorphlineContext.Builder().build(), collector).process(new Record());
+      assertEquals(Arrays.asList("v3"), collector.getFirstRecord().get("source"));
+      
+      // the config of a file that wasn't modified recently is cached
+      collector.reset();
+      lastModified = System.currentTimeMillis() - 10000;
+      file.setLastModified(lastModified);
+      new Compiler().compile(file, null, new MorphlineContext.Builder().build(), collector);
+      Files.write("morphlines : [{ id : morphline1, importCommands : [\"com.cloudera.**\"], "
+          + "commands : [{ addValues { source : v4 } }] }]", file, Charsets.UTF_8);
+      file.setLastModified(lastModified);
+      new Compiler().compile(file, null, new MorphlineContext.Builder().build(), collector).process(new Record());
+      assertEquals(Arrays.asList("v3"), collector.getFirstRecord().get("source"));
+    } finally {
+      System.clearProperty("ENV_SOURCE");
+      file.delete();
+    }
+  }
+  
   @Test
   public void testCompileWithUnknownMorphlineId() throws Exception {
     String file = "test-morphlines/pipeWithTwoBasicCommands";
@@ -311,6 +367,33 @@ public class MorphlineTest extends AbstractMorphlineTest {
     processAndVerifySuccess(record, expected);
   }
 
+  @Test
+  public void testProcessBatch() throws Exception {
+    morphline = createMorphline("test-morphlines/addValuesIfAbsent");    
+    List<Record> records = new ArrayList();
+    List<Record> expected = new ArrayList();
+    for (int i = 0; i < 5; i++) {
+      Record record = new Record();
+      record.put("id", i);
+      if (i == 2) {
+        record.put("source_type", "text/csv");
+      }
+      records.add(record);
+      Record expectedRecord = record.copy();
+      expectedRecord.putIfAbsent("source_type", "text/log");
+      expected.add(expectedRecord);
+    }
+    startSession();
+    assertTrue(((AbstractCommand) morphline).processBatch(records));
+    assertEquals(expected, collector.getRecords());
+    assertEquals(1, collector.getNumStartEvents());
+    
+    // an empty batch is a no-op
+    collector.reset();
+    assertTrue(((AbstractCommand) morphline).processBatch(new ArrayList()));
+    assertEquals(0, collector.getRecords().size());
+  }
+
   @Test
   public void testSetValues() throws Exception {
     morphline = createMorphline("test-morphlines/setValues");    
@@ -696,7 +779,37 @@ public class MorphlineTest extends AbstractMorphlineTest {
   
   @Test
   public void testReadCSV() throws Exception {
-    morphline = createMorphline("test-morphlines/readCSV");    
+    for (String file : new String[] {"test-morphlines/readCSV", "test-morphlines/readCSVStreaming"}) {
+      morphline = createMorphline(file);    
+      verifyReadCSV();
+    }
+  }  
+
+  private void verifyReadCSV() throws Exception {
+    for (int i = 0; i < 3; i++) {
+      InputStream in = new FileInputStream(new File(RESOURCES_DIR + "/test-documents/cars2.csv"));
+      Record record = (i % 2 == 0 ? new Record() : new Record(morphContext.getSymbolTable()));
+      record.put(Fields.ATTACHMENT_BODY, in);
+      processAndVerifySuccess(record, 
+          ImmutableMultimap.of("Age", "Age", "Extras", "Extras", "Type", "Type", "column4", "Used"),
+  
+          ImmutableMultimap.of("Age", "2", "Extras", "GPS", "Type", "Gas, with electric", "column4", ""),
+          
+          ImmutableMultimap.of("Age", "10", "Extras", "Labeled \"Vintage, 1913\"", "Type", "", "column4", "yes"),
+          
+          ImmutableMultimap.of("Age", "100", "Extras", "Labeled \"Vintage 1913\"", "Type", "yes"),
+          
+          ImmutableMultimap.of("Age", "5", "Extras", "none", "Type", "This is a\nmulti, line text", "column4", "no\""),
+          
+          ImmutableMultimap.of("Age", "6", "Extras", "many", "Type", "Another multi, line text", "column4", "maybe")
+          );
+      in.close();
+    }
+  }  
+
+  @Test
+  public void testReadCSVBatched() throws Exception {
+    morphline = createMorphline("test-morphlines/readCSVBatched");    
     for (int i = 0; i < 3; i++) {
       InputStream in = new FileInputStream(new File(RESOURCES_DIR + "/test-documents/cars2.csv"));
       Record record = new Record();
@@ -720,7 +833,13 @@ public class MorphlineTest extends AbstractMorphlineTest {
 
   @Test
   public void testReadCSVWithoutQuoting() throws Exception {
-    morphline = createMorphline("test-morphlines/readCSVWithoutQuoting");    
+    for (String file : new String[] {"test-morphlines/readCSVWithoutQuoting", "test-morphlines/readCSVWithoutQuotingStreaming"}) {
+      morphline = createMorphline(file);    
+      verifyReadCSVWithoutQuoting();
+    }
+  }  
+
+  private void verifyReadCSVWithoutQuoting() throws Exception {
     for (int i = 0; i < 3; i++) {
       InputStream in = new FileInputStream(new File(RESOURCES_DIR + "/test-documents/cars.csv"));
       Record record = new Record();
@@ -1732,6 +1851,35 @@ public class MorphlineTest extends AbstractMorphlineTest {
     ctx.importCommandBuilders(importSpecs);    
   }
   
+  @Test
+  public void testClassIndexIsComplete() {
+    // each CommandBuilder must be listed in META-INF/services/com.cloudera.cdk.morphline.api.CommandBuilder
+    List<String> importSpecs = Arrays.asList("com.cloudera.**");
+    MorphlineContext ctx = new MorphlineContext();
+    Set<Class> indexed = new HashSet(ctx.getTopLevelClasses(importSpecs, CommandBuilder.class, true));
+    Set<Class> scanned = new HashSet(ctx.getTopLevelClasses(importSpecs, CommandBuilder.class, false));
+    assertEquals(scanned, indexed);
+    assertTrue(indexed.contains(ReadCSVBuilder.class));
+    assertTrue(indexed.contains(CopyTestCommandBuilder.class));
+  }
+  
+  @Test
+  @Ignore
+  public void benchmarkImportSpecs() {
+    List<String> importSpecs = Arrays.asList("com.**", "org.**", "net.**");
+    for (boolean isUsingClassIndex : new boolean[] {false, true, false, true}) {
+      long start = System.currentTimeMillis();
+      int iters = 10;
+      int numClasses = 0;
+      for (int i = 0; i < iters; i++) {
+        numClasses += new MorphlineContext().getTopLevelClasses(importSpecs, CommandBuilder.class, isUsingClassIndex).size();
+      }
+      float secs = (System.currentTimeMillis() - start) / 1000.0f;
+      System.out.println("Results: isUsingClassIndex=" + isUsingClassIndex + ", iters=" + iters + ", took[secs]=" + secs 
+          + ", iters/secs=" + (iters/secs) + ", numClasses=" + (numClasses / iters));
+    }
+  }
+  
   @Test
   @Ignore
   public void testHugeImportSpecs() {
@@ -1806,4 +1954,44 @@ public class MorphlineTest extends AbstractMorphlineTest {
     System.out.println("Results: iters=" + iters + ", took[secs]=" + secs + ", iters/secs=" + (iters/secs));
   }  
 
+  @Test
+  @Ignore
+  // Before running this disable debug logging 
+  // via log4j.logger.com.cloudera.cdk.morphline=INFO in log4j.properties
+  public void benchmarkTryRulesAllocationRate() throws Exception {
+    String morphlineConfigFile = "test-morphlines/tryRulesBenchmark";
+    long durationSecs = 10;
+    int numFields = 40;
+    java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    for (boolean isCopyOnWrite : new boolean[] {false, true, false, true}) {
+      System.out.println("Now benchmarking " + morphlineConfigFile + " with isCopyOnWrite: " + isCopyOnWrite + " ...");
+      morphline = createMorphline(morphlineConfigFile);
+      Record template = isCopyOnWrite ? new Record(morphContext.getSymbolTable()) : new Record();
+      for (int i = 0; i < numFields; i++) {
+        template.put("column" + i, "value" + i);
+      }
+      template.put("type", "rule10");
+      long startBytes = getAllocatedBytes(threadBean);
+      long start = System.currentTimeMillis();
+      long duration = durationSecs * 1000;
+      int iters = 0; 
+      while (System.currentTimeMillis() < start + duration) {
+        collector.reset();
+        assertTrue(morphline.process(template.copy()));    
+        iters++;
+      }
+      float secs = (System.currentTimeMillis() - start) / 1000.0f;
+      long bytes = getAllocatedBytes(threadBean) - startBytes;
+      System.out.println("Results: iters=" + iters + ", took[secs]=" + secs + ", iters/secs=" + (iters/secs)
+          + ", allocatedBytes/iter=" + (startBytes < 0 ? "n/a" : String.valueOf(bytes / iters)));
+    }
+  }  
+
+  private long getAllocatedBytes(java.lang.management.ThreadMXBean threadBean) {
+    if (threadBean instanceof com.sun.management.ThreadMXBean) { // HotSpot specific
+      return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return -1;
+  }
+
 }
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2013 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.cdk.morphline.api;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.cloudera.cdk.morphline.base.Notifications;
+import com.cloudera.cdk.morphline.base.ParallelMorphline;
+import com.codahale.metrics.MetricRegistry;
+
+public class ParallelMorphlineTest extends AbstractMorphlineTest {
+
+  @Test
+  public void testKeyAffinityAndBarrier() throws Exception {
+    ParallelMorphline parallel = createParallelMorphline("test-morphlines/addValuesIfAbsent", 4, "key");
+    assertEquals(4, parallel.getNumWorkers());
+    Notifications.notifyStartSession(parallel);
+    Notifications.notifyBeginTransaction(parallel);
+    int numRecords = 2000;
+    for (int i = 0; i < numRecords; i++) {
+      Record record = new Record();
+      record.put("key", "key" + (i % 7));
+      record.put("seq", i);
+      assertTrue(parallel.process(record));
+    }
+    Notifications.notifyCommitTransaction(parallel);
+
+    // the barrier guarantees all records of the transaction have been processed
+    assertEquals(numRecords, collector.getRecords().size());
+    assertEquals(1, collector.getNumStartEvents());
+    assertEquals(0, parallel.getNumFailedRecords());
+    Map<Object, Integer> lastSeqs = new HashMap();
+    for (Record record : collector.getRecords()) {
+      assertEquals(Arrays.asList("text/log"), record.get("source_type"));
+      Object key = record.getFirstValue("key");
+      Integer seq = (Integer) record.getFirstValue("seq");
+      Integer lastSeq = lastSeqs.put(key, seq);
+      assertTrue(lastSeq == null || lastSeq.intValue() < seq.intValue());
+    }
+    assertEquals(7, lastSeqs.size());
+
+    Notifications.notifyShutdown(parallel);
+    try {
+      parallel.process(new Record());
+      fail();
+    } catch (IllegalStateException e) {
+      ; // expected
+    }
+  }
+
+  @Test
+  public void testRoundRobinWithFailures() throws Exception {
+    ParallelMorphline parallel = createParallelMorphline("test-morphlines/equalsFailure", 3, null);
+    for (int i = 0; i < 100; i++) {
+      Record record = new Record();
+      record.put("field0", i % 4 == 0 ? "true" : "false");
+      parallel.process(record);
+    }
+    Notifications.notifyCommitTransaction(parallel);
+    assertEquals(25, collector.getRecords().size());
+    assertEquals(75, parallel.getNumFailedRecords());
+    Notifications.notifyShutdown(parallel);
+  }
+
+  private ParallelMorphline createParallelMorphline(String file, int numWorkers, String keyField) {
+    morphContext = new MorphlineContext.Builder().setMetricRegistry(new MetricRegistry()).build();
+    final Collector delegate = collector;
+    Command synchronizedCollector = new Command() {
+      @Override
+      public synchronized void notify(Record notification) {
+        delegate.notify(notification);
+      }
+      @Override
+      public synchronized boolean process(Record record) {
+        return delegate.process(record);
+      }
+      @Override
+      public Command getParent() {
+        return null;
+      }
+    };
+    return new ParallelMorphline(new File(RESOURCES_DIR + "/" + file + ".conf"), null, morphContext,
+        synchronizedCollector, numWorkers, 16, keyField);
+  }
+
+}
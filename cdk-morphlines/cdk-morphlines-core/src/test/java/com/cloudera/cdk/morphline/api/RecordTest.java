@@ -0,0 +1,255 @@
+/*
+ * Copyright 2013 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.cdk.morphline.api;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import com.cloudera.cdk.morphline.api.SymbolTable.Symbol;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.ImmutableSet;
+
+public class RecordTest extends Assert {
+
+  @Test
+  public void testSymbolTable() throws Exception {
+    SymbolTable symbols = new SymbolTable();
+    assertNull(symbols.lookup("foo"));
+    Symbol foo = symbols.intern("foo");
+    assertSame(foo, symbols.intern("foo"));
+    assertSame(foo, symbols.lookup("foo"));
+    assertEquals("foo", foo.getName());
+    for (int i = 0; i < 100; i++) {
+      assertEquals("field" + i, symbols.getName(symbols.intern("field" + i).getSlot()));
+    }
+    assertEquals(101, symbols.size());
+  }
+
+  @Test
+  public void testBasicOperations() throws Exception {
+    SymbolTable symbols = new SymbolTable();
+    Record expected = new Record();
+    Record record = new Record(symbols);
+    for (Record r : Arrays.asList(expected, record)) {
+      r.put("first_name", "Nadja");
+      r.put("tags", "one");
+      r.put("tags", 2);
+      r.put("tags", "three");
+      r.put("empty", "x");
+      r.removeAll("empty");
+      r.replaceValues("age", 8);
+      r.putIfAbsent("tags", 2);
+      r.putIfAbsent("likes", "pembo");
+    }
+    assertEquals(expected, record);
+    assertEquals(record, expected);
+    assertEquals(expected.hashCode(), record.hashCode());
+    assertEquals(expected.toString(), record.toString());
+    assertEquals(expected.getFields(), record.getFields());
+    assertEquals(expected.getFields().size(), record.getFields().size());
+    assertEquals(expected.getFields().keySet(), record.getFields().keySet());
+    assertEquals(expected.getFields().keys(), record.getFields().keys());
+    assertEquals(expected.getFields().asMap(), record.getFields().asMap());
+    assertEquals(ImmutableSet.copyOf(expected.getFields().entries()), ImmutableSet.copyOf(record.getFields().entries()));
+    assertFalse(record.getFields().containsKey("empty"));
+    assertFalse(record.getFields().containsKey("nonExistingField"));
+    assertTrue(record.getFields().containsEntry("tags", 2));
+    assertTrue(record.getFields().containsValue("pembo"));
+    assertEquals("Nadja", record.getFirstValue("first_name"));
+    assertNull(record.getFirstValue("nonExistingField"));
+    assertEquals(Arrays.asList("one", 2, "three"), record.getFields().removeAll("tags"));
+    assertEquals(Collections.EMPTY_LIST, record.get("tags"));
+    assertFalse(record.equals(expected));
+    record.getFields().clear();
+    assertTrue(record.getFields().isEmpty());
+    assertEquals(new Record(), record);
+  }
+
+  @Test
+  public void testSymbolAccess() throws Exception {
+    SymbolTable symbols = new SymbolTable();
+    Symbol tags = symbols.intern("tags");
+    Symbol foreign = new SymbolTable().intern("tags");
+    for (Record record : Arrays.asList(new Record(), new Record(symbols))) {
+      record.put(tags, "one");
+      record.put("tags", 2);
+      record.put(foreign, "three");
+      assertEquals(Arrays.asList("one", 2, "three"), record.get("tags"));
+      assertEquals(Arrays.asList("one", 2, "three"), record.get(tags));
+      assertEquals("one", record.getFirstValue(tags));
+      record.replaceValues(tags, "four");
+      assertEquals(Arrays.asList("four"), record.get(foreign));
+      record.removeAll(tags);
+      assertNull(record.getFirstValue(tags));
+      assertFalse(record.getFields().containsKey("tags"));
+    }
+  }
+
+  @Test
+  public void testLiveViews() throws Exception {
+    Record record = new Record(new SymbolTable());
+    List values = record.get("nonExistingField");
+    assertEquals(0, values.size());
+    values.add("foo");
+    assertEquals(Arrays.asList("foo"), record.get("nonExistingField"));
+    record.put("nonExistingField", "bar");
+    assertEquals(Arrays.asList("foo", "bar"), values);
+    values.clear();
+    assertFalse(record.getFields().containsKey("nonExistingField"));
+
+    record.put("first_name", "Nadja");
+    record.put("tags", "one");
+    record.put("tags", 2);
+    Iterator<Map.Entry<String, Object>> iter = record.getFields().entries().iterator();
+    while (iter.hasNext()) {
+      if (iter.next().getValue().equals("one")) {
+        iter.remove();
+      }
+    }
+    assertEquals(ImmutableMultimap.of("first_name", "Nadja", "tags", 2), record.getFields());
+    record.getFields().keySet().remove("tags");
+    assertEquals(ImmutableMultimap.of("first_name", "Nadja"), record.getFields());
+    record.getFields().asMap().remove("first_name");
+    assertTrue(record.getFields().isEmpty());
+  }
+
+  @Test
+  public void testCopy() throws Exception {
+    for (Record record : Arrays.asList(new Record(), new Record(new SymbolTable()))) {
+      record.put("first_name", "Nadja");
+      record.put("tags", "one");
+      Record copy = record.copy();
+      assertEquals(record, copy);
+      copy.put("tags", 2);
+      copy.removeAll("first_name");
+      copy.put("age", 8);
+      assertEquals(ImmutableMultimap.of("first_name", "Nadja", "tags", "one"), record.getFields());
+      assertEquals(ImmutableMultimap.of("tags", "one", "tags", 2, "age", 8), copy.getFields());
+    }
+  }
+
+  @Test
+  public void testCopyOnWrite() throws Exception {
+    SymbolTable symbols = new SymbolTable();
+    Symbol tags = symbols.intern("tags");
+    Record record = new Record(symbols);
+    record.put("first_name", "Nadja");
+    record.put(tags, "one");
+    record.put(tags, 2);
+    List tagValues = record.get(tags);
+    Record copy = record.copy();
+    Record copy2 = copy.copy();
+    
+    // mutate shared lists through previously obtained views and through getFields() views
+    tagValues.add("three");
+    copy.get("tags").set(0, "uno");
+    copy.getFields().get("first_name").clear();
+    Iterator iter = copy2.getFields().values().iterator();
+    while (iter.hasNext()) {
+      if (iter.next().equals(2)) {
+        iter.remove();
+      }
+    }
+    copy2.getFields().asMap().get("first_name").add("Pembo");
+    
+    assertEquals(ImmutableMultimap.of("first_name", "Nadja", "tags", "one", "tags", 2, "tags", "three"), record.getFields());
+    assertEquals(ImmutableMultimap.of("tags", "uno", "tags", 2), copy.getFields());
+    assertEquals(ImmutableMultimap.of("first_name", "Nadja", "first_name", "Pembo", "tags", "one"), copy2.getFields());
+    
+    // a copy of a copy, then mutate the parent
+    Record copy3 = copy.copy();
+    copy.replaceValues(tags, "eins");
+    copy.removeAll("nonExistingField");
+    assertEquals(Arrays.asList("uno", 2), copy3.get(tags));
+    assertEquals(Arrays.asList("eins"), copy.get(tags));
+    assertEquals(Arrays.asList("uno", 2), copy3.getFields().replaceValues("tags", Arrays.asList("x")));
+    assertEquals(Arrays.asList("eins"), copy.get(tags));
+  }
+
+  @Test
+  public void testUninternedFields() throws Exception {
+    SymbolTable symbols = new SymbolTable();
+    Symbol tags = symbols.intern("tags");
+    Record record = new Record(symbols);
+    Symbol late = symbols.intern("late"); // interned after the record was created
+    record.put(tags, "one");
+    record.put("first_name", "Nadja");
+    record.getFields().putAll("likes", Arrays.asList("pembo", "nadja"));
+    record.put(late, 1);
+    record.put("late", 2);
+    assertEquals(2, symbols.size());
+    assertNull(symbols.lookup("first_name"));
+    assertEquals(Arrays.asList(1, 2), record.get(late));
+    assertEquals(1, record.getFirstValue(late));
+    assertEquals(Arrays.asList("pembo", "nadja"), record.get("likes"));
+    assertTrue(record.getFields().containsEntry("first_name", "Nadja"));
+    assertEquals(ImmutableSet.of("tags", "first_name", "likes", "late"), record.getFields().keySet());
+    assertEquals(4, record.getFields().keySet().size());
+    assertEquals(6, record.getFields().size());
+
+    Record copy = record.copy();
+    copy.removeAll(late);
+    copy.getFields().remove("likes", "nadja");
+    copy.replaceValues("first_name", "Pembo");
+    assertEquals(Arrays.asList(1, 2), record.get(late));
+    assertEquals(Arrays.asList("pembo", "nadja"), record.get("likes"));
+    assertEquals("Nadja", record.getFirstValue("first_name"));
+    assertEquals(ImmutableMultimap.of("tags", "one", "first_name", "Pembo", "likes", "pembo"), copy.getFields());
+    assertEquals(2, symbols.size());
+  }
+
+  @Test
+  @Ignore
+  public void benchmark() throws Exception {
+    long durationSecs = 10;
+    int numFields = 40;
+    for (boolean isSlotted : new boolean[] {false, true, false, true}) {
+      SymbolTable symbols = new SymbolTable();
+      Symbol[] fields = new Symbol[numFields];
+      Record template = isSlotted ? new Record(symbols) : new Record();
+      for (int i = 0; i < numFields; i++) {
+        fields[i] = symbols.intern("column" + i);
+        template.put(fields[i], "value" + i);
+      }
+      System.out.println("Now benchmarking copy and get with isSlotted: " + isSlotted + " ...");
+      long start = System.currentTimeMillis();
+      long duration = durationSecs * 1000;
+      int iters = 0;
+      long checksum = 0;
+      while (System.currentTimeMillis() < start + duration) {
+        for (int j = 0; j < 1000; j++) {
+          Record record = template.copy();
+          for (int i = 0; i < numFields; i++) {
+            checksum += record.get(fields[i]).size();
+          }
+          record.replaceValues(fields[0], "foo");
+        }
+        iters += 1000;
+      }
+      float secs = (System.currentTimeMillis() - start) / 1000.0f;
+      System.out.println("Results: iters=" + iters + ", took[secs]=" + secs + ", iters/secs=" + (iters/secs)
+          + ", checksum=" + checksum);
+    }
+  }
+
+}
@@ -37,4 +37,21 @@ public class GrokDictionaryTest extends Assert {
     assertFalse(pattern.matcher("2007-03-01T13:00:00Z+01:00").matches());
   }
   
+  @Test 
+  public void testCompiledExpressionsAreShared() {
+    String str = "{ dictionaryFiles : [target/test-classes/grok-dictionaries/grok-patterns] }";    
+    GrokDictionaries dicts = new GrokDictionaries(ConfigFactory.parseString(str), new Configs());
+    Pattern pattern = dicts.compileExpression("%{TIMESTAMP_ISO8601:timestamp}");
+    dicts = new GrokDictionaries(ConfigFactory.parseString(str), new Configs());
+    assertSame(pattern, dicts.compileExpression("%{TIMESTAMP_ISO8601:timestamp}"));
+    assertNotSame(pattern, dicts.compileExpression("%{TIMESTAMP_ISO8601:time}"));
+    
+    str = "{ dictionaryFiles : [target/test-classes/grok-dictionaries/grok-patterns], " 
+        + "dictionaryString : \"TIMESTAMP_ISO8601 %{YEAR}\" }";    
+    dicts = new GrokDictionaries(ConfigFactory.parseString(str), new Configs());
+    Pattern pattern2 = dicts.compileExpression("%{TIMESTAMP_ISO8601:timestamp}");
+    assertNotSame(pattern, pattern2);
+    assertTrue(pattern2.matcher("2007").matches());
+  }
+  
 }
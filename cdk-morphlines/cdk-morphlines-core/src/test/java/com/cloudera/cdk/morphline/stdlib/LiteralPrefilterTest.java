@@ -0,0 +1,161 @@
+/*
+ * Copyright 2013 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.cdk.morphline.stdlib;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import com.cloudera.cdk.morphline.base.Configs;
+import com.cloudera.cdk.morphline.shaded.com.google.code.regexp.Pattern;
+import com.typesafe.config.ConfigFactory;
+
+public class LiteralPrefilterTest extends Assert {
+
+  private static final String CISCO_EXPR =
+      "<%{POSINT}>%{SYSLOGTIMESTAMP} %{SYSLOGHOST} %{MONTH} %{MONTHDAY} %{YEAR} %{TIME} : " +
+      "(?<syslog_message>(?<cisco_message_code>%%{WORD:cisco_product}-%{WORD:cisco_level}" +
+      "(-%{WORD:cisco_subfacility})?-%{WORD:cisco_message_id}): Health probe %{GREEDYDATA})";
+
+  private static final List<String> LINES = Arrays.asList(
+      "<179>Jun 10 04:42:51 www.foo.com Jun 10 2013 04:42:51 : %myproduct-3-mysubfacility-251010: " +
+      "Health probe failed for server 1.2.3.4 on port 8083, connection refused by server",
+      "<179>Jun 10 04:42:51 www.foo.com Jun 10 2013 04:42:51 : %myproduct-3-251010: Health probe ok",
+      "<179>Jun 10 04:42:51 www.foo.com Jun 10 2013 04:42:51 : %myproduct-3-251010: Link is down",
+      "<164>Feb  4 10:46:14 syslog sshd[607]: listening on 0.0.0.0 port 22.",
+      "2013-09-06T14:14:34.789Z foo bar",
+      "127.0.0.1 - frank [10/Oct/2000:13:55:36 -0700] \"GET /apache_pb.gif HTTP/1.0\" 200 2326 " +
+      "\"http://www.example.com/start.html\" \"Mozilla/4.08 [en] (Win98; I ;Nav)\"",
+      "");
+
+  @Test
+  public void testExtraction() throws Exception {
+    assertLiterals("abc", "abc");
+    assertLiterals("abc", "abcd?");
+    assertLiterals("abc, de", "abcd*de");
+    assertLiterals("abc", "abc+");
+    assertLiterals("abc", "abc{2,3}d?");
+    assertLiterals("ab", "abc{0,3}");
+    assertLiterals("foo, bar", "foo\\d+bar");
+    assertLiterals("foo, bar", "foo[a-z]*bar");
+    assertLiterals("a.b", "a\\.b");
+    assertLiterals("", "a\\bc");
+    assertLiterals("foo, bar", "foo(bar)+");
+    assertLiterals("foo", "foo(bar)?");
+    assertLiterals("foo", "foo(bar|baz)");
+    assertLiterals("", "foo|bar");
+    assertLiterals("foo, baz", "(?:foo)baz");
+    assertLiterals("foo, bar", "(?<name>foo)(?:bar)");
+    assertLiterals("foo", "foo(?=bar)");
+    assertLiterals("foo", "(?<!bar)foo");
+    assertLiterals("foo, ab", "foo[]ab]*ab[^]x[y]]");
+    assertLiterals("foo", "foo.*?ab??");
+    assertLiterals("foo, ba", "foo\\tbar?");
+    assertLiterals("", "(?i)foo");
+    assertLiterals("", "(?i:foo)bar");
+    assertLiterals("", "foo\\x41");
+    assertLiterals("", "(foo)\\1");
+    assertLiterals("", "\\Qfoo\\E");
+    assertLiterals("", "foo)");
+    assertLiterals("", "(foo");
+    assertEquals(Collections.EMPTY_LIST,
+        LiteralPrefilter.compile("foo", java.util.regex.Pattern.CASE_INSENSITIVE).getRequiredLiterals());
+  }
+
+  @Test
+  public void testGrokExpression() throws Exception {
+    Pattern pattern = compileGrokExpression(CISCO_EXPR);
+    LiteralPrefilter prefilter = LiteralPrefilter.compile(pattern.standardPattern(), pattern.flags());
+    assertEquals(Arrays.asList(": Health probe ", " : "), prefilter.getRequiredLiterals());
+    for (String line : LINES) {
+      assertEquals(line.contains("Health probe"), prefilter.mayMatch(line));
+    }
+  }
+
+  @Test
+  public void testPrefilterNeverRejectsMatches() throws Exception {
+    GrokDictionaries dicts = createGrokDictionaries();
+    List<String> exprs = Arrays.asList(
+        CISCO_EXPR,
+        "%{URI}",
+        "%{QS} %{HTTPDATE}",
+        "%{COMBINEDAPACHELOG}",
+        "%{TIMESTAMP_ISO8601:timestamp} %{GREEDYDATA}",
+        "%{SYSLOGBASE} %{GREEDYDATA}",
+        "<%{POSINT}>%{SYSLOGTIMESTAMP} %{SYSLOGHOST} sshd\\[%{POSINT}\\]: listening on %{IP} port %{POSINT}.",
+        "%{IP}",
+        "%{USER}@%{HOST}");
+    for (String expr : exprs) {
+      Pattern pattern = dicts.compileExpression(expr);
+      LiteralPrefilter prefilter = LiteralPrefilter.compile(pattern.standardPattern(), pattern.flags());
+      for (String line : LINES) {
+        if (pattern.matcher(line).find()) {
+          assertTrue(expr + " " + line, prefilter.mayMatch(line));
+        }
+      }
+    }
+  }
+
+  @Test
+  @Ignore
+  public void benchmark() throws Exception {
+    long durationSecs = 10;
+    Pattern pattern = compileGrokExpression(CISCO_EXPR);
+    LiteralPrefilter prefilter = LiteralPrefilter.compile(pattern.standardPattern(), pattern.flags());
+    String line = LINES.get(2); // fails late in the regex, as is common with tryRules
+    for (boolean isPrefiltering : new boolean[] {false, true}) {
+      System.out.println("Now benchmarking with isPrefiltering: " + isPrefiltering + " ...");
+      com.cloudera.cdk.morphline.shaded.com.google.code.regexp.Matcher matcher = pattern.matcher("");
+      long start = System.currentTimeMillis();
+      long duration = durationSecs * 1000;
+      int iters = 0;
+      int numMatches = 0;
+      while (System.currentTimeMillis() < start + duration) {
+        for (int j = 0; j < 1000; j++) {
+          if (!isPrefiltering || prefilter.mayMatch(line)) {
+            matcher.reset(line);
+            if (matcher.matches()) {
+              numMatches++;
+            }
+          }
+        }
+        iters += 1000;
+      }
+      float secs = (System.currentTimeMillis() - start) / 1000.0f;
+      System.out.println("Results: iters=" + iters + ", took[secs]=" + secs + ", iters/secs=" + (iters/secs)
+          + ", numMatches=" + numMatches);
+    }
+  }
+
+  private void assertLiterals(String expected, String regex) {
+    String actual = LiteralPrefilter.compile(regex, 0).getRequiredLiterals().toString();
+    assertEquals("[" + expected + "]", actual);
+  }
+
+  private Pattern compileGrokExpression(String expr) {
+    return createGrokDictionaries().compileExpression(expr);
+  }
+
+  private GrokDictionaries createGrokDictionaries() {
+    String str = "{ dictionaryFiles : [target/test-classes/grok-dictionaries/grok-patterns] }";
+    return new GrokDictionaries(ConfigFactory.parseString(str), new Configs());
+  }
+
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2013 Cloudera Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cloudera.cdk.morphline.stdlib;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+public class TimestampParserTest extends Assert {
+
+  private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+  private static final Date TWO_DIGIT_YEAR_START = new Date(946684800000L);
+
+  private static final List<String> FORMATS = Arrays.asList(
+      "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'",
+      "yyyy-MM-dd'T'HH:mm:ss'Z'",
+      "yyyy-MM-dd'T'HH:mm:ss",
+      "yyyy-MM-dd",
+      "yyyy-MM-dd HH:mm:ss",
+      "EEE MMM d HH:mm:ss yyyy",
+      "unixTimeInSeconds");
+
+  @Test
+  public void testFastPathAgreesWithSimpleDateFormat() throws Exception {
+    List<String> inputs = new ArrayList(Arrays.asList(
+        "2007-04-26T08:05:04.789Z",
+        "2000-02-29T23:59:59.999Z",
+        "1583-01-01T00:00:00.000Z",
+        "9999-12-31T23:59:59Z",
+        "2013-09-06T14:14:34",
+        "2013-09-06",
+        "1970-01-01",
+        "1969-12-31T23:59:59",
+        // lenient or unusual input handled by the SimpleDateFormat fallback
+        "2013-02-30",
+        "2013-13-01",
+        "2013-09-06T24:00:00",
+        "2013-09-06T14:14:60Z",
+        "2013-9-6",
+        "1500-01-01",
+        "2007-04-26T08:05:04.7Z",
+        "2007-04-26T08:05:04.7890Z",
+        // no match at all
+        "2013-09-06T14:14:34+01",
+        "2013-09-06X",
+        "2013/09/06",
+        ""));
+    Random random = new Random(0);
+    for (int i = 0; i < 10000; i++) {
+      inputs.add(String.format("%04d-%02d-%02dT%02d:%02d:%02d.%03dZ", 1583 + random.nextInt(9000),
+          1 + random.nextInt(12), 1 + random.nextInt(31), random.nextInt(24), random.nextInt(60),
+          random.nextInt(60), random.nextInt(1000)));
+    }
+    for (String format : FORMATS.subList(0, 4)) {
+      TimestampParser parser = new TimestampParser(Arrays.asList(format), UTC, Locale.ROOT, TWO_DIGIT_YEAR_START, 0);
+      for (String input : inputs) {
+        assertEquals(format + " " + input, parseSlow(format, UTC, input), parser.parse(input));
+      }
+    }
+  }
+
+  @Test
+  public void testNonUTCTimezone() throws Exception {
+    TimeZone timeZone = TimeZone.getTimeZone("America/Los_Angeles");
+    String format = "yyyy-MM-dd'T'HH:mm:ss";
+    TimestampParser parser = new TimestampParser(Arrays.asList(format), timeZone, Locale.ROOT, TWO_DIGIT_YEAR_START, 10);
+    for (String input : Arrays.asList("2012-09-06T14:14:34", "2012-01-06T14:14:34", "2012-03-11T02:30:00")) {
+      assertEquals(parseSlow(format, timeZone, input), parser.parse(input));
+    }
+  }
+
+  @Test
+  public void testAdaptiveOrderAndCache() throws Exception {
+    for (int cacheSize : new int[] {0, 1, 100}) {
+      TimestampParser parser = new TimestampParser(FORMATS, UTC, Locale.US, TWO_DIGIT_YEAR_START, cacheSize);
+      for (int i = 0; i < 3; i++) {
+        assertEquals(1378476874000L, parser.parse("Fri Sep 6 14:14:34 2013"));
+        assertEquals(1378476874000L, parser.parse("2013-09-06 14:14:34"));
+        assertEquals(1378476874000L, parser.parse("1378476874"));
+        assertEquals(1378476874789L, parser.parse("2013-09-06T14:14:34.789Z"));
+        assertEquals(1378425600000L, parser.parse("2013-09-06"));
+        assertEquals(TimestampParser.NO_MATCH, parser.parse("this is an invalid timestamp"));
+      }
+    }
+    TimestampParser parser = new TimestampParser(Collections.EMPTY_LIST, UTC, Locale.ROOT, TWO_DIGIT_YEAR_START, 10);
+    assertEquals(TimestampParser.NO_MATCH, parser.parse("2013-09-06"));
+  }
+
+  @Test
+  public void testConcurrentUse() throws Exception {
+    final TimestampParser parser = new TimestampParser(FORMATS, UTC, Locale.US, TWO_DIGIT_YEAR_START, 10);
+    final List<String> inputs = new ArrayList();
+    final List<Long> expected = new ArrayList();
+    Random random = new Random(0);
+    for (int i = 0; i < 1000; i++) {
+      long millis = random.nextInt(Integer.MAX_VALUE) * 1000L;
+      String format = FORMATS.get(4 + random.nextInt(2));
+      SimpleDateFormat dateFormat = new SimpleDateFormat(format, Locale.US);
+      dateFormat.setTimeZone(UTC);
+      inputs.add(dateFormat.format(new Date(millis)));
+      expected.add(millis);
+    }
+    final AtomicInteger numErrors = new AtomicInteger();
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          for (int iter = 0; iter < 20; iter++) {
+            for (int i = 0; i < inputs.size(); i++) {
+              if (parser.parse(inputs.get(i)) != expected.get(i).longValue()) {
+                numErrors.incrementAndGet();
+              }
+            }
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(0, numErrors.get());
+  }
+
+  @Test
+  @Ignore
+  public void benchmark() throws Exception {
+    long durationSecs = 10;
+    List<String> inputs = Arrays.asList("2007-04-26T08:05:04.789Z", "Fri Sep 6 14:14:34 2013", "2013-09-06 14:14:34");
+    for (String input : inputs) {
+      for (boolean isSlow : new boolean[] {true, false}) {
+        TimestampParser parser = new TimestampParser(FORMATS, UTC, Locale.US, TWO_DIGIT_YEAR_START, 100);
+        List<SimpleDateFormat> dateFormats = createDateFormats(FORMATS, UTC);
+        System.out.println("Now benchmarking " + input + " with isSlow: " + isSlow + " ...");
+        long start = System.currentTimeMillis();
+        long duration = durationSecs * 1000;
+        int iters = 0;
+        long checksum = 0;
+        while (System.currentTimeMillis() < start + duration) {
+          for (int j = 0; j < 1000; j++) {
+            checksum += isSlow ? parseSequentially(dateFormats, input) : parser.parse(input);
+          }
+          iters += 1000;
+        }
+        float secs = (System.currentTimeMillis() - start) / 1000.0f;
+        System.out.println("Results: iters=" + iters + ", took[secs]=" + secs + ", iters/secs=" + (iters/secs)
+            + ", checksum=" + checksum);
+      }
+    }
+  }
+
+  private long parseSlow(String format, TimeZone timeZone, String input) {
+    return parseSlow(Arrays.asList(format), timeZone, input);
+  }
+
+  private long parseSlow(List<String> formats, TimeZone timeZone, String input) {
+    return parseSequentially(createDateFormats(formats, timeZone), input);
+  }
+
+  private List<SimpleDateFormat> createDateFormats(List<String> formats, TimeZone timeZone) {
+    List<SimpleDateFormat> dateFormats = new ArrayList();
+    for (String format : formats) {
+      SimpleDateFormat dateFormat = null; // null indicates unixTimeInSeconds
+      if (!format.equals(TimestampParser.UNIX_TIME_IN_SECONDS)) {
+        dateFormat = new SimpleDateFormat(format, Locale.US);
+        dateFormat.setTimeZone(timeZone);
+        dateFormat.set2DigitYearStart(TWO_DIGIT_YEAR_START);
+      }
+      dateFormats.add(dateFormat);
+    }
+    return dateFormats;
+  }
+
+  /** The way convertTimestamp used to parse: try each format in order */
+  private long parseSequentially(List<SimpleDateFormat> dateFormats, String input) {
+    for (SimpleDateFormat dateFormat : dateFormats) {
+      if (dateFormat == null) {
+        try {
+          return 1000 * Long.parseLong(input);
+        } catch (NumberFormatException e) {
+          continue;
+        }
+      }
+      ParsePosition pos = new ParsePosition(0);
+      Date date = dateFormat.parse(input, pos);
+      if (date != null && pos.getIndex() == input.length()) {
+        return date.getTime();
+      }
+    }
+    return TimestampParser.NO_MATCH;
+  }
+
+}
@@ -16,6 +16,7 @@
 package com.cloudera.cdk.morphline.solr;
 
 import java.io.IOException;
+import java.util.Collection;
 
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.response.SolrPingResponse;
@@ -34,6 +35,9 @@ public interface DocumentLoader {
   /** Loads the given document into the destination */
   public void load(SolrInputDocument doc) throws IOException, SolrServerException;
 
+  /** Loads the given documents into the destination, as a single request if possible */
+  public void load(Collection<SolrInputDocument> docs) throws IOException, SolrServerException;
+
   /**
    * Sends any outstanding documents to the destination and waits for a positive
    * or negative ack (i.e. exception). Depending on the outcome the caller
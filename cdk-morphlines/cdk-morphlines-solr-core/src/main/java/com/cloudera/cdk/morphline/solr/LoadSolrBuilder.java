@@ -16,9 +16,11 @@
 package com.cloudera.cdk.morphline.solr;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.solr.client.solrj.SolrServerException;
@@ -138,6 +140,27 @@ public final class LoadSolrBuilder implements CommandBuilder {
       return super.doProcess(record);
     }
     
+    @Override
+    protected boolean doProcessBatch(List<Record> records) {
+      Timer.Context timerContext = elapsedTime.time();
+      List<SolrInputDocument> docs = new ArrayList(records.size());
+      for (int i = 0; i < records.size(); i++) {
+        docs.add(convert(records.get(i)));
+      }
+      try {
+        loader.load(docs);
+      } catch (IOException e) {
+        throw new MorphlineRuntimeException(e);
+      } catch (SolrServerException e) {
+        throw new MorphlineRuntimeException(e);
+      } finally {
+        timerContext.stop();
+      }
+      
+      // pass batch to next command in chain:      
+      return processBatch(getChild(), records);
+    }
+    
     private SolrInputDocument convert(Record record) {
       Map<String, Collection<Object>> map = record.getFields().asMap();
       SolrInputDocument doc = new SolrInputDocument(new HashMap(2 * map.size()));
@@ -17,6 +17,7 @@ package com.cloudera.cdk.morphline.solr;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import org.apache.solr.client.solrj.SolrServer;
@@ -71,6 +72,15 @@ public class SolrServerDocumentLoader implements DocumentLoader {
     }
   }
 
+  @Override
+  public void load(Collection<SolrInputDocument> docs) throws IOException, SolrServerException {
+    LOGGER.trace("load docs: {}", docs);
+    batch.addAll(docs);
+    if (batch.size() >= batchSize) {
+      loadBatch(); // sends all docs with a single server.add() call
+    }
+  }
+
   @Override
   public void commitTransaction() throws SolrServerException, IOException {
     LOGGER.trace("commitTransaction");
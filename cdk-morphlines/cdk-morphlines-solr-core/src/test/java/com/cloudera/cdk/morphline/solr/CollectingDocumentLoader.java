@@ -16,6 +16,7 @@
 package com.cloudera.cdk.morphline.solr;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import org.apache.solr.client.solrj.response.SolrPingResponse;
@@ -59,6 +60,15 @@ class CollectingDocumentLoader implements DocumentLoader {
     }
   }
 
+  @Override
+  public void load(Collection<SolrInputDocument> docs) {
+    LOGGER.trace("load docs: {}", docs);
+    batch.addAll(docs);
+    if (batch.size() >= batchSize) {
+      loadBatch();
+    }
+  }
+
   @Override
   public void commitTransaction() {
     LOGGER.trace("commitTransaction");